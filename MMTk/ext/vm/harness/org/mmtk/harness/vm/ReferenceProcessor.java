@@ -22,6 +22,7 @@ import org.mmtk.harness.lang.Trace;
 import org.mmtk.harness.lang.Trace.Item;
 import org.mmtk.harness.lang.runtime.ReferenceValue;
 import org.mmtk.plan.TraceLocal;
+import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.harness.Clock;
@@ -103,6 +104,9 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   /**
    * {@inheritDoc}
    * <p>
+   * Called by every collector thread, but only the first collector
+   * does any work.
+   * <p>
    * TODO support concurrent scans
    * <p>
    * TODO the nursery/mature logic could be improved
@@ -111,6 +115,9 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   @Override
   public synchronized void scan(TraceLocal trace, boolean nursery, boolean retain) {
+    if (VM.activePlan.collector().parallelWorkerOrdinal() != 0) {
+      return;
+    }
     Clock.stop();
     Trace.trace(Item.REFERENCES, "Scanning %s references: current = %d, new = %d, %s",
         semantics,currentRefs.size(), newRefs.size(), nursery  ? "nursery" : "full-heap",
@@ -141,10 +148,14 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   /**
    * {@inheritDoc}
    * <p>
-   * Only relevant to collectors like MarkCompact.
+   * Only relevant to collectors like MarkCompact.  Only the first
+   * collector does any work.
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
+    if (VM.activePlan.collector().parallelWorkerOrdinal() != 0) {
+      return;
+    }
     Clock.stop();
     Trace.trace(Item.REFERENCES, "Forwarding %s references: %s",
         semantics,nursery ? "nursery" : "full-heap");
@@ -0,0 +1,88 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mmtk;
+
+import org.jikesrvm.VM;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.UninterruptibleNoWarn;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.AddressArray;
+
+/**
+ * Candidates for a reference or finalizable table that one mutator
+ * thread has registered but not yet added to the table, so that the
+ * thread takes the table lock once per buffer rather than once per
+ * candidate.<p>
+ *
+ * Entries are untraced addresses, like those in the tables.  The owning
+ * table reserves room for a full buffer while a buffer is not empty, so
+ * a collection can always drain the buffer into the table before it
+ * scans the table.
+ */
+@Uninterruptible
+final class CandidateBuffer {
+
+  /** Number of candidates a buffer holds */
+  static final int SIZE = VM.ForceFrequentGC ? 1 : 32;
+
+  private final AddressArray entries = AddressArray.create(SIZE);
+
+  /** Number of candidates in the buffer */
+  private int count;
+
+  /**
+   * @return a new, empty buffer
+   */
+  @UninterruptibleNoWarn
+  static CandidateBuffer create() {
+    return new CandidateBuffer();
+  }
+
+  boolean isEmpty() {
+    return count == 0;
+  }
+
+  boolean isFull() {
+    return count == SIZE;
+  }
+
+  /**
+   * @param candidate the address of the candidate, which must fit
+   */
+  void add(Address candidate) {
+    if (VM.VerifyAssertions) VM._assert(count < SIZE);
+    entries.set(count++, candidate);
+  }
+
+  /**
+   * Move every candidate into a table and empty the buffer.
+   *
+   * @param table the table
+   * @param index the table index for the first candidate
+   * @return the table index after the last candidate
+   */
+  int drainTo(AddressArray table, int index) {
+    for (int i = 0; i < count; i++) {
+      table.set(index++, entries.get(i));
+    }
+    count = 0;
+    return index;
+  }
+
+  /**
+   * Drop every candidate.
+   */
+  void discard() {
+    count = 0;
+  }
+}
@@ -17,13 +17,16 @@ import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
 import org.jikesrvm.VM;
 import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.RVMThread;
 import org.jikesrvm.util.Services;
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.UninterruptibleNoWarn;
 import org.vmmagic.pragma.Unpreemptible;
 import org.vmmagic.pragma.UnpreemptibleNoWarn;
+import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.AddressArray;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.Offset;
@@ -32,6 +35,11 @@ import org.vmmagic.unboxed.Word;
 /**
  * This class manages the processing of finalizable objects.
  * <p>
+ * New candidates are buffered by each mutator thread (see
+ * {@link CandidateBuffer}), which takes the lock only to move a full
+ * buffer into the table.  A collection drains every buffer into the
+ * table before scanning it.
+ * <p>
  * TODO can this be a linked list?
  */
 @Uninterruptible
@@ -53,6 +61,13 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /** Amount to grow the table by when it is filled */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /**
+   * Tag set on a table entry during a parallel scan to mark an object
+   * that has been retained and is waiting to be made ready for finalization.
+   * Objects are word aligned, so the low bit is always free.
+   */
+  private static final Word READY_TAG = Word.one();
+
   /*************************************************************************
    * Instance fields
    */
@@ -63,6 +78,24 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /** The table of candidates */
   protected volatile AddressArray table = AddressArray.create(INITIAL_SIZE);
 
+  /**
+   * Scratch space for scanning the table, always at least as long as
+   * the table.
+   */
+  private volatile AddressArray scratch = AddressArray.create(INITIAL_SIZE);
+
+  /** The candidate buffer of each mutator thread, indexed by thread slot */
+  private final CandidateBuffer[] buffers = new CandidateBuffer[RVMThread.MAX_THREADS];
+
+  /** Table slots reserved for the candidates in non-empty buffers */
+  private int reserved = 0;
+
+  /** Number of candidates a scan keeps in the table */
+  private final SynchronizedCounter kept = new SynchronizedCounter();
+
+  /** Number of candidates a scan makes ready for finalization */
+  private final SynchronizedCounter readied = new SynchronizedCounter();
+
   /** The table of ready objects */
   protected volatile Object[] readyForFinalize = new Object[INITIAL_SIZE];
 
@@ -84,27 +117,54 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   protected FinalizableProcessor() {}
 
   /**
-   * Allocate an entry in the table. This should be called from an unpreemptible
-   * context so that the entry can be filled. This method is responsible for growing
-   * the table if necessary.
+   * Add a candidate to the current thread's buffer. This should be called
+   * from an unpreemptible context so that the entry can be filled.
    *
    * @param object the object to add to the table of candidates
    */
   @NoInline
   @UnpreemptibleNoWarn("Non-preemptible but yield when table needs to be grown")
   public void add(Object object) {
+    CandidateBuffer buffer = buffers[RVMThread.getCurrentThreadSlot()];
+    if (buffer == null || buffer.isEmpty() || buffer.isFull()) {
+      buffer = reserveBuffer();
+    }
+    buffer.add(Magic.objectAsAddress(object));
+  }
+
+  /**
+   * Make room for the current thread to buffer more candidates: move its
+   * buffer into the table if the buffer is full, and reserve room for a
+   * full buffer in the table and in the ready queue.  This method is
+   * responsible for growing the table if necessary.
+   *
+   * @return the current thread's buffer, now empty, with room reserved
+   *  for it in the table
+   */
+  @NoInline
+  @UnpreemptibleNoWarn("Non-preemptible but yield when table needs to be grown")
+  private CandidateBuffer reserveBuffer() {
+    final int slot = RVMThread.getCurrentThreadSlot();
+    if (buffers[slot] == null) {
+      CandidateBuffer buffer = CandidateBuffer.create();
+      Services.setArrayUninterruptible(buffers, slot, buffer);
+    }
+
     lock.acquire();
-    while (maxIndex >= table.length() || maxIndex >= freeReady()) {
+    while (maxIndex + reserved + CandidateBuffer.SIZE > table.length() ||
+           maxIndex + reserved + CandidateBuffer.SIZE > freeReady()) {
+      int needed = maxIndex + reserved + CandidateBuffer.SIZE;
       int newTableSize = -1;
       int newReadyForFinalizeSize = -1;
       AddressArray newTable = null;
+      AddressArray newScratch = null;
       Object[] newReadyForFinalize = null;
 
-      if (maxIndex >= table.length()) {
+      if (needed > table.length()) {
         newTableSize = STRESS ? table.length() + 1 : (int)(table.length() * GROWTH_FACTOR);
       }
 
-      if (maxIndex >= freeReady()) {
+      if (needed > freeReady()) {
         newReadyForFinalizeSize = table.length() + countReady();
         if (newReadyForFinalizeSize <= readyForFinalize.length) {
           newReadyForFinalizeSize = -1;
@@ -115,6 +175,7 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
         lock.release();
         if (newTableSize >= 0) {
           newTable = AddressArray.create(newTableSize);
+          newScratch = AddressArray.create(newTableSize);
         }
         if (newReadyForFinalizeSize >= 0) {
           newReadyForFinalize = new Object[newReadyForFinalizeSize];
@@ -122,14 +183,16 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
         lock.acquire();
       }
 
-      if (maxIndex >= table.length() && newTable != null) {
+      needed = maxIndex + reserved + CandidateBuffer.SIZE;
+      if (needed > table.length() && newTable != null && newTable.length() > table.length()) {
         for (int i = 0; i < table.length(); i++) {
           newTable.set(i, table.get(i));
         }
         table = newTable;
+        scratch = newScratch;
       }
 
-      if (maxIndex >= freeReady() && newReadyForFinalize != null) {
+      if (needed > freeReady() && newReadyForFinalize != null) {
         int j = 0;
         for (int i = nextReadyIndex; i < lastReadyIndex && i < readyForFinalize.length; i++) {
           newReadyForFinalize[j++] = readyForFinalize[i];
@@ -144,28 +207,57 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
         readyForFinalize = newReadyForFinalize;
       }
     }
-    table.set(maxIndex++, Magic.objectAsAddress(object));
+    // A collection while the lock was released may already have drained a full buffer
+    CandidateBuffer buffer = buffers[slot];
+    if (buffer.isFull()) {
+      maxIndex = buffer.drainTo(table, maxIndex);
+      reserved -= CandidateBuffer.SIZE;
+    }
+    reserved += CandidateBuffer.SIZE;
     lock.release();
+    return buffer;
+  }
+
+  /**
+   * Move the candidates buffered by every mutator thread into the table.
+   * Called by a single collector thread.  The reserved slots guarantee
+   * that the table and the ready queue have room.
+   */
+  private void drainBuffers() {
+    for (CandidateBuffer buffer : buffers) {
+      if (buffer != null && !buffer.isEmpty()) {
+        maxIndex = buffer.drainTo(table, maxIndex);
+        reserved -= CandidateBuffer.SIZE;
+      }
+    }
+    if (VM.VerifyAssertions) VM._assert(reserved == 0);
   }
 
   @Override
   public void clear() {
+    for (CandidateBuffer buffer : buffers) {
+      if (buffer != null) buffer.discard();
+    }
+    reserved = 0;
     maxIndex = 0;
   }
 
   /**
    * {@inheritDoc}.
    * <p>
-   * Currently ignores the nursery hint.
+   * Called by all collector threads, each forwarding its own slice of
+   * the table.
    * <p>
-   * TODO parallelise this code?
+   * Currently ignores the nursery hint.
    *
    * @param trace The trace
    * @param nursery Is this a nursery collection ?
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    for (int i = 0 ; i < maxIndex; i++) {
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int end = ReferenceProcessor.sliceEnd(cc, 0, maxIndex);
+    for (int i = ReferenceProcessor.sliceStart(cc, 0, maxIndex); i < end; i++) {
       ObjectReference ref = table.get(i).toObjectReference();
       table.set(i, trace.getForwardedFinalizable(ref).toAddress());
     }
@@ -179,36 +271,83 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
    * <p>
-   * TODO parallelise this code
+   * Called by all collector threads.  The first collector moves the
+   * mutators' buffered candidates into the table.  Each thread then
+   * forwards or retains the objects in its own slice of the table,
+   * gathering those still live at the start of the scratch table and
+   * those to be finalized at its end.  Once every slice is done, the
+   * first collector moves the latter to the ready queue while all
+   * threads copy the live objects back to the table.
    *
    * @param nursery Scan only the newly created references
    */
   @Override
   @UninterruptibleNoWarn
   public void scan(TraceLocal trace, boolean nursery) {
-    int toIndex = nursery ? nurseryIndex : 0;
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int threadOrdinal = cc.parallelWorkerOrdinal();
+    if (threadOrdinal == 0) {
+      drainBuffers();
+      kept.reset();
+      readied.reset();
+    }
+    cc.rendezvous();
+
+    final int startIndex = nursery ? nurseryIndex : 0;
+    final int endIndex = maxIndex;
+    final int start = ReferenceProcessor.sliceStart(cc, startIndex, endIndex);
+    final int end = ReferenceProcessor.sliceEnd(cc, startIndex, endIndex);
 
-    for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+    int keep = 0;
+    int ready = 0;
+    for (int fromIndex = start; fromIndex < end; fromIndex++) {
       ObjectReference ref = table.get(fromIndex).toObjectReference();
 
       /* Determine liveness (and forward if necessary) */
       if (trace.isLive(ref)) {
-        table.set(toIndex++, trace.getForwardedFinalizable(ref).toAddress());
+        table.set(fromIndex, trace.getForwardedFinalizable(ref).toAddress());
+        keep++;
         continue;
       }
 
       /* Make ready for finalize */
       ref = trace.retainForFinalize(ref);
+      table.set(fromIndex, ref.toAddress().toWord().or(READY_TAG).toAddress());
+      ready++;
+    }
 
-      /* Add to object table */
-      Offset offset = Word.fromIntZeroExtend(lastReadyIndex).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
-      Selected.Plan.get().storeObjectReference(Magic.objectAsAddress(readyForFinalize).plus(offset), ref);
-      lastReadyIndex = (lastReadyIndex + 1) % readyForFinalize.length;
+    /* Gather the slice into the parts of the scratch table claimed for it */
+    int keepIndex = kept.add(keep);
+    int readyIndex = scratch.length() - readied.add(ready);
+    for (int fromIndex = start; fromIndex < end; fromIndex++) {
+      Address entry = table.get(fromIndex);
+      if (entry.toWord().and(READY_TAG).isZero()) {
+        scratch.set(keepIndex++, entry);
+      } else {
+        scratch.set(--readyIndex, entry.toWord().and(READY_TAG.not()).toAddress());
+      }
     }
-    nurseryIndex = maxIndex = toIndex;
+    cc.rendezvous();
 
-    /* Possible schedule finalizers to run */
-    Collection.scheduleFinalizerThread();
+    final int keepCount = kept.peek();
+    if (threadOrdinal == 0) {
+      for (int i = scratch.length() - readied.peek(); i < scratch.length(); i++) {
+        ObjectReference ref = scratch.get(i).toObjectReference();
+
+        /* Add to object table */
+        Offset offset = Word.fromIntZeroExtend(lastReadyIndex).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
+        Selected.Plan.get().storeObjectReference(Magic.objectAsAddress(readyForFinalize).plus(offset), ref);
+        lastReadyIndex = (lastReadyIndex + 1) % readyForFinalize.length;
+      }
+      nurseryIndex = maxIndex = startIndex + keepCount;
+
+      /* Possible schedule finalizers to run */
+      Collection.scheduleFinalizerThread();
+    }
+    final int copyEnd = ReferenceProcessor.sliceEnd(cc, 0, keepCount);
+    for (int i = ReferenceProcessor.sliceStart(cc, 0, keepCount); i < copyEnd; i++) {
+      table.set(startIndex + i, scratch.get(i));
+    }
   }
 
   /**
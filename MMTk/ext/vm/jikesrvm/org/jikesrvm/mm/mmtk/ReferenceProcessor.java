@@ -12,6 +12,7 @@
  */
 package org.jikesrvm.mm.mmtk;
 
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.utility.options.Options;
 
@@ -24,6 +25,7 @@ import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.scheduler.RVMThread;
+import org.jikesrvm.util.Services;
 
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
@@ -46,6 +48,18 @@ import java.lang.ref.PhantomReference;
  * <p>
  * As an optimization for generational collectors, each reference type
  * maintains two queues: a nursery queue and the main queue.
+ * <p>
+ * New references are buffered by each mutator thread (see
+ * {@link CandidateBuffer}), which takes the lock only to move a full
+ * buffer into the table.  A collection drains every buffer into the
+ * table before scanning it.
+ * <p>
+ * The tables are scanned and forwarded by all collector threads in
+ * parallel, each taking a contiguous slice of the table.  Each thread
+ * gathers the survivors of its slice into a scratch table, and the
+ * threads then copy them back together.  Enqueueing is not thread-safe,
+ * so references whose referents have died are gathered at the other
+ * end of the scratch table and enqueued by a single thread.
  */
 @Uninterruptible
 public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
@@ -78,6 +92,12 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /**
+   * Tag set on a table entry during a parallel scan to mark a reference
+   * whose referent has been cleared and that is waiting to be enqueued.
+   * Reference objects are word aligned, so the low bit is always free.
+   */
+  private static final Word ENQUEUE_TAG = Word.one();
 
   /*************************************************************************
    * Instance fields
@@ -88,6 +108,24 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private volatile AddressArray references = AddressArray.create(INITIAL_SIZE);
 
+  /**
+   * Scratch space for scanning the table, always at least as long as
+   * the table.
+   */
+  private volatile AddressArray scratch = AddressArray.create(INITIAL_SIZE);
+
+  /** The candidate buffer of each mutator thread, indexed by thread slot */
+  private final CandidateBuffer[] buffers = new CandidateBuffer[RVMThread.MAX_THREADS];
+
+  /** Table slots reserved for the candidates in non-empty buffers */
+  private int reserved = 0;
+
+  /** Number of references a scan keeps in the table */
+  private final SynchronizedCounter kept = new SynchronizedCounter();
+
+  /** Number of references a scan enqueues */
+  private final SynchronizedCounter enqueued = new SynchronizedCounter();
+
   /**
    * In a MarkCompact (or similar) collector, we need to update the {@code references}
    * field, and then update its contents.  We implement this by saving the pointer in
@@ -152,17 +190,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     }
   }
 
-  /**
-   * Add a reference at the end of the table
-   * @param ref The reference to add
-   * @param referent the object pointed to by the reference
-   */
-  private void addReference(Reference<?> ref, ObjectReference referent) {
-    ObjectReference reference = ObjectReference.fromObject(ref);
-    setReferent(reference, referent);
-    setReference(maxIndex++,reference);
-  }
-
   /**
    * Update the reference table
    *
@@ -188,7 +215,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   }
 
   /**
-   * Grow the reference table by GROWTH_FACTOR.
+   * Grow the reference table to a new length.
    *
    * <p>Marked as UninterruptibleNoWarn because it can GC when it allocates, but
    * the rest of the code can't tolerate GC.
@@ -196,11 +223,11 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * <p>This method is called without the reference processor lock held,
    * but with the flag <code>growingTable</code> set.
    *
+   * @param newLength the length of the new table
    * @return the start address of the new reference table
    */
   @UninterruptibleNoWarn
-  private AddressArray growReferenceTable() {
-    int newLength = STRESS ? references.length() + 1 : (int)(references.length() * GROWTH_FACTOR);
+  private AddressArray growReferenceTable(int newLength) {
     if (TRACE) VM.sysWriteln("Expanding reference type table ",semanticsStr," to ",newLength);
     AddressArray newReferences = AddressArray.create(newLength);
     for (int i = 0; i < references.length(); i++)
@@ -208,6 +235,19 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     return newReferences;
   }
 
+  /**
+   * Allocate scratch space for a table.
+   *
+   * <p>Marked as UninterruptibleNoWarn because it can GC when it allocates.
+   *
+   * @param length the length of the table
+   * @return the scratch space
+   */
+  @UninterruptibleNoWarn
+  private static AddressArray createScratch(int length) {
+    return AddressArray.create(length);
+  }
+
   /**
    * Add a reference to the list of references.  This method is responsible
    * for installing the  address of the referent into the Reference object
@@ -229,21 +269,47 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       VM.sysWriteln(" ~> ", referent);
     }
 
+    CandidateBuffer buffer = buffers[RVMThread.getCurrentThreadSlot()];
+    if (buffer == null || buffer.isEmpty() || buffer.isFull()) {
+      buffer = reserveBuffer();
+    }
+    ObjectReference reference = ObjectReference.fromObject(ref);
+    setReferent(reference, referent);
+    buffer.add(reference.toAddress());
+  }
+
+  /**
+   * Make room for the current thread to buffer more references: move its
+   * buffer into the table if the buffer is full, and reserve table slots
+   * for a full buffer.
+   *
+   * @return the current thread's buffer, now empty, with room reserved
+   *  for it in the table
+   */
+  @NoInline
+  @Unpreemptible("Non-preemptible but yield when table needs to be grown")
+  private CandidateBuffer reserveBuffer() {
+    final int slot = RVMThread.getCurrentThreadSlot();
+    if (buffers[slot] == null) {
+      CandidateBuffer buffer = CandidateBuffer.create();
+      Services.setArrayUninterruptible(buffers, slot, buffer);
+    }
+
     /*
      * Ensure that only one thread at a time can grow the
      * table of references.  The volatile flag <code>growingTable</code> is
      * used to allow growing the table to trigger GC, but to prevent
      * any other thread from accessing the table while it is being grown.
      *
-     * If the table has space, threads will add the reference, incrementing maxIndex
-     * and exit.
+     * If the table has room for another buffer, threads will move a full
+     * buffer into the table, reserve room for the next one and exit.
      *
      * If the table is full, the first thread to notice will grow the table.
      * Subsequent threads will release the lock and yield at (1) while the
      * first thread
      */
     lock.acquire();
-    while (growingTable || maxIndex >= references.length()) {
+    while (growingTable || maxIndex + reserved + CandidateBuffer.SIZE > references.length()) {
       if (growingTable) {
         // FIXME: We should probably speculatively allocate a new table instead.
         // note, we can copy without the lock after installing the new table (unint during copy).
@@ -253,14 +319,39 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       } else {
         growingTable = true;  // Prevent other threads from growing table while lock is released
         lock.release();       // Can't hold the lock while allocating
-        AddressArray newTable = growReferenceTable();
+        int newLength = STRESS ? references.length() + 1 : (int)(references.length() * GROWTH_FACTOR);
+        AddressArray newScratch = createScratch(newLength);
+        AddressArray newTable = growReferenceTable(newLength);
         lock.acquire();
         references = newTable;
+        scratch = newScratch;
         growingTable = false; // Allow other threads to grow the table rather than waiting for us
       }
     }
-    addReference(ref,referent);
+    // A collection while we yielded may already have drained a full buffer
+    CandidateBuffer buffer = buffers[slot];
+    if (buffer.isFull()) {
+      maxIndex = buffer.drainTo(references, maxIndex);
+      reserved -= CandidateBuffer.SIZE;
+    }
+    reserved += CandidateBuffer.SIZE;
     lock.release();
+    return buffer;
+  }
+
+  /**
+   * Move the references buffered by every mutator thread into the table.
+   * Called by a single collector thread.  The reserved slots guarantee
+   * that the table has room.
+   */
+  private void drainBuffers() {
+    for (CandidateBuffer buffer : buffers) {
+      if (buffer != null && !buffer.isEmpty()) {
+        maxIndex = buffer.drainTo(references, maxIndex);
+        reserved -= CandidateBuffer.SIZE;
+      }
+    }
+    if (VM.VerifyAssertions) VM._assert(reserved == 0);
   }
 
   /***********************************************************************
@@ -273,14 +364,16 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Collectors like MarkCompact determine liveness and move objects
    * using separate traces.
    * <p>
-   * Currently ignores the nursery hint.
+   * Called by all collector threads, each forwarding its own slice of
+   * the table.
    * <p>
-   * TODO parallelise this code
-   *
+   * Currently ignores the nursery hint.
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
     if (VM.VerifyAssertions) VM._assert(unforwardedReferences != null);
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int threadOrdinal = cc.parallelWorkerOrdinal();
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.forward(",semanticsStr,")");
     if (TRACE_DETAIL) {
       VM.sysWrite(semanticsStr," Reference table is ",
@@ -288,7 +381,8 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       VM.sysWriteln("unforwardedReferences is ",
           Magic.objectAsAddress(unforwardedReferences));
     }
-    for (int i = 0; i < maxIndex; i++) {
+    final int end = sliceEnd(cc, 0, maxIndex);
+    for (int i = sliceStart(cc, 0, maxIndex); i < end; i++) {
       if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
       ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
       if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
@@ -296,12 +390,19 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       ObjectReference newReference = trace.getForwardedReference(reference);
       unforwardedReferences.set(i, newReference.toAddress());
     }
+    cc.rendezvous();
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.forward(",semanticsStr,")");
-    unforwardedReferences = null;
+    if (threadOrdinal == 0) {
+      unforwardedReferences = null;
+    }
   }
 
   @Override
   public void clear() {
+    for (CandidateBuffer buffer : buffers) {
+      if (buffer != null) buffer.discard();
+    }
+    reserved = 0;
     maxIndex = 0;
   }
 
@@ -313,45 +414,85 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
    * <p>
-   * TODO parallelise this code
+   * Called by all collector threads.  The first collector moves the
+   * mutators' buffered references into the table.  Each thread then
+   * processes its own slice of the table, gathering the references to
+   * keep at the start of the scratch table and those to enqueue at its
+   * end.  Once every slice is done, the first collector enqueues while
+   * all threads copy the kept references back to the table.
    *
    * @param nursery Scan only the newly created references
    */
   @Override
   public void scan(TraceLocal trace, boolean nursery, boolean retain) {
-    unforwardedReferences = references;
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int threadOrdinal = cc.parallelWorkerOrdinal();
+    if (threadOrdinal == 0) {
+      drainBuffers();
+      unforwardedReferences = references;
+      kept.reset();
+      enqueued.reset();
+    }
+    cc.rendezvous();
 
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.scan(",semanticsStr,")");
-    int toIndex = nursery ? nurseryIndex : 0;
+    final int startIndex = nursery ? nurseryIndex : 0;
+    final int endIndex = maxIndex;
+    final int start = sliceStart(cc, startIndex, endIndex);
+    final int end = sliceEnd(cc, startIndex, endIndex);
 
     if (TRACE_DETAIL) VM.sysWriteln(semanticsStr," Reference table is ",Magic.objectAsAddress(references));
     if (retain) {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-          ObjectReference reference = getReference(fromIndex);
-          retainReferent(trace, reference);
-        }
+      for (int fromIndex = start; fromIndex < end; fromIndex++) {
+        ObjectReference reference = getReference(fromIndex);
+        retainReferent(trace, reference);
+      }
     } else {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+      int keep = 0;
+      int enqueue = 0;
+      for (int fromIndex = start; fromIndex < end; fromIndex++) {
         ObjectReference reference = getReference(fromIndex);
 
         /* Determine liveness (and forward if necessary) the reference */
-        ObjectReference newReference = processReference(trace,reference);
-        if (!newReference.isNull()) {
-          setReference(toIndex++,newReference);
-          if (TRACE_DETAIL) {
-            int index = toIndex - 1;
-            VM.sysWrite("SCANNED ",index);
-            VM.sysWrite(" ",references.get(index));
-            VM.sysWrite(" -> ");
-            VM.sysWriteln(getReferent(references.get(index).toObjectReference()));
-          }
-               }
-             }
-      if (Options.verbose.getValue() >= 3) {
-        VM.sysWrite(semanticsStr);
-        VM.sysWriteln(" references: ",maxIndex," -> ",toIndex);
+        Address entry = scanReference(trace, reference);
+        references.set(fromIndex, entry);
+        if (entry.isZero()) continue;
+        if (entry.toWord().and(ENQUEUE_TAG).isZero()) {
+          keep++;
+        } else {
+          enqueue++;
+        }
+      }
+
+      /* Gather the slice into the parts of the scratch table claimed for it */
+      int keepIndex = kept.add(keep);
+      int enqueueIndex = scratch.length() - enqueued.add(enqueue);
+      for (int fromIndex = start; fromIndex < end; fromIndex++) {
+        Address entry = references.get(fromIndex);
+        if (entry.isZero()) continue;
+        if (entry.toWord().and(ENQUEUE_TAG).isZero()) {
+          scratch.set(keepIndex++, entry);
+        } else {
+          scratch.set(--enqueueIndex, entry.toWord().and(ENQUEUE_TAG.not()).toAddress());
+        }
+      }
+      cc.rendezvous();
+
+      final int keepCount = kept.peek();
+      if (threadOrdinal == 0) {
+        for (int i = scratch.length() - enqueued.peek(); i < scratch.length(); i++) {
+          enqueueReference(scratch.get(i).toObjectReference());
+        }
+        if (Options.verbose.getValue() >= 3) {
+          VM.sysWrite(semanticsStr);
+          VM.sysWriteln(" references: ",endIndex," -> ",startIndex + keepCount);
+        }
+        nurseryIndex = maxIndex = startIndex + keepCount;
+      }
+      final int copyEnd = sliceEnd(cc, 0, keepCount);
+      for (int i = sliceStart(cc, 0, keepCount); i < copyEnd; i++) {
+        setReference(startIndex + i, scratch.get(i).toObjectReference());
       }
-      nurseryIndex = maxIndex = toIndex;
     }
 
     /* flush out any remset entries generated during the above activities */
@@ -359,6 +500,30 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.scan(",semanticsStr,")");
   }
 
+  /**
+   * @param cc the current collector
+   * @param startIndex the first table index to be processed
+   * @param endIndex one past the last table index to be processed
+   * @return the first table index processed by collector {@code cc}
+   */
+  @Inline
+  static int sliceStart(CollectorContext cc, int startIndex, int endIndex) {
+    int chunkSize = (endIndex - startIndex) / cc.parallelWorkerCount();
+    return startIndex + cc.parallelWorkerOrdinal() * chunkSize;
+  }
+
+  /**
+   * @param cc the current collector
+   * @param startIndex the first table index to be processed
+   * @param endIndex one past the last table index to be processed
+   * @return one past the last table index processed by collector {@code cc}
+   */
+  @Inline
+  static int sliceEnd(CollectorContext cc, int startIndex, int endIndex) {
+    if (cc.parallelWorkerOrdinal() + 1 == cc.parallelWorkerCount()) return endIndex;
+    return sliceStart(cc, startIndex, endIndex) + (endIndex - startIndex) / cc.parallelWorkerCount();
+  }
+
   /**
    * This method deals only with soft references. It retains the referent
    * if the reference is definitely reachable.
@@ -465,6 +630,26 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    *  is still live, {@code ObjectReference.nullReference()} otherwise
    */
   public ObjectReference processReference(TraceLocal trace, ObjectReference reference) {
+    Address entry = scanReference(trace, reference);
+    if (!entry.toWord().and(ENQUEUE_TAG).isZero()) {
+      enqueueReference(entry.toWord().and(ENQUEUE_TAG.not()).toAddress().toObjectReference());
+      return ObjectReference.nullReference();
+    }
+    return entry.toObjectReference();
+  }
+
+  /**
+   * Processes a reference with the current semantics, without enqueueing it.
+   * This may be called by several collector threads at once.
+   *
+   * @param reference the address of the reference. This may or may not
+   * be the address of a heap object, depending on the VM.
+   * @param trace the thread local trace element.
+   * @return the updated reference if the reference is still live, the
+   *  updated reference tagged with {@link #ENQUEUE_TAG} if it should be
+   *  enqueued, or zero otherwise
+   */
+  private Address scanReference(TraceLocal trace, ObjectReference reference) {
     if (VM.VerifyAssertions) VM._assert(!reference.isNull());
 
     if (TRACE_DETAIL) {
@@ -482,7 +667,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       if (TRACE_DETAIL) {
         VM.sysWriteln(" (unreachable)");
       }
-      return ObjectReference.nullReference();
+      return Address.zero();
     }
 
     /* The reference object is live */
@@ -501,7 +686,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
      */
     if (oldReferent.isNull()) {
       if (TRACE_DETAIL) VM.sysWriteln(" (null referent)");
-      return ObjectReference.nullReference();
+      return Address.zero();
     }
 
     if (TRACE_DETAIL)  VM.sysWrite(" => ",newReference);
@@ -541,7 +726,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
 
       /* Update the referent */
       setReferent(newReference, newReferent);
-      return newReference;
+      return newReference.toAddress();
     } else {
       /* Referent is unreachable. Clear the referent and enqueue the reference object. */
 
@@ -549,8 +734,7 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       else if (TRACE_UNREACHABLE) VM.sysWriteln(" UNREACHABLE referent:  ",oldReferent);
 
       clearReferent(newReference);
-      enqueueReference(newReference);
-      return ObjectReference.nullReference();
+      return newReference.toAddress().toWord().or(ENQUEUE_TAG).toAddress();
     }
   }
 
@@ -53,6 +53,17 @@ public final class SynchronizedCounter extends org.mmtk.vm.SynchronizedCounter {
     return Synchronization.fetchAndAdd(this, offset, 1);
   }
 
+  /**
+   * Atomically add to the counter.
+   *
+   * @param delta the amount to add
+   * @return the value of the counter before the addition
+   */
+  public int add(int delta) {
+    if (VM.VerifyAssertions) VM._assert(!offset.isMax());
+    return Synchronization.fetchAndAdd(this, offset, delta);
+  }
+
   @Override
   public int peek() {
     return count;
@@ -59,27 +59,39 @@ public class PlanSpecificConfig {
     /* Heap factors determined by min heap size for FixedLive benchmark */
     final double BASE_HEAP = 9472d; // Heap size in k for MS
 
+    register(
+        new PlanSpecific("org.mmtk.plan.concurrent.immix.CImmix")
+        .addExpectedSpaces("immix"),
+        "CImmix", "ConcImmix");
     register(
         new PlanSpecific("org.mmtk.plan.copyms.CopyMS")
         .addExpectedSpaces("nursery", "ms"),
         "CopyMS");
     register(
         new PlanSpecific("org.mmtk.plan.generational.copying.GenCopy")
-        .addExpectedSpaces("nursery", "ss0", "ss1")
+        .addExpectedSpaces("nursery", "ss0", "ss1", "rlos")
         .heapFactor(18816 / BASE_HEAP),
         "GenCopy");
     register(
         new PlanSpecific("org.mmtk.plan.generational.immix.GenImmix")
-        .addExpectedSpaces("nursery", "immix"),
+        .addExpectedSpaces("nursery", "immix", "rlos"),
         "GenImmix");
+    register(
+        new PlanSpecific("org.mmtk.plan.generational.immix.objectbarrier.GenImmixObjectBarrier")
+        .addExpectedSpaces("nursery", "immix", "rlos"),
+        "GenImmixObjectBarrier");
     register(
         new PlanSpecific("org.mmtk.plan.generational.marksweep.GenMS")
-        .addExpectedSpaces("nursery", "ms"),
+        .addExpectedSpaces("nursery", "ms", "rlos"),
         "GenMS");
     register(
         new PlanSpecific("org.mmtk.plan.immix.Immix")
         .addExpectedSpaces("immix"),
         "Immix");
+    register(
+        new PlanSpecific("org.mmtk.plan.immix.workstealing.ImmixWorkStealing")
+        .addExpectedSpaces("immix"),
+        "ImmixWorkStealing");
     register(
         new PlanSpecific("org.mmtk.plan.markcompact.MC")
         .addExpectedSpaces("mc")
@@ -99,7 +111,7 @@ public class PlanSpecificConfig {
         "Poisoned");
     register(
         new PlanSpecific("org.mmtk.plan.semispace.usePrimitiveWriteBarriers.UsePrimitiveWriteBarriers")
-        .addExpectedSpaces("ss0", "ss1")
+        .addExpectedSpaces("ss0", "ss1", "rlos")
         .heapFactor(18816 / BASE_HEAP),
         "UsePrimitiveWriteBarriers", "PrimitiveWB");
     register(
@@ -112,10 +124,20 @@ public class PlanSpecificConfig {
         .addExpectedSpaces("nursery", "rclos", "rc")
         .heapFactor(9984 / BASE_HEAP),
         "GenRC");
+    register(
+        new PlanSpecific("org.mmtk.plan.refcount.fullheap.trialdeletion.RCTrialDeletion")
+        .addExpectedSpaces("rclos", "rc")
+        .heapFactor(9856 / BASE_HEAP),
+        "RCTrialDeletion");
+    register(
+        new PlanSpecific("org.mmtk.plan.refcount.generational.trialdeletion.GenRCTrialDeletion")
+        .addExpectedSpaces("nursery", "rclos", "rc")
+        .heapFactor(9984 / BASE_HEAP),
+        "GenRCTrialDeletion");
     register(
         new PlanSpecific("org.mmtk.plan.semispace.SS")
         .heapFactor(18816 / BASE_HEAP)
-        .addExpectedSpaces("ss0", "ss1"),
+        .addExpectedSpaces("ss0", "ss1", "rlos"),
         "SS", "SemiSpace");
     register(
         new PlanSpecific("org.mmtk.plan.stickyimmix.StickyImmix")
@@ -199,6 +221,7 @@ public class PlanSpecificConfig {
       addExpectedSpaces("non-moving");
       addExpectedSpaces("sm-code");
       addExpectedSpaces("lg-code");
+      addExpectedSpaces("hot-code");
     }
 
     /**
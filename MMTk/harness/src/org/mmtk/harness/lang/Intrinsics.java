@@ -21,6 +21,9 @@ import org.mmtk.harness.lang.runtime.WeakReferenceValue;
 import org.mmtk.harness.scheduler.Scheduler;
 import org.mmtk.harness.vm.Collection;
 import org.mmtk.plan.Plan;
+import org.mmtk.plan.markcompact.MC;
+import org.mmtk.plan.refcount.RCBase;
+import org.mmtk.policy.Space;
 
 /**
  * "built in" intrinsic functions
@@ -185,4 +188,46 @@ public class Intrinsics {
   public static int barrierWait(Env env, String name, int threadCount) {
     return Scheduler.mutatorRendezvous(name, threadCount);
   }
+
+  /**
+   * @param env Thread-local environment (language-dependent mutator context)
+   * @return The fewest regions a collector scanned in the last mark-compact collection
+   */
+  public static int minRegionsScanned(Env env) {
+    return MC.mcSpace.getMinRegionsScanned();
+  }
+
+  /**
+   * @param env Thread-local environment (language-dependent mutator context)
+   * @return The most regions a collector scanned in the last mark-compact collection
+   */
+  public static int maxRegionsScanned(Env env) {
+    return MC.mcSpace.getMaxRegionsScanned();
+  }
+
+  /**
+   * @param env Thread-local environment (language-dependent mutator context)
+   * @return The pages reserved by the reference counted spaces
+   */
+  public static int rcPagesUsed(Env env) {
+    return RCBase.rcSpace.reservedPages() + RCBase.rcloSpace.reservedPages();
+  }
+
+  /**
+   * @param env Thread-local environment (language-dependent mutator context)
+   * @param val An object
+   * @return The pages reserved by the space containing the object
+   */
+  public static int spacePagesUsed(Env env, ObjectValue val) {
+    return Space.getSpaceForObject(val.getObjectValue()).reservedPages();
+  }
+
+  /**
+   * @param env Thread-local environment (language-dependent mutator context)
+   * @param val An object
+   * @return The name of the space containing the object
+   */
+  public static String spaceName(Env env, ObjectValue val) {
+    return Space.getSpaceForObject(val.getObjectValue()).getName();
+  }
 }
@@ -119,6 +119,12 @@ public abstract class MutatorContext {
   /** Per-mutator allocator into the small code space */
   protected final MarkSweepLocal smcode = Plan.USE_CODE_SPACE ? new MarkSweepLocal(Plan.smallCodeSpace) : null;
 
+  /** Per-mutator allocator into the hot code space */
+  protected final MarkSweepLocal smhotcode = Plan.USE_CODE_SPACE ? new MarkSweepLocal(Plan.hotCodeSpace) : null;
+
+  /** Per-mutator allocator of clustered code, into the immortal space */
+  protected final BumpPointer clcode = Plan.USE_CODE_SPACE ? new ImmortalLocal(Plan.immortalSpace) : null;
+
   /** Per-mutator allocator into the large code space */
   protected final LargeObjectLocal lgcode = Plan.USE_CODE_SPACE ? new LargeObjectLocal(Plan.largeCodeSpace) : null;
 
@@ -164,7 +170,7 @@ public abstract class MutatorContext {
       return (maxBytes > Plan.MAX_NON_LOS_DEFAULT_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? Plan.ALLOC_LOS : Plan.ALLOC_DEFAULT;
     }
 
-    if (Plan.USE_CODE_SPACE && allocator == Plan.ALLOC_CODE) {
+    if (Plan.USE_CODE_SPACE && (allocator == Plan.ALLOC_CODE || allocator == Plan.ALLOC_HOT_CODE || allocator == Plan.ALLOC_CLUSTERED_CODE)) {
       return (maxBytes > Plan.MAX_NON_LOS_NONMOVING_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? Plan.ALLOC_LARGE_CODE : allocator;
     }
 
@@ -195,6 +201,8 @@ public abstract class MutatorContext {
     case      Plan.ALLOC_LOS: return los.alloc(bytes, align, offset);
     case      Plan.ALLOC_IMMORTAL: return immortal.alloc(bytes, align, offset);
     case      Plan.ALLOC_CODE: return smcode.alloc(bytes, align, offset);
+    case      Plan.ALLOC_HOT_CODE: return smhotcode.alloc(bytes, align, offset);
+    case      Plan.ALLOC_CLUSTERED_CODE: return clcode.alloc(bytes, align, offset);
     case      Plan.ALLOC_LARGE_CODE: return lgcode.alloc(bytes, align, offset);
     case      Plan.ALLOC_NON_MOVING: return nonmove.alloc(bytes, align, offset);
     default:
@@ -219,6 +227,8 @@ public abstract class MutatorContext {
     case           Plan.ALLOC_LOS: Plan.loSpace.initializeHeader(ref, true); return;
     case      Plan.ALLOC_IMMORTAL: Plan.immortalSpace.initializeHeader(ref);  return;
     case          Plan.ALLOC_CODE: Plan.smallCodeSpace.initializeHeader(ref, true); return;
+    case      Plan.ALLOC_HOT_CODE: Plan.hotCodeSpace.initializeHeader(ref, true); return;
+    case Plan.ALLOC_CLUSTERED_CODE: Plan.immortalSpace.initializeHeader(ref); return;
     case    Plan.ALLOC_LARGE_CODE: Plan.largeCodeSpace.initializeHeader(ref, true); return;
     case    Plan.ALLOC_NON_MOVING: Plan.nonMovingSpace.initializeHeader(ref, true); return;
     default:
@@ -246,6 +256,7 @@ public abstract class MutatorContext {
     if (space == Plan.nonMovingSpace) return nonmove;
     if (Plan.USE_CODE_SPACE && space == Plan.smallCodeSpace) return smcode;
     if (Plan.USE_CODE_SPACE && space == Plan.largeCodeSpace) return lgcode;
+    if (Plan.USE_CODE_SPACE && space == Plan.hotCodeSpace) return smhotcode;
 
     // Invalid request has been made
     if (space == Plan.metaDataSpace) {
@@ -1221,6 +1232,7 @@ public abstract class MutatorContext {
   public void flush() {
     flushRememberedSets();
     smcode.flush();
+    smhotcode.flush();
     nonmove.flush();
   }
 
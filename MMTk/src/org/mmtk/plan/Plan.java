@@ -83,10 +83,16 @@ public abstract class Plan {
   public static final int ALLOC_GCSPY = 6;
   public static final int ALLOC_CODE = 7;
   public static final int ALLOC_LARGE_CODE = 8;
-  public static final int ALLOC_HOT_CODE = USE_CODE_SPACE ? ALLOC_CODE : ALLOC_DEFAULT;
+  public static final int ALLOC_HOT_CODE = USE_CODE_SPACE ? 9 : ALLOC_DEFAULT;
   public static final int ALLOC_COLD_CODE = USE_CODE_SPACE ? ALLOC_CODE : ALLOC_DEFAULT;
+  /**
+   * Hot code that is to be laid out in the order it is allocated.  Each
+   * mutator bump allocates it into the immortal space, so code allocated
+   * by one thread in succession is contiguous; it is never reclaimed.
+   */
+  public static final int ALLOC_CLUSTERED_CODE = USE_CODE_SPACE ? 10 : ALLOC_DEFAULT;
   public static final int ALLOC_STACK = ALLOC_LOS;
-  public static final int ALLOCATORS = 9;
+  public static final int ALLOCATORS = 11;
   public static final int DEFAULT_SITE = -1;
 
   /* Miscellaneous Constants */
@@ -125,6 +131,13 @@ public abstract class Plan {
   public static final MarkSweepSpace smallCodeSpace = USE_CODE_SPACE ? new MarkSweepSpace("sm-code", VMRequest.discontiguous()) : null;
   public static final LargeObjectSpace largeCodeSpace = USE_CODE_SPACE ? new LargeObjectSpace("lg-code", VMRequest.discontiguous()) : null;
 
+  /**
+   * Small hot (optimized) code is allocated here, away from the cold
+   * code in the small code space, so that hot code does not share its
+   * pages with the much larger volume of baseline code.
+   */
+  public static final MarkSweepSpace hotCodeSpace = USE_CODE_SPACE ? new MarkSweepSpace("hot-code", VMRequest.discontiguous()) : null;
+
   public static int pretenureThreshold = Integer.MAX_VALUE;
 
   /* Space descriptors */
@@ -136,6 +149,7 @@ public abstract class Plan {
   public static final int NON_MOVING = nonMovingSpace.getDescriptor();
   public static final int SMALL_CODE = USE_CODE_SPACE ? smallCodeSpace.getDescriptor() : 0;
   public static final int LARGE_CODE = USE_CODE_SPACE ? largeCodeSpace.getDescriptor() : 0;
+  public static final int HOT_CODE = USE_CODE_SPACE ? hotCodeSpace.getDescriptor() : 0;
 
   /** Timer that counts total time */
   public static final Timer totalTime = new Timer("time");
@@ -1057,6 +1071,8 @@ public abstract class Plan {
       return true;
     if (USE_CODE_SPACE && Space.isInSpace(LARGE_CODE, object))
       return true;
+    if (USE_CODE_SPACE && Space.isInSpace(HOT_CODE, object))
+      return true;
     /*
      * Default to false- this preserves correctness over efficiency.
      * Individual plans should override for non-moving spaces they define.
@@ -295,6 +295,15 @@ import org.vmmagic.pragma.*;
     return false;
   }
 
+  /**
+   * @return {@code true} if the traces of this plan should balance work
+   * between collector threads by work stealing rather than through a
+   * single locked pool
+   */
+  public boolean workStealingTrace() {
+    return false;
+  }
+
   /** @return {@code true} if this Plan requires a header bit for object logging */
   public boolean needsLogBitInHeader() {
     return false;
@@ -72,51 +72,49 @@ public abstract class SimpleCollector extends ParallelCollector {
     }
 
     if (phaseId == Simple.SOFT_REFS) {
-      if (primary) {
-        if (!Options.noReferenceTypes.getValue()) {
-          if (!Plan.isEmergencyCollection()) {
-            VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),true);
-          }
+      if (!Options.noReferenceTypes.getValue()) {
+        if (!Plan.isEmergencyCollection()) {
+          VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),true);
         }
       }
       return;
     }
 
     if (phaseId == Simple.WEAK_REFS) {
-      if (primary) {
-        if (Options.noReferenceTypes.getValue()) {
+      if (Options.noReferenceTypes.getValue()) {
+        if (primary) {
           VM.softReferences.clear();
           VM.weakReferences.clear();
-        } else {
-            VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
-            VM.weakReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
         }
+      } else {
+        VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
+        VM.weakReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
       }
       return;
     }
 
     if (phaseId == Simple.FINALIZABLE) {
-      if (primary) {
-        if (Options.noFinalizer.getValue())
+      if (Options.noFinalizer.getValue()) {
+        if (primary)
           VM.finalizableProcessor.clear();
-        else
-          VM.finalizableProcessor.scan(getCurrentTrace(),global().isCurrentGCNursery());
+      } else {
+        VM.finalizableProcessor.scan(getCurrentTrace(),global().isCurrentGCNursery());
       }
       return;
     }
 
     if (phaseId == Simple.PHANTOM_REFS) {
-      if (primary) {
-        if (Options.noReferenceTypes.getValue())
+      if (Options.noReferenceTypes.getValue()) {
+        if (primary)
           VM.phantomReferences.clear();
-        else
-          VM.phantomReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),false);
+      } else {
+        VM.phantomReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),false);
       }
       return;
     }
 
     if (phaseId == Simple.FORWARD_REFS) {
-      if (primary && !Options.noReferenceTypes.getValue() &&
+      if (!Options.noReferenceTypes.getValue() &&
           VM.activePlan.constraints().needsForwardAfterLiveness()) {
         VM.softReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
         VM.weakReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
@@ -126,7 +124,7 @@ public abstract class SimpleCollector extends ParallelCollector {
     }
 
     if (phaseId == Simple.FORWARD_FINALIZABLE) {
-      if (primary && !Options.noFinalizer.getValue() &&
+      if (!Options.noFinalizer.getValue() &&
           VM.activePlan.constraints().needsForwardAfterLiveness()) {
         VM.finalizableProcessor.forward(getCurrentTrace(),global().isCurrentGCNursery());
       }
@@ -13,7 +13,9 @@
 package org.mmtk.plan;
 
 import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.deque.WorkStealingDeque;
 import org.mmtk.policy.RawPageSpace;
+import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
 
@@ -34,7 +36,11 @@ public class Trace {
    *  instance
    */
   public Trace(RawPageSpace metaDataSpace) {
-    valuePool = new SharedDeque("valuePool",metaDataSpace, 1);
+    if (VM.activePlan.constraints().workStealingTrace()) {
+      valuePool = new WorkStealingDeque("valuePool", metaDataSpace, 1);
+    } else {
+      valuePool = new SharedDeque("valuePool",metaDataSpace, 1);
+    }
     rootLocationPool = new SharedDeque("rootLocations", metaDataSpace, 1);
   }
 
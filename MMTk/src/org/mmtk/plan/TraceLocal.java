@@ -226,6 +226,8 @@ public abstract class TraceLocal extends TransitiveClosure {
       return Plan.smallCodeSpace.isLive(object);
     else if (Plan.USE_CODE_SPACE && space == Plan.largeCodeSpace)
       return Plan.largeCodeSpace.isLive(object);
+    else if (Plan.USE_CODE_SPACE && space == Plan.hotCodeSpace)
+      return Plan.hotCodeSpace.isLive(object);
     else if (space == null) {
       if (VM.VERIFY_ASSERTIONS) {
         Log.writeln("space failure: ", object);
@@ -283,6 +285,8 @@ public abstract class TraceLocal extends TransitiveClosure {
       return Plan.smallCodeSpace.traceObject(this, object);
     if (Plan.USE_CODE_SPACE && Space.isInSpace(Plan.LARGE_CODE, object))
       return Plan.largeCodeSpace.traceObject(this, object);
+    if (Plan.USE_CODE_SPACE && Space.isInSpace(Plan.HOT_CODE, object))
+      return Plan.hotCodeSpace.traceObject(this, object);
     if (VM.VERIFY_ASSERTIONS) {
       Log.writeln("Failing object => ", object);
       Space.printVMMap();
@@ -331,6 +335,8 @@ public abstract class TraceLocal extends TransitiveClosure {
       return true;
     if (Plan.USE_CODE_SPACE && Space.isInSpace(Plan.LARGE_CODE, object))
       return true;
+    if (Plan.USE_CODE_SPACE && Space.isInSpace(Plan.HOT_CODE, object))
+      return true;
     if (VM.VERIFY_ASSERTIONS)
       VM.assertions._assert(false, "willNotMove not defined properly in subclass");
     return false;
@@ -0,0 +1,153 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import org.mmtk.plan.*;
+import org.mmtk.plan.concurrent.Concurrent;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.immix.ImmixSpace;
+import org.mmtk.policy.immix.ObjectHeader;
+import org.mmtk.utility.heap.VMRequest;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class implements the global state of a concurrent immix collector.<p>
+ *
+ * Marking of the immix space proceeds concurrently with the mutators,
+ * using the snapshot-at-the-beginning barrier provided by
+ * {@link Concurrent}.  Objects allocated while the trace is in progress
+ * are allocated black: both their mark state and their lines are marked
+ * at allocation time (see {@link ImmixSpace#makeAllocAsMarked()}).<p>
+ *
+ * The concurrent trace does not update references, so a collection
+ * that marks concurrently never defragments.  Collections that run the
+ * whole trace with the mutators stopped (those requested by the
+ * application or forced by heap exhaustion) decide whether to
+ * defragment exactly as {@link org.mmtk.plan.immix.Immix} does, and then
+ * trace with {@link CImmixDefragTraceLocal}.
+ */
+@Uninterruptible
+public class CImmix extends Concurrent {
+
+  /****************************************************************************
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  public static final ImmixSpace immixSpace = new ImmixSpace("immix", VMRequest.discontiguous());
+  public static final int IMMIX = immixSpace.getDescriptor();
+
+  static {
+    immixSpace.makeAllocAsMarked();
+    smallCodeSpace.makeAllocAsMarked();
+    hotCodeSpace.makeAllocAsMarked();
+    nonMovingSpace.makeAllocAsMarked();
+  }
+
+  /****************************************************************************
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  public final Trace immixTrace = new Trace(metaDataSpace);
+  protected boolean lastGCWasDefrag = false;
+
+  /*****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Inline
+  public void collectionPhase(short phaseId) {
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      // Internally triggered collections trace concurrently with the
+      // mutators (see Phase), and objects may then not move.
+      if (Plan.isInternalTriggeredCollection()) {
+        immixSpace.decideWhetherToDefrag(false, false, 1, false);
+      } else {
+        immixSpace.decideWhetherToDefrag(emergencyCollection, true, collectionAttempt, userTriggeredCollection);
+      }
+      return;
+    }
+
+    if (phaseId == PREPARE) {
+      super.collectionPhase(phaseId);
+      immixTrace.prepareNonBlocking();
+      immixSpace.prepare(true);
+      return;
+    }
+
+    if (phaseId == RELEASE) {
+      immixTrace.release();
+      lastGCWasDefrag = immixSpace.release(true);
+      super.collectionPhase(phaseId);
+      return;
+    }
+
+    super.collectionPhase(phaseId);
+  }
+
+  @Override
+  public boolean lastCollectionWasExhaustive() {
+    return lastGCWasDefrag;
+  }
+
+  /*****************************************************************************
+   *
+   * Accounting
+   */
+
+  /**
+   * {@inheritDoc}
+   * The superclass accounts for its spaces, we just
+   * augment this with the immix space's contribution.
+   */
+  @Override
+  public int getPagesUsed() {
+    return immixSpace.reservedPages() + super.getPagesUsed();
+  }
+
+  /**
+   * Return the number of pages reserved for collection.
+   */
+  @Override
+  public int getCollectionReserve() {
+    return super.getCollectionReserve() + immixSpace.defragHeadroomPages();
+  }
+
+  @Override
+  public boolean willNeverMove(ObjectReference object) {
+    if (Space.isInSpace(IMMIX, object)) {
+      ObjectHeader.pinObject(object);
+      return true;
+    }
+    return super.willNeverMove(object);
+  }
+
+  @Override
+  @Interruptible
+  public void preCollectorSpawn() {
+    immixSpace.initializeDefrag();
+  }
+}
@@ -44,6 +44,7 @@ public class CMS extends Concurrent {
   static {
     msSpace.makeAllocAsMarked();
     smallCodeSpace.makeAllocAsMarked();
+    hotCodeSpace.makeAllocAsMarked();
     nonMovingSpace.makeAllocAsMarked();
   }
 
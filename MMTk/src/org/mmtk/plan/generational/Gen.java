@@ -16,6 +16,7 @@ import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.CopySpace;
+import org.mmtk.policy.RegionLargeObjectSpace;
 import org.mmtk.policy.Space;
 
 import org.mmtk.utility.deque.*;
@@ -62,10 +63,13 @@ public abstract class Gen extends StopTheWorld {
   private static final float WORST_CASE_COPY_EXPANSION = 1.5f; // worst case for addition of one word overhead due to address based hashing
   public static final boolean IGNORE_REMSETS = false;
   public static final boolean USE_NON_HEAP_OBJECT_REFERENCE_WRITE_BARRIER = false;
-  public static final boolean USE_OBJECT_BARRIER_FOR_AASTORE = false; // choose between slot and object barriers
-  public static final boolean USE_OBJECT_BARRIER_FOR_PUTFIELD = false; // choose between slot and object barriers
+  public static final boolean USE_OBJECT_BARRIER_FOR_AASTORE = false; // logging an array would rescan all of it
+  public static final boolean USE_OBJECT_BARRIER_FOR_PUTFIELD = ((GenConstraints) VM.activePlan.constraints()).useObjectBarrier(); // choose between slot and object barriers
   public static final boolean USE_OBJECT_BARRIER = USE_OBJECT_BARRIER_FOR_AASTORE || USE_OBJECT_BARRIER_FOR_PUTFIELD;
 
+  /** Weight given to the latest sample when adapting the nursery to a pause goal */
+  private static final double NURSERY_ADAPT_WEIGHT = 0.5;
+
   /** Fraction of available virtual memory to give to the nursery (if contiguous) */
   protected static final float NURSERY_VM_FRACTION = 0.15f;
 
@@ -77,6 +81,7 @@ public abstract class Gen extends StopTheWorld {
   public static final int ALLOC_MATURE         = StopTheWorld.ALLOCATORS + 1;
   public static final int ALLOC_MATURE_MINORGC = StopTheWorld.ALLOCATORS + 2;
   public static final int ALLOC_MATURE_MAJORGC = StopTheWorld.ALLOCATORS + 3;
+  public static final int ALLOC_RLOS           = StopTheWorld.ALLOCATORS + 4;
 
   public static final int SCAN_NURSERY = 0;
   public static final int SCAN_MATURE  = 1;
@@ -97,6 +102,8 @@ public abstract class Gen extends StopTheWorld {
   protected static final EventCounter wbSlow;
   public static final SizeCounter nurseryMark;
   public static final SizeCounter nurseryCons;
+  private static final SizeCounter nurseryGrow = new SizeCounter("nurseryGrow", true, true);
+  private static final SizeCounter nurseryShrink = new SizeCounter("nurseryShrink", true, true);
 
   /* The nursery space is where all new objects are allocated by default */
   private static final VMRequest vmRequest = USE_DISCONTIGUOUS_NURSERY ? VMRequest.discontiguous() : VMRequest.highFraction(NURSERY_VM_FRACTION);
@@ -105,6 +112,16 @@ public abstract class Gen extends StopTheWorld {
   public static final int NURSERY = nurserySpace.getDescriptor();
   private static final Address NURSERY_START = nurserySpace.getStart();
 
+  /**
+   * A large object space for movable objects, collected (and, optionally,
+   * compacted) only by full heap collections.  Stacks and non-moving
+   * objects remain in the treadmill large object space.  It is only
+   * allocated into if the {@link org.mmtk.utility.options.RegionLargeObjects}
+   * option is set.
+   */
+  public static final RegionLargeObjectSpace rlosSpace = new RegionLargeObjectSpace("rlos", VMRequest.discontiguous());
+  public static final int RLOS = rlosSpace.getDescriptor();
+
   /*****************************************************************************
    *
    * Instance fields
@@ -118,6 +135,13 @@ public abstract class Gen extends StopTheWorld {
   public boolean gcFullHeap = false;
   public boolean nextGCFullHeap = false;
 
+  /* adaptive nursery sizing state (only used with a nursery pause goal) */
+  private long nurseryGCStart;
+  private int nurseryPagesAtGC;
+  private int maturePagesAtGC;
+  private double survivalEstimate = -1;
+  private double copyRatePerThreadEstimate = -1;
+
   /* The trace object */
   public final Trace nurseryTrace = new Trace(metaDataSpace);
 
@@ -171,6 +195,11 @@ public abstract class Gen extends StopTheWorld {
     if (phaseId == SET_COLLECTION_KIND) {
       super.collectionPhase(phaseId);
       gcFullHeap = requiresFullHeapCollection();
+      if (!traceFullHeap() && Options.nurserySize.isAdaptive()) {
+        nurseryGCStart = VM.statistics.nanoTime();
+        nurseryPagesAtGC = nurserySpace.reservedPages();
+        maturePagesAtGC = maturePagesUsed();
+      }
       return;
     }
 
@@ -181,6 +210,7 @@ public abstract class Gen extends StopTheWorld {
           if (Stats.gatheringStats()) fullHeap.set();
           fullHeapTime.start();
         }
+        rlosSpace.prepare(true);
         super.collectionPhase(phaseId);
 
         // we can throw away the remsets (but not modbuf) for a full heap GC
@@ -204,6 +234,9 @@ public abstract class Gen extends StopTheWorld {
     }
 
     if (phaseId == RELEASE) {
+      if (!traceFullHeap() && Options.nurserySize.isAdaptive()) {
+        adaptNurserySize();
+      }
       nurserySpace.release();
       switchNurseryZeroingApproach(nurserySpace);
       modbufPool.clearDeque(1);
@@ -212,6 +245,7 @@ public abstract class Gen extends StopTheWorld {
       if (!traceFullHeap()) {
         nurseryTrace.release();
       } else {
+        rlosSpace.release(true);
         super.collectionPhase(phaseId);
         if (gcFullHeap) fullHeapTime.stop();
       }
@@ -222,6 +256,75 @@ public abstract class Gen extends StopTheWorld {
     super.collectionPhase(phaseId);
   }
 
+  /**
+   * Resize the nursery after a nursery collection so that the next one
+   * takes about as long as the nursery pause goal.  The pause is modeled
+   * as the survivors of the nursery divided by the rate at which each
+   * collector thread copies them, times the number of collector threads.
+   * Both are smoothed across collections, and the nursery at most doubles
+   * or halves each time.<p>
+   *
+   * Survivors are measured as the growth of the spaces they are copied
+   * into (see {@link #maturePagesUsed()}).
+   */
+  private void adaptNurserySize() {
+    double elapsed = VM.statistics.nanosToMillis(VM.statistics.nanoTime() - nurseryGCStart);
+    int threads = VM.activePlan.collectorCount();
+    int promoted = maturePagesUsed() - maturePagesAtGC;
+    if (promoted < 0) promoted = 0;
+
+    double survival = nurseryPagesAtGC > 0 ? ((double) promoted) / nurseryPagesAtGC : 0;
+    if (survival > 1) survival = 1;
+    survivalEstimate = survivalEstimate < 0 ? survival :
+      NURSERY_ADAPT_WEIGHT * survival + (1 - NURSERY_ADAPT_WEIGHT) * survivalEstimate;
+    if (promoted > 0 && elapsed > 0) {
+      double copyRate = promoted / elapsed / threads;
+      copyRatePerThreadEstimate = copyRatePerThreadEstimate < 0 ? copyRate :
+        NURSERY_ADAPT_WEIGHT * copyRate + (1 - NURSERY_ADAPT_WEIGHT) * copyRatePerThreadEstimate;
+    }
+
+    int oldPages = Options.nurserySize.getMaxNursery();
+    int target;
+    if (survivalEstimate <= 0 || copyRatePerThreadEstimate <= 0) {
+      // Nothing survives, so a larger nursery costs no extra pause
+      target = oldPages << 1;
+    } else {
+      double pages = Options.nurserySize.getPauseGoal() * copyRatePerThreadEstimate * threads / survivalEstimate;
+      target = pages > (oldPages << 1) ? oldPages << 1 : (int) pages;
+    }
+    if (target < (oldPages >> 1)) target = oldPages >> 1;
+    int newPages = Options.nurserySize.setAdaptiveNursery(target);
+
+    if (Stats.gatheringStats()) {
+      if (newPages > oldPages) nurseryGrow.inc(newPages - oldPages);
+      if (newPages < oldPages) nurseryShrink.inc(oldPages - newPages);
+    }
+    if (Options.verbose.getValue() >= 2) {
+      Log.write("GC Message: Nursery pause ");
+      Log.write(elapsed);
+      Log.write("ms survival ");
+      Log.write(survival);
+      Log.write(" copy rate ");
+      Log.write(copyRatePerThreadEstimate);
+      Log.write(" pages/ms/thread, nursery ");
+      Log.write(oldPages);
+      Log.write(" -> ");
+      Log.write(newPages);
+      Log.writeln(" pages");
+    }
+  }
+
+  /**
+   * The pages used by every space except the nursery and the meta data
+   * space, whose remembered set buffers are freed part way through a
+   * nursery collection.  Must be read before the nursery is released.
+   *
+   * @return the pages used outside the nursery
+   */
+  private int maturePagesUsed() {
+    return getPagesUsed() - nurserySpace.reservedPages() - metaDataSpace.reservedPages();
+  }
+
   @Override
   public final boolean collectionRequired(boolean spaceFull, Space space) {
     int availableNurseryPages = Options.nurserySize.getMaxNursery() - nurserySpace.reservedPages();
@@ -291,12 +394,12 @@ public abstract class Gen extends StopTheWorld {
 
   /**
    * {@inheritDoc}
-   * Simply add the nursery's contribution to that of
-   * the superclass.
+   * Simply add the contributions of the nursery and the
+   * region large object space to that of the superclass.
    */
   @Override
   public int getPagesUsed() {
-    return (nurserySpace.reservedPages() + super.getPagesUsed());
+    return (nurserySpace.reservedPages() + rlosSpace.reservedPages() + super.getPagesUsed());
   }
 
   /**
@@ -404,7 +507,7 @@ public abstract class Gen extends StopTheWorld {
 
   @Override
   public boolean willNeverMove(ObjectReference object) {
-    if (Space.isInSpace(NURSERY, object))
+    if (Space.isInSpace(NURSERY, object) || Space.isInSpace(RLOS, object))
       return false;
     return super.willNeverMove(object);
   }
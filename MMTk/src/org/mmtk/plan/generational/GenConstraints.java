@@ -70,7 +70,25 @@ public class GenConstraints extends StopTheWorldConstraints {
 
   @Override
   public boolean needsLogBitInHeader() {
-    return Gen.USE_OBJECT_BARRIER;
+    return useObjectBarrier();
+  }
+
+  /**
+   * Choose how the write barrier remembers pointers from the mature
+   * space into the nursery.  By default the barrier buffers the address
+   * of each slot that is given a nursery reference.  When this returns
+   * {@code true} it instead logs each mature object whose fields are
+   * modified the first time it is written (using the unlogged bit in its
+   * header), and a nursery collection rescans the logged objects.  Stores
+   * into an already logged object then cost only a header byte test,
+   * however many stores the mutator makes.  Stores into array elements
+   * always use the slot barrier, since logging a large array for one
+   * store would make the next nursery collection scan all of it.
+   *
+   * @return {@code true} if the plan uses the object remembering barrier
+   */
+  public boolean useObjectBarrier() {
+    return false;
   }
 
   /**
@@ -14,6 +14,7 @@ package org.mmtk.plan.generational;
 
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.Trace;
+import org.mmtk.policy.Space;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.deque.*;
 
@@ -85,6 +86,9 @@ public abstract class GenMatureTraceLocal extends TraceLocal {
     if (Gen.inNursery(object)) {
       return Gen.nurserySpace.isLive(object);
     }
+    if (Space.isInSpace(Gen.RLOS, object)) {
+      return Gen.rlosSpace.isLive(object);
+    }
     return super.isLive(object);
   }
 
@@ -101,6 +105,8 @@ public abstract class GenMatureTraceLocal extends TraceLocal {
   public boolean willNotMoveInCurrentCollection(ObjectReference object) {
     if (Gen.inNursery(object))
       return false;
+    else if (Space.isInSpace(Gen.RLOS, object))
+      return Gen.rlosSpace.willNotMoveThisGC(object);
     else
       return super.willNotMoveInCurrentCollection(object);
   }
@@ -111,6 +117,8 @@ public abstract class GenMatureTraceLocal extends TraceLocal {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!object.isNull());
     if (Gen.inNursery(object))
       return Gen.nurserySpace.traceObject(this, object, Gen.ALLOC_MATURE_MAJORGC);
+    if (Space.isInSpace(Gen.RLOS, object))
+      return Gen.rlosSpace.traceObject(this, object);
     return super.traceObject(object);
   }
 
@@ -122,7 +130,12 @@ public abstract class GenMatureTraceLocal extends TraceLocal {
     logMessage(5, "clearing modbuf");
     ObjectReference obj;
     while (!(obj = modbuf.pop()).isNull()) {
-      HeaderByte.markAsUnlogged(obj);
+      if (Space.isInSpace(Gen.RLOS, obj)) {
+        /* The object may have been evacuated from its region */
+        Gen.rlosSpace.markAsUnlogged(obj);
+      } else {
+        HeaderByte.markAsUnlogged(obj);
+      }
     }
     logMessage(5, "clearing remset");
     while (!remset.isEmpty()) {
@@ -14,10 +14,13 @@ package org.mmtk.plan.generational;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.CopyLocal;
+import org.mmtk.policy.RegionLargeObjectLocal;
+import org.mmtk.policy.RegionLargeObjectSpace;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.deque.*;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.options.Options;
 import org.mmtk.utility.statistics.Stats;
 import org.mmtk.vm.VM;
 import static org.mmtk.plan.generational.Gen.USE_OBJECT_BARRIER_FOR_AASTORE;
@@ -31,8 +34,8 @@ import org.vmmagic.unboxed.*;
  * This abstract class implements <i>per-mutator thread</i> behavior
  * and state for <i>generational copying collectors</i>.<p>
  *
- * Specifically, this class defines mutator-time allocation into the nursery;
- * write barrier semantics, and per-mutator thread collection semantics
+ * Specifically, this class defines mutator-time allocation into the nursery
+ * and the region large object space; write barrier semantics, and per-mutator thread collection semantics
  * (flushing and restoring per-mutator allocator and remset state).
  *
  * @see Gen
@@ -51,6 +54,7 @@ import org.vmmagic.unboxed.*;
    *
    */
   protected final CopyLocal nursery = new CopyLocal(Gen.nurserySpace);
+  protected final RegionLargeObjectLocal rlos = new RegionLargeObjectLocal(Gen.rlosSpace);
 
   private final ObjectReferenceDeque modbuf;    /* remember modified scalars */
   protected final WriteBuffer remset;           /* remember modified array fields */
@@ -80,6 +84,24 @@ import org.vmmagic.unboxed.*;
    * Mutator-time allocation
    */
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * If the {@link org.mmtk.utility.options.RegionLargeObjects} option is
+   * set, objects of at least {@link RegionLargeObjectSpace#MIN_OBJECT_BYTES}
+   * that may be moved are allocated into the region-based large object
+   * space.  Large non-moving objects are left to the treadmill large
+   * object space.
+   */
+  @Override
+  public int checkAllocator(int bytes, int align, int allocator) {
+    if (Options.regionLargeObjects.getValue() &&
+        (allocator == Gen.ALLOC_DEFAULT || allocator == Gen.ALLOC_NON_REFERENCE) &&
+        Allocator.getMaximumAlignedSize(bytes, align) >= RegionLargeObjectSpace.MIN_OBJECT_BYTES)
+      return Gen.ALLOC_RLOS;
+    return super.checkAllocator(bytes, align, allocator);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -90,6 +112,8 @@ import org.vmmagic.unboxed.*;
       if (Stats.GATHER_MARK_CONS_STATS) Gen.nurseryCons.inc(bytes);
       return nursery.alloc(bytes, align, offset);
     }
+    if (allocator == Gen.ALLOC_RLOS)
+      return rlos.alloc(bytes, align, offset);
     return super.alloc(bytes, align, offset, allocator, site);
   }
 
@@ -97,7 +121,9 @@ import org.vmmagic.unboxed.*;
   @Inline
   public void postAlloc(ObjectReference ref, ObjectReference typeRef,
       int bytes, int allocator) {
-    if (allocator != Gen.ALLOC_NURSERY) {
+    if (allocator == Gen.ALLOC_RLOS) {
+      Gen.rlosSpace.initializeHeader(ref);
+    } else if (allocator != Gen.ALLOC_NURSERY) {
       super.postAlloc(ref, typeRef, bytes, allocator);
     }
   }
@@ -105,6 +131,7 @@ import org.vmmagic.unboxed.*;
   @Override
   public Allocator getAllocatorFromSpace(Space space) {
     if (space == Gen.nurserySpace) return nursery;
+    if (space == Gen.rlosSpace) return rlos;
     return super.getAllocatorFromSpace(space);
   }
 
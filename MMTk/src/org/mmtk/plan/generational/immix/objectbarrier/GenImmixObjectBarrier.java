@@ -0,0 +1,30 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational.immix.objectbarrier;
+
+import org.mmtk.plan.generational.immix.GenImmix;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A variant of {@link GenImmix} whose write barrier remembers mature
+ * objects with modified fields rather than the modified slots; stores
+ * into arrays still remember slots.  All collection behavior is
+ * inherited; only the barrier selected by
+ * {@link GenImmixObjectBarrierConstraints} differs, so the two remembered
+ * set strategies can be compared on otherwise identical collectors.
+ */
+@Uninterruptible
+public class GenImmixObjectBarrier extends GenImmix {
+
+}
@@ -0,0 +1,30 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.immix.workstealing;
+
+import org.mmtk.plan.immix.Immix;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A variant of {@link Immix} whose traces balance work between collector
+ * threads by work stealing (see
+ * {@link org.mmtk.utility.deque.WorkStealingDeque}) rather than through a
+ * single locked pool.  All collection behavior is inherited; only the
+ * value pool selected by {@link ImmixWorkStealingConstraints} differs,
+ * so the two strategies can be compared on otherwise identical collectors.
+ */
+@Uninterruptible
+public class ImmixWorkStealing extends Immix {
+
+}
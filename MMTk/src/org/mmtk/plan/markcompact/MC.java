@@ -135,6 +135,7 @@ import org.vmmagic.unboxed.ObjectReference;
       super.collectionPhase(phaseId);
       markTrace.prepare();
       mcSpace.prepare();
+      mcSpace.resetRegionsScanned();
       return;
     }
     if (phaseId == CLOSURE) {
@@ -25,6 +25,7 @@ import org.mmtk.utility.alloc.LinearScan;
 import org.mmtk.utility.deque.SharedDeque;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.TrialDeletionBudget;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
@@ -44,13 +45,23 @@ public class RCBase extends StopTheWorld {
   public static final short PROCESS_NEWROOTBUFFER  = Phase.createSimple("new-root");
   public static final short PROCESS_MODBUFFER      = Phase.createSimple("mods");
   public static final short PROCESS_DECBUFFER      = Phase.createSimple("decs");
+  public static final short TRIAL_DELETION         = Phase.createSimple("trial-deletion");
 
   /** Is cycle collection enabled? */
   public static final boolean CC_ENABLED           = true;
   /** Force full cycle collection at each GC? */
   public static boolean ccForceFull        = false;
-  /** Use backup tracing for cycle collection (currently the only option) */
+  /**
+   * Use backup tracing for cycle collection when the heap runs short.
+   * The backup trace also reclaims the cycles trial deletion leaves
+   * behind: those through stuck counts, and those too large for its budget.
+   */
   public static final boolean CC_BACKUP_TRACE      = true;
+  /**
+   * Use trial deletion to reclaim garbage cycles in bounded slices at each
+   * collection.  Its colour and buffered bits are kept in a GC header word.
+   */
+  public static final boolean CC_TRIAL_DELETION    = ((RCBaseConstraints) VM.activePlan.constraints()).useTrialDeletion();
 
   public static boolean performCycleCollection;
   public static final short BT_CLOSURE             = Phase.createSimple("closure-bt");
@@ -74,6 +85,8 @@ public class RCBase extends StopTheWorld {
       Phase.scheduleMutator    (PROCESS_DECBUFFER),
       Phase.scheduleGlobal     (PROCESS_DECBUFFER),
       Phase.scheduleCollector  (PROCESS_DECBUFFER),
+      Phase.scheduleGlobal     (TRIAL_DELETION),
+      Phase.scheduleCollector  (TRIAL_DELETION),
       Phase.scheduleGlobal     (BT_CLOSURE),
       Phase.scheduleCollector  (BT_CLOSURE));
 
@@ -85,6 +98,8 @@ public class RCBase extends StopTheWorld {
       Phase.scheduleMutator    (PROCESS_DECBUFFER),
       Phase.scheduleGlobal     (PROCESS_DECBUFFER),
       Phase.scheduleCollector  (PROCESS_DECBUFFER),
+      Phase.scheduleGlobal     (TRIAL_DELETION),
+      Phase.scheduleCollector  (TRIAL_DELETION),
       Phase.scheduleGlobal     (BT_CLOSURE),
       Phase.scheduleCollector  (BT_CLOSURE));
 
@@ -153,6 +168,9 @@ public class RCBase extends StopTheWorld {
   public final SharedDeque decPool = new SharedDeque("dec", metaDataSpace, 1);
   public final SharedDeque newRootPool = new SharedDeque("newRoot", metaDataSpace, 1);
   public final SharedDeque oldRootPool = new SharedDeque("oldRoot", metaDataSpace, 1);
+  public final SharedDeque cycleRootPool = new SharedDeque("cycleRoot", metaDataSpace, 1);
+  public final SharedDeque trialPool = new SharedDeque("trial", metaDataSpace, 1);
+  public final SharedDeque trialBlackPool = new SharedDeque("trialBlack", metaDataSpace, 1);
 
   /*****************************************************************************
    *
@@ -173,6 +191,7 @@ public class RCBase extends StopTheWorld {
   public RCBase() {
     Options.noReferenceTypes.setDefaultValue(true);
     Options.noFinalizer.setDefaultValue(true);
+    Options.trialDeletionBudget = new TrialDeletionBudget();
     rootTrace = new Trace(metaDataSpace);
     backupTrace = new Trace(metaDataSpace);
     rcSweeper = new BTSweeper();
@@ -269,6 +288,15 @@ public class RCBase extends StopTheWorld {
       return;
     }
 
+    if (phaseId == TRIAL_DELETION) {
+      if (CC_TRIAL_DELETION) {
+        cycleRootPool.prepareNonBlocking();
+        trialPool.prepareNonBlocking();
+        trialBlackPool.prepareNonBlocking();
+      }
+      return;
+    }
+
     if (phaseId == RELEASE) {
       rootTrace.release();
       if (CC_BACKUP_TRACE && performCycleCollection) {
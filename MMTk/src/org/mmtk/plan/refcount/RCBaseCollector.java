@@ -18,6 +18,7 @@ import org.mmtk.plan.StopTheWorldCollector;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.plan.refcount.backuptrace.BTTraceLocal;
+import org.mmtk.plan.refcount.trialdeletion.TrialDeletion;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.ExplicitFreeListSpace;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
@@ -49,6 +50,7 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
   private final ObjectReferenceDeque oldRootBuffer;
   private final RCDecBuffer decBuffer;
   private final RCZero zero;
+  private final TrialDeletion trialDeletion;
 
   /**
    * Constructor.
@@ -60,6 +62,7 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
     decBuffer = new RCDecBuffer(global().decPool);
     backupTrace = new BTTraceLocal(global().backupTrace);
     zero = new RCZero();
+    trialDeletion = new TrialDeletion(global().cycleRootPool, global().trialPool, global().trialBlackPool);
   }
 
   /**
@@ -202,13 +205,17 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
         if (RCBase.BUILD_FOR_GENRC) {
           if (RCHeader.decRC(current) == RCHeader.DEC_KILL) {
             decBuffer.processChildren(current);
-            if (Space.isInSpace(RCBase.REF_COUNT, current)) {
+            if (RCBase.CC_TRIAL_DELETION && RCHeader.isBuffered(current)) {
+              /* Freed when taken from the cycle root buffer */
+            } else if (Space.isInSpace(RCBase.REF_COUNT, current)) {
               RCBase.rcSpace.free(current);
             } else if (Space.isInSpace(RCBase.REF_COUNT_LOS, current)) {
               RCBase.rcloSpace.free(current);
             } else if (Space.isInSpace(RCBase.IMMORTAL, current)) {
               VM.scanning.scanObject(zero, current);
             }
+          } else if (RCBase.CC_TRIAL_DELETION) {
+            trialDeletion.possibleRoot(current);
           }
         } else {
           if (RCHeader.isNew(current)) {
@@ -222,17 +229,33 @@ public abstract class RCBaseCollector extends StopTheWorldCollector {
           } else {
             if (RCHeader.decRC(current) == RCHeader.DEC_KILL) {
               decBuffer.processChildren(current);
-              if (Space.isInSpace(RCBase.REF_COUNT, current)) {
+              if (RCBase.CC_TRIAL_DELETION && RCHeader.isBuffered(current)) {
+                /* Freed when taken from the cycle root buffer */
+              } else if (Space.isInSpace(RCBase.REF_COUNT, current)) {
                 RCBase.rcSpace.free(current);
               } else if (Space.isInSpace(RCBase.REF_COUNT_LOS, current)) {
                 RCBase.rcloSpace.free(current);
               } else if (Space.isInSpace(RCBase.IMMORTAL, current)) {
                 VM.scanning.scanObject(zero, current);
               }
+            } else if (RCBase.CC_TRIAL_DELETION) {
+              trialDeletion.possibleRoot(current);
             }
           }
         }
       }
+      if (RCBase.CC_TRIAL_DELETION) trialDeletion.flush();
+      return;
+    }
+
+    if (phaseId == RCBase.TRIAL_DELETION) {
+      if (RCBase.CC_TRIAL_DELETION && primary) {
+        if (RCBase.CC_BACKUP_TRACE && RCBase.performCycleCollection) {
+          trialDeletion.discardRoots();
+        } else {
+          trialDeletion.collectCycles();
+        }
+      }
       return;
     }
 
@@ -31,7 +31,7 @@ public class RCBaseConstraints extends StopTheWorldConstraints {
   }
   @Override
   public int gcHeaderWords() {
-    return RCHeader.GC_HEADER_WORDS_REQUIRED;
+    return useTrialDeletion() ? RCHeader.TRIAL_DELETION_GC_HEADER_WORDS : RCHeader.GC_HEADER_WORDS_REQUIRED;
   }
   @Override
   public boolean needsObjectReferenceWriteBarrier() {
@@ -49,4 +49,16 @@ public class RCBaseConstraints extends StopTheWorldConstraints {
   public boolean buildForGenRC() {
     return false;
   }
+  /**
+   * Choose whether garbage cycles are also collected by trial deletion
+   * at each collection, rather than only by the backup trace when the
+   * heap runs short.  Trial deletion needs a GC header word in every
+   * object, and buffers every object whose count is decremented but
+   * stays above zero.
+   *
+   * @return {@code true} if the plan collects cycles by trial deletion
+   */
+  public boolean useTrialDeletion() {
+    return false;
+  }
 }
@@ -18,6 +18,7 @@ import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
 
 @Uninterruptible
@@ -27,6 +28,7 @@ public class RCHeader {
   public static final int LOCAL_GC_BITS_REQUIRED = 0;
   public static final int GLOBAL_GC_BITS_REQUIRED = 8;
   public static final int GC_HEADER_WORDS_REQUIRED = 0;
+  public static final int TRIAL_DELETION_GC_HEADER_WORDS = 1;
 
   /****************************************************************************
    * Object Logging (applies to *all* objects)
@@ -401,6 +403,122 @@ public class RCHeader {
     return rtn;
   }
 
+  /**
+   * @param object an object
+   * @return whether the reference count of the object is stuck
+   */
+  @Inline
+  public static boolean isStuckRC(ObjectReference object) {
+    return isStuck(VM.objectModel.readAvailableBitsWord(object));
+  }
+
+  /**
+   * Decrement the reference count of an object during trial deletion.
+   * Unlike {@link #decRC(ObjectReference)}, the count may reach zero
+   * without the object being reclaimed.
+   *
+   * @param object The object whose RC is to be decremented.
+   */
+  @Inline
+  public static void trialDecRC(ObjectReference object) {
+    Word oldValue, newValue;
+    do {
+      oldValue = VM.objectModel.prepareAvailableBits(object);
+      if (isStuck(oldValue)) return;
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(oldValue.and(READ_MASK).GE(INCREMENT));
+      newValue = oldValue.minus(INCREMENT);
+    } while (!VM.objectModel.attemptAvailableBits(object, oldValue, newValue));
+  }
+
+  /**
+   * Undo a trial decrement of the reference count of an object.
+   *
+   * @param object The object whose RC is to be restored.
+   */
+  @Inline
+  public static void trialIncRC(ObjectReference object) {
+    Word oldValue, newValue;
+    do {
+      oldValue = VM.objectModel.prepareAvailableBits(object);
+      if (isStuck(oldValue)) return;
+      newValue = oldValue.plus(INCREMENT);
+    } while (!VM.objectModel.attemptAvailableBits(object, oldValue, newValue));
+  }
+
+  /************************************************************************
+   * Trial deletion state
+   *
+   * The colour of an object and whether it is buffered as a possible cycle
+   * root are kept in the GC header word, which is zero (black, not
+   * buffered) when the object is allocated.  Only the collector changes
+   * them, with the mutators stopped, and only buffering races between
+   * collector threads.
+   */
+
+  private static final Offset CYCLE_STATE_OFFSET = VM.objectModel.GC_HEADER_OFFSET();
+
+  /** In use, or not yet visited by trial deletion. */
+  public static final Word BLACK = Word.zero();
+  /** Visited by trial deletion, a possible member of a garbage cycle. */
+  public static final Word GRAY = Word.one();
+  /** Garbage found by trial deletion. */
+  public static final Word WHITE = Word.fromIntZeroExtend(2);
+  private static final Word COLOUR_MASK = Word.fromIntZeroExtend(3);
+  private static final Word BUFFERED_MASK = Word.fromIntZeroExtend(4);
+
+  /**
+   * @param object an object
+   * @return the trial deletion colour of the object
+   */
+  @Inline
+  public static Word getColour(ObjectReference object) {
+    return object.toAddress().loadWord(CYCLE_STATE_OFFSET).and(COLOUR_MASK);
+  }
+
+  /**
+   * @param object an object
+   * @param colour the new trial deletion colour of the object
+   */
+  @Inline
+  public static void setColour(ObjectReference object, Word colour) {
+    Word value = object.toAddress().loadWord(CYCLE_STATE_OFFSET);
+    object.toAddress().store(value.and(COLOUR_MASK.not()).or(colour), CYCLE_STATE_OFFSET);
+  }
+
+  /**
+   * @param object an object
+   * @return whether the object is buffered as a possible cycle root
+   */
+  @Inline
+  public static boolean isBuffered(ObjectReference object) {
+    return object.toAddress().loadWord(CYCLE_STATE_OFFSET).and(BUFFERED_MASK).EQ(BUFFERED_MASK);
+  }
+
+  /**
+   * Buffer an object as a possible cycle root, unless it already is.
+   *
+   * @param object the object
+   * @return {@code true} if the object was not buffered before
+   */
+  @Inline
+  public static boolean testAndSetBuffered(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = object.toAddress().prepareWord(CYCLE_STATE_OFFSET);
+      if (oldValue.and(BUFFERED_MASK).EQ(BUFFERED_MASK)) return false;
+    } while (!object.toAddress().attempt(oldValue, oldValue.or(BUFFERED_MASK), CYCLE_STATE_OFFSET));
+    return true;
+  }
+
+  /**
+   * @param object an object that is no longer buffered as a possible cycle root
+   */
+  @Inline
+  public static void clearBuffered(ObjectReference object) {
+    Word value = object.toAddress().loadWord(CYCLE_STATE_OFFSET);
+    object.toAddress().store(value.and(BUFFERED_MASK.not()), CYCLE_STATE_OFFSET);
+  }
+
   /**
    * @param value a word
    * @return whether the word contains a sticky marking
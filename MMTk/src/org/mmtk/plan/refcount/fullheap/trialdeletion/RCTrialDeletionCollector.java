@@ -0,0 +1,25 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.refcount.fullheap.trialdeletion;
+
+import org.mmtk.plan.refcount.fullheap.RCCollector;
+import org.vmmagic.pragma.*;
+
+/**
+ * This class extends the {@link RCCollector} class as part of the
+ * {@link RCTrialDeletion} collector. Trial deletion itself is driven by
+ * {@link org.mmtk.plan.refcount.RCBaseCollector}.
+ */
+@Uninterruptible
+public class RCTrialDeletionCollector extends RCCollector {
+}
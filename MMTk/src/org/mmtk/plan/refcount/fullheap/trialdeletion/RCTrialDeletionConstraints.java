@@ -0,0 +1,29 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.refcount.fullheap.trialdeletion;
+
+import org.mmtk.plan.refcount.fullheap.RCConstraints;
+import org.vmmagic.pragma.*;
+
+/**
+ * RCTrialDeletion common constants.
+ */
+@Uninterruptible
+public class RCTrialDeletionConstraints extends RCConstraints {
+
+  @Override
+  public boolean useTrialDeletion() {
+    return true;
+  }
+
+}
@@ -0,0 +1,29 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.refcount.generational.trialdeletion;
+
+import org.mmtk.plan.refcount.generational.GenRCConstraints;
+import org.vmmagic.pragma.*;
+
+/**
+ * GenRCTrialDeletion common constants.
+ */
+@Uninterruptible
+public class GenRCTrialDeletionConstraints extends GenRCConstraints {
+
+  @Override
+  public boolean useTrialDeletion() {
+    return true;
+  }
+
+}
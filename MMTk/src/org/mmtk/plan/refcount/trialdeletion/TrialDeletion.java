@@ -0,0 +1,257 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.refcount.trialdeletion;
+
+import org.mmtk.plan.refcount.RCBase;
+import org.mmtk.plan.refcount.RCDecBuffer;
+import org.mmtk.plan.refcount.RCHeader;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.options.Options;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the thread-local state of trial deletion, a cycle
+ * collector for reference counting (see Bacon and Rajan, "Concurrent Cycle
+ * Collection in Reference Counted Systems", ECOOP 2001).<p>
+ *
+ * An object whose count is decremented but stays above zero may be part of
+ * a garbage cycle, and is buffered as a possible cycle root.  Once all the
+ * increments and decrements of a collection have been applied, the primary
+ * collector takes possible roots from the buffer and, for each, trial
+ * deletes the references internal to the subgraph reachable from it (mark
+ * gray), restores the counts of whatever is still referenced from outside
+ * the subgraph (scan), and frees the rest (collect white).<p>
+ *
+ * The work of each collection is bounded by the trial deletion budget:
+ * roots left in the buffer are taken up by later collections, and a root
+ * whose subgraph alone exceeds what is left of the budget is restored and
+ * dropped, leaving its cycles to the backup trace.
+ */
+@Uninterruptible
+public final class TrialDeletion {
+
+  /****************************************************************************
+   *
+   * Instance fields
+   */
+
+  /** Possible cycle roots */
+  private final ObjectReferenceDeque roots;
+
+  /** Objects to mark gray, scan or collect */
+  private final RCDecBuffer work;
+
+  /** Objects to scan black, then objects to free */
+  private final RCDecBuffer black;
+
+  /**
+   * Constructor
+   *
+   * @param rootPool the shared pool of possible cycle roots
+   * @param workPool the shared pool used to mark gray, scan and collect white
+   * @param blackPool the shared pool used to scan black
+   */
+  public TrialDeletion(SharedDeque rootPool, SharedDeque workPool, SharedDeque blackPool) {
+    roots = new ObjectReferenceDeque("cycle-root", rootPool);
+    work = new RCDecBuffer(workPool);
+    black = new RCDecBuffer(blackPool);
+  }
+
+  /****************************************************************************
+   *
+   * Buffering
+   */
+
+  /**
+   * Buffer an object whose count was decremented but is still above zero
+   * as a possible cycle root.
+   *
+   * @param object the object
+   */
+  @Inline
+  public void possibleRoot(ObjectReference object) {
+    if (!RCHeader.isStuckRC(object) && RCHeader.testAndSetBuffered(object)) {
+      roots.push(object);
+    }
+  }
+
+  /**
+   * Flush the possible roots buffered by this thread to the shared pool.
+   */
+  public void flush() {
+    roots.flushLocal();
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * Collect the garbage cycles reachable from the buffered roots, until the
+   * budget is spent.  Only one collector may do this at a time.
+   */
+  public void collectCycles() {
+    int budget = Options.trialDeletionBudget.getValue();
+    ObjectReference root;
+    while (budget > 0 && !(root = roots.pop()).isNull()) {
+      RCHeader.clearBuffered(root);
+      if (RCHeader.getColour(root).EQ(RCHeader.WHITE)) {
+        collectWhite(root);
+      } else if (!RCHeader.isLiveRC(root)) {
+        free(root);
+      } else {
+        budget = collectCycles(root, budget);
+      }
+    }
+    roots.flushLocal();
+  }
+
+  /**
+   * Forget the buffered roots, which the backup trace is about to deal with.
+   * The roots that died while buffered are left to it to free.
+   */
+  public void discardRoots() {
+    ObjectReference root;
+    while (!(root = roots.pop()).isNull()) {
+      RCHeader.clearBuffered(root);
+    }
+  }
+
+  /**
+   * Collect the garbage cycles reachable from a root.
+   *
+   * @param root the possible cycle root
+   * @param budget the number of objects that may still be marked gray
+   * @return the budget left, or zero if the root exceeded it
+   */
+  private int collectCycles(ObjectReference root, int budget) {
+    budget = markGray(root, budget);
+    if (budget < 0) {
+      scanBlack(root);
+      return 0;
+    }
+    scan(root);
+    collectWhite(root);
+    return budget;
+  }
+
+  /**
+   * Mark the subgraph reachable from a root gray, removing the counts of
+   * the references internal to it.  If the subgraph has more objects than
+   * the budget allows, the references out of the objects marked so far are
+   * still removed, so that scanning the root black restores them all.
+   *
+   * @param root the possible cycle root
+   * @param budget the number of objects that may still be marked gray
+   * @return the budget left, or -1 if the subgraph exceeded it
+   */
+  private int markGray(ObjectReference root, int budget) {
+    RCHeader.setColour(root, RCHeader.GRAY);
+    budget--;
+    work.processChildren(root);
+    ObjectReference current;
+    while (!(current = work.pop()).isNull()) {
+      RCHeader.trialDecRC(current);
+      if (budget >= 0 && RCHeader.getColour(current).NE(RCHeader.GRAY)) {
+        if (budget == 0) {
+          budget = -1;
+        } else {
+          RCHeader.setColour(current, RCHeader.GRAY);
+          budget--;
+          work.processChildren(current);
+        }
+      }
+    }
+    return budget;
+  }
+
+  /**
+   * Colour white the gray objects reachable from a root whose counts are
+   * now zero, and scan black any that are still referenced from outside.
+   *
+   * @param root the possible cycle root
+   */
+  private void scan(ObjectReference root) {
+    work.push(root);
+    ObjectReference current;
+    while (!(current = work.pop()).isNull()) {
+      if (RCHeader.getColour(current).EQ(RCHeader.GRAY)) {
+        if (RCHeader.isLiveRC(current)) {
+          scanBlack(current);
+        } else {
+          RCHeader.setColour(current, RCHeader.WHITE);
+          work.processChildren(current);
+        }
+      }
+    }
+  }
+
+  /**
+   * Colour black an object and everything reachable from it that is not
+   * already black, restoring the counts that marking gray removed.
+   *
+   * @param object the object
+   */
+  private void scanBlack(ObjectReference object) {
+    RCHeader.setColour(object, RCHeader.BLACK);
+    black.processChildren(object);
+    ObjectReference current;
+    while (!(current = black.pop()).isNull()) {
+      RCHeader.trialIncRC(current);
+      if (RCHeader.getColour(current).NE(RCHeader.BLACK)) {
+        RCHeader.setColour(current, RCHeader.BLACK);
+        black.processChildren(current);
+      }
+    }
+  }
+
+  /**
+   * Free the white objects reachable from a root.  White objects that are
+   * buffered as roots themselves are left, with the white objects reachable
+   * from them, until they are taken from the buffer.  The objects are only
+   * freed once all are found, since freeing a large object releases its
+   * pages.
+   *
+   * @param root the possible cycle root
+   */
+  private void collectWhite(ObjectReference root) {
+    work.push(root);
+    ObjectReference current;
+    while (!(current = work.pop()).isNull()) {
+      if (RCHeader.getColour(current).EQ(RCHeader.WHITE) && !RCHeader.isBuffered(current)) {
+        RCHeader.setColour(current, RCHeader.BLACK);
+        work.processChildren(current);
+        black.push(current);
+      }
+    }
+    while (!(current = black.pop()).isNull()) {
+      free(current);
+    }
+  }
+
+  /**
+   * @param object a dead reference counted object
+   */
+  private static void free(ObjectReference object) {
+    if (Space.isInSpace(RCBase.REF_COUNT, object)) {
+      RCBase.rcSpace.free(object);
+    } else {
+      RCBase.rcloSpace.free(object);
+    }
+  }
+}
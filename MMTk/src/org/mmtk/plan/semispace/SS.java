@@ -13,6 +13,7 @@
 package org.mmtk.plan.semispace;
 
 import org.mmtk.policy.CopySpace;
+import org.mmtk.policy.RegionLargeObjectSpace;
 import org.mmtk.policy.Space;
 import org.mmtk.plan.*;
 import org.mmtk.utility.heap.VMRequest;
@@ -57,6 +58,15 @@ public class SS extends StopTheWorld {
   public static final CopySpace copySpace1 = new CopySpace("ss1", true, VMRequest.discontiguous());
   public static final int SS1 = copySpace1.getDescriptor();
 
+  /**
+   * A large object space for movable objects, whose sparsely occupied
+   * regions may be compacted.  Stacks and non-moving objects remain in
+   * the treadmill large object space.  It is only allocated into if the
+   * {@link org.mmtk.utility.options.RegionLargeObjects} option is set.
+   */
+  public static final RegionLargeObjectSpace rlosSpace = new RegionLargeObjectSpace("rlos", VMRequest.discontiguous());
+  public static final int RLOS = rlosSpace.getDescriptor();
+
   public final Trace ssTrace;
 
   /****************************************************************************
@@ -72,6 +82,7 @@ public class SS extends StopTheWorld {
    *
    */
   public static final int ALLOC_SS = Plan.ALLOC_DEFAULT;
+  public static final int ALLOC_RLOS = StopTheWorld.ALLOCATORS + 1;
 
   public static final int SCAN_SS = 0;
 
@@ -115,6 +126,7 @@ public class SS extends StopTheWorld {
       // prepare each of the collected regions
       copySpace0.prepare(hi);
       copySpace1.prepare(!hi);
+      rlosSpace.prepare(true);
       ssTrace.prepare();
       super.collectionPhase(phaseId);
       return;
@@ -126,6 +138,7 @@ public class SS extends StopTheWorld {
     if (phaseId == SS.RELEASE) {
       // release the collected region
       fromSpace().release();
+      rlosSpace.release(true);
 
       super.collectionPhase(phaseId);
       return;
@@ -156,7 +169,7 @@ public class SS extends StopTheWorld {
    */
   @Override
   public int getPagesUsed() {
-    return super.getPagesUsed() + toSpace().reservedPages();
+    return super.getPagesUsed() + toSpace().reservedPages() + rlosSpace.reservedPages();
   }
 
   /**
@@ -173,7 +186,7 @@ public class SS extends StopTheWorld {
 
   @Override
   public boolean willNeverMove(ObjectReference object) {
-    if (Space.isInSpace(SS0, object) || Space.isInSpace(SS1, object))
+    if (Space.isInSpace(SS0, object) || Space.isInSpace(SS1, object) || Space.isInSpace(RLOS, object))
       return false;
     return super.willNeverMove(object);
   }
@@ -14,8 +14,11 @@ package org.mmtk.plan.semispace;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.CopyLocal;
+import org.mmtk.policy.RegionLargeObjectLocal;
+import org.mmtk.policy.RegionLargeObjectSpace;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.options.Options;
 
 import org.vmmagic.unboxed.*;
 import org.vmmagic.pragma.*;
@@ -42,6 +45,7 @@ public class SSMutator extends StopTheWorldMutator {
    * Instance fields
    */
   protected final CopyLocal ss;
+  protected final RegionLargeObjectLocal rlos;
 
   /****************************************************************************
    *
@@ -53,6 +57,7 @@ public class SSMutator extends StopTheWorldMutator {
    */
   public SSMutator() {
     ss = new CopyLocal();
+    rlos = new RegionLargeObjectLocal(SS.rlosSpace);
   }
 
   /**
@@ -70,6 +75,24 @@ public class SSMutator extends StopTheWorldMutator {
    * Mutator-time allocation
    */
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * If the {@link org.mmtk.utility.options.RegionLargeObjects} option is
+   * set, objects of at least {@link RegionLargeObjectSpace#MIN_OBJECT_BYTES}
+   * that may be moved are allocated into the region-based large object
+   * space.  Large non-moving objects are left to the treadmill large
+   * object space.
+   */
+  @Override
+  public int checkAllocator(int bytes, int align, int allocator) {
+    if (Options.regionLargeObjects.getValue() &&
+        (allocator == SS.ALLOC_DEFAULT || allocator == SS.ALLOC_NON_REFERENCE) &&
+        Allocator.getMaximumAlignedSize(bytes, align) >= RegionLargeObjectSpace.MIN_OBJECT_BYTES)
+      return SS.ALLOC_RLOS;
+    return super.checkAllocator(bytes, align, allocator);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -78,6 +101,8 @@ public class SSMutator extends StopTheWorldMutator {
   public Address alloc(int bytes, int align, int offset, int allocator, int site) {
     if (allocator == SS.ALLOC_SS)
       return ss.alloc(bytes, align, offset);
+    else if (allocator == SS.ALLOC_RLOS)
+      return rlos.alloc(bytes, align, offset);
     else
       return super.alloc(bytes, align, offset, allocator, site);
   }
@@ -87,12 +112,17 @@ public class SSMutator extends StopTheWorldMutator {
   public void postAlloc(ObjectReference object, ObjectReference typeRef,
       int bytes, int allocator) {
     if (allocator == SS.ALLOC_SS) return;
+    if (allocator == SS.ALLOC_RLOS) {
+      SS.rlosSpace.initializeHeader(object);
+      return;
+    }
     super.postAlloc(object, typeRef, bytes, allocator);
   }
 
   @Override
   public Allocator getAllocatorFromSpace(Space space) {
     if (space == SS.copySpace0 || space == SS.copySpace1) return ss;
+    if (space == SS.rlosSpace) return rlos;
     return super.getAllocatorFromSpace(space);
   }
 
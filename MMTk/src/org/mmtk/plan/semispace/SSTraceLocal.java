@@ -52,6 +52,8 @@ public class SSTraceLocal extends TraceLocal {
       return SS.hi ? SS.copySpace0.isLive(object) : true;
     if (Space.isInSpace(SS.SS1, object))
       return SS.hi ? true : SS.copySpace1.isLive(object);
+    if (Space.isInSpace(SS.RLOS, object))
+      return SS.rlosSpace.isLive(object);
     return super.isLive(object);
   }
 
@@ -64,6 +66,8 @@ public class SSTraceLocal extends TraceLocal {
       return SS.copySpace0.traceObject(this, object, SS.ALLOC_SS);
     if (Space.isInSpace(SS.SS1, object))
       return SS.copySpace1.traceObject(this, object, SS.ALLOC_SS);
+    if (Space.isInSpace(SS.RLOS, object))
+      return SS.rlosSpace.traceObject(this, object);
     return super.traceObject(object);
   }
 
@@ -75,6 +79,8 @@ public class SSTraceLocal extends TraceLocal {
    */
   @Override
   public boolean willNotMoveInCurrentCollection(ObjectReference object) {
+    if (Space.isInSpace(SS.RLOS, object))
+      return SS.rlosSpace.willNotMoveThisGC(object);
     return (SS.hi && !Space.isInSpace(SS.SS0, object)) ||
            (!SS.hi && !Space.isInSpace(SS.SS1, object));
   }
@@ -44,6 +44,18 @@ import org.vmmagic.pragma.*;
    * Mutator-time allocation
    */
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * The trace generator only keeps lists of the objects of the allocators
+   * of {@link Plan}, so the region large object space is never used.
+   */
+  @Override
+  public int checkAllocator(int bytes, int align, int allocator) {
+    int result = super.checkAllocator(bytes, align, allocator);
+    return result == GCTrace.ALLOC_RLOS ? GCTrace.ALLOC_SS : result;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -58,7 +70,7 @@ import org.vmmagic.pragma.*;
 
     /* Now have the trace process aware of the new allocation. */
     GCTrace.traceInducedGC = TraceGenerator.MERLIN_ANALYSIS;
-    TraceGenerator.traceAlloc(allocator == GCTrace.ALLOC_IMMORTAL, object, typeRef, bytes);
+    TraceGenerator.traceAlloc(allocator == GCTrace.ALLOC_IMMORTAL || allocator == GCTrace.ALLOC_CLUSTERED_CODE, object, typeRef, bytes);
     GCTrace.traceInducedGC = false;
   }
 
@@ -37,7 +37,9 @@ import org.vmmagic.unboxed.ObjectReference;
  * Each collector thread maintains a private list of the pages that it compacts.
  * If it runs out of work during the calculateForwardingPointers pass, it requests
  * a new region from the global MarkCompactSpace.  Regions compacted by a collector
- * remain local to the collector.
+ * remain local to the collector until the next collection, when they are returned
+ * to the global list so that every collection divides the whole space between
+ * the collector threads afresh.
  *
  * @see MarkCompactSpace
  * @see MarkCompactLocal
@@ -422,6 +424,20 @@ public final class MarkCompactCollector {
 
   /* ***************************************************************************************** */
 
+  /**
+   * Prepare for a collection: return the regions this collector compacted
+   * during the previous collection to the global list.  Otherwise each
+   * collector would start with the share of the heap it happened to get
+   * last time, and the calculate and compact passes would only be as fast
+   * as the collector with the longest list.
+   */
+  public void prepare() {
+    if (!regions.isZero()) {
+      space.append(regions);
+      regions = Address.zero();
+    }
+  }
+
   /**
    * Perform a linear scan through the objects allocated by this bump pointer,
    * calculating where each live object will be post collection.<p>
@@ -439,20 +455,25 @@ public final class MarkCompactCollector {
       regions = space.getNextRegion();
     }
 
-    if (regions.isZero())
+    if (regions.isZero()) {
+      space.recordRegionsScanned(0);
       return;
+    }
 
     fromCursor.init(regions);
     toCursor.init(regions);
 
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(true);
 
+    int regionsScanned = 0;
+
     /* Loop through active regions or until the last region */
     while (fromCursor.isValid()) {
       if (VERBOSE) {
         fromCursor.print();
         toCursor.print();
       }
+      regionsScanned++;
 
       /* Loop through the objects in the current 'from' region */
       while (fromCursor.hasMoreObjects()) {
@@ -494,6 +515,7 @@ public final class MarkCompactCollector {
       }
       fromCursor.advanceToNextForwardableRegion(space);
     }
+    space.recordRegionsScanned(regionsScanned);
   }
 
 
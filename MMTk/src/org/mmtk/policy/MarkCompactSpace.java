@@ -50,6 +50,16 @@ import org.vmmagic.pragma.*;
   /** The list of occupied regions */
   private Address regionList = Address.zero();
 
+  /**
+   * The fewest and the most regions a single collector scanned while
+   * calculating forwarding pointers in the current collection
+   */
+  private int minRegionsScanned;
+  private int maxRegionsScanned;
+
+  /** Have any collectors reported their regions in the current collection? */
+  private boolean regionsScannedReported;
+
   // TODO - maintain a separate list of partially allocated regions
   // for threads to allocate into immediately after a collection.
 
@@ -333,23 +343,68 @@ import org.vmmagic.pragma.*;
   }
 
   /**
-   * Append a region or list of regions to the global list
+   * Add a region or list of regions to the global list.  The order of the
+   * global list does not matter, so the list is spliced in at the head;
+   * only the (usually short) list being added is walked, and that is done
+   * before taking the lock.
    * @param region the region to append
    */
   public void append(Address region) {
+    Address tail = region;
+    while (!BumpPointer.getNextRegion(tail).isZero()) {
+      tail = BumpPointer.getNextRegion(tail);
+    }
     lock.acquire();
     if (MarkCompactCollector.VERBOSE) {
       Log.write("Appending region ", region);
       Log.writeln(" to global list");
     }
-    if (regionList.isZero()) {
-      regionList = region;
-    } else {
-      appendRegion(regionList,region);
+    BumpPointer.setNextRegion(tail, regionList);
+    regionList = region;
+    lock.release();
+  }
+
+  /**
+   * Forget the regions the collectors scanned in the previous collection.
+   */
+  public void resetRegionsScanned() {
+    regionsScannedReported = false;
+    minRegionsScanned = 0;
+    maxRegionsScanned = 0;
+  }
+
+  /**
+   * Record the number of regions a collector scanned while calculating
+   * forwarding pointers.
+   *
+   * @param regions the number of regions the collector scanned
+   */
+  public void recordRegionsScanned(int regions) {
+    lock.acquire();
+    if (!regionsScannedReported || regions < minRegionsScanned) {
+      minRegionsScanned = regions;
     }
+    if (!regionsScannedReported || regions > maxRegionsScanned) {
+      maxRegionsScanned = regions;
+    }
+    regionsScannedReported = true;
     lock.release();
   }
 
+  /**
+   * @return the fewest regions a collector scanned in the last collection
+   */
+  public int getMinRegionsScanned() {
+    return minRegionsScanned;
+  }
+
+  /**
+   * @return the most regions a collector scanned in the last collection
+   */
+  public int getMaxRegionsScanned() {
+    return maxRegionsScanned;
+  }
+
   public static void appendRegion(Address listHead, Address region) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!listHead.isZero());
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!region.isZero());
@@ -14,11 +14,14 @@ package org.mmtk.policy;
 
 import static org.mmtk.utility.Constants.*;
 
+import org.mmtk.plan.Plan;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.utility.heap.*;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.options.MarkSweepMarkBits;
 import org.mmtk.utility.options.EagerCompleteSweep;
+import org.mmtk.utility.options.LazyBlockSweep;
+import org.mmtk.utility.statistics.Timer;
 import org.mmtk.utility.HeaderByte;
 
 import org.mmtk.vm.VM;
@@ -67,6 +70,8 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   public static final int GLOBAL_GC_BITS_REQUIRED = 0;
   public static final int GC_HEADER_WORDS_REQUIRED = 0;
 
+  /** Time spent sweeping blocks within collections */
+  private static final Timer sweepTime = new Timer("msSweep", false, true);
 
   /****************************************************************************
    *
@@ -91,6 +96,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   static {
     Options.markSweepMarkBits = new MarkSweepMarkBits();
     Options.eagerCompleteSweep = new EagerCompleteSweep();
+    Options.lazyBlockSweep = new LazyBlockSweep();
   }
 
   /**
@@ -188,6 +194,10 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
    * @param gcWholeMS True if we are going to collect the whole marksweep space
    */
   public void prepare(boolean gcWholeMS) {
+    sweepTime.start();
+    /* Sweep the blocks that the allocator did not reach */
+    sweepUnsweptBlocks();
+    sweepTime.stop();
     if (HEADER_MARK_BITS && Options.eagerCompleteSweep.getValue()) {
       consumeBlocks();
     } else {
@@ -210,10 +220,24 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
 
   /**
    * A new collection increment has completed.  For the mark-sweep
-   * collector this means we can perform the sweep phase.
- */
+   * collector this means we can perform the sweep phase.  If lazy block
+   * sweeping is enabled, the blocks are instead swept by the allocator,
+   * on demand for the size class it is allocating into and a few at a
+   * time for the others, and only those still unswept at the start of
+   * the next collection are swept in its pause.  An emergency
+   * collection always sweeps eagerly, because the plan only sees the
+   * pages of dead blocks once they are released.
+   * The first collection also sweeps eagerly, so that the dead pages of
+   * later deferred sweeps can be estimated for heap sizing.
+   */
   public void release() {
-    sweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    sweepTime.start();
+    if (Options.lazyBlockSweep.getValue() && !Plan.isEmergencyCollection() && hasSweepHistory()) {
+      deferSweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    } else {
+      sweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    }
+    sweepTime.stop();
     inMSCollection = false;
   }
 
@@ -0,0 +1,97 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy;
+
+import org.mmtk.utility.alloc.Allocator;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * Each instance of this class provides unsynchronized access to a
+ * region-based large object space.  Instances must not be shared
+ * across truly concurrent threads (CPUs).  All allocation is performed
+ * by the shared {@link RegionLargeObjectSpace}, which is the point of
+ * global synchronization.
+ */
+@Uninterruptible
+public final class RegionLargeObjectLocal extends Allocator {
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  private final RegionLargeObjectSpace space;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   *
+   * @param space The region-based large object space to which this
+   * thread instance is bound.
+   */
+  public RegionLargeObjectLocal(RegionLargeObjectSpace space) {
+    this.space = space;
+  }
+
+  @Override
+  protected RegionLargeObjectSpace getSpace() {
+    return space;
+  }
+
+  /****************************************************************************
+   *
+   * Allocation
+   */
+
+  /**
+   * Allocate space for an object
+   *
+   * @param bytes The number of bytes allocated
+   * @param align The requested alignment.
+   * @param offset The alignment offset.
+   * @return The address of the first byte of the allocated cell Will
+   * not return zero.
+   */
+  @NoInline
+  public Address alloc(int bytes, int align, int offset) {
+    Address cell = allocSlow(bytes, align, offset);
+    Address result = alignAllocation(cell, align, offset);
+    RegionLargeObjectSpace.setRegion(cell, result);
+    return result;
+  }
+
+  /**
+   * Allocate a slot in a region large enough for the object and its
+   * cell header.  This routine returns zeroed memory.
+   *
+   * @param bytes The required size of this space in bytes.
+   * @param align The requested alignment.
+   * @param offset The alignment offset.
+   * @return The address of the first byte of the slot after its cell
+   * header.
+   */
+  @Override
+  protected Address allocSlowOnce(int bytes, int align, int offset) {
+    int maxbytes = getMaximumAlignedSize(bytes + RegionLargeObjectSpace.CELL_HEADER_BYTES, align);
+    return space.allocSlot(maxbytes);
+  }
+}
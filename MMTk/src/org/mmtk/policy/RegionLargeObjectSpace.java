@@ -0,0 +1,763 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.ForwardingWord;
+import org.mmtk.utility.HeaderByte;
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.heap.FreeListPageResource;
+import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.LargeObjectCompaction;
+import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.RegionLargeObjects;
+
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * Each instance of this class corresponds to one region-based large
+ * object space.<p>
+ *
+ * Object sizes are rounded up to one of a set of page-granular size
+ * classes, and objects are allocated into the slots of regions.  A
+ * region is a single run of pages from the page resource, holding up to
+ * 32 slots of one size class.  Regions are sized by demand: the first
+ * region of a size class holds only the object that requested it, and
+ * each new region holds as many slots as the size class already has, up
+ * to about {@link #TARGET_REGION_PAGES} pages.  Objects too large
+ * for any size class are given a region of their own.  Liveness is
+ * recorded in a bitmap in the region header.  A region in which no
+ * object survives a collection is returned to the page resource with a
+ * single release, and the free slots of surviving regions are reused by
+ * later allocations of the same size class.<p>
+ *
+ * If the {@link LargeObjectCompaction} option is set, regions that are
+ * at most half occupied are evacuated into the free slots of other
+ * regions of the same size class during full heap collections.  Objects
+ * in this space may therefore move, and a plan that uses this space must
+ * overwrite references during its trace.<p>
+ *
+ * Plans only allocate into this space if the {@link RegionLargeObjects}
+ * option is set.  Otherwise the space stays empty and large objects are
+ * allocated into the treadmill large object space.<p>
+ *
+ * Each slot begins with a small cell header.  In the first slot of a
+ * region the cell header holds the region's metadata, so a region
+ * occupies exactly the pages of its slots; in every slot the word
+ * immediately before the start of the object holds the address of the
+ * region that contains it.<p>
+ *
+ * Each of the instance methods of this class may be called by any
+ * thread (i.e. synchronization must be explicit in any instance or
+ * class method).
+ */
+@Uninterruptible
+public final class RegionLargeObjectSpace extends Space {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /**
+   * log2 of the number of size classes between successive powers of two
+   * pages, bounding internal fragmentation at 25%
+   */
+  private static final int LOG_CLASSES_PER_DOUBLING = 2;
+  /** Sizes up to this many pages have a size class for every page count */
+  private static final int EXACT_CLASS_PAGES = 1 << (LOG_CLASSES_PER_DOUBLING + 1);
+  /** Plans allocate smaller objects elsewhere */
+  public static final int MIN_OBJECT_BYTES = BYTES_IN_PAGE << 1;
+  /** Objects larger than this many pages are given a region of their own */
+  private static final int MAX_SIZE_CLASS_PAGES = 256;
+  private static final int SIZE_CLASSES = getSizeClass(MAX_SIZE_CLASS_PAGES) + 1;
+  /** The most pages of slots put in a region of a size class */
+  private static final int TARGET_REGION_PAGES = 256;
+  /** The number of slots that can be tracked by a region's bitmaps */
+  private static final int MAX_SLOTS_PER_REGION = BITS_IN_INT;
+  /** The size class of regions holding a single oversized object */
+  private static final int OVERSIZED = -1;
+
+  /* Region header layout */
+  private static final Offset NEXT_OFFSET = Offset.zero();
+  private static final Offset SLOT_BYTES_OFFSET = NEXT_OFFSET.plus(BYTES_IN_ADDRESS);
+  private static final Offset SLOTS_OFFSET = SLOT_BYTES_OFFSET.plus(BYTES_IN_INT);
+  private static final Offset SIZE_CLASS_OFFSET = SLOTS_OFFSET.plus(BYTES_IN_INT);
+  private static final Offset IN_USE_OFFSET = SIZE_CLASS_OFFSET.plus(BYTES_IN_INT);
+  private static final Offset LIVE_OFFSET = IN_USE_OFFSET.plus(BYTES_IN_INT);
+  private static final Offset EVACUATE_OFFSET = LIVE_OFFSET.plus(BYTES_IN_INT);
+  private static final int REGION_HEADER_BYTES = 32;
+
+  /**
+   * Bytes required in each slot ahead of the object: room for the region
+   * header, which only the first slot of a region uses, followed by the
+   * address of the region
+   */
+  public static final int CELL_HEADER_BYTES = REGION_HEADER_BYTES + BYTES_IN_ADDRESS;
+
+  static {
+    Options.largeObjectCompaction = new LargeObjectCompaction();
+    Options.regionLargeObjects = new RegionLargeObjects();
+  }
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /** Lock protecting the lists of regions and their in-use bitmaps */
+  private final Lock lock = VM.newLock(getName() + "regions");
+  /** Regions of each size class with at least one free slot */
+  private final AddressArray availableRegions = AddressArray.create(SIZE_CLASSES);
+  /** Regions of each size class with no free slots */
+  private final AddressArray fullRegions = AddressArray.create(SIZE_CLASSES);
+  /** Regions of each size class being evacuated by the current collection */
+  private final AddressArray evacuatingRegions = AddressArray.create(SIZE_CLASSES);
+  /** The number of slots in the regions of each size class */
+  private final int[] classSlots = new int[SIZE_CLASSES];
+  /** Regions holding a single object larger than any size class */
+  private Address oversizedRegions = Address.zero();
+  /** Is this space being collected? */
+  private boolean inCollection;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * The caller specifies the region of virtual memory to be used for
+   * this space.  If this region conflicts with an existing space,
+   * then the constructor will fail.
+   *
+   * @param name The name of this space (used when printing error messages etc)
+   * @param vmRequest An object describing the virtual memory requested.
+   */
+  public RegionLargeObjectSpace(String name, VMRequest vmRequest) {
+    super(name, true, false, true, vmRequest);
+    if (vmRequest.isDiscontiguous()) {
+      pr = new FreeListPageResource(this, 0);
+    } else {
+      pr = new FreeListPageResource(this, start, extent);
+    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(EVACUATE_OFFSET.plus(BYTES_IN_INT).toInt() <= REGION_HEADER_BYTES);
+  }
+
+  /****************************************************************************
+   *
+   * Size classes
+   */
+
+  /**
+   * Return the size class for a slot of a given number of pages.  Every
+   * page count up to {@link #EXACT_CLASS_PAGES} has its own class, after
+   * which each doubling of the page count is divided into
+   * 2<sup>{@link #LOG_CLASSES_PER_DOUBLING}</sup> classes.
+   *
+   * @param pages The number of pages required, at most {@link #MAX_SIZE_CLASS_PAGES}
+   * @return The size class
+   */
+  private static int getSizeClass(int pages) {
+    if (pages <= EXACT_CLASS_PAGES) return pages - 1;
+    int log = 0;
+    while ((pages - 1) >>> (log + 1) != 0) log++;
+    int shift = log - LOG_CLASSES_PER_DOUBLING;
+    int index = (pages - 1 - (1 << log)) >>> shift;
+    return EXACT_CLASS_PAGES + ((log - LOG_CLASSES_PER_DOUBLING - 1) << LOG_CLASSES_PER_DOUBLING) + index;
+  }
+
+  /**
+   * @param sizeClass A size class
+   * @return The number of pages in each slot of the given size class
+   */
+  private static int getSlotPages(int sizeClass) {
+    if (sizeClass < EXACT_CLASS_PAGES) return sizeClass + 1;
+    int k = sizeClass - EXACT_CLASS_PAGES;
+    int log = LOG_CLASSES_PER_DOUBLING + 1 + (k >>> LOG_CLASSES_PER_DOUBLING);
+    int index = k & ((1 << LOG_CLASSES_PER_DOUBLING) - 1);
+    return (1 << log) + ((index + 1) << (log - LOG_CLASSES_PER_DOUBLING));
+  }
+
+  /**
+   * @param sizeClass A size class
+   * @return The most slots in a region of the given size class
+   */
+  private static int getMaxSlotsPerRegion(int sizeClass) {
+    int slots = TARGET_REGION_PAGES / getSlotPages(sizeClass);
+    if (slots > MAX_SLOTS_PER_REGION) return MAX_SLOTS_PER_REGION;
+    return slots < 1 ? 1 : slots;
+  }
+
+  /**
+   * Return the number of slots in a new region of a size class.  This is
+   * the number of slots the size class already has, so that its capacity
+   * doubles with each region, starting from a region that holds just the
+   * requesting object.  The caller must hold the lock.
+   *
+   * @param sizeClass A size class
+   * @return The number of slots in the next region of the given size class
+   */
+  private int getSlotsForNewRegion(int sizeClass) {
+    int slots = classSlots[sizeClass];
+    int max = getMaxSlotsPerRegion(sizeClass);
+    if (slots > max) return max;
+    return slots < 1 ? 1 : slots;
+  }
+
+  /****************************************************************************
+   *
+   * Allocation
+   */
+
+  /**
+   * Allocate a slot able to hold the given number of bytes.  This may
+   * only be called by mutators, as it may acquire pages and so trigger
+   * a collection.
+   *
+   * @param bytes The number of bytes required, including
+   * {@link #CELL_HEADER_BYTES} and any alignment padding
+   * @return The first address in the slot after the cell header, or zero
+   * if the allocation failed
+   */
+  public Address allocSlot(int bytes) {
+    int pages = Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(bytes));
+    if (pages > MAX_SIZE_CLASS_PAGES) {
+      return allocOversized(bytes);
+    }
+    int sizeClass = getSizeClass(pages);
+    lock.acquire();
+    Address cell = takeFreeSlot(sizeClass);
+    lock.release();
+    if (!cell.isZero()) {
+      /* A reused slot must be zeroed, as fresh pages would have been */
+      int slotBytes = getRegion(cell).loadInt(SLOT_BYTES_OFFSET);
+      VM.memory.zero(false, cell, Extent.fromIntZeroExtend(slotBytes - CELL_HEADER_BYTES));
+      return cell;
+    }
+    return allocRegion(sizeClass);
+  }
+
+  /**
+   * Allocate a slot during a collection, into which an object that is
+   * being evacuated can be copied.  No pages are acquired, so this fails
+   * if there are no free slots of the appropriate size class.
+   *
+   * @param bytes The number of bytes required, including
+   * {@link #CELL_HEADER_BYTES} and any alignment padding
+   * @return The first address in the slot after the cell header, or zero
+   * if there is no free slot
+   */
+  private Address allocSlotForCopy(int bytes) {
+    int pages = Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(bytes));
+    if (pages > MAX_SIZE_CLASS_PAGES) return Address.zero();
+    lock.acquire();
+    Address cell = takeFreeSlot(getSizeClass(pages));
+    lock.release();
+    return cell;
+  }
+
+  /**
+   * Take a free slot from the first available region of a size class,
+   * marking it as in use and live.  The caller must hold the lock.
+   *
+   * @param sizeClass The size class
+   * @return The first address in the slot after the cell header, or zero
+   * if no region of this size class has a free slot
+   */
+  private Address takeFreeSlot(int sizeClass) {
+    Address region = availableRegions.get(sizeClass);
+    if (region.isZero()) return Address.zero();
+    int slots = region.loadInt(SLOTS_OFFSET);
+    int inUse = region.loadInt(IN_USE_OFFSET);
+    int slot = 0;
+    while ((inUse & (1 << slot)) != 0) slot++;
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(slot < slots);
+    inUse |= 1 << slot;
+    region.store(inUse, IN_USE_OFFSET);
+    setLiveBit(region, slot);
+    if (inUse == getSlotMask(slots)) {
+      /* The region is now full */
+      availableRegions.set(sizeClass, getNext(region));
+      setNext(region, fullRegions.get(sizeClass));
+      fullRegions.set(sizeClass, region);
+    }
+    return initializeSlot(region, slot);
+  }
+
+  /**
+   * Acquire and initialize a new region for a size class, returning its
+   * first slot.
+   *
+   * @param sizeClass The size class
+   * @return The first address in the first slot after the cell header, or
+   * zero if the allocation failed
+   */
+  private Address allocRegion(int sizeClass) {
+    lock.acquire();
+    int slots = getSlotsForNewRegion(sizeClass);
+    lock.release();
+    int slotBytes = getSlotPages(sizeClass) << LOG_BYTES_IN_PAGE;
+    Address region = acquire(Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(slots * slotBytes)));
+    if (region.isZero()) return region;
+    initializeRegion(region, sizeClass, slots, slotBytes);
+    lock.acquire();
+    classSlots[sizeClass] += slots;
+    if (slots == 1) {
+      setNext(region, fullRegions.get(sizeClass));
+      fullRegions.set(sizeClass, region);
+    } else {
+      setNext(region, availableRegions.get(sizeClass));
+      availableRegions.set(sizeClass, region);
+    }
+    lock.release();
+    return initializeSlot(region, 0);
+  }
+
+  /**
+   * Acquire a region for a single object that is too large for any size
+   * class.
+   *
+   * @param bytes The number of bytes required
+   * @return The first address in the region's slot after the cell header,
+   * or zero if the allocation failed
+   */
+  private Address allocOversized(int bytes) {
+    Address region = acquire(Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(bytes)));
+    if (region.isZero()) return region;
+    initializeRegion(region, OVERSIZED, 1, bytes);
+    lock.acquire();
+    setNext(region, oversizedRegions);
+    oversizedRegions = region;
+    lock.release();
+    return initializeSlot(region, 0);
+  }
+
+  /**
+   * Initialize the header of a newly acquired region, with its first
+   * slot in use.
+   *
+   * @param region The region
+   * @param sizeClass The size class of the region
+   * @param slots The number of slots in the region
+   * @param slotBytes The number of bytes in each slot
+   */
+  private void initializeRegion(Address region, int sizeClass, int slots, int slotBytes) {
+    setNext(region, Address.zero());
+    region.store(slotBytes, SLOT_BYTES_OFFSET);
+    region.store(slots, SLOTS_OFFSET);
+    region.store(sizeClass, SIZE_CLASS_OFFSET);
+    region.store(1, IN_USE_OFFSET);
+    region.store(1, LIVE_OFFSET);
+    region.store(0, EVACUATE_OFFSET);
+  }
+
+  /**
+   * Record the region in the cell header of a slot.
+   *
+   * @param region The region
+   * @param slot The index of the slot within the region
+   * @return The first address in the slot after the cell header
+   */
+  private static Address initializeSlot(Address region, int slot) {
+    Address cell = region.plus(slot * region.loadInt(SLOT_BYTES_OFFSET) + CELL_HEADER_BYTES);
+    cell.minus(BYTES_IN_ADDRESS).store(region);
+    return cell;
+  }
+
+  /**
+   * Record the region containing a newly allocated object in the word
+   * before the start of the object.
+   *
+   * @param cell The address returned by {@link #allocSlot(int)}
+   * @param start The start of the object, at or above {@code cell}
+   */
+  @Inline
+  public static void setRegion(Address cell, Address start) {
+    if (start.NE(cell)) start.minus(BYTES_IN_ADDRESS).store(cell.minus(BYTES_IN_ADDRESS).loadAddress());
+  }
+
+  /**
+   * Initialize the object header post-allocation.  Liveness is kept in
+   * the region, so only the logged bit needs to be set, if the plan
+   * uses one.
+   *
+   * @param object The newly allocated object instance whose header we are initializing
+   */
+  public void initializeHeader(ObjectReference object) {
+    if (HeaderByte.NEEDS_UNLOGGED_BIT) HeaderByte.markAsUnlogged(object);
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * Prepare for a new collection increment.  If the collection is a full
+   * heap collection, clear the live bits of all regions, and if
+   * compaction is enabled, select the regions to evacuate.
+   *
+   * @param fullHeap whether the collection will be full heap
+   */
+  public void prepare(boolean fullHeap) {
+    inCollection = fullHeap;
+    if (!fullHeap) return;
+    for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+      clearLiveBits(availableRegions.get(sizeClass));
+      clearLiveBits(fullRegions.get(sizeClass));
+      if (Options.largeObjectCompaction.getValue()) {
+        selectEvacuationRegions(sizeClass);
+      }
+    }
+    clearLiveBits(oversizedRegions);
+  }
+
+  /**
+   * A new collection increment has completed.  Release regions in which
+   * no object survived, and make the slots of dead objects in the
+   * remaining regions available for allocation.
+   *
+   * @param fullHeap whether the collection was full heap
+   */
+  public void release(boolean fullHeap) {
+    if (!inCollection) return;
+    for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+      Address full = fullRegions.get(sizeClass);
+      fullRegions.set(sizeClass, Address.zero());
+      Address available = sweepRegions(availableRegions.get(sizeClass), Address.zero(), sizeClass);
+      available = sweepRegions(full, available, sizeClass);
+      available = sweepRegions(evacuatingRegions.get(sizeClass), available, sizeClass);
+      availableRegions.set(sizeClass, available);
+      evacuatingRegions.set(sizeClass, Address.zero());
+    }
+    Address surviving = Address.zero();
+    Address region = oversizedRegions;
+    while (!region.isZero()) {
+      Address next = getNext(region);
+      if (region.loadInt(LIVE_OFFSET) == 0) {
+        release(region);
+      } else {
+        setNext(region, surviving);
+        surviving = region;
+      }
+      region = next;
+    }
+    oversizedRegions = surviving;
+    inCollection = false;
+  }
+
+  /**
+   * Sweep a list of regions of one size class.  Regions with no live
+   * objects are released; full regions are prepended to the full list and
+   * the remainder are prepended to the given available list.  The list
+   * being swept must not be the full list.
+   *
+   * @param region The first region of the list to sweep
+   * @param available The list of available regions to add to
+   * @param sizeClass The size class of the regions
+   * @return The new head of the list of available regions
+   */
+  private Address sweepRegions(Address region, Address available, int sizeClass) {
+    Address full = fullRegions.get(sizeClass);
+    while (!region.isZero()) {
+      Address next = getNext(region);
+      int live = region.loadInt(LIVE_OFFSET);
+      if (live == 0) {
+        classSlots[sizeClass] -= region.loadInt(SLOTS_OFFSET);
+        release(region);
+      } else {
+        region.store(live, IN_USE_OFFSET);
+        region.store(0, EVACUATE_OFFSET);
+        if (live == getSlotMask(region.loadInt(SLOTS_OFFSET))) {
+          setNext(region, full);
+          full = region;
+        } else {
+          setNext(region, available);
+          available = region;
+        }
+      }
+      region = next;
+    }
+    fullRegions.set(sizeClass, full);
+    return available;
+  }
+
+  /**
+   * Choose the regions of a size class that will be evacuated.  A region
+   * is chosen if at most half of its slots are in use and the free slots
+   * of the regions that are not being evacuated can hold all of its
+   * objects.
+   *
+   * @param sizeClass The size class
+   */
+  private void selectEvacuationRegions(int sizeClass) {
+    int reserve = 0;
+    for (Address region = availableRegions.get(sizeClass); !region.isZero(); region = getNext(region)) {
+      reserve += region.loadInt(SLOTS_OFFSET) - countBits(region.loadInt(IN_USE_OFFSET));
+    }
+    Address prev = Address.zero();
+    Address region = availableRegions.get(sizeClass);
+    while (!region.isZero()) {
+      Address next = getNext(region);
+      int slots = region.loadInt(SLOTS_OFFSET);
+      int used = countBits(region.loadInt(IN_USE_OFFSET));
+      int free = slots - used;
+      if (used <= (slots >>> 1) && used <= reserve - free) {
+        reserve -= free + used;
+        if (prev.isZero()) {
+          availableRegions.set(sizeClass, next);
+        } else {
+          setNext(prev, next);
+        }
+        region.store(1, EVACUATE_OFFSET);
+        setNext(region, evacuatingRegions.get(sizeClass));
+        evacuatingRegions.set(sizeClass, region);
+      } else {
+        prev = region;
+      }
+      region = next;
+    }
+  }
+
+  /**
+   * Release a region, returning all of its pages to the page resource.
+   *
+   * @param start The address of the region
+   */
+  @Override
+  @Inline
+  public void release(Address start) {
+    ((FreeListPageResource) pr).releasePages(start);
+  }
+
+  /****************************************************************************
+   *
+   * Object processing and tracing
+   */
+
+  /**
+   * Trace a reference to an object.  If the object is in a region that
+   * is being evacuated, it is copied to a free slot of another region if
+   * possible.  Otherwise, if the object is not already marked, it is
+   * marked and enqueued for subsequent processing.
+   *
+   * @param trace The trace being conducted.
+   * @param object The object to be traced.
+   * @return The object, which may have been moved.
+   */
+  @Override
+  @Inline
+  public ObjectReference traceObject(TransitiveClosure trace, ObjectReference object) {
+    if (!inCollection) return object;
+    Address region = getRegion(object);
+    if (region.loadInt(EVACUATE_OFFSET) != 0) {
+      return evacuateObject(trace, object, region);
+    }
+    if (testAndMark(object, region)) {
+      trace.processNode(object);
+    }
+    return object;
+  }
+
+  /**
+   * Copy an object out of a region that is being evacuated, or mark it in
+   * place if there is no free slot to copy it to.
+   *
+   * @param trace The trace being conducted.
+   * @param object The object to be evacuated.
+   * @param region The region containing the object.
+   * @return The forwarded object, or the original if it was not moved.
+   */
+  @NoInline
+  private ObjectReference evacuateObject(TransitiveClosure trace, ObjectReference object, Address region) {
+    /* Race to be the forwarder */
+    Word priorStatusWord = ForwardingWord.attemptToForward(object);
+    if (ForwardingWord.stateIsForwardedOrBeingForwarded(priorStatusWord)) {
+      return ForwardingWord.spinAndGetForwardedObject(object, priorStatusWord);
+    }
+    int bytes = VM.objectModel.getSizeWhenCopied(object);
+    int align = VM.objectModel.getAlignWhenCopied(object);
+    int offset = VM.objectModel.getAlignOffsetWhenCopied(object);
+    Address cell = allocSlotForCopy(Allocator.getMaximumAlignedSize(bytes + CELL_HEADER_BYTES, align));
+    if (cell.isZero()) {
+      /* No room, so mark the object in place */
+      VM.objectModel.writeAvailableBitsWord(object, priorStatusWord);
+      if (testAndMark(object, region)) {
+        trace.processNode(object);
+      }
+      return object;
+    }
+    Address start = Allocator.alignAllocationNoFill(cell, align, offset);
+    setRegion(cell, start);
+    ObjectReference newObject = VM.objectModel.getReferenceWhenCopiedTo(object, start);
+    VM.objectModel.copyTo(object, newObject, start);
+    ForwardingWord.clearForwardingBits(newObject);
+    ForwardingWord.setForwardingPointer(object, newObject);
+    trace.processNode(newObject);
+    return newObject;
+  }
+
+  /**
+   * Mark an object as unlogged once its remembered set entry has been
+   * processed.  An object in a region that is being evacuated may be
+   * copied by another collector thread at the same time, so its status
+   * word is locked with the forwarding protocol while the bit is set.
+   * If the object has already been copied, its copy is marked instead,
+   * since the status word of the original holds the forwarding pointer.
+   *
+   * @param object The object to be marked as unlogged
+   */
+  public void markAsUnlogged(ObjectReference object) {
+    if (willNotMoveThisGC(object)) {
+      HeaderByte.markAsUnlogged(object);
+      return;
+    }
+    while (true) {
+      Word priorStatusWord = ForwardingWord.attemptToForward(object);
+      if (!ForwardingWord.stateIsForwardedOrBeingForwarded(priorStatusWord)) {
+        VM.objectModel.writeAvailableBitsWord(object, priorStatusWord.or(Word.fromIntZeroExtend(HeaderByte.UNLOGGED_BIT & 0xFF)));
+        return;
+      }
+      ObjectReference forwarded = ForwardingWord.spinAndGetForwardedObject(object, priorStatusWord);
+      if (forwarded.toAddress().NE(object.toAddress())) {
+        HeaderByte.markAsUnlogged(forwarded);
+        return;
+      }
+      /* The object was marked in place by another thread, so try again */
+    }
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if this object is known to be live (i.e. it is
+   * marked, or has been forwarded)
+   */
+  @Override
+  @Inline
+  public boolean isLive(ObjectReference object) {
+    Address region = getRegion(object);
+    if (inCollection && region.loadInt(EVACUATE_OFFSET) != 0 && ForwardingWord.isForwarded(object)) {
+      return true;
+    }
+    return (region.loadInt(LIVE_OFFSET) & (1 << getSlotIndex(object, region))) != 0;
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if the object will not move during the current
+   * collection
+   */
+  @Inline
+  public boolean willNotMoveThisGC(ObjectReference object) {
+    return !inCollection || getRegion(object).loadInt(EVACUATE_OFFSET) == 0;
+  }
+
+  /**
+   * Atomically set the live bit of the slot holding an object.
+   *
+   * @param object The object to be marked
+   * @param region The region containing the object
+   * @return {@code true} if the object was not already marked
+   */
+  @Inline
+  private static boolean testAndMark(ObjectReference object, Address region) {
+    return setLiveBit(region, getSlotIndex(object, region));
+  }
+
+  /**
+   * Atomically set a live bit in a region.
+   *
+   * @param region The region
+   * @param slot The index of the slot
+   * @return {@code true} if the bit was not already set
+   */
+  @Inline
+  private static boolean setLiveBit(Address region, int slot) {
+    int bit = 1 << slot;
+    int oldValue;
+    do {
+      oldValue = region.prepareInt(LIVE_OFFSET);
+      if ((oldValue & bit) != 0) return false;
+    } while (!region.attempt(oldValue, oldValue | bit, LIVE_OFFSET));
+    return true;
+  }
+
+  /****************************************************************************
+   *
+   * Region metadata
+   */
+
+  /**
+   * @param object An object in this space
+   * @return The region containing the object
+   */
+  @Inline
+  private static Address getRegion(ObjectReference object) {
+    return getRegion(VM.objectModel.objectStartRef(object));
+  }
+
+  /**
+   * @param start The start of an object, or a cell returned by
+   * {@link #allocSlot(int)}
+   * @return The region recorded in the word before {@code start}
+   */
+  @Inline
+  private static Address getRegion(Address start) {
+    return start.minus(BYTES_IN_ADDRESS).loadAddress();
+  }
+
+  /**
+   * @param object An object
+   * @param region The region containing the object
+   * @return The index of the slot holding the object
+   */
+  @Inline
+  private static int getSlotIndex(ObjectReference object, Address region) {
+    return VM.objectModel.objectStartRef(object).diff(region).toInt() / region.loadInt(SLOT_BYTES_OFFSET);
+  }
+
+  private static Address getNext(Address region) {
+    return region.loadAddress(NEXT_OFFSET);
+  }
+
+  private static void setNext(Address region, Address next) {
+    region.store(next, NEXT_OFFSET);
+  }
+
+  private static void clearLiveBits(Address region) {
+    while (!region.isZero()) {
+      region.store(0, LIVE_OFFSET);
+      region = getNext(region);
+    }
+  }
+
+  private static int getSlotMask(int slots) {
+    return slots == BITS_IN_INT ? -1 : (1 << slots) - 1;
+  }
+
+  private static int countBits(int value) {
+    int count = 0;
+    while (value != 0) {
+      value &= value - 1;
+      count++;
+    }
+    return count;
+  }
+}
@@ -21,6 +21,7 @@ import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.Memory;
+import org.mmtk.utility.statistics.EventCounter;
 
 import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
@@ -48,6 +49,13 @@ public abstract class SegregatedFreeListSpace extends Space {
   /**
    *
    */
+  private static final EventCounter sweptBlocks = new EventCounter("sweptBlocks");
+  private static final EventCounter lazySweptBlocks = new EventCounter("lazySweptBlocks");
+  private static final EventCounter pauseSweptBlocks = new EventCounter("pauseSweptBlocks");
+  /** The most blocks of other size classes swept before a size class expands */
+  private static final int MAX_BLOCKS_SWEPT_PER_EXPANSION = 16;
+  /** The blocks of other size classes swept ahead each time a block is taken */
+  private static final int SWEEP_AHEAD_BLOCKS = 2;
   private static final boolean COMPACT_SIZE_CLASSES = false;
   protected static final int MIN_CELLS = 6;
   protected static final int MAX_CELLS = 99; // (1<<(INUSE_BITS-1))-1;
@@ -86,6 +94,25 @@ public abstract class SegregatedFreeListSpace extends Space {
   protected final AddressArray consumedBlockHead = AddressArray.create(sizeClassCount());
   protected final AddressArray flushedBlockHead = AddressArray.create(sizeClassCount());
   protected final AddressArray availableBlockHead = AddressArray.create(sizeClassCount());
+  protected final AddressArray unsweptBlockHead = AddressArray.create(sizeClassCount());
+
+  /** Should block marks be cleared when unswept blocks are swept? */
+  private boolean unsweptClearMarks;
+
+  /** The pages of the blocks on the unswept lists */
+  private int unsweptPages;
+
+  /** The size class from which other size classes sweep unswept blocks */
+  private int sweepCursor;
+
+  /** The pages of the blocks swept since the last collection */
+  private int sweptPages;
+
+  /** The pages of the blocks released since the last collection */
+  private int releasedPages;
+
+  /** The fraction of swept pages released by the last complete sweep, or -1 */
+  private float releasedFraction = -1;
 
   private final int[] cellSize = new int[sizeClassCount()];
   private final byte[] blockSizeClass = new byte[sizeClassCount()];
@@ -176,15 +203,10 @@ public abstract class SegregatedFreeListSpace extends Space {
    * @return The address of the block
    */
   public Address getAllocationBlock(int sizeClass, AddressArray freeList) {
-    lock.acquire();
+    /* Pace the sweep of the other size classes with allocation */
+    sweepOtherUnsweptBlocks(sizeClass, SWEEP_AHEAD_BLOCKS, Integer.MAX_VALUE);
     Address block;
-    while (!(block = availableBlockHead.get(sizeClass)).isZero()) {
-      availableBlockHead.set(sizeClass, BlockAllocator.getNext(block));
-      lock.release();
-
-      /* This block is no longer on any list */
-      BlockAllocator.setNext(block, Address.zero());
-
+    while (!(block = takeAllocationBlock(sizeClass)).isZero()) {
       /* Can we allocate into this block? */
       Address cell = advanceToBlock(block, sizeClass);
       if (!cell.isZero()) {
@@ -196,11 +218,118 @@ public abstract class SegregatedFreeListSpace extends Space {
       lock.acquire();
       BlockAllocator.setNext(block, consumedBlockHead.get(sizeClass));
       consumedBlockHead.set(sizeClass, block);
+      lock.release();
     }
-    lock.release();
+    /* Reclaim dead blocks of other size classes before asking for pages */
+    sweepOtherUnsweptBlocks(sizeClass, MAX_BLOCKS_SWEPT_PER_EXPANSION, pagesInBlock(sizeClass));
     return expandSizeClass(sizeClass, freeList);
   }
 
+  /**
+   * Sweep some of the blocks that the last collection left unswept in
+   * size classes other than the given one.  Blocks with no live cells are
+   * released to the block allocator, so a size class that has run dry
+   * can expand into them rather than acquiring new pages and possibly
+   * triggering a collection while reclaimable blocks remain.  Blocks
+   * with live cells are made available to their own size class.<p>
+   *
+   * This is called each time a block is taken, sweeping
+   * {@link #SWEEP_AHEAD_BLOCKS} blocks, so that the sweep of the size
+   * classes that are no longer allocated into proceeds with allocation
+   * rather than being left to the next collection.  It is called again
+   * before a size class expands, sweeping at most
+   * {@link #MAX_BLOCKS_SWEPT_PER_EXPANSION} blocks and stopping once a
+   * block's worth of pages for the expanding size class has been
+   * released.  Only the blocks still unswept when the next collection
+   * starts are swept in the pause.
+   *
+   * @param sizeClass The size class that is taking a block
+   * @param maxBlocks The most blocks to sweep
+   * @param wantedPages Stop once this many pages have been released
+   */
+  private void sweepOtherUnsweptBlocks(int sizeClass, int maxBlocks, int wantedPages) {
+    int freedPages = 0;
+    for (int i = 0; i < maxBlocks && freedPages < wantedPages; i++) {
+      lock.acquire();
+      int other = nextUnsweptSizeClass(sizeClass);
+      if (other < 0) {
+        lock.release();
+        return;
+      }
+      Address block = unsweptBlockHead.get(other);
+      unsweptBlockHead.set(other, BlockAllocator.getNext(block));
+      unsweptPages -= pagesInBlock(other);
+      lock.release();
+
+      BlockAllocator.setNext(block, Address.zero());
+      lazySweptBlocks.inc();
+      if (sweepBlock(block, other, unsweptClearMarks)) {
+        lock.acquire();
+        BlockAllocator.setNext(block, availableBlockHead.get(other));
+        availableBlockHead.set(other, block);
+        lock.release();
+      } else {
+        freedPages += pagesInBlock(other);
+      }
+    }
+  }
+
+  /**
+   * Find a size class other than the given one that has unswept blocks,
+   * starting from the size class last swept.  The caller must hold the
+   * lock.
+   *
+   * @param sizeClass The size class to skip
+   * @return The size class, or -1 if no other size class has unswept blocks
+   */
+  private int nextUnsweptSizeClass(int sizeClass) {
+    for (int i = 0; i < sizeClassCount(); i++) {
+      int other = (sweepCursor + i) % sizeClassCount();
+      if (other != sizeClass && !unsweptBlockHead.get(other).isZero()) {
+        sweepCursor = other;
+        return other;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Take the next block of a size class that may contain free cells.
+   * Blocks that have already been swept are preferred.  Otherwise
+   * blocks left unswept by the last collection are swept on demand,
+   * releasing those that contain no live cells.
+   *
+   * @param sizeClass The size class
+   * @return A block that is not on any list, or zero if there are no
+   * more such blocks
+   */
+  private Address takeAllocationBlock(int sizeClass) {
+    while (true) {
+      lock.acquire();
+      Address block = availableBlockHead.get(sizeClass);
+      boolean swept = !block.isZero();
+      if (swept) {
+        availableBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+      } else {
+        block = unsweptBlockHead.get(sizeClass);
+        if (block.isZero()) {
+          lock.release();
+          return Address.zero();
+        }
+        unsweptBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+        unsweptPages -= pagesInBlock(sizeClass);
+      }
+      lock.release();
+
+      /* This block is no longer on any list */
+      BlockAllocator.setNext(block, Address.zero());
+      if (swept) return block;
+
+      lazySweptBlocks.inc();
+      if (sweepBlock(block, sizeClass, unsweptClearMarks)) return block;
+    }
+  }
+
   /**
    * Expand a particular size class, allocating a new block, breaking
    * the block into cells and placing those cells on a free list for
@@ -498,6 +627,7 @@ public abstract class SegregatedFreeListSpace extends Space {
    * @param clearMarks should we clear block mark bits as we process.
    */
   protected final void sweepConsumedBlocks(boolean clearMarks) {
+    startSweep();
     for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
       Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
       Address availableHead = Address.zero();
@@ -507,6 +637,7 @@ public abstract class SegregatedFreeListSpace extends Space {
       while (!block.isZero()) {
         Address next = BlockAllocator.getNext(block);
         availableHead = sweepBlock(block, sizeClass, blockSize, availableHead, clearMarks);
+        sweptPages += pagesInBlock(sizeClass);
         block = next;
       }
       /* Consumed blocks */
@@ -515,6 +646,7 @@ public abstract class SegregatedFreeListSpace extends Space {
       while (!block.isZero()) {
         Address next = BlockAllocator.getNext(block);
         availableHead = sweepBlock(block, sizeClass, blockSize, availableHead, clearMarks);
+        sweptPages += pagesInBlock(sizeClass);
         block = next;
       }
       /* Make blocks available */
@@ -522,6 +654,107 @@ public abstract class SegregatedFreeListSpace extends Space {
     }
   }
 
+  /**
+   * Defer the sweep of all blocks to allocation time.  The flushed and
+   * consumed blocks are moved to the unswept list, from which
+   * {@link #getAllocationBlock(int, AddressArray)} sweeps them on demand.
+   * Any blocks still unswept at the start of the next collection must be
+   * swept with {@link #sweepUnsweptBlocks()} before marks are changed.
+   *
+   * @param clearMarks should we clear block mark bits as we process.
+   */
+  protected final void deferSweepConsumedBlocks(boolean clearMarks) {
+    startSweep();
+    unsweptClearMarks = clearMarks;
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(unsweptBlockHead.get(sizeClass).isZero());
+      int blocks = 0;
+      Address head = consumedBlockHead.get(sizeClass);
+      consumedBlockHead.set(sizeClass, Address.zero());
+      for (Address block = head; !block.isZero(); block = BlockAllocator.getNext(block)) {
+        blocks++;
+      }
+      /* Prepend the flushed blocks */
+      Address block = flushedBlockHead.get(sizeClass);
+      flushedBlockHead.set(sizeClass, Address.zero());
+      while (!block.isZero()) {
+        Address next = BlockAllocator.getNext(block);
+        BlockAllocator.setNext(block, head);
+        head = block;
+        block = next;
+        blocks++;
+      }
+      unsweptBlockHead.set(sizeClass, head);
+      unsweptPages += blocks * pagesInBlock(sizeClass);
+    }
+    sweptPages = unsweptPages;
+  }
+
+  /**
+   * Start a sweep of the blocks marked by the collection that has just
+   * completed.  The blocks marked by the previous collection have all
+   * been swept by now, so the fraction of their pages that was released
+   * is recorded as the estimate for the next deferred sweep.
+   */
+  private void startSweep() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(unsweptPages == 0);
+    if (sweptPages > 0) {
+      releasedFraction = releasedPages / (float) sweptPages;
+    }
+    sweptPages = 0;
+    releasedPages = 0;
+  }
+
+  /**
+   * @return {@code true} if a complete sweep has been recorded, so that
+   * the dead pages of a deferred sweep can be estimated
+   */
+  protected final boolean hasSweepHistory() {
+    return releasedFraction >= 0;
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * The estimate assumes that the unswept blocks are as likely to be
+   * dead as the blocks swept after the previous collection were.
+   */
+  @Override
+  public int unreleasedDeadPages() {
+    if (releasedFraction < 0) return 0;
+    return (int) (unsweptPages * releasedFraction);
+  }
+
+  /**
+   * @param sizeClass The size class
+   * @return The number of pages in a block of the given size class
+   */
+  private int pagesInBlock(int sizeClass) {
+    return BlockAllocator.blockSize(blockSizeClass[sizeClass]) >>> LOG_BYTES_IN_PAGE;
+  }
+
+  /**
+   * Sweep all blocks that were left unswept by the allocator since the
+   * last call to {@link #deferSweepConsumedBlocks(boolean)}, making
+   * those with live cells available.
+   */
+  protected final void sweepUnsweptBlocks() {
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+      Address availableHead = availableBlockHead.get(sizeClass);
+      Address block = unsweptBlockHead.get(sizeClass);
+      unsweptBlockHead.set(sizeClass, Address.zero());
+      while (!block.isZero()) {
+        unsweptPages -= pagesInBlock(sizeClass);
+        pauseSweptBlocks.inc();
+        Address next = BlockAllocator.getNext(block);
+        availableHead = sweepBlock(block, sizeClass, blockSize, availableHead, unsweptClearMarks);
+        block = next;
+      }
+      availableBlockHead.set(sizeClass, availableHead);
+    }
+  }
+
   /**
    * Sweeps a block, freeing it and adding to the list given by availableHead
    * if it contains no free objects.
@@ -534,10 +767,12 @@ public abstract class SegregatedFreeListSpace extends Space {
    * @return updated head of the blocks that still need to be swept
    */
   protected final Address sweepBlock(Address block, int sizeClass, Extent blockSize, Address availableHead, boolean clearMarks) {
+    sweptBlocks.inc();
     boolean liveBlock = containsLiveCell(block, blockSize, clearMarks);
     if (!liveBlock) {
       BlockAllocator.setNext(block, Address.zero());
       BlockAllocator.free(this, block);
+      releasedPages += pagesInBlock(sizeClass);
     } else {
       BlockAllocator.setNext(block, availableHead);
       availableHead = block;
@@ -548,6 +783,30 @@ public abstract class SegregatedFreeListSpace extends Space {
     return availableHead;
   }
 
+  /**
+   * Sweeps a block that is not on any list, freeing it if it contains
+   * no live cells.
+   *
+   * @param block the block's address
+   * @param sizeClass the block's size class
+   * @param clearMarks should we clear block mark bits as we process.
+   * @return {@code true} if the block contains live cells and was retained
+   */
+  private boolean sweepBlock(Address block, int sizeClass, boolean clearMarks) {
+    Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+    if (!containsLiveCell(block, blockSize, clearMarks)) {
+      BlockAllocator.free(this, block);
+      lock.acquire();
+      releasedPages += pagesInBlock(sizeClass);
+      lock.release();
+      return false;
+    }
+    if (!LAZY_SWEEP) {
+      setFreeList(block, makeFreeList(block, sizeClass));
+    }
+    return true;
+  }
+
   /**
    * Eagerly consume all remaining blocks.
    */
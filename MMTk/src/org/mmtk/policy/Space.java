@@ -241,6 +241,15 @@ public abstract class Space {
     return pr.reservedPages();
   }
 
+  /**
+   * @return An estimate of the reserved pages that hold no live objects
+   * but have not yet been released, for example because their sweep has
+   * been deferred to allocation time
+   */
+  public int unreleasedDeadPages() {
+    return 0;
+  }
+
   /** @return The number of committed pages */
   public final int committedPages() {
     return pr.committedPages();
@@ -542,6 +551,20 @@ public abstract class Space {
     return pages;
   }
 
+  /**
+   * Get an estimate of the reserved pages of all of the spaces that hold
+   * no live objects but have not yet been released
+   *
+   * @return the estimated number of unreleased dead pages
+   */
+  public static int getUnreleasedDeadPages() {
+    int pages = 0;
+    for (int i = 0; i < spaceCount; i++) {
+      pages += spaces[i].unreleasedDeadPages();
+    }
+    return pages;
+  }
+
   /****************************************************************************
    *
    * Debugging / printing
@@ -67,6 +67,7 @@ public final class ImmixSpace extends Space {
           byte lineMarkState = RESET_LINE_MARK_STATE;
   private byte lineUnavailState = RESET_LINE_MARK_STATE;
   private boolean inCollection;
+  private boolean isAllocAsMarked = false;
   private int linesConsumed = 0;
 
   private final Lock mutatorLock = VM.newLock(getName() + "mutator");
@@ -379,6 +380,13 @@ public final class ImmixSpace extends Space {
   */
   @Inline
   public void postAlloc(ObjectReference object, int bytes) {
+    if (isAllocAsMarked) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!defrag.inDefrag());
+      ObjectHeader.writeMarkState(object, markState, bytes > BYTES_IN_LINE);
+      if (inCollection)
+        markLines(object);
+      return;
+    }
     if (bytes > BYTES_IN_LINE)
       ObjectHeader.markAsStraddling(object);
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ObjectHeader.isNewObject(object));
@@ -614,6 +622,17 @@ public final class ImmixSpace extends Space {
       Line.markMultiLine(address, object, lineMarkState);
   }
 
+  /**
+   * Allocate all new objects as marked.  Objects allocated while a
+   * collection of this space is in progress also have their lines marked,
+   * so that objects allocated during a concurrent trace survive the
+   * sweep at the end of that trace.  Collections that trace concurrently
+   * with the mutators must not defragment in this mode.
+   */
+  public void makeAllocAsMarked() {
+    isAllocAsMarked = true;
+  }
+
   public int getNextUnavailableLine(Address baseLineAvailAddress, int line) {
     return Line.getNextUnavailable(baseLineAvailAddress, line, lineUnavailState);
   }
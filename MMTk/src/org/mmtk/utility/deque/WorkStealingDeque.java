@@ -0,0 +1,403 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.policy.RawPageSpace;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.Log;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * A shared deque of buffers that gives each parallel collector thread
+ * its own work-stealing deque (after Chase and Lev, "Dynamic Circular
+ * Work-Stealing Deque", SPAA 2005).<p>
+ *
+ * While the deque is prepared for parallel processing, buffers enqueued
+ * by a collector thread are pushed onto that thread's own deque without
+ * synchronization, and are popped back by the same thread in LIFO order.
+ * A collector that runs out of buffers steals from the opposite end of
+ * another collector's deque with a single compare-and-swap.  Buffers
+ * enqueued by other threads (e.g. mutators flushing remembered sets), or
+ * that do not fit in a full per-collector deque, go to the locked deque
+ * inherited from {@link SharedDeque}.<p>
+ *
+ * Collectors waiting for work take part in a termination protocol: a
+ * waiting collector registers itself as idle and spins looking for work
+ * to steal.  Once every participating collector is idle and no buffers
+ * remain, processing is complete.  As with {@link SharedDeque}, the
+ * completion state persists until the next call to {@link #prepare()}.<p>
+ *
+ * The order in which buffers are dequeued is not preserved, so this
+ * deque is only suitable for unordered work such as a transitive closure.
+ * Plans select it for their traces through
+ * {@link org.mmtk.plan.PlanConstraints#workStealingTrace()}.
+ */
+@Uninterruptible
+public class WorkStealingDeque extends SharedDeque {
+
+  private static final boolean TRACE = false;
+
+  /*
+   * Layout of the page holding each collector's deque.  The steal end
+   * (top) and the owner end (bottom) are kept on separate cache lines.
+   */
+  private static final int LOG_BYTES_IN_LINE = 6;
+  private static final Offset TOP_OFFSET = Offset.zero();
+  private static final Offset BOTTOM_OFFSET = Offset.fromIntZeroExtend(1 << LOG_BYTES_IN_LINE);
+  private static final int ENTRIES_OFFSET = 2 << LOG_BYTES_IN_LINE;
+  private static final int CAPACITY = (BYTES_IN_PAGE - ENTRIES_OFFSET) >> LOG_BYTES_IN_ADDRESS;
+
+  /** Offset of the idle collector count in the control page */
+  private static final Offset IDLE_OFFSET = Offset.zero();
+
+  /****************************************************************************
+   *
+   * Public instance methods
+   */
+
+  /**
+   * @param name the queue's human-readable name
+   * @param rps the space to get pages from
+   * @param arity the arity (number of words per entry) of this queue
+   */
+  public WorkStealingDeque(String name, RawPageSpace rps, int arity) {
+    super(name, rps, arity);
+    this.rps = rps;
+  }
+
+  /**
+   * Prepare for parallel processing.  All active GC threads take part,
+   * each using its own deque, and pop operations block until all work
+   * is complete.  Unlike {@link SharedDeque}, this holds even while
+   * {@link SharedDeque#DISABLE_WAITING} is set: a collector that finds
+   * no work to pop or steal keeps stealing until every collector is
+   * idle, so that work pushed later by the others is still shared.
+   */
+  @Override
+  public final void prepare() {
+    drainDeques();
+    super.prepareNonBlocking();
+    if (dequePages.isZero()) {
+      allocateDeques();
+    }
+    for (int i = 0; i < numDeques; i++) {
+      Address deque = dequeFor(i);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(size(deque) == 0);
+      deque.store(0, TOP_OFFSET);
+      deque.store(0, BOTTOM_OFFSET);
+    }
+    controlPage().store(0, IDLE_OFFSET);
+    numConsumers = VM.activePlan.collector().parallelWorkerCount();
+    terminated = false;
+    VM.memory.fence();
+    parallel = true;
+    VM.memory.fence();
+  }
+
+  @Override
+  public final void prepareNonBlocking() {
+    drainDeques();
+    super.prepareNonBlocking();
+  }
+
+  @Override
+  public final void reset() {
+    drainDeques();
+    super.reset();
+  }
+
+  @Override
+  public final int enqueuedPages() {
+    int buffers = 0;
+    if (parallel) {
+      for (int i = 0; i < numDeques; i++) {
+        buffers += size(dequeFor(i));
+      }
+    }
+    return super.enqueuedPages() + buffers * PAGES_PER_BUFFER;
+  }
+
+  /****************************************************************************
+   *
+   * Package-private methods, overriding those of SharedDeque
+   */
+
+  @Override
+  final void enqueue(Address buf, int arity, boolean toTail) {
+    int ordinal = workerOrdinal();
+    if (ordinal >= 0 && push(dequeFor(ordinal), buf)) {
+      return;
+    }
+    super.enqueue(buf, arity, toTail);
+  }
+
+  @Override
+  final Address dequeue(int arity, boolean fromTail) {
+    int ordinal = workerOrdinal();
+    if (ordinal >= 0) {
+      Address buf = pop(dequeFor(ordinal));
+      if (!buf.isZero()) return buf;
+    }
+    Address buf = super.dequeue(arity, fromTail);
+    if (buf.isZero() && ordinal >= 0) {
+      buf = stealFromOthers(ordinal);
+    }
+    return buf;
+  }
+
+  @Override
+  final Address dequeueAndWait(int arity, boolean fromTail) {
+    Address buf = dequeue(arity, fromTail);
+    if (!buf.isZero() || terminated) return buf;
+    int ordinal = workerOrdinal();
+    if (ordinal < 0 || VM.activePlan.collector().parallelWorkerCount() != numConsumers) {
+      return buf;
+    }
+    return waitForWork(arity, fromTail, ordinal);
+  }
+
+  /****************************************************************************
+   *
+   * Private instance methods and fields
+   */
+
+  /** Raw page space from which the deques are allocated */
+  private final RawPageSpace rps;
+
+  /** First of the pages holding the per-collector deques, followed by the control page */
+  private Address dequePages = Address.zero();
+
+  /** Number of per-collector deques */
+  private int numDeques;
+
+  /** Are the per-collector deques in use ? */
+  @Entrypoint
+  private volatile boolean parallel;
+
+  /** Number of collectors taking part in the termination protocol */
+  private int numConsumers;
+
+  /** Set once all consumers have been idle with no work remaining */
+  @Entrypoint
+  private volatile boolean terminated;
+
+  /**
+   * Allocate one page per collector, plus a control page.  The pages
+   * are retained for the lifetime of the deque.
+   */
+  private void allocateDeques() {
+    int deques = VM.activePlan.collectorCount();
+    Address pages = rps.acquire(deques + 1);
+    if (pages.isZero()) {
+      Space.printUsageMB();
+      VM.assertions.fail("Failed to allocate space for work-stealing deques.  Is metadata virtual memory exhausted?");
+    }
+    numDeques = deques;
+    dequePages = pages;
+  }
+
+  /**
+   * Move the buffers held by the per-collector deques back to the shared
+   * deque and stop using the per-collector deques.
+   */
+  private void drainDeques() {
+    if (!parallel) return;
+    parallel = false;
+    VM.memory.fence();
+    for (int i = 0; i < numDeques; i++) {
+      Address deque = dequeFor(i);
+      int top = deque.loadInt(TOP_OFFSET);
+      int bottom = deque.loadInt(BOTTOM_OFFSET);
+      for (int j = top; j < bottom; j++) {
+        super.enqueue(deque.loadAddress(entryOffset(j)), getArity(), true);
+      }
+      deque.store(0, TOP_OFFSET);
+      deque.store(0, BOTTOM_OFFSET);
+    }
+  }
+
+  /**
+   * @return the ordinal of the current thread if it is a parallel
+   * collector that may use a per-collector deque, otherwise -1.
+   */
+  @Inline
+  private int workerOrdinal() {
+    if (!parallel || VM.activePlan.isMutator()) return -1;
+    int ordinal = VM.activePlan.collector().parallelWorkerOrdinal();
+    return ordinal < numDeques ? ordinal : -1;
+  }
+
+  /**
+   * Wait for a buffer to become available, stealing from other
+   * collectors, or for all consumers to run out of work.
+   *
+   * @param arity the arity of this queue
+   * @param fromTail whether to dequeue from the tail of the shared deque
+   * @param ordinal the ordinal of the current collector
+   * @return a buffer, or zero if processing is complete
+   */
+  private Address waitForWork(int arity, boolean fromTail, int ordinal) {
+    addIdle(1);
+    while (true) {
+      if (hasWork()) {
+        addIdle(-1);
+        Address buf = dequeue(arity, fromTail);
+        if (!buf.isZero()) return buf;
+        addIdle(1);
+      } else if (controlPage().loadInt(IDLE_OFFSET) == numConsumers && !hasWork()) {
+        if (TRACE) {
+          Log.write("-- (", ordinal);
+          Log.writeln(") all consumers idle, trace complete");
+        }
+        terminated = true;
+        VM.memory.fence();
+      }
+      if (terminated) return Address.zero();
+      VM.memory.combinedLoadBarriers();
+    }
+  }
+
+  /**
+   * @return {@code true} if any per-collector deque or the shared
+   * deque holds a buffer
+   */
+  private boolean hasWork() {
+    for (int i = 0; i < numDeques; i++) {
+      if (size(dequeFor(i)) > 0) return true;
+    }
+    return !head.isZero();
+  }
+
+  /**
+   * Atomically adjust the number of idle consumers.
+   *
+   * @param delta the adjustment
+   */
+  private void addIdle(int delta) {
+    Address control = controlPage();
+    int old;
+    do {
+      old = control.prepareInt(IDLE_OFFSET);
+    } while (!control.attempt(old, old + delta, IDLE_OFFSET));
+  }
+
+  /**
+   * Try to steal a buffer from each of the other collectors in turn,
+   * starting with the next ordinal.
+   *
+   * @param ordinal the ordinal of the current collector
+   * @return a buffer, or zero if none could be stolen
+   */
+  private Address stealFromOthers(int ordinal) {
+    for (int i = 1; i < numDeques; i++) {
+      int victim = ordinal + i;
+      if (victim >= numDeques) victim -= numDeques;
+      Address buf = steal(dequeFor(victim));
+      if (!buf.isZero()) return buf;
+    }
+    return Address.zero();
+  }
+
+  /**
+   * Push a buffer onto the owner's end of a deque.  Only the owner may call this.
+   *
+   * @param deque the deque
+   * @param buf the buffer
+   * @return {@code false} if the deque is full
+   */
+  @Inline
+  private static boolean push(Address deque, Address buf) {
+    int bottom = deque.loadInt(BOTTOM_OFFSET);
+    int top = deque.loadInt(TOP_OFFSET);
+    if (bottom - top >= CAPACITY) return false;
+    deque.store(buf, entryOffset(bottom));
+    VM.memory.fence();
+    deque.store(bottom + 1, BOTTOM_OFFSET);
+    return true;
+  }
+
+  /**
+   * Pop a buffer from the owner's end of a deque.  Only the owner may call this.
+   *
+   * @param deque the deque
+   * @return a buffer, or zero if the deque is empty
+   */
+  @Inline
+  private static Address pop(Address deque) {
+    int bottom = deque.loadInt(BOTTOM_OFFSET) - 1;
+    deque.store(bottom, BOTTOM_OFFSET);
+    VM.memory.fence();
+    int top = deque.loadInt(TOP_OFFSET);
+    if (top > bottom) {
+      deque.store(top, BOTTOM_OFFSET);
+      return Address.zero();
+    }
+    Address buf = deque.loadAddress(entryOffset(bottom));
+    if (top == bottom) {
+      // last entry: race any thieves for it
+      if (!deque.attempt(top, top + 1, TOP_OFFSET)) {
+        buf = Address.zero();
+      }
+      deque.store(top + 1, BOTTOM_OFFSET);
+    }
+    return buf;
+  }
+
+  /**
+   * Steal a buffer from the thieves' end of a deque.
+   *
+   * @param deque the deque
+   * @return a buffer, or zero if the deque is empty or the steal lost a race
+   */
+  private static Address steal(Address deque) {
+    int top = deque.prepareInt(TOP_OFFSET);
+    VM.memory.combinedLoadBarriers();
+    int bottom = deque.loadInt(BOTTOM_OFFSET);
+    if (top >= bottom) return Address.zero();
+    Address buf = deque.loadAddress(entryOffset(top));
+    if (!deque.attempt(top, top + 1, TOP_OFFSET)) return Address.zero();
+    return buf;
+  }
+
+  /**
+   * @param deque the deque
+   * @return the number of buffers in the deque (may be stale)
+   */
+  @Inline
+  private static int size(Address deque) {
+    int size = deque.loadInt(BOTTOM_OFFSET) - deque.loadInt(TOP_OFFSET);
+    return size > 0 ? size : 0;
+  }
+
+  @Inline
+  private static Offset entryOffset(int index) {
+    return Offset.fromIntZeroExtend(ENTRIES_OFFSET + ((index % CAPACITY) << LOG_BYTES_IN_ADDRESS));
+  }
+
+  @Inline
+  private Address dequeFor(int ordinal) {
+    return dequePages.plus(ordinal << LOG_BYTES_IN_PAGE);
+  }
+
+  @Inline
+  private Address controlPage() {
+    return dequePages.plus(numDeques << LOG_BYTES_IN_PAGE);
+  }
+}
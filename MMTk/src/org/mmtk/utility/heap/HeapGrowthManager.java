@@ -15,6 +15,7 @@ package org.mmtk.utility.heap;
 import static org.mmtk.utility.Constants.*;
 
 import org.mmtk.plan.Plan;
+import org.mmtk.policy.Space;
 import org.mmtk.utility.*;
 import org.mmtk.utility.options.Options;
 
@@ -169,7 +170,9 @@ import org.vmmagic.unboxed.*;
   public static boolean considerHeapSize() {
     Extent oldSize = currentHeapSize;
     Extent reserved = Plan.reservedMemory();
-    double liveRatio = reserved.toLong() / ((double) currentHeapSize.toLong());
+    /* Dead blocks that are yet to be swept are not part of the live heap */
+    Extent live = reserved.minus(Conversions.pagesToBytes(Space.getUnreleasedDeadPages()));
+    double liveRatio = live.toLong() / ((double) currentHeapSize.toLong());
     double ratio = computeHeapChangeRatio(liveRatio);
     Extent newSize = Word.fromIntSignExtend((int)(ratio * (oldSize.toLong() >> LOG_BYTES_IN_MBYTE))).lsh(LOG_BYTES_IN_MBYTE).toExtent(); // do arith in MB to avoid overflow
     if (newSize.LT(reserved)) newSize = reserved;
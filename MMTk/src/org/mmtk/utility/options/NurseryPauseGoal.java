@@ -0,0 +1,29 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Adapt the size of the nursery between collections so that nursery
+ * collections take about this long.  This option is not intended to be
+ * created directly, but via NurserySize.
+ */
+public final class NurseryPauseGoal extends org.vmutil.options.MicrosecondsOption {
+  /**
+   * Create the option.
+   */
+  public NurseryPauseGoal() {
+    super(Options.set, "Nursery Pause Goal",
+          "Resize the nursery so nursery collections take about this long (0 keeps the nursery size fixed)",
+          0);
+  }
+}
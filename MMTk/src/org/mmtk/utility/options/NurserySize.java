@@ -16,12 +16,20 @@ import org.vmmagic.pragma.*;
 
 /**
  * A composite option that provides a min/max interface to MMTk,
- * and a fixed/bounded option interface to the VM/user.
+ * and a fixed/bounded/pause goal option interface to the VM/user.<p>
+ *
+ * When a pause goal is set the plan may lower the upper bound between
+ * collections (see {@link #setAdaptiveNursery(int)}), but never below
+ * the fixed lower bound nor above the bounded upper bound.
  */
 public final class NurserySize {
   // values
   private final FixedNursery fixedNursery;
   private final BoundedNursery boundedNursery;
+  private final NurseryPauseGoal pauseGoal;
+
+  /** The current adaptive upper bound on the nursery, or 0 if none */
+  private int adaptivePages;
 
   /**
    * Create the options.
@@ -29,6 +37,7 @@ public final class NurserySize {
   public NurserySize() {
     boundedNursery = new BoundedNursery();
     fixedNursery = new FixedNursery(boundedNursery);
+    pauseGoal = new NurseryPauseGoal();
   }
 
   /**
@@ -38,7 +47,11 @@ public final class NurserySize {
    */
   @Uninterruptible
   public int getMaxNursery() {
-    return boundedNursery.getPages();
+    int max = boundedNursery.getPages();
+    if (adaptivePages > 0 && adaptivePages < max) {
+      return adaptivePages;
+    }
+    return max;
   }
 
   /**
@@ -50,4 +63,39 @@ public final class NurserySize {
   public int getMinNursery() {
     return fixedNursery.getPages();
   }
+
+  /**
+   * @return {@code true} if the nursery size adapts to a pause goal.
+   */
+  @Uninterruptible
+  public boolean isAdaptive() {
+    return pauseGoal.getMicroseconds() > 0;
+  }
+
+  /**
+   * Read the nursery pause goal.
+   *
+   * @return the target duration of a nursery collection, in milliseconds.
+   */
+  @Uninterruptible
+  public double getPauseGoal() {
+    return pauseGoal.getMicroseconds() / 1000.0;
+  }
+
+  /**
+   * Set the adaptive upper bound of the nursery size.  The value is
+   * clamped to lie between the minimum and the bounded maximum.
+   *
+   * @param pages the new upper bound, in pages.
+   * @return the upper bound that will be used, in pages.
+   */
+  @Uninterruptible
+  public int setAdaptiveNursery(int pages) {
+    int min = getMinNursery();
+    int max = boundedNursery.getPages();
+    if (pages < min) pages = min;
+    if (pages > max) pages = max;
+    adaptivePages = pages;
+    return pages;
+  }
 }
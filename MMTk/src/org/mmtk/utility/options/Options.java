@@ -46,6 +46,8 @@ public final class Options {
   public static GenCycleDetection genCycleDetection;
   public static HarnessAll harnessAll;
   public static IgnoreSystemGC ignoreSystemGC;
+  public static LargeObjectCompaction largeObjectCompaction;
+  public static LazyBlockSweep lazyBlockSweep;
   public static LineReuseRatio lineReuseRatio;
   public static MarkSweepMarkBits markSweepMarkBits;
   public static MetaDataLimit metaDataLimit;
@@ -56,10 +58,12 @@ public final class Options {
   public static PretenureThresholdFraction pretenureThresholdFraction;
   public static PrintPhaseStats printPhaseStats;
   public static ProtectOnRelease protectOnRelease;
+  public static RegionLargeObjects regionLargeObjects;
   public static SanityCheck sanityCheck;
   public static StressFactor stressFactor;
   public static Threads threads;
   public static TraceRate traceRate;
+  public static TrialDeletionBudget trialDeletionBudget;
   public static UseReturnBarrier useReturnBarrier;
   public static UseShortStackScans useShortStackScans;
   public static VariableSizeHeap variableSizeHeap;
@@ -0,0 +1,35 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The most objects trial deletion may visit in one collection.
+ */
+public final class TrialDeletionBudget extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public TrialDeletionBudget() {
+    super(Options.set, "Trial Deletion Budget",
+        "The most objects trial deletion may visit in one collection",
+        8192);
+  }
+
+  /**
+   * Only accept positive values
+   */
+  @Override
+  protected void validate() {
+    failIf(this.value <= 0, "Budget must be positive");
+  }
+}
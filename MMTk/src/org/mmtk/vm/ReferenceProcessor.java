@@ -31,7 +31,8 @@ public abstract class ReferenceProcessor {
   public abstract void clear();
 
   /**
-   * Scan through the list of references.
+   * Scan through the list of references.  This is called by every
+   * collector thread, which must cooperate to process the list.
    *
    * @param trace the thread local trace element.
    * @param nursery {@code true} if it is safe to only scan new references.
@@ -41,7 +42,8 @@ public abstract class ReferenceProcessor {
   public abstract void scan(TraceLocal trace, boolean nursery, boolean retain);
 
   /**
-   * Iterate over all references and forward.
+   * Iterate over all references and forward.  This is called by every
+   * collector thread, which must cooperate to process the list.
    *
    * @param trace The MMTk trace to forward to
    * @param nursery The nursery collection hint
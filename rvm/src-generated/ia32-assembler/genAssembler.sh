@@ -3290,6 +3290,28 @@ emitSSE2Op 0x66 none ORPD 0x56 none
 emitSSE2Op none none XORPS 0x57 none
 emitSSE2Op 0x66 none XORPD 0x57 none
 
+# Packed SSE/SSE2 operations used by the loop vectorizer
+emitSSE2Op none none ADDPS 0x58 none
+emitSSE2Op none none SUBPS 0x5C none
+emitSSE2Op none none MULPS 0x59 none
+emitSSE2Op none none DIVPS 0x5E none
+emitSSE2Op none none MOVUPS 0x10 0x11
+emitSSE2Op none none UNPCKLPS 0x14 none
+emitSSE2Op 0x66 none ADDPD 0x58 none
+emitSSE2Op 0x66 none SUBPD 0x5C none
+emitSSE2Op 0x66 none MULPD 0x59 none
+emitSSE2Op 0x66 none DIVPD 0x5E none
+emitSSE2Op 0x66 0x66 MOVUPD 0x10 0x11
+emitSSE2Op 0x66 none UNPCKLPD 0x14 none
+emitSSE2Op 0xF3 0xF3 MOVDQU 0x6F 0x7F
+emitSSE2Op 0x66 none PADDD 0xFE none
+emitSSE2Op 0x66 none PSUBD 0xFA none
+emitSSE2Op 0x66 none PAND 0xDB none
+emitSSE2Op 0x66 none POR 0xEB none
+emitSSE2Op 0x66 none PXOR 0xEF none
+emitSSE2Op none none MOVHLPS 0x12 none
+emitSSE2Op 0x66 none PMULUDQ 0xF4 none
+
 emitFloatMemAcc() {
     local acronym=$1
     local op=$2
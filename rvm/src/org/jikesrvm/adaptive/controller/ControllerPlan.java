@@ -187,7 +187,8 @@ public final class ControllerPlan {
     int newCMID = RuntimeCompiler.recompileWithOpt(cp);
     int prevCMID = getPrevCMID();
 
-    if (Controller.options.sampling()) {
+    // a plan for a method that has never run has no samples to transfer
+    if (Controller.options.sampling() && prevCMID != -1) {
       // transfer the samples from the old CMID to the new CMID.
       // scale the number of samples down by the expected speedup
       // in the newly compiled method.
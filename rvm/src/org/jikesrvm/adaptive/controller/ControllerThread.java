@@ -31,6 +31,7 @@ import org.jikesrvm.adaptive.util.AOSExternalOptions;
 import org.jikesrvm.adaptive.util.AOSGenerator;
 import org.jikesrvm.adaptive.util.AOSLogging;
 import org.jikesrvm.adaptive.util.AOSOptions;
+import org.jikesrvm.adaptive.util.ProfileCache;
 import org.jikesrvm.scheduler.SoftLatch;
 import org.jikesrvm.scheduler.SystemThread;
 import org.vmmagic.pragma.NonMoving;
@@ -150,6 +151,9 @@ public final class ControllerThread extends SystemThread {
 
     }
 
+    // Reuse profile data from an earlier run, if requested
+    ProfileCache.boot();
+
     controllerInitDone();
 
     // Enter main controller loop.
@@ -0,0 +1,95 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.adaptive.controller;
+
+import org.jikesrvm.adaptive.database.callgraph.AffinityOrder;
+import org.jikesrvm.adaptive.database.callgraph.PartialCallGraph;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.runtimesupport.OptCompiledMethod;
+
+/**
+ * Lays out the opt compiled code so that methods that call each other
+ * frequently are placed next to each other, which reduces instruction
+ * cache and TLB misses for programs whose hot code is spread over many
+ * methods.<p>
+ *
+ * Every CLUSTER_HOT_CODE_THRESHOLD opt recompilations, the edges of the
+ * dynamic call graph between opt compiled methods are ordered with
+ * {@link AffinityOrder} and the methods are recompiled, at their current
+ * opt level, in that order into clustered code.  The threshold doubles
+ * after each layout, so the code that is replaced (clustered code is
+ * never reclaimed) stays proportional to the hot code.
+ * <p>
+ * The layout is done by the compilation thread, so that the methods are
+ * compiled one after another by a single thread; without background
+ * recompilation the hot code is not laid out.
+ */
+public final class HotCodeLayout {
+
+  /** Number of opt recompilations since the last layout */
+  private static int recompilations;
+
+  /** Number of opt recompilations that trigger the next layout */
+  private static int threshold = -1;
+
+  private HotCodeLayout() {}
+
+  /**
+   * Notes that the compilation thread completed a recompilation and lays
+   * out the hot code if enough recompilations have been done since the
+   * last layout.
+   */
+  public static void recompilationCompleted() {
+    if (!Controller.options.CLUSTER_HOT_CODE || !Controller.dcgAvailable()) return;
+    if (threshold == -1) {
+      threshold = Controller.options.CLUSTER_HOT_CODE_THRESHOLD;
+    }
+    if (++recompilations < threshold) return;
+    recompilations = 0;
+    threshold *= 2;
+    layout();
+  }
+
+  private static void layout() {
+    final AffinityOrder<NormalMethod> order = new AffinityOrder<NormalMethod>();
+    Controller.dcg.visitEdges(new PartialCallGraph.EdgeVisitor() {
+      @Override
+      public void visit(RVMMethod caller, RVMMethod callee, double weight) {
+        if (isOptCompiled(caller) && isOptCompiled(callee)) {
+          order.addEdge((NormalMethod) caller, (NormalMethod) callee, weight);
+        }
+      }
+    });
+
+    for (NormalMethod method : order.order()) {
+      CompiledMethod cm = method.getCurrentCompiledMethod();
+      if (cm == null || cm.getCompilerType() != CompiledMethod.OPT) continue;
+      int optLevel = ((OptCompiledMethod) cm).getOptLevel();
+      CompilationPlan compPlan = Controller.recompilationStrategy.createCompilationPlan(method, optLevel, null);
+      compPlan.clusterCode = true;
+      ControllerPlan plan = new ControllerPlan(compPlan, Controller.controllerClock, cm.getId(), 1.0, 0.0, 0.0);
+      plan.setStatus(ControllerPlan.IN_PROGRESS);
+      ControllerMemory.insert(plan);
+      plan.doRecompile();
+    }
+  }
+
+  private static boolean isOptCompiled(RVMMethod method) {
+    if (!(method instanceof NormalMethod)) return false;
+    CompiledMethod cm = method.getCurrentCompiledMethod();
+    return cm != null && cm.getCompilerType() == CompiledMethod.OPT;
+  }
+}
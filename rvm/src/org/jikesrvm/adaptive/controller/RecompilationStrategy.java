@@ -198,6 +198,8 @@ public abstract class RecompilationStrategy {
     for (int i = 0; i <= maxOptLevel; i++) {
       _options[i] = options.dup();
       _options[i].setOptLevel(i);               // set optimization level specific optimizations
+      // graph coloring is only worth its compile time for the hottest methods
+      _options[i].REGALLOC_GRAPH_COLORING = i == maxOptLevel;
       processCommandLineOptions(_options[i], i, maxOptLevel, optCompilerOptions);
       _optPlans[i] = OptimizationPlanner.createOptimizationPlan(_options[i]);
     }
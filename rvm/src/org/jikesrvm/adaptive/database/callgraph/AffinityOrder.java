@@ -0,0 +1,148 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.adaptive.database.callgraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Orders the nodes of a weighted, undirected affinity graph so that nodes
+ * joined by heavy edges end up next to each other.  This is the
+ * "closest is best" procedure layout of Pettis and Hansen: edges are
+ * considered from heaviest to lightest, and each edge between two
+ * different chains of nodes merges them into one chain, oriented so that
+ * the two endpoints of the edge are as close as possible.  The chains
+ * are finally emitted heaviest first.
+ *
+ * @param <T> the type of the nodes
+ */
+public final class AffinityOrder<T> {
+
+  private static final class Edge<T> {
+    final T a;
+    final T b;
+    double weight;
+
+    Edge(T a, T b) {
+      this.a = a;
+      this.b = b;
+    }
+  }
+
+  private static final class Chain<T> {
+    final ArrayList<T> nodes = new ArrayList<T>();
+    double weight;
+  }
+
+  /** The edges in the order they were first added */
+  private final ArrayList<Edge<T>> edges = new ArrayList<Edge<T>>();
+
+  /** The edges incident to each node, keyed by the other endpoint */
+  private final HashMap<T, HashMap<T, Edge<T>>> incident = new HashMap<T, HashMap<T, Edge<T>>>();
+
+  /**
+   * Adds weight to the edge between two nodes.  Edges are undirected, so
+   * the weights of a&rarr;b and b&rarr;a are combined; edges from a node
+   * to itself carry no placement information and are ignored.
+   *
+   * @param a one endpoint
+   * @param b the other endpoint
+   * @param weight the weight to add
+   */
+  public void addEdge(T a, T b, double weight) {
+    if (a.equals(b)) return;
+    Edge<T> e = incidentTo(a).get(b);
+    if (e == null) {
+      e = new Edge<T>(a, b);
+      incidentTo(a).put(b, e);
+      incidentTo(b).put(a, e);
+      edges.add(e);
+    }
+    e.weight += weight;
+  }
+
+  private HashMap<T, Edge<T>> incidentTo(T n) {
+    HashMap<T, Edge<T>> m = incident.get(n);
+    if (m == null) {
+      m = new HashMap<T, Edge<T>>();
+      incident.put(n, m);
+    }
+    return m;
+  }
+
+  /**
+   * @return every node that has an edge, in layout order
+   */
+  public List<T> order() {
+    ArrayList<Edge<T>> sorted = new ArrayList<Edge<T>>(edges);
+    Collections.sort(sorted, new Comparator<Edge<T>>() {
+      @Override
+      public int compare(Edge<T> e1, Edge<T> e2) {
+        return Double.compare(e2.weight, e1.weight);
+      }
+    });
+
+    ArrayList<Chain<T>> chains = new ArrayList<Chain<T>>();
+    HashMap<T, Chain<T>> chainOf = new HashMap<T, Chain<T>>();
+    for (Edge<T> e : sorted) {
+      Chain<T> ca = chainOf(e.a, chains, chainOf);
+      Chain<T> cb = chainOf(e.b, chains, chainOf);
+      if (ca == cb) {
+        ca.weight += e.weight;
+        continue;
+      }
+      // put a as near the end of its chain as possible and b as near the
+      // start of its chain, then append b's chain to a's
+      int ia = ca.nodes.indexOf(e.a);
+      if (ia < ca.nodes.size() - 1 - ia) {
+        Collections.reverse(ca.nodes);
+      }
+      int ib = cb.nodes.indexOf(e.b);
+      if (ib > cb.nodes.size() - 1 - ib) {
+        Collections.reverse(cb.nodes);
+      }
+      ca.nodes.addAll(cb.nodes);
+      ca.weight += cb.weight + e.weight;
+      for (T n : cb.nodes) {
+        chainOf.put(n, ca);
+      }
+      chains.remove(cb);
+    }
+
+    Collections.sort(chains, new Comparator<Chain<T>>() {
+      @Override
+      public int compare(Chain<T> c1, Chain<T> c2) {
+        return Double.compare(c2.weight, c1.weight);
+      }
+    });
+    ArrayList<T> result = new ArrayList<T>();
+    for (Chain<T> c : chains) {
+      result.addAll(c.nodes);
+    }
+    return result;
+  }
+
+  private static <T> Chain<T> chainOf(T n, List<Chain<T>> chains, HashMap<T, Chain<T>> chainOf) {
+    Chain<T> c = chainOf.get(n);
+    if (c == null) {
+      c = new Chain<T>();
+      c.nodes.add(n);
+      chains.add(c);
+      chainOf.put(n, c);
+    }
+    return c;
+  }
+}
@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.TreeSet;
 import org.jikesrvm.VM;
 import org.jikesrvm.adaptive.controller.Controller;
@@ -96,6 +98,28 @@ public final class PartialCallGraph implements Decayable, Reportable {
     totalEdgeWeights /= rate;
   }
 
+  /**
+   * Remove all edges from call sites in the given method, e.g. because
+   * they were read from a profile that no longer matches the method.
+   *
+   * @param caller caller method
+   */
+  public synchronized void removeCallSites(RVMMethod caller) {
+    for (Iterator<Map.Entry<CallSite, WeightedCallTargets>> it = callGraph.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<CallSite, WeightedCallTargets> e = it.next();
+      if (e.getKey().getMethod() == caller) {
+        totalEdgeWeights -= e.getValue().totalWeight();
+        it.remove();
+      }
+    }
+    MethodReference callerRef = caller.getMemberRef().asMethodReference();
+    for (Iterator<UnResolvedCallSite> it = unresolvedCallGraph.keySet().iterator(); it.hasNext();) {
+      if (it.next().getMethodRef() == callerRef) {
+        it.remove();
+      }
+    }
+  }
+
   /**
    * @param caller caller method
    * @param bcIndex bytecode index in caller method
@@ -210,6 +234,29 @@ public final class PartialCallGraph implements Decayable, Reportable {
     totalEdgeWeights += weight;
   }
 
+  /**
+   * Interface to visit the edges of the call graph.
+   */
+  public interface EdgeVisitor {
+    void visit(RVMMethod caller, RVMMethod callee, double weight);
+  }
+
+  /**
+   * Visit every resolved edge of the call graph.
+   * @param v the visitor to apply to each edge
+   */
+  public synchronized void visitEdges(final EdgeVisitor v) {
+    for (Map.Entry<CallSite, WeightedCallTargets> e : callGraph.entrySet()) {
+      final RVMMethod caller = e.getKey().getMethod();
+      e.getValue().visitTargets(new WeightedCallTargets.Visitor() {
+        @Override
+        public void visit(RVMMethod callee, double weight) {
+          v.visit(caller, callee, weight);
+        }
+      });
+    }
+  }
+
   /**
    * Dump out set of edges in sorted order.
    */
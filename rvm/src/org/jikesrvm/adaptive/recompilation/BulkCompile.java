@@ -14,6 +14,8 @@ package org.jikesrvm.adaptive.recompilation;
 
 import org.jikesrvm.VM;
 import org.jikesrvm.adaptive.controller.Controller;
+import org.jikesrvm.adaptive.controller.ControllerMemory;
+import org.jikesrvm.adaptive.controller.ControllerPlan;
 import org.jikesrvm.adaptive.util.AOSLogging;
 import org.jikesrvm.adaptive.util.CompilerAdvice;
 import org.jikesrvm.adaptive.util.CompilerAdviceAttribute;
@@ -23,6 +25,7 @@ import org.jikesrvm.classloader.RVMMethod;
 import org.jikesrvm.classloader.NormalMethod;
 import org.jikesrvm.classloader.TypeReference;
 import org.jikesrvm.compilers.baseline.EdgeCounts;
+import org.jikesrvm.compilers.common.CompiledMethod;
 import org.jikesrvm.compilers.common.RuntimeCompiler;
 import org.jikesrvm.compilers.opt.driver.CompilationPlan;
 import org.jikesrvm.runtime.Callbacks;
@@ -190,4 +193,33 @@ public class BulkCompile implements Callbacks.StartupMonitor {
     if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) VM.sysWriteln();
     if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) VM.sysWriteln("Recompilation complete");
   }
+
+  /**
+   * Queue an optimizing compilation of a method for the compilation
+   * threads, as the controller does for hot methods. Unlike
+   * {@link #compileAllMethods()}, this leaves the adaptive system running
+   * normally, so it can be used to apply advice from an earlier run
+   * (see {@link org.jikesrvm.adaptive.util.ProfileCache}).
+   *
+   * @param method the method to compile, which need not have run yet
+   * @param optLevel the advised opt level
+   */
+  public static void compileInBackground(NormalMethod method, int optLevel) {
+    if (!Controller.enabled || Controller.compilationQueue == null) return;
+    if (ControllerMemory.findLatestPlan(method) != null) {
+      // the controller already decided what to do with this method
+      return;
+    }
+    CompilationPlan compPlan;
+    if (Controller.options.counters()) {
+      compPlan = InvocationCounts.createCompilationPlan(method);
+    } else {
+      int level = Math.min(optLevel, Controller.options.DERIVED_MAX_OPT_LEVEL);
+      compPlan = Controller.recompilationStrategy.createCompilationPlan(method, level, null);
+    }
+    CompiledMethod cm = method.getCurrentCompiledMethod();
+    int prevCMID = cm == null ? -1 : cm.getId();
+    ControllerPlan plan = new ControllerPlan(compPlan, Controller.controllerClock, prevCMID, 1.0, 0.0, 1.0);
+    plan.execute();
+  }
 }
@@ -15,6 +15,7 @@ package org.jikesrvm.adaptive.recompilation;
 import org.jikesrvm.adaptive.OnStackReplacementPlan;
 import org.jikesrvm.adaptive.controller.Controller;
 import org.jikesrvm.adaptive.controller.ControllerPlan;
+import org.jikesrvm.adaptive.controller.HotCodeLayout;
 import org.jikesrvm.scheduler.SystemThread;
 import org.vmmagic.pragma.NonMoving;
 
@@ -50,6 +51,7 @@ public final class CompilationThread extends SystemThread {
       Object plan = Controller.compilationQueue.deleteMin();
       if (plan instanceof ControllerPlan) {
         ((ControllerPlan) plan).doRecompile();
+        HotCodeLayout.recompilationCompleted();
       } else if (plan instanceof OnStackReplacementPlan) {
         ((OnStackReplacementPlan) plan).execute();
       }
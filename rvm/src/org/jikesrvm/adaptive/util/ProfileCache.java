@@ -0,0 +1,362 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.adaptive.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.StringTokenizer;
+import org.jikesrvm.VM;
+import org.jikesrvm.adaptive.controller.Controller;
+import org.jikesrvm.adaptive.controller.ControllerMemory;
+import org.jikesrvm.adaptive.controller.ControllerPlan;
+import org.jikesrvm.adaptive.recompilation.BulkCompile;
+import org.jikesrvm.classloader.Atom;
+import org.jikesrvm.classloader.MemberReference;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.baseline.EdgeCounts;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.common.CompiledMethods;
+import org.jikesrvm.runtime.Callbacks;
+
+/**
+ * Saves profile data when the VM exits and reuses it when the VM is next
+ * started, so that a restarted application does not have to warm up again.
+ * The cache is a directory given by <code>-X:aos:pc=path-to-directory</code>
+ * and holds:
+ * <ul>
+ *  <li><code>profile.ca</code>: the methods the adaptive system recompiled
+ *      and their opt levels, as a compiler advice file
+ *      (see {@link CompilerAdviceInfoReader})</li>
+ *  <li><code>profile.dc</code>: the dynamic call graph
+ *      (see {@link DynamicCallFileInfoReader})</li>
+ *  <li><code>profile.ec</code>: the baseline edge counts
+ *      (see {@link EdgeCounts})</li>
+ *  <li><code>profile.sum</code>: a hash of the methods of every class with
+ *      profile data</li>
+ * </ul>
+ * Each file is written to a temporary file that is then renamed, and the
+ * hash file is written last, so a cache that was only partly written has
+ * no hash file and is ignored. A file that can't be parsed is discarded.<p>
+ *
+ * The call graph is loaded when the controller starts; the edge counts
+ * are read then but not yet installed. When a class with profile data is
+ * instantiated, its hash is compared with the saved one. If they differ,
+ * the class has changed since the profile was taken and its profile data
+ * is discarded. Otherwise, its edge counts are installed and its advised
+ * methods are queued for optimizing compilation by the compilation
+ * threads, so they are compiled in the background before the adaptive
+ * system would have found them to be hot.
+ */
+public final class ProfileCache implements Callbacks.ExitMonitor, Callbacks.ClassInstantiatedMonitor {
+
+  private static final String ADVICE_FILE = "profile.ca";
+  private static final String CALL_GRAPH_FILE = "profile.dc";
+  private static final String EDGE_COUNT_FILE = "profile.ec";
+  private static final String HASH_FILE = "profile.sum";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /** The cache directory */
+  private final File dir;
+
+  /** Saved hashes of the classes that have profile data, by class descriptor */
+  private final HashMap<Atom, Integer> hashes = new HashMap<Atom, Integer>();
+
+  /** Saved advice, by class descriptor */
+  private final HashMap<Atom, List<CompilerAdviceAttribute>> advice =
+      new HashMap<Atom, List<CompilerAdviceAttribute>>();
+
+  /** Saved edge counts that have not been validated yet, by method */
+  private HashMap<MemberReference, int[]> edgeCounts = new HashMap<MemberReference, int[]>();
+
+  ProfileCache(File dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Called from ControllerThread.run once the recompilation strategy and
+   * the dynamic call graph are set up. Loads the profile cache, if there
+   * is one, and arranges for it to be saved when the VM exits.
+   */
+  public static void boot() {
+    String dirName = Controller.options.PROFILE_CACHE;
+    if (dirName == null) return;
+    ProfileCache cache = new ProfileCache(new File(dirName));
+    cache.load();
+    Callbacks.addClassInstantiatedMonitor(cache);
+    Callbacks.addExitMonitor(cache);
+    cache.processInstantiatedClasses();
+  }
+
+  private File file(String name) {
+    return new File(dir, name);
+  }
+
+  private File tempFile(String name) {
+    return new File(dir, name + TEMP_SUFFIX);
+  }
+
+  /**
+   * Reads the cache directory. A cache without a hash file is ignored,
+   * since none of its data could be validated.
+   */
+  synchronized void load() {
+    File hashFile = file(HASH_FILE);
+    if (!hashFile.exists()) return;
+    if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
+      VM.sysWriteln("Loading profile cache: ", dir.getPath());
+    }
+    try {
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(hashFile), "UTF-8"));
+      try {
+        for (String s = in.readLine(); s != null; s = in.readLine()) {
+          StringTokenizer parser = new StringTokenizer(s, " ");
+          if (parser.countTokens() != 2) continue;
+          Atom cls = Atom.findOrCreateUnicodeAtom(parser.nextToken());
+          hashes.put(cls, Integer.valueOf(parser.nextToken()));
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      VM.sysWriteln("Unable to read profile cache ", hashFile.getPath(), ": " + e);
+      hashes.clear();
+      return;
+    } catch (NumberFormatException e) {
+      VM.sysWriteln("Format error in profile cache ", hashFile.getPath());
+      hashes.clear();
+      return;
+    }
+
+    File adviceFile = file(ADVICE_FILE);
+    if (adviceFile.exists()) {
+      List<CompilerAdviceAttribute> attrs;
+      try {
+        attrs = CompilerAdviceInfoReader.readCompilerAdviceFile(adviceFile.getPath());
+      } catch (NumberFormatException e) {
+        VM.sysWriteln("Discarding advice from profile cache: " + e);
+        attrs = null;
+      }
+      if (attrs != null) {
+        for (CompilerAdviceAttribute attr : attrs) {
+          if (attr == null) continue;
+          List<CompilerAdviceAttribute> forClass = advice.get(attr.getClassName());
+          if (forClass == null) {
+            forClass = new ArrayList<CompilerAdviceAttribute>();
+            advice.put(attr.getClassName(), forClass);
+          }
+          forClass.add(attr);
+        }
+      }
+    }
+    File callGraphFile = file(CALL_GRAPH_FILE);
+    if (callGraphFile.exists() && Controller.dcgAvailable()) {
+      DynamicCallFileInfoReader.readDynamicCallFile(callGraphFile.getPath(), false);
+    }
+    File edgeCountFile = file(EDGE_COUNT_FILE);
+    if (edgeCountFile.exists()) {
+      try {
+        edgeCounts = EdgeCounts.parseCounts(edgeCountFile.getPath());
+      } catch (IOException e) {
+        VM.sysWriteln("Discarding edge counts from profile cache: " + e);
+      }
+    }
+  }
+
+  /**
+   * Processes the classes with profile data that were instantiated
+   * before the cache was loaded, e.g. those in the boot image.
+   */
+  private void processInstantiatedClasses() {
+    List<RVMClass> instantiated = new ArrayList<RVMClass>();
+    synchronized (this) {
+      for (Atom cls : hashes.keySet()) {
+        for (ClassLoader cl : TypeReference.getCLDict()) {
+          RVMType type = TypeReference.findOrCreate(cl, cls).peekType();
+          if (type != null && type.isClassType() && type.asClass().isInstantiated()) {
+            instantiated.add(type.asClass());
+            break;
+          }
+        }
+      }
+    }
+    for (RVMClass klass : instantiated) {
+      notifyClassInstantiated(klass);
+    }
+  }
+
+  @Override
+  public void notifyClassInstantiated(RVMClass klass) {
+    List<CompilerAdviceAttribute> toCompile;
+    synchronized (this) {
+      Integer saved = hashes.remove(klass.getDescriptor());
+      if (saved == null) return;
+      toCompile = advice.remove(klass.getDescriptor());
+      boolean valid = saved.intValue() == classHash(klass);
+      for (RVMMethod m : klass.getDeclaredMethods()) {
+        int[] counts = edgeCounts.remove(m.getMemberRef());
+        if (valid) {
+          if (counts != null && m instanceof NormalMethod) {
+            EdgeCounts.setCounts((NormalMethod) m, counts);
+          }
+        } else if (Controller.dcgAvailable()) {
+          Controller.dcg.removeCallSites(m);
+        }
+      }
+      if (!valid) {
+        if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
+          VM.sysWriteln("Discarding stale profile of ", klass.toString());
+        }
+        return;
+      }
+    }
+    if (toCompile == null) return;
+    for (CompilerAdviceAttribute attr : toCompile) {
+      if (attr.getCompiler() != CompiledMethod.OPT || attr.getOptLevel() < 0) continue;
+      RVMMethod method = klass.findDeclaredMethod(attr.getMethodName(), attr.getMethodSig());
+      if (method instanceof NormalMethod && !method.hasNoOptCompileAnnotation()) {
+        if (Controller.options.BULK_COMPILATION_VERBOSITY > 1) {
+          VM.sysWriteln("Precompiling from profile cache ", attr.toString());
+        }
+        BulkCompile.compileInBackground((NormalMethod) method, attr.getOptLevel());
+      }
+    }
+  }
+
+  /**
+   * @param klass a class
+   * @return a hash of the names, descriptors and bytecodes of the
+   *  methods of the class that is stable from one run to the next
+   */
+  static int classHash(RVMClass klass) {
+    int hash = 0;
+    for (RVMMethod m : klass.getDeclaredMethods()) {
+      hash = 31 * hash + m.getName().toString().hashCode();
+      hash = 31 * hash + m.getDescriptor().toString().hashCode();
+      if (m instanceof NormalMethod) {
+        hash = 31 * hash + ((NormalMethod) m).getBytecodeHash();
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * @param klass a class
+   * @return whether the loaded cache has profile data for the class that
+   *  matches its current methods and hasn't been used yet
+   */
+  synchronized boolean hasValidProfile(RVMClass klass) {
+    Integer saved = hashes.get(klass.getDescriptor());
+    return saved != null && saved.intValue() == classHash(klass);
+  }
+
+  @Override
+  public void notifyExit(int value) {
+    save();
+  }
+
+  /**
+   * Writes the profile data of this run to the cache directory.
+   */
+  void save() {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      VM.sysWriteln("Unable to create profile cache ", dir.getPath());
+      return;
+    }
+    // Until the new hash file is in place, the cache is ignored
+    File hashFile = file(HASH_FILE);
+    if (hashFile.exists() && !hashFile.delete()) {
+      VM.sysWriteln("Unable to replace profile cache ", dir.getPath());
+      return;
+    }
+    try {
+      PrintStream adviceOut = create(ADVICE_FILE);
+      HashSet<RVMClass> classes = new HashSet<RVMClass>();
+      for (int i = 1, n = CompiledMethods.numCompiledMethods(); i < n; i++) {
+        CompiledMethod cm = CompiledMethods.getCompiledMethodUnchecked(i);
+        if (cm == null || cm.isInvalid()) continue;
+        RVMMethod m = cm.getMethod();
+        if (!(m instanceof NormalMethod)) continue;
+        classes.add(m.getDeclaringClass());
+        if (cm.getCompilerType() == CompiledMethod.OPT && m.getCurrentCompiledMethod() == cm) {
+          ControllerPlan plan = ControllerMemory.findLatestPlan(m);
+          if (plan != null && plan.getStatus() == ControllerPlan.COMPLETED) {
+            adviceOut.println(m.getDeclaringClass().getDescriptor() + " " +
+                              m.getName() + " " +
+                              m.getDescriptor() + " " +
+                              CompiledMethod.OPT + " " +
+                              plan.getCompPlan().options.getOptLevel());
+          }
+        }
+      }
+      commit(adviceOut, ADVICE_FILE);
+
+      if (Controller.dcgAvailable()) {
+        Controller.dcg.dumpGraph(tempFile(CALL_GRAPH_FILE).getPath());
+        rename(CALL_GRAPH_FILE);
+      } else if (file(CALL_GRAPH_FILE).exists() && !file(CALL_GRAPH_FILE).delete()) {
+        throw new IOException("Unable to delete " + file(CALL_GRAPH_FILE).getPath());
+      }
+
+      PrintStream edgeCountOut = create(EDGE_COUNT_FILE);
+      EdgeCounts.dumpCountsToStream(edgeCountOut);
+      commit(edgeCountOut, EDGE_COUNT_FILE);
+
+      PrintStream hashOut = create(HASH_FILE);
+      for (RVMClass klass : classes) {
+        hashOut.println(klass.getDescriptor() + " " + classHash(klass));
+      }
+      commit(hashOut, HASH_FILE);
+    } catch (IOException e) {
+      VM.sysWriteln("Unable to write profile cache ", dir.getPath(), ": " + e);
+    }
+  }
+
+  private PrintStream create(String name) throws IOException {
+    return new PrintStream(new FileOutputStream(tempFile(name)));
+  }
+
+  private void commit(PrintStream out, String name) throws IOException {
+    out.close();
+    if (out.checkError()) {
+      throw new IOException("Error writing " + tempFile(name).getPath());
+    }
+    rename(name);
+  }
+
+  /**
+   * Replaces a cache file with the temporary file it was written to.
+   * The rename is atomic, so readers see either the old or the new file.
+   *
+   * @param name the name of the cache file
+   * @throws IOException if the file can't be replaced
+   */
+  private void rename(String name) throws IOException {
+    File tmp = tempFile(name);
+    if (!tmp.renameTo(file(name))) {
+      throw new IOException("Unable to rename " + tmp.getPath() + " to " + file(name).getPath());
+    }
+  }
+}
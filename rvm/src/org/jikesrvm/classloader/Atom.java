@@ -55,10 +55,22 @@ import org.vmmagic.unboxed.Offset;
 public final class Atom {
 
   /**
-   * Used to canonicalize Atoms: possibly non-canonical Atom =&gt; Atom
+   * log2 of the number of stripes the atom dictionary is split into
    */
-  private static final ImmutableEntryHashMapRVM<Atom, Atom> dictionary =
-    new ImmutableEntryHashMapRVM<Atom, Atom>(12000);
+  private static final int LOG_STRIPES = 4;
+  /**
+   * Mask to ascertain the dictionary stripe from an atom's hash code
+   */
+  private static final int STRIPE_MASK = (1 << LOG_STRIPES) - 1;
+
+  /**
+   * Used to canonicalize Atoms: possibly non-canonical Atom =&gt; Atom.
+   * <p>
+   * The dictionary is split into stripes selected by hash code. Each stripe
+   * is guarded by its own lock for insertion. As the maps have immutable
+   * buckets, lookups need no lock at all.
+   */
+  private static final ImmutableEntryHashMapRVM<Atom, Atom>[] dictionary = createDictionary();
 
   /**
    * 2^LOG_ROW_SIZE is the number of elements per row
@@ -172,7 +184,7 @@ public final class Atom {
     if (str != null) {
       // string substring is cheap, so try to find using this if possible
       Atom val = new Atom(null, -1, str.substring(off, off + len));
-      val = dictionary.get(val);
+      val = stripeFor(val).get(val);
       if (val != null) return val;
     }
     byte[] val = new byte[len];
@@ -197,33 +209,70 @@ public final class Atom {
    *  otherwise
    */
   private static Atom findOrCreate(byte[] bytes, boolean create, String str) {
-    Atom val = new Atom(bytes, -1, str);
-    val = dictionary.get(val);
+    Atom key = new Atom(bytes, -1, str);
+    ImmutableEntryHashMapRVM<Atom, Atom> stripe = stripeFor(key);
+    Atom val = stripe.get(key);
     if (val != null || !create) return val;
 
-    synchronized (Atom.class) {
+    synchronized (stripe) {
       // Check if a matching Atom was created while
       // the current thread tried to acquire the lock
-      val = new Atom(bytes, -1, str);
-      val = dictionary.get(val);
+      val = stripe.get(key);
       if (val != null) return val;
 
-      val = new Atom(bytes, nextId++, str);
-      int column = val.id >> LOG_ROW_SIZE;
-      if (column == atoms.length) {
-        Atom[][] tmp = new Atom[column + 1][];
-        for (int i = 0; i < column; i++) {
-          tmp[i] = atoms[i];
-        }
-        atoms = tmp;
-        atoms[column] = new Atom[1 << LOG_ROW_SIZE];
+      if (bytes == null) {
+        // encode outside of the id lock, which is shared by all stripes
+        bytes = UTF8Convert.toUTF8(str);
       }
-      atoms[column][val.id & ROW_MASK] = val;
-      dictionary.put(val, val);
+      val = register(bytes, str);
+      stripe.put(val, val);
     }
     return val;
   }
 
+  /**
+   * Creates a new atom with a fresh id and records it in the table of all
+   * atoms. Atoms equal to the new one must not exist and must not be
+   * created concurrently, which is ensured by the caller holding the lock
+   * of the atom's dictionary stripe.
+   *
+   * @param bytes content of atom as utf8 bytes
+   * @param str string encoding of atom or {@code null}
+   * @return the new atom
+   */
+  private static synchronized Atom register(byte[] bytes, String str) {
+    Atom val = new Atom(bytes, nextId++, str);
+    int column = val.id >> LOG_ROW_SIZE;
+    if (column == atoms.length) {
+      Atom[][] tmp = new Atom[column + 1][];
+      for (int i = 0; i < column; i++) {
+        tmp[i] = atoms[i];
+      }
+      tmp[column] = new Atom[1 << LOG_ROW_SIZE];
+      atoms = tmp;
+    }
+    atoms[column][val.id & ROW_MASK] = val;
+    return val;
+  }
+
+  /**
+   * @param key a possibly non-canonical atom
+   * @return the dictionary stripe that holds the canonical version of key
+   */
+  private static ImmutableEntryHashMapRVM<Atom, Atom> stripeFor(Atom key) {
+    int hash = key.hashCode();
+    return dictionary[(hash ^ (hash >>> 16)) & STRIPE_MASK];
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ImmutableEntryHashMapRVM<Atom, Atom>[] createDictionary() {
+    ImmutableEntryHashMapRVM<Atom, Atom>[] stripes = new ImmutableEntryHashMapRVM[1 << LOG_STRIPES];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new ImmutableEntryHashMapRVM<Atom, Atom>(12000 >> LOG_STRIPES);
+    }
+    return stripes;
+  }
+
   /**
    * @param id the id of an Atom
    * @return the Atom whose id was given
@@ -976,19 +1025,52 @@ public final class Atom {
    */
   private static class InternedStrings {
     /**
-     * Look up for interned strings.
+     * Look up for interned strings, split into stripes selected by hash
+     * code. A weak hash map is not safe for concurrent lookups, so each
+     * stripe is guarded by its own lock.
+     */
+    private static final WeakHashMap<String,WeakReference<String>>[] internedStrings =
+      createInternedStrings();
+
+    @SuppressWarnings("unchecked")
+    private static WeakHashMap<String,WeakReference<String>>[] createInternedStrings() {
+      WeakHashMap<String,WeakReference<String>>[] stripes = new WeakHashMap[1 << LOG_STRIPES];
+      for (int i = 0; i < stripes.length; i++) {
+        stripes[i] = new WeakHashMap<String,WeakReference<String>>();
+      }
+      return stripes;
+    }
+
+    /**
+     * @param str a string
+     * @return the stripe of the interned string table that holds str
      */
-    private static final WeakHashMap<String,WeakReference<String>> internedStrings =
-      new WeakHashMap<String,WeakReference<String>>();
+    private static WeakHashMap<String,WeakReference<String>> stripeFor(String str) {
+      int hash = str.hashCode();
+      return internedStrings[(hash ^ (hash >>> 16)) & STRIPE_MASK];
+    }
 
     /**
      * Find an interned string but don't create it if not found
      * @param str string to lookup
      * @return the interned string or null if it isn't interned
      */
-    static synchronized String findInternedString(String str) {
+    static String findInternedString(String str) {
+      WeakHashMap<String,WeakReference<String>> stripe = stripeFor(str);
+      synchronized (stripe) {
+        return findInternedString(stripe, str);
+      }
+    }
+
+    /**
+     * Find an interned string in a stripe whose lock is held
+     * @param stripe the stripe that holds str
+     * @param str string to lookup
+     * @return the interned string or null if it isn't interned
+     */
+    private static String findInternedString(WeakHashMap<String,WeakReference<String>> stripe, String str) {
       WeakReference<String> ref;
-      ref = internedStrings.get(str);
+      ref = stripe.get(str);
       if (ref != null) {
         String s = ref.get();
         if (s != null) {
@@ -1020,15 +1102,18 @@ public final class Atom {
      * @param str string to intern
      * @return interned string
      */
-    static synchronized String internUnfoundString(String str) {
-      // double check string isn't found as we're holding the lock on the class
-      String s = findInternedString(str);
-      if (s != null) return s;
-      // If we get to here, then there is no interned version of the String.
-      // So we make one.
-      WeakReference<String> ref = new WeakReference<String>(str);
-      internedStrings.put(str, ref);
-      return str;
+    static String internUnfoundString(String str) {
+      WeakHashMap<String,WeakReference<String>> stripe = stripeFor(str);
+      synchronized (stripe) {
+        // double check string isn't found as we're holding the lock on the stripe
+        String s = findInternedString(stripe, str);
+        if (s != null) return s;
+        // If we get to here, then there is no interned version of the String.
+        // So we make one.
+        WeakReference<String> ref = new WeakReference<String>(str);
+        stripe.put(str, ref);
+        return str;
+      }
     }
   }
 
@@ -231,6 +231,18 @@ public final class NormalMethod extends RVMMethod {
     return bytecodes.length;
   }
 
+  /**
+   * @return a hash of the bytecodes of this method that is stable from
+   *  one run of the VM to the next
+   */
+  public int getBytecodeHash() {
+    int hash = bytecodes.length;
+    for (byte b : bytecodes) {
+      hash = 31 * hash + b;
+    }
+    return hash;
+  }
+
   /**
    * Exceptions caught by this method.
    * @return info (null --&gt; method doesn't catch any exceptions)
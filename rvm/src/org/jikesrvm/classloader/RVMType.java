@@ -234,6 +234,33 @@ public abstract class RVMType extends AnnotatedElement {
    */
   protected int[] doesImplement;
 
+  /**
+   * Bias epoch of instances of this type. A biased thin lock whose epoch
+   * differs from this is stale (see {@link org.jikesrvm.scheduler.BiasedLocking}).
+   */
+  private int biasEpoch;
+
+  /**
+   * Is a bulk rebias or revocation of instances of this type in progress?
+   */
+  private boolean biasEpochChanging;
+
+  /**
+   * Has biasing been disabled for instances of this type?
+   */
+  private boolean biasingDisabled;
+
+  /**
+   * Number of bias revocations of instances of this type since the last
+   * bulk rebias.
+   */
+  private int biasRevocationCount;
+
+  /**
+   * Time (in milliseconds) of the last bulk rebias of instances of this type.
+   */
+  private long lastBulkRebiasTime;
+
   /**
    * Create an instance of a {@link RVMType}
    * @param typeRef The canonical type reference for this type.
@@ -325,6 +352,88 @@ public abstract class RVMType extends AnnotatedElement {
     return classForType;
   }
 
+  /**
+   * @return the current bias epoch of instances of this type
+   */
+  @Uninterruptible
+  public final int getBiasEpoch() {
+    return biasEpoch;
+  }
+
+  /**
+   * @return whether a bulk rebias or revocation of instances of this
+   *  type is in progress
+   */
+  @Uninterruptible
+  public final boolean isBiasEpochChanging() {
+    return biasEpochChanging;
+  }
+
+  /**
+   * @return whether instances of this type may be biased towards a thread
+   */
+  @Uninterruptible
+  public final boolean isBiasingDisabled() {
+    return biasingDisabled;
+  }
+
+  /**
+   * Marks the start or end of a bulk rebias or revocation of instances of
+   * this type.
+   *
+   * @param changing whether a bulk operation is starting
+   */
+  @Uninterruptible
+  public final void setBiasEpochChanging(boolean changing) {
+    biasEpochChanging = changing;
+  }
+
+  /**
+   * Invalidates all existing biases of instances of this type, optionally
+   * preventing instances of this type from being biased in future.
+   *
+   * @param disable whether to disable biasing for this type
+   */
+  @Uninterruptible
+  public final void advanceBiasEpoch(boolean disable) {
+    biasEpoch++;
+    if (disable) biasingDisabled = true;
+  }
+
+  /**
+   * @return the number of bias revocations since the last bulk rebias
+   */
+  @Uninterruptible
+  public final int getBiasRevocationCount() {
+    return biasRevocationCount;
+  }
+
+  /**
+   * @param count the number of bias revocations since the last bulk rebias
+   */
+  @Uninterruptible
+  public final void setBiasRevocationCount(int count) {
+    biasRevocationCount = count;
+  }
+
+  /**
+   * @return time (in milliseconds) of the last bulk rebias of instances of
+   *  this type, or {@code 0} if there has been none
+   */
+  @Uninterruptible
+  public final long getLastBulkRebiasTime() {
+    return lastBulkRebiasTime;
+  }
+
+  /**
+   * @param time time (in milliseconds) of a bulk rebias of instances of
+   *  this type
+   */
+  @Uninterruptible
+  public final void setLastBulkRebiasTime(long time) {
+    lastBulkRebiasTime = time;
+  }
+
   /**
    * @return offset of TIB slot from start of JTOC, in bytes.
    */
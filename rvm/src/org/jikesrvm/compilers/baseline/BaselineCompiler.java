@@ -71,6 +71,21 @@ public abstract class BaselineCompiler extends TemplateCompilerFramework {
    */
   protected int edgeCounterIdx;
 
+  /**
+   * Do virtual and interface calls in this method profile their receiver types?
+   */
+  protected boolean profileReceiverTypes;
+
+  /**
+   * Site numbers of the calls that profile their receiver types
+   */
+  private int[] receiverSites;
+
+  /**
+   * Number of calls that profile their receiver types
+   */
+  private int numReceiverSites;
+
   /**
    * Reference maps for method being compiled
    */
@@ -84,6 +99,25 @@ public abstract class BaselineCompiler extends TemplateCompilerFramework {
     return method.getId();
   }
 
+  /**
+   * Allocates a receiver type profile for a call.
+   *
+   * @param bcIndex the bytecode index of the call
+   * @return the site number to pass to {@link ReceiverTypeProfiles}
+   */
+  protected final int allocateReceiverSite(int bcIndex) {
+    int site = ReceiverTypeProfiles.allocateSite(bcIndex);
+    if (receiverSites == null) {
+      receiverSites = new int[8];
+    } else if (numReceiverSites == receiverSites.length) {
+      int[] tmp = new int[receiverSites.length * 2];
+      System.arraycopy(receiverSites, 0, tmp, 0, receiverSites.length);
+      receiverSites = tmp;
+    }
+    receiverSites[numReceiverSites++] = site;
+    return site;
+  }
+
   /**
    * The types that locals can take.
    * There are two types of locals:
@@ -288,6 +322,11 @@ public abstract class BaselineCompiler extends TemplateCompilerFramework {
           (method.hasCondBranch() || method.hasSwitch())) {
         ((BaselineCompiledMethod) compiledMethod).setHasCounterArray(); // yes, we will inject counters for this method.
       }
+      // profiling calls from uninterruptible code would be unsafe
+      profileReceiverTypes = options.PROFILE_RECEIVER_TYPES && !VM.runningTool &&
+          method.isInterruptible() &&
+          !method.getDeclaringClass().hasBridgeFromNativeAnnotation() &&
+          !(VM.BuildForAdaptiveSystem && method.isForOsrSpecialization());
 
       //do platform specific tasks before generating code;
       initializeCompiler();
@@ -341,6 +380,9 @@ public abstract class BaselineCompiler extends TemplateCompilerFramework {
       if (edgeCounterIdx > 0) {
         EdgeCounts.allocateCounters(method, edgeCounterIdx);
       }
+      if (numReceiverSites > 0) {
+        ReceiverTypeProfiles.setSites(method, receiverSites, numReceiverSites);
+      }
       if (shouldPrint) {
         ((BaselineCompiledMethod) compiledMethod).printExceptionTable();
         printEndHeader(method);
@@ -17,6 +17,9 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import org.jikesrvm.VM;
 import org.jikesrvm.adaptive.controller.Controller;
@@ -96,7 +99,30 @@ public final class EdgeCounts implements Callbacks.ExitMonitor {
       registered = true;
       Callbacks.addExitMonitor(new EdgeCounts());
     }
-    allocateCounters(m.getId(), numEntries);
+    int id = m.getId();
+    if (data != null && id < data.length && data[id] != null && data[id].length == numEntries) {
+      // keep the counts read from a profile before the method was compiled
+      return;
+    }
+    allocateCounters(id, numEntries);
+  }
+
+  /**
+   * Install counts read from a profile for a method that has no
+   * counters yet. They are kept if the method is later baseline compiled
+   * with the same number of counters.
+   *
+   * @param m the method
+   * @param counts the counts, e.g. from {@link #parseCounts(String)}
+   */
+  public static synchronized void setCounts(NormalMethod m, int[] counts) {
+    int id = m.getId();
+    if (data != null && id < data.length && data[id] != null) {
+      // the method is already counting
+      return;
+    }
+    allocateCounters(id, counts.length);
+    System.arraycopy(counts, 0, data[id], 0, counts.length);
   }
 
   private static synchronized void allocateCounters(int id, int numEntries) {
@@ -166,64 +192,128 @@ public final class EdgeCounts implements Callbacks.ExitMonitor {
   }
 
 
+  /**
+   * Reads edge counts from a file and installs them, replacing the
+   * counts of the methods in the file. Fails the VM if the file can't
+   * be read or is malformed.
+   *
+   * @param fn the name of the edge count file
+   */
   public static void readCounts(String fn) {
-    LineNumberReader in = null;
+    HashMap<MemberReference, int[]> counts = null;
     try {
-      in = new LineNumberReader(new FileReader(fn));
+      counts = parseCounts(fn);
     } catch (IOException e) {
       e.printStackTrace();
-      VM.sysFail("Unable to open input edge counter file " + fn);
+      VM.sysFail("Error parsing input edge counter file " + fn);
+    }
+    for (Map.Entry<MemberReference, int[]> e : counts.entrySet()) {
+      int[] c = e.getValue();
+      int id = e.getKey().getId();
+      allocateCounters(id, c.length);
+      System.arraycopy(c, 0, data[id], 0, c.length);
+    }
+    // Enable debug of input by dumping file as we exit the VM.
+    if (false) {
+      Callbacks.addExitMonitor(new EdgeCounts());
+      BaselineCompiler.processCommandLineArg("-X:base:", "edge_counter_file=DebugEdgeCounters");
     }
+  }
+
+  /**
+   * Reads edge counts from a file in the format written by
+   * {@link #dumpCounts(String)}, without installing them. Nothing is
+   * returned for a file that is malformed anywhere, e.g. because it was
+   * only partly written.
+   *
+   * @param fn the name of the edge count file
+   * @return the counts, by method
+   * @throws IOException if the file can't be read or is malformed
+   */
+  public static HashMap<MemberReference, int[]> parseCounts(String fn) throws IOException {
+    HashMap<MemberReference, int[]> counts = new HashMap<MemberReference, int[]>();
+    LineNumberReader in = new LineNumberReader(new FileReader(fn));
     try {
       int[] cur = null;
       int curIdx = 0;
       for (String s = in.readLine(); s != null; s = in.readLine()) {
         s = s.replaceAll("\\{urls[^\\}]*\\}", ""); // strip classloader cruft we can't parse
         StringTokenizer parser = new StringTokenizer(s, " \t\n\r\f,{}");
-        String firstToken = parser.nextToken();
-        if (firstToken.equals("M")) {
-          int numCounts = Integer.parseInt(parser.nextToken());
-          MemberReference key = MemberReference.parse(parser);
-          int id = key.getId();
-          allocateCounters(id, numCounts);
-          cur = data[id];
-          curIdx = 0;
-          if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
-            VM.sysWrite("M");
-          }
-        } else {
-          String type = parser.nextToken(); // discard bytecode index, we don't care.
-          if (type.equals("switch")) {
-            parser.nextToken(); // discard '<'
-            for (String nt = parser.nextToken(); !nt.equals(">"); nt = parser.nextToken()) {
-              cur[curIdx++] = Integer.parseInt(nt);
+        if (!parser.hasMoreTokens()) continue;
+        try {
+          String firstToken = parser.nextToken();
+          if (firstToken.equals("M")) {
+            if (cur != null && curIdx != cur.length) {
+              throw formatError(fn, in, "missing counts");
             }
-            if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
-              VM.sysWrite("S");
+            int numCounts = Integer.parseInt(parser.nextToken());
+            MemberReference key = MemberReference.parse(parser);
+            if (numCounts < 0 || key == null) {
+              throw formatError(fn, in, "bad method");
             }
-          } else if (type.equals("forwbranch") || type.equals("backbranch")) {
-            parser.nextToken(); // discard '<'
-            cur[curIdx + TAKEN] = Integer.parseInt(parser.nextToken());
-            cur[curIdx + NOT_TAKEN] = Integer.parseInt(parser.nextToken());
-            curIdx += 2;
+            cur = new int[numCounts];
+            curIdx = 0;
+            counts.put(key, cur);
             if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
-              VM.sysWrite("B");
+              VM.sysWrite("M");
             }
           } else {
-            VM.sysFail("Format error in edge counter input file");
+            if (cur == null) {
+              throw formatError(fn, in, "counts before the first method");
+            }
+            String type = parser.nextToken(); // discard bytecode index, we don't care.
+            if (type.equals("switch")) {
+              parser.nextToken(); // discard '<'
+              for (String nt = parser.nextToken(); !nt.equals(">"); nt = parser.nextToken()) {
+                cur[curIdx++] = parseCount(nt);
+              }
+              if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
+                VM.sysWrite("S");
+              }
+            } else if (type.equals("forwbranch") || type.equals("backbranch")) {
+              parser.nextToken(); // discard '<'
+              cur[curIdx + TAKEN] = parseCount(parser.nextToken());
+              cur[curIdx + NOT_TAKEN] = parseCount(parser.nextToken());
+              curIdx += 2;
+              if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
+                VM.sysWrite("B");
+              }
+            } else {
+              throw formatError(fn, in, "unknown branch type " + type);
+            }
           }
+        } catch (NumberFormatException e) {
+          throw formatError(fn, in, e.toString());
+        } catch (NoSuchElementException e) {
+          throw formatError(fn, in, "line ends early");
+        } catch (ArrayIndexOutOfBoundsException e) {
+          throw formatError(fn, in, "too many counts");
         }
       }
+      if (cur != null && curIdx != cur.length) {
+        throw formatError(fn, in, "missing counts");
+      }
+    } finally {
       in.close();
-    } catch (IOException e) {
-      e.printStackTrace();
-      VM.sysFail("Error parsing input edge counter file" + fn);
     }
-    // Enable debug of input by dumping file as we exit the VM.
-    if (false) {
-      Callbacks.addExitMonitor(new EdgeCounts());
-      BaselineCompiler.processCommandLineArg("-X:base:", "edge_counter_file=DebugEdgeCounters");
+    return counts;
+  }
+
+  private static IOException formatError(String fn, LineNumberReader in, String what) {
+    return new IOException("Format error in edge counter file " + fn + " at line " + in.getLineNumber() + ": " + what);
+  }
+
+  /**
+   * @param s a count as printed by a {@link BranchProfile}, i.e. as an
+   *  unsigned number that may have been rounded up
+   * @return the count as stored in the counter array
+   */
+  private static int parseCount(String s) {
+    long count = Long.parseLong(s);
+    if (count < 0) {
+      throw new NumberFormatException("negative count " + s);
     }
+    return (int) Math.min(count, 0xFFFFFFFFL);
   }
 
 }
@@ -0,0 +1,166 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.baseline;
+
+import org.jikesrvm.classloader.RVMType;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Profile data for the receiver types of a virtual or interface call.
+ * The first {@link #WIDTH} distinct types seen at the call are counted
+ * individually; calls on any other type are only counted in total.<p>
+ *
+ * Updates are not synchronized. Racing updates may lose counts, which
+ * is acceptable for profile data, and may store the same type in two
+ * slots. Readers therefore only see {@link #snapshot() snapshots}, in
+ * which every type appears once.
+ */
+public final class ReceiverTypeProfile {
+  /** The number of receiver types counted individually */
+  public static final int WIDTH = 3;
+
+  /**
+   * The number of calls after which a call site stops being profiled.
+   * Far more than inlining needs, but it bounds the cost of profiling
+   * long running baseline code.
+   */
+  public static final int MAX_SAMPLES = 10000;
+
+  /** The bytecode index of the call instruction */
+  private final int bci;
+
+  private final RVMType[] types = new RVMType[WIDTH];
+
+  private final int[] counts = new int[WIDTH];
+
+  /** Number of calls on types other than those in {@link #types} */
+  private int otherCount;
+
+  /**
+   * @param bci the bytecode index of the call instruction
+   */
+  ReceiverTypeProfile(int bci) {
+    this.bci = bci;
+  }
+
+  /**
+   * Counts a call.
+   *
+   * @param type the type of the receiver
+   * @return {@code false} if the call site is megamorphic, so that there is
+   *  no point in profiling it any further
+   */
+  @Uninterruptible
+  boolean record(RVMType type) {
+    for (int i = 0; i < WIDTH; i++) {
+      RVMType t = types[i];
+      if (t == null) {
+        types[i] = type;
+        t = type;
+      }
+      if (t == type) {
+        counts[i]++;
+        return true;
+      }
+    }
+    otherCount++;
+    return false;
+  }
+
+  /**
+   * @return a copy of this profile in which the counts of a type that
+   *  racing updates stored in more than one slot are merged
+   */
+  ReceiverTypeProfile snapshot() {
+    ReceiverTypeProfile copy = new ReceiverTypeProfile(bci);
+    copy.otherCount = otherCount;
+    for (int i = 0; i < WIDTH; i++) {
+      RVMType t = types[i];
+      if (t == null) break;
+      int j = 0;
+      while (copy.types[j] != null && copy.types[j] != t) j++;
+      copy.types[j] = t;
+      copy.counts[j] += counts[i];
+    }
+    return copy;
+  }
+
+  public int getBytecodeIndex() {
+    return bci;
+  }
+
+  /**
+   * @return the number of receiver types counted individually
+   */
+  public int getNumberOfTypes() {
+    int n = 0;
+    while (n < WIDTH && types[n] != null) n++;
+    return n;
+  }
+
+  /**
+   * @param i a number less than {@link #getNumberOfTypes()}
+   * @return the i-th receiver type seen at the call
+   */
+  public RVMType getType(int i) {
+    return types[i];
+  }
+
+  /**
+   * @param i a number less than {@link #getNumberOfTypes()}
+   * @return the number of calls on the i-th receiver type
+   */
+  public float getCount(int i) {
+    return BranchProfile.countToFloat(counts[i]);
+  }
+
+  /**
+   * @return the number of calls on receiver types that were not counted
+   *  individually
+   */
+  public float getOtherCount() {
+    return BranchProfile.countToFloat(otherCount);
+  }
+
+  /**
+   * @return the number of calls profiled
+   */
+  public float getTotalCount() {
+    float total = getOtherCount();
+    for (int i = 0; i < WIDTH; i++) {
+      total += getCount(i);
+    }
+    return total;
+  }
+
+  /**
+   * @return {@code true} if calls on more than {@link #WIDTH} receiver
+   *  types were seen
+   */
+  public boolean isMegamorphic() {
+    return otherCount != 0;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    s.append(bci).append("\treceivers");
+    for (int i = 0; i < getNumberOfTypes(); i++) {
+      s.append(' ').append(types[i]).append(' ').append(getCount(i));
+    }
+    if (isMegamorphic()) {
+      s.append(" other ").append(getOtherCount());
+    }
+    return s.toString();
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.baseline;
+
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.objectmodel.ObjectModel;
+import org.jikesrvm.runtime.Magic;
+import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.pragma.NonMovingAllocation;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * A repository of receiver type profiles for the virtual and interface
+ * calls of baseline compiled methods. Each profiled call has a site number
+ * and a budget of samples. Baseline code calls {@link #record} before the
+ * call only while the budget is positive, so a site costs no more than a
+ * load and a compare once it has {@link ReceiverTypeProfile#MAX_SAMPLES}
+ * samples or has turned out to be megamorphic.
+ */
+public final class ReceiverTypeProfiles {
+
+  /**
+   * Number of samples each call site may still record, by site number.
+   * Read by baseline compiled code.
+   */
+  @Entrypoint
+  private static int[] budgets;
+
+  /** The profiles by site number */
+  private static ReceiverTypeProfile[] sites;
+
+  /** Number of site numbers handed out */
+  private static int numSites;
+
+  /**
+   * Array of receiver type profiles. The first index is the ID of the
+   * method, the second the number of the call site within the method.
+   */
+  private static ReceiverTypeProfile[][] data;
+
+  /**
+   * Creates the profile for a call that is about to be compiled.
+   *
+   * @param bcIndex the bytecode index of the call
+   * @return the site number of the call
+   */
+  @NonMovingAllocation
+  static synchronized int allocateSite(int bcIndex) {
+    int site = numSites;
+    if (budgets == null) {
+      budgets = new int[500];
+      sites = new ReceiverTypeProfile[budgets.length];
+    }
+    if (site >= budgets.length) {
+      int newSize = budgets.length * 2;
+      int[] tmp = new int[newSize];
+      System.arraycopy(budgets, 0, tmp, 0, budgets.length);
+      ReceiverTypeProfile[] tmp2 = new ReceiverTypeProfile[newSize];
+      System.arraycopy(sites, 0, tmp2, 0, sites.length);
+      Magic.fence();
+      budgets = tmp;
+      sites = tmp2;
+    }
+    sites[site] = new ReceiverTypeProfile(bcIndex);
+    budgets[site] = ReceiverTypeProfile.MAX_SAMPLES;
+    Magic.fence();
+    numSites = site + 1;
+    return site;
+  }
+
+  /**
+   * Makes the profiles of a method's calls available to
+   * {@link #getProfile}.
+   *
+   * @param m the method
+   * @param siteNumbers the site numbers of the method's profiled calls
+   * @param count the number of profiled calls
+   */
+  static synchronized void setSites(NormalMethod m, int[] siteNumbers, int count) {
+    int id = m.getId();
+    if (data == null) {
+      data = new ReceiverTypeProfile[id + 500][];
+    }
+    if (id >= data.length) {
+      int newSize = data.length * 2;
+      if (newSize <= id) newSize = id + 500;
+      ReceiverTypeProfile[][] tmp = new ReceiverTypeProfile[newSize][];
+      System.arraycopy(data, 0, tmp, 0, data.length);
+      Magic.fence();
+      data = tmp;
+    }
+    ReceiverTypeProfile[] profiles = new ReceiverTypeProfile[count];
+    for (int i = 0; i < count; i++) {
+      profiles[i] = sites[siteNumbers[i]];
+    }
+    Magic.fence();
+    data[id] = profiles;
+  }
+
+  /**
+   * Records the receiver of a profiled call.
+   *
+   * @param receiver the receiver of the call
+   * @param site the site number of the call
+   */
+  @Entrypoint
+  @Uninterruptible
+  static void record(Object receiver, int site) {
+    // a null receiver will raise its NullPointerException at the call
+    if (receiver == null) return;
+    if (sites[site].record(ObjectModel.getObjectType(receiver))) {
+      budgets[site]--;
+    } else {
+      budgets[site] = 0;
+    }
+  }
+
+  /**
+   * @param m a method
+   * @param bcIndex the bytecode index of a call in the method
+   * @return a snapshot of the receiver type profile of the call,
+   *  {@code null} if there is none
+   */
+  public static ReceiverTypeProfile getProfile(RVMMethod m, int bcIndex) {
+    ReceiverTypeProfile[][] d = data;
+    int id = m.getId();
+    if (d == null || id >= d.length || d[id] == null) return null;
+    for (ReceiverTypeProfile p : d[id]) {
+      if (p.getBytecodeIndex() == bcIndex) return p.snapshot();
+    }
+    return null;
+  }
+}
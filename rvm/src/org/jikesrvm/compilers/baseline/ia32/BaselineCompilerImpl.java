@@ -2902,8 +2902,34 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
    * method invocation
    */
 
+  /**
+   * Emits a call to record the receiver type of a virtual or interface
+   * call, if receiver types are profiled. The call is skipped once the
+   * site has used up its budget of samples.
+   *
+   * @param count the number of parameter words of the call, including "this"
+   */
+  private void genReceiverTypeProfile(int count) {
+    if (!profileReceiverTypes) return;
+    int site = allocateReceiverSite(biStart);
+    asm.generateJTOCloadWord(S0, Entrypoints.receiverTypeBudgetsField.getOffset());
+    asm.emitCMP_RegDisp_Imm(S0, Offset.fromIntZeroExtend(site << LOG_BYTES_IN_INT), 0);
+    ForwardReference notProfiled = asm.forwardJcc(LE);
+    // "this" parameter is obj
+    if (count == 1) {
+      asm.emitPUSH_RegInd(SP);
+    } else {
+      asm.emitPUSH_RegDisp(SP, Offset.fromIntZeroExtend((count - 1) << LG_WORDSIZE));
+    }
+    asm.emitPUSH_Imm(site);
+    genParameterRegisterLoad(asm, 2);
+    asm.generateJTOCcall(Entrypoints.recordReceiverTypeMethod.getOffset());
+    notProfiled.resolve(asm);
+  }
+
   @Override
   protected void emit_unresolved_invokevirtual(MethodReference methodRef) {
+    genReceiverTypeProfile(methodRef.getParameterWords() + 1);
     emitDynamicLinkingSequence(asm, T0, methodRef, true);            // T0 has offset of method
     int methodRefparameterWords = methodRef.getParameterWords() + 1; // +1 for "this" parameter
     Offset objectOffset =
@@ -2923,6 +2949,7 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
   @Override
   protected void emit_resolved_invokevirtual(MethodReference methodRef) {
     int methodRefparameterWords = methodRef.getParameterWords() + 1; // +1 for "this" parameter
+    genReceiverTypeProfile(methodRefparameterWords);
     Offset methodRefOffset = methodRef.peekResolvedMethod().getOffset();
     Offset objectOffset =
       Offset.fromIntZeroExtend(methodRefparameterWords << LG_WORDSIZE).minus(WORDSIZE); // object offset into stack
@@ -2981,6 +3008,8 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
     RVMMethod resolvedMethod = null;
     resolvedMethod = methodRef.peekInterfaceMethod();
 
+    genReceiverTypeProfile(count);
+
     // (1) Emit dynamic type checking sequence if required to do so inline.
     if (VM.BuildForIMTInterfaceInvocation) {
       if (methodRef.isMiranda()) {
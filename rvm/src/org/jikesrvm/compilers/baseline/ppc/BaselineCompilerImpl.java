@@ -2511,9 +2511,33 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
    * method invocation
    */
 
+  /**
+   * Emits a call to record the receiver type of a virtual or interface
+   * call, if receiver types are profiled. The call is skipped once the
+   * site has used up its budget of samples.
+   *
+   * @param objectIndex the stack index of the "this" parameter
+   */
+  private void genReceiverTypeProfile(int objectIndex) {
+    if (!profileReceiverTypes) return;
+    int site = allocateReceiverSite(biStart);
+    asm.emitLAddrToc(T0, Entrypoints.receiverTypeBudgetsField.getOffset());
+    asm.emitLVAL(T1, site << LOG_BYTES_IN_INT);
+    asm.emitLIntX(T2, T0, T1);
+    asm.emitCMPI(T2, 0);
+    ForwardReference notProfiled = asm.emitForwardBC(LE);
+    asm.emitLAddrToc(T0, Entrypoints.recordReceiverTypeMethod.getOffset());
+    asm.emitMTCTR(T0);
+    peekAddr(T0, objectIndex);       // the "this" object
+    asm.emitLVAL(T1, site);
+    asm.emitBCCTRL();
+    notProfiled.resolve(asm);
+  }
+
   @Override
   protected void emit_unresolved_invokevirtual(MethodReference methodRef) {
     int objectIndex = methodRef.getParameterWords(); // +1 for "this" parameter, -1 to load it
+    genReceiverTypeProfile(objectIndex);
     emitDynamicLinkingSequence(T2, methodRef, true); // leaves method offset in T2
     peekAddr(T0, objectIndex);
     asm.baselineEmitLoadTIB(T1, T0); // load TIB
@@ -2527,6 +2551,7 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
   @Override
   protected void emit_resolved_invokevirtual(MethodReference methodRef) {
     int objectIndex = methodRef.getParameterWords(); // +1 for "this" parameter, -1 to load it
+    genReceiverTypeProfile(objectIndex);
     peekAddr(T0, objectIndex);
     asm.baselineEmitLoadTIB(T1, T0); // load TIB
     Offset methodOffset = methodRef.peekResolvedMethod().getOffset();
@@ -2588,6 +2613,7 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
     int count = methodRef.getParameterWords() + 1; // +1 for "this" parameter
     RVMMethod resolvedMethod = null;
     resolvedMethod = methodRef.peekInterfaceMethod();
+    genReceiverTypeProfile(count - 1);
 
     // (1) Emit dynamic type checking sequence if required to
     // do so inline.
@@ -98,6 +98,20 @@ public final class CodeArray {
         return BootImageCreate.create(numInstrs, isHot);
       }
     }
+
+    /**
+     * Allocate a code array for hot code that is to be placed directly
+     * after the code array this thread allocated previously this way.
+     * @param numInstrs the number of instructions to copy from instrs
+     * @return a CodeArray containing the instructions
+     */
+    public static CodeArray createClustered(int numInstrs) {
+      if (VM.runningVM) {
+        return MemoryManager.allocateClusteredCode(numInstrs);
+      } else {
+        return BootImageCreate.create(numInstrs, true);
+      }
+    }
   }
 
   /**
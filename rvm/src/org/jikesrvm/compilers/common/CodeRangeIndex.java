@@ -0,0 +1,181 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.common;
+
+import org.jikesrvm.runtime.Magic;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.AddressArray;
+
+/**
+ * An immutable snapshot of the code ranges of compiled methods, ordered
+ * by the start address of their code arrays.<p>
+ *
+ * Snapshots are built by {@link CompiledMethods} in interruptible code and
+ * published with a single reference store, so lookups can be performed
+ * without locking or allocation from uninterruptible code. The start
+ * addresses are recorded when the snapshot is built; entries for methods
+ * that have since been snipped are skipped during lookup and dropped the
+ * next time a snapshot is built.
+ */
+final class CodeRangeIndex {
+
+  /** Start addresses of the code arrays, in ascending order */
+  private final AddressArray starts;
+
+  /** Compiled method ids, parallel to {@link #starts} */
+  private final int[] ids;
+
+  /** Number of valid entries in the arrays */
+  private final int size;
+
+  private CodeRangeIndex(AddressArray starts, int[] ids, int size) {
+    this.starts = starts;
+    this.ids = ids;
+    this.size = size;
+  }
+
+  /**
+   * Id returned by {@link #find(Address)} when a compiled method's code is
+   * no longer at the address recorded in the snapshot. Callers must then
+   * fall back to an exhaustive search.
+   */
+  static final int STALE = -1;
+
+  /**
+   * Finds the compiled method whose code contains the given instruction.
+   *
+   * @param ip the instruction address, with the same convention as
+   *  {@link CompiledMethod#containsReturnAddress(Address)}
+   * @return the id of the compiled method, {@code 0} if no method in this
+   *  snapshot contains the address or {@link #STALE} if the snapshot no
+   *  longer reflects the location of the code
+   */
+  @Uninterruptible
+  int find(Address ip) {
+    // find the last entry whose code starts strictly below ip
+    int lo = 0;
+    int hi = size - 1;
+    int pos = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (starts.get(mid).LT(ip)) {
+        pos = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    // Live code ranges are disjoint, so only the nearest live entry at or
+    // below pos can contain ip. Entries for snipped methods are skipped.
+    for (int i = pos; i >= 0; i--) {
+      CompiledMethod cm = CompiledMethods.getCompiledMethodUnchecked(ids[i]);
+      if (cm == null || !cm.isCompiled()) continue;
+      if (Magic.objectAsAddress(cm.getEntryCodeArray()).NE(starts.get(i))) {
+        return STALE;
+      }
+      return cm.containsReturnAddress(ip) ? ids[i] : 0;
+    }
+    return 0;
+  }
+
+  /**
+   * Builds a new snapshot from an existing one and a batch of additional
+   * compiled method ids.
+   *
+   * @param old the previous snapshot, may be {@code null}
+   * @param extra ids of compiled methods to add
+   * @param numExtra number of valid entries in {@code extra}
+   * @return a new snapshot containing all live, compiled methods of
+   *  {@code old} and {@code extra}
+   */
+  static CodeRangeIndex merge(CodeRangeIndex old, int[] extra, int numExtra) {
+    int oldSize = old == null ? 0 : old.size;
+    AddressArray newStarts = AddressArray.create(oldSize + numExtra);
+    int[] newIds = new int[oldSize + numExtra];
+    int n = 0;
+    for (int i = 0; i < numExtra; i++) {
+      CompiledMethod cm = CompiledMethods.getCompiledMethodUnchecked(extra[i]);
+      if (cm == null || !cm.isCompiled()) continue;
+      newStarts.set(n, Magic.objectAsAddress(cm.getEntryCodeArray()));
+      newIds[n] = extra[i];
+      n++;
+    }
+    sort(newStarts, newIds, n);
+
+    // merge the sorted batch (at the front) with the old snapshot, walking
+    // backwards so the batch is never overwritten before it is consumed
+    int out = n;
+    for (int i = 0; i < oldSize; i++) {
+      CompiledMethod cm = CompiledMethods.getCompiledMethodUnchecked(old.ids[i]);
+      if (cm != null && cm.isCompiled()) out++;
+    }
+    int total = out;
+    int b = n - 1;
+    for (int i = oldSize - 1; i >= 0; i--) {
+      CompiledMethod cm = CompiledMethods.getCompiledMethodUnchecked(old.ids[i]);
+      if (cm == null || !cm.isCompiled()) continue;
+      Address start = old.starts.get(i);
+      while (b >= 0 && newStarts.get(b).GT(start)) {
+        out--;
+        newStarts.set(out, newStarts.get(b));
+        newIds[out] = newIds[b];
+        b--;
+      }
+      out--;
+      newStarts.set(out, start);
+      newIds[out] = old.ids[i];
+    }
+    return new CodeRangeIndex(newStarts, newIds, total);
+  }
+
+  /**
+   * Sorts the first {@code n} entries of the parallel arrays by start
+   * address using heapsort, so no temporary storage is required.
+   *
+   * @param starts start addresses
+   * @param ids compiled method ids
+   * @param n number of entries to sort
+   */
+  private static void sort(AddressArray starts, int[] ids, int n) {
+    for (int i = (n >>> 1) - 1; i >= 0; i--) {
+      siftDown(starts, ids, i, n);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      swap(starts, ids, 0, end);
+      siftDown(starts, ids, 0, end);
+    }
+  }
+
+  private static void siftDown(AddressArray starts, int[] ids, int root, int n) {
+    while (true) {
+      int child = 2 * root + 1;
+      if (child >= n) return;
+      if (child + 1 < n && starts.get(child + 1).GT(starts.get(child))) {
+        child++;
+      }
+      if (!starts.get(child).GT(starts.get(root))) return;
+      swap(starts, ids, root, child);
+      root = child;
+    }
+  }
+
+  private static void swap(AddressArray starts, int[] ids, int i, int j) {
+    Address tmpStart = starts.get(i);
+    starts.set(i, starts.get(j));
+    starts.set(j, tmpStart);
+    int tmpId = ids[i];
+    ids[i] = ids[j];
+    ids[j] = tmpId;
+  }
+}
@@ -288,6 +288,7 @@ public abstract class CompiledMethod {
   public final void compileComplete(CodeArray code) {
     instructions = code;
     flags |= COMPILED;
+    CompiledMethods.codeInstalled(this);
   }
 
   /**
@@ -12,6 +12,7 @@
  */
 package org.jikesrvm.compilers.common;
 
+import static org.jikesrvm.mm.mminterface.MemoryManagerConstants.MOVES_CODE;
 import static org.jikesrvm.runtime.UnboxedSizeConstants.BYTES_IN_ADDRESS;
 
 import java.util.Comparator;
@@ -61,6 +62,30 @@ public class CompiledMethods {
    */
   private static boolean scanForObsoleteMethods = false;
 
+  /**
+   * Number of newly compiled methods that are buffered before they are
+   * merged into {@link #codeIndex}.
+   */
+  private static final int CODE_INDEX_BATCH = 256;
+
+  /**
+   * Address ordered index over the code of compiled methods, used by
+   * {@link #findMethodForInstruction}. {@code null} until the first method
+   * is compiled at runtime and whenever the index has been invalidated.
+   */
+  private static CodeRangeIndex codeIndex;
+
+  /**
+   * Ids of methods whose compilation completed since {@link #codeIndex}
+   * was last rebuilt.
+   */
+  private static int[] pendingCodeIds = new int[CODE_INDEX_BATCH];
+
+  /**
+   * Number of valid entries in {@link #pendingCodeIds}.
+   */
+  private static int numPendingCodeIds;
+
   /**
    * Ensure space in backing array for id.
    *
@@ -165,7 +190,10 @@ public class CompiledMethods {
    * Assumption: caller has disabled gc (otherwise collector could move
    *                objects without fixing up the raw <code>ip</code> pointer)<p>
    *
-   * Note: this method is highly inefficient. Normally you should use the
+   * Lookups use an address ordered index over the code of compiled methods
+   * and do not allocate or acquire locks. Until the index has been built
+   * (i.e. before the first method is compiled at runtime), all compiled
+   * methods are searched. Normally you should still use the
    * following instead:
    *
    * <code>
@@ -186,6 +214,27 @@ public class CompiledMethods {
    */
   @Uninterruptible
   public static CompiledMethod findMethodForInstruction(Address ip) {
+    // read the pending batch before the index: a batch is only discarded
+    // after the index containing it has been published
+    int numPending = numPendingCodeIds;
+    int[] pending = pendingCodeIds;
+    Magic.combinedLoadBarrier();
+    CodeRangeIndex index = codeIndex;
+
+    if (index != null) {
+      for (int i = 0; i < numPending && i < pending.length; i++) {
+        CompiledMethod compiledMethod = getCompiledMethodUnchecked(pending[i]);
+        if (compiledMethod != null && compiledMethod.isCompiled() &&
+            compiledMethod.containsReturnAddress(ip)) {
+          return compiledMethod;
+        }
+      }
+      int cmid = index.find(ip);
+      if (cmid != CodeRangeIndex.STALE) {
+        return cmid == 0 ? null : getCompiledMethodUnchecked(cmid);
+      }
+    }
+
     for (int i = 0, n = numCompiledMethods(); i < n; ++i) {
       CompiledMethod compiledMethod = getCompiledMethodUnchecked(i);
       if (compiledMethod == null || !compiledMethod.isCompiled()) {
@@ -200,6 +249,47 @@ public class CompiledMethods {
     return null;
   }
 
+  /**
+   * Records that the code of a compiled method has been installed, making
+   * it visible to {@link #findMethodForInstruction}.
+   *
+   * @param cm the compiled method whose compilation has completed
+   */
+  static synchronized void codeInstalled(CompiledMethod cm) {
+    if (!VM.runningVM) return;
+    if (codeIndex == null) {
+      // (re)build the index from scratch, covering the boot image too
+      int n = numCompiledMethods();
+      int[] all = new int[n];
+      for (int i = 0; i < n; i++) {
+        all[i] = i;
+      }
+      publishCodeIndex(CodeRangeIndex.merge(null, all, n));
+      return;
+    }
+    if (numPendingCodeIds == CODE_INDEX_BATCH) {
+      publishCodeIndex(CodeRangeIndex.merge(codeIndex, pendingCodeIds, numPendingCodeIds));
+    }
+    pendingCodeIds[numPendingCodeIds] = cm.getId();
+    Magic.fence();
+    numPendingCodeIds++;
+  }
+
+  /**
+   * Publishes a new index and then starts a new, empty pending batch.
+   *
+   * @param index the index to publish
+   */
+  private static void publishCodeIndex(CodeRangeIndex index) {
+    int[] fresh = new int[CODE_INDEX_BATCH];
+    codeIndex = index;
+    Magic.fence();
+    pendingCodeIds = fresh;
+    Magic.fence();
+    numPendingCodeIds = 0;
+    Magic.fence();
+  }
+
   // We keep track of compiled methods that become obsolete because they have
   // been replaced by another version. These are candidates for GC. But, they
   // can only be collected once we are certain that they are no longer being
@@ -221,6 +311,11 @@ public class CompiledMethods {
    */
   @Uninterruptible
   public static void snipObsoleteCompiledMethods() {
+    if (MOVES_CODE) {
+      // code addresses recorded in the index may be out of date; the index
+      // is rebuilt when the next method is compiled
+      codeIndex = null;
+    }
     Magic.combinedLoadBarrier();
     if (!scanForObsoleteMethods) return;
     scanForObsoleteMethods = false;
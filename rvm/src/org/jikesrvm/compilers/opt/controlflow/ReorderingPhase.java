@@ -40,6 +40,14 @@ import org.jikesrvm.compilers.opt.ir.operand.BranchOperand;
  *     to the end of the code order.
  *  <li>(2) Pettis and Hansen Algo2.
  * </ul>
+ * The simple algorithm moves infrequent blocks after all other blocks, so
+ * that exception paths and rare branches do not share cache lines with the
+ * hot code. Pettis and Hansen does the same when
+ * {@link OptOptions#REORDER_CODE_SPLIT_COLD} is set (off by default). The
+ * cold blocks still stay at the tail of the method's code array: only
+ * whole methods are placed, optimized code being allocated in the hot
+ * code space and, with the CLUSTER_HOT_CODE AOS option, the hot methods
+ * being laid out next to their callers and callees.
  */
 public final class ReorderingPhase extends CompilerPhase {
 
@@ -179,6 +187,8 @@ public final class ReorderingPhase extends CompilerPhase {
     //     (c) Create a set of blocks
     //     (d) Make fallthroughs explict by adding GOTOs
     int numBlocks = 0;
+    boolean splitCold = ir.options.REORDER_CODE_SPLIT_COLD;
+    int numHotChains = 0;
     TreeSet<Edge> edges = new TreeSet<Edge>();
     LinkedHashSet<BasicBlock> chainHeads = new LinkedHashSet<BasicBlock>();
     HashMap<BasicBlock, BasicBlock> associatedChain = new HashMap<BasicBlock, BasicBlock>();
@@ -226,6 +236,10 @@ public final class ReorderingPhase extends CompilerPhase {
         if (DEBUG) VM.sysWriteln("\tSource and target are in same chain");
         continue;
       }
+      if (splitCold && e.source.getInfrequent() != e.target.getInfrequent()) {
+        if (DEBUG) VM.sysWriteln("\tEdge between hot and cold code");
+        continue;
+      }
       if (DEBUG) VM.sysWriteln("\tMerging chains");
       chainHeads.remove(e.target);
       ir.cfg.linkInCodeOrder(e.source, e.target);
@@ -242,6 +256,7 @@ public final class ReorderingPhase extends CompilerPhase {
     for (BasicBlock head : chainHeads) {
       if (DEBUG) dumpChain(head);
       chainInfo.put(head, new ChainInfo(head));
+      if (!head.getInfrequent()) numHotChains++;
     }
 
     // (3) Summarize inter-chain edges.
@@ -273,6 +288,8 @@ public final class ReorderingPhase extends CompilerPhase {
     //     already placed). Prefer a node with non-zero placedWeight and inWeight to one that has
     //     zeros for both. (A node with both zero placedWeight and zero inWeight is something that
     //     the profile data predicts is not reachable via normal control flow from the entry node).
+    //     When splitting cold code, chains of infrequent blocks are only placed once all
+    //     other chains are (chains are either all frequent or all infrequent).
     BasicBlock lastNode = null;
     ChainInfo nextChoice = chainInfo.get(entry);
     int numPlaced = 0;
@@ -285,6 +302,8 @@ public final class ReorderingPhase extends CompilerPhase {
         numPlaced++;
         lastNode = ptr;
       }
+      if (!nextChoice.head.getInfrequent()) numHotChains--;
+      boolean deferCold = splitCold && numHotChains > 0;
       // update ChainInfo
       chainInfo.remove(nextChoice.head);
       if (chainInfo.isEmpty()) break; // no chains left to place.
@@ -301,6 +320,7 @@ public final class ReorderingPhase extends CompilerPhase {
       // Find the next chain to append.
       nextChoice = null;
       for (ChainInfo cand : chainInfo.values()) {
+        if (deferCold && cand.head.getInfrequent()) continue;
         if (cand.placedWeight > 0f) {
           if (nextChoice == null) {
             if (DEBUG) VM.sysWriteln("First reachable candidate " + cand);
@@ -317,6 +337,7 @@ public final class ReorderingPhase extends CompilerPhase {
       // All remaining chains are fluff (not reachable from entry).
       // Pick one with minimal inWeight and continue.
       for (ChainInfo cand : chainInfo.values()) {
+        if (deferCold && cand.head.getInfrequent()) continue;
         if (nextChoice == null) {
           if (DEBUG) VM.sysWriteln("First candidate " + cand);
           nextChoice = cand;
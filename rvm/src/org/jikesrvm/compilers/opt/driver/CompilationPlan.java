@@ -62,6 +62,12 @@ public final class CompilationPlan {
 
   public boolean irGeneration;
 
+  /**
+   * Whether the generated code should be placed directly after the code
+   * this thread compiled previously with this flag set?
+   */
+  public boolean clusterCode;
+
   /**
    * Construct a compilation plan
    *
@@ -46,10 +46,12 @@ import org.jikesrvm.compilers.opt.hir2lir.ConvertHIRtoLIR;
 import org.jikesrvm.compilers.opt.hir2lir.ExpandRuntimeServices;
 import org.jikesrvm.compilers.opt.ir.IR;
 import org.jikesrvm.compilers.opt.regalloc.CoalesceMoves;
+import org.jikesrvm.compilers.opt.ssa.BoundsCheckElimination;
 import org.jikesrvm.compilers.opt.ssa.GCP;
 import org.jikesrvm.compilers.opt.ssa.LeaveSSA;
 import org.jikesrvm.compilers.opt.ssa.LiveRangeSplitting;
 import org.jikesrvm.compilers.opt.ssa.LoadElimination;
+import org.jikesrvm.compilers.opt.ssa.LoopVectorization;
 import org.jikesrvm.compilers.opt.ssa.LoopVersioning;
 import org.jikesrvm.compilers.opt.ssa.PiNodes;
 import org.jikesrvm.compilers.opt.ssa.RedundantBranchElimination;
@@ -343,8 +345,12 @@ public class OptimizationPlanner {
             new SSATuneUp(),
             // Global Code Placement,
             new GCP(),
+            // Array bounds check elimination
+            new BoundsCheckElimination(),
             // Loop versioning
             new LoopVersioning(),
+            // Loop vectorization
+            new LoopVectorization(),
             // Leave SSA
             new LeaveSSA()}) {
           @Override
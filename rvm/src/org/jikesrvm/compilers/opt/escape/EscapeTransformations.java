@@ -42,6 +42,7 @@ import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
  * <ul>
  *  <li> 1. synchronization removal
  *  <li> 2. scalar replacement of aggregates and short arrays
+ *  <li> 3. partial scalar replacement of objects that escape on some paths
  * </ul>
  */
 public class EscapeTransformations extends CompilerPhase {
@@ -68,7 +69,8 @@ public class EscapeTransformations extends CompilerPhase {
 
   @Override
   public final boolean shouldPerform(OptOptions options) {
-    return options.ESCAPE_MONITOR_REMOVAL || options.ESCAPE_SCALAR_REPLACE_AGGREGATES;
+    return options.ESCAPE_MONITOR_REMOVAL || options.ESCAPE_SCALAR_REPLACE_AGGREGATES ||
+      options.ESCAPE_PARTIAL_SCALAR_REPLACE;
   }
 
   @Override
@@ -124,6 +126,15 @@ public class EscapeTransformations extends CompilerPhase {
             s.transform();
             removedAggregate = true;
           }
+        } else if (ir.options.ESCAPE_PARTIAL_SCALAR_REPLACE && def.getOpcode() == NEW_opcode &&
+                   New.getType(def).getVMType().isClassType()) {
+          // the object escapes, but perhaps only on some paths
+          PartialObjectReplacer s = PartialObjectReplacer.getReplacer(def, ir);
+          if (s != null) {
+            s.transform();
+            removedAggregate = true;
+            continue;
+          }
         }
         // *********************************************************
         // Now remove synchronizations
@@ -42,11 +42,19 @@ class MethodSummary {
    */
   private long escapeInfo;
 
+  /**
+   * Parameters that may escape from the method, i.e. that may be retained
+   * by the method after it returns. Uses the same bit numbering as
+   * {@link #escapeInfo}; the result bit is unused.
+   */
+  private long methodEscapeInfo;
+
   /**
    * @param m RVMMethod representing this method.
    */
   MethodSummary(RVMMethod m) {
     escapeInfo = EVERYTHING_ESCAPES;
+    methodEscapeInfo = EVERYTHING_ESCAPES;
   }
 
   /**
@@ -77,6 +85,34 @@ class MethodSummary {
     return (escapeInfo & mask) != 0;
   }
 
+  /**
+   * Record that a parameter may or may not escape from the method.
+   *
+   * @param p the number of the parameter
+   * @param b may it escape?
+   */
+  public void setParameterMayEscapeMethod(int p, boolean b) {
+    if (p > MAXIMUM_PARAMETER_INDEX) return;
+    long mask = 1L << p;
+    if (b) {
+      methodEscapeInfo |= mask;
+    } else {
+      methodEscapeInfo &= (~mask);
+    }
+  }
+
+  /**
+   * Query whether a parameter may escape from the method.
+   * @param p the number of the parameter
+   * @return {@code false} iff the method <em>cannot</em> retain the
+   * parameter after it returns, {@code true} otherwise.
+   */
+  public boolean parameterMayEscapeMethod(int p) {
+    if (p > MAXIMUM_PARAMETER_INDEX) return true;
+    long mask = 1L << p;
+    return (methodEscapeInfo & mask) != 0;
+  }
+
   /**
    * Record that a result of this method may or may not escape from a thread.
    *
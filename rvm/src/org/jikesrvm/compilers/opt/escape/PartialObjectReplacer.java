@@ -0,0 +1,510 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.escape;
+
+import static org.jikesrvm.compilers.opt.driver.OptConstants.MAYBE;
+import static org.jikesrvm.compilers.opt.driver.OptConstants.YES;
+import static org.jikesrvm.compilers.opt.ir.IRTools.IC;
+import static org.jikesrvm.compilers.opt.ir.Operators.ATHROW_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.CALL_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.GETFIELD;
+import static org.jikesrvm.compilers.opt.ir.Operators.GETFIELD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.GET_OBJ_TIB_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_MOVE;
+import static org.jikesrvm.compilers.opt.ir.Operators.INSTANCEOF_NOTNULL_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INSTANCEOF_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_MOVE;
+import static org.jikesrvm.compilers.opt.ir.Operators.NEW;
+import static org.jikesrvm.compilers.opt.ir.Operators.NULL_CHECK_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.PUTFIELD;
+import static org.jikesrvm.compilers.opt.ir.Operators.PUTFIELD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.PUTSTATIC_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_ASTORE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_MOVE;
+import static org.jikesrvm.compilers.opt.ir.Operators.RETURN_opcode;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jikesrvm.classloader.FieldReference;
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.RVMField;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.opt.ClassLoaderProxy;
+import org.jikesrvm.compilers.opt.DefUse;
+import org.jikesrvm.compilers.opt.OptimizingCompilerException;
+import org.jikesrvm.compilers.opt.ir.AStore;
+import org.jikesrvm.compilers.opt.ir.BasicBlock;
+import org.jikesrvm.compilers.opt.ir.Call;
+import org.jikesrvm.compilers.opt.ir.GetField;
+import org.jikesrvm.compilers.opt.ir.GuardedUnary;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.IRTools;
+import org.jikesrvm.compilers.opt.ir.InstanceOf;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.Move;
+import org.jikesrvm.compilers.opt.ir.New;
+import org.jikesrvm.compilers.opt.ir.NullCheck;
+import org.jikesrvm.compilers.opt.ir.Operator;
+import org.jikesrvm.compilers.opt.ir.PutField;
+import org.jikesrvm.compilers.opt.ir.PutStatic;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.ir.operand.AddressConstantOperand;
+import org.jikesrvm.compilers.opt.ir.operand.LocationOperand;
+import org.jikesrvm.compilers.opt.ir.operand.MethodOperand;
+import org.jikesrvm.compilers.opt.ir.operand.Operand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+import org.jikesrvm.compilers.opt.ir.operand.TIBConstantOperand;
+import org.jikesrvm.compilers.opt.ir.operand.TrueGuardOperand;
+import org.jikesrvm.compilers.opt.ir.operand.TypeOperand;
+
+/**
+ * Class that performs partial scalar replacement of non-array objects
+ * that escape the method on some, but not all, paths.<p>
+ *
+ * The object is kept virtual: its fields live in scalars, as for
+ * {@link ObjectReplacer}. Immediately before each instruction through
+ * which the object escapes, an object is allocated and initialized from
+ * the current values of the scalars, and the escaping instruction uses
+ * this materialized object instead. The allocation thus only happens on
+ * paths that actually let the object escape.<p>
+ *
+ * Escape points are classified as follows:
+ * <ul>
+ *  <li>A <em>borrowing</em> call passes the object to a method whose
+ *      {@link MethodSummary} says the parameter does not escape the
+ *      callee. The callee may read and write the fields, but cannot
+ *      retain the object, so the fields are reloaded into the scalars
+ *      after the call returns normally and the object becomes virtual
+ *      again.
+ *  <li>All other escape points are <em>terminal</em>: no other use of the
+ *      object may be reachable after them.
+ * </ul>
+ * To guarantee that the transformation never allocates more objects than
+ * the original code, no escape point may be reachable from another escape
+ * point without passing through the allocation site again.
+ */
+final class PartialObjectReplacer implements AggregateReplacer {
+  /**
+   * type of the object
+   */
+  private final RVMClass klass;
+  /**
+   * the IR
+   */
+  private final IR ir;
+  /**
+   * the register holding the object reference
+   */
+  private final Register reg;
+  /**
+   * instructions at which the object escapes
+   */
+  private final ArrayList<Instruction> escapes;
+  /**
+   * the subset of {@link #escapes} that are borrowing calls
+   */
+  private final Set<Instruction> borrows;
+
+  /**
+   * Return an object representing this transformation for a given
+   * allocation site
+   *
+   * <p> PRECONDITION: register lists and SSA flags are computed and valid
+   *
+   * @param inst the allocation site
+   * @param ir the governing IR
+   * @return the object, or null if illegal or unprofitable
+   */
+  public static PartialObjectReplacer getReplacer(Instruction inst, IR ir) {
+    Register r = New.getResult(inst).getRegister();
+    RVMClass klass = New.getType(inst).getVMType().asClass();
+    if (klass.hasFinalizer()) {
+      return null;
+    }
+    ArrayList<Instruction> escapes = new ArrayList<Instruction>();
+    Set<Instruction> borrows = new HashSet<Instruction>();
+    for (RegisterOperand use = r.useList; use != null; use = use.getNext()) {
+      switch (classifyUse(use, klass, ir)) {
+        case VIRTUAL:
+          break;
+        case BORROW:
+          borrows.add(use.instruction);
+          // fall through
+        case ESCAPE:
+          if (!escapes.contains(use.instruction)) {
+            escapes.add(use.instruction);
+          }
+          break;
+        default:
+          return null;
+      }
+    }
+    // objects that do not escape at all are handled by ObjectReplacer
+    if (escapes.isEmpty()) {
+      return null;
+    }
+    BasicBlock defBB = inst.getBasicBlock();
+    if (!isProfitable(defBB, escapes)) {
+      return null;
+    }
+    Set<BasicBlock> useBlocks = new HashSet<BasicBlock>();
+    for (RegisterOperand use = r.useList; use != null; use = use.getNext()) {
+      useBlocks.add(use.instruction.getBasicBlock());
+    }
+    for (Instruction e : escapes) {
+      BasicBlock bb = e.getBasicBlock();
+      boolean borrow = borrows.contains(e);
+      // uses later in the same block
+      for (Instruction s = e.nextInstructionInCodeOrder(); s != bb.lastInstruction(); s = s.nextInstructionInCodeOrder()) {
+        if (usesRegister(s, r) && (!borrow || escapes.contains(s))) {
+          return null;
+        }
+      }
+      // uses in blocks reachable from here without another execution of
+      // the allocation
+      Set<BasicBlock> reached = reachableFrom(bb, defBB, !borrow);
+      for (BasicBlock b : reached) {
+        if (!useBlocks.contains(b)) {
+          continue;
+        }
+        for (Instruction s : escapes) {
+          if (s.getBasicBlock() == b) {
+            return null;
+          }
+        }
+        if (!borrow) {
+          return null;
+        }
+      }
+      if (borrow) {
+        // an exception thrown by the callee may leave the fields in any
+        // state, so there must be no use on the exceptional paths
+        for (BasicBlock b : exceptionalReachableFrom(bb, defBB)) {
+          if (useBlocks.contains(b)) {
+            return null;
+          }
+        }
+      }
+    }
+    return new PartialObjectReplacer(r, klass, ir, escapes, borrows);
+  }
+
+  /** A use that is replaced by scalars */
+  private static final int VIRTUAL = 0;
+  /** A use through which the object escapes the method */
+  private static final int ESCAPE = 1;
+  /** A call that accesses but does not retain the object */
+  private static final int BORROW = 2;
+  /** A use that is not handled */
+  private static final int UNSUPPORTED = 3;
+
+  /**
+   * Classify a use of the object's register.
+   *
+   * @param use the use
+   * @param klass the type of the object
+   * @param ir the governing IR
+   * @return one of {@link #VIRTUAL}, {@link #ESCAPE}, {@link #BORROW} or
+   *  {@link #UNSUPPORTED}
+   */
+  private static int classifyUse(RegisterOperand use, RVMClass klass, IR ir) {
+    Instruction inst = use.instruction;
+    switch (inst.getOpcode()) {
+      case GETFIELD_opcode:
+        return GetField.getLocation(inst).getFieldRef().isResolved() ? VIRTUAL : UNSUPPORTED;
+      case PUTFIELD_opcode:
+        if (PutField.getValue(inst) == use) {
+          return ESCAPE;
+        }
+        if (PutField.getValue(inst).similar(use)) {
+          // stores the object into itself
+          return UNSUPPORTED;
+        }
+        return PutField.getLocation(inst).getFieldRef().isResolved() ? VIRTUAL : UNSUPPORTED;
+      case NULL_CHECK_opcode:
+      case GET_OBJ_TIB_opcode:
+        return VIRTUAL;
+      case INSTANCEOF_opcode:
+      case INSTANCEOF_NOTNULL_opcode: {
+        TypeReference lhsType = InstanceOf.getType(inst).getTypeRef();
+        return ClassLoaderProxy.includesType(lhsType, klass.getTypeRef()) == MAYBE ? UNSUPPORTED : VIRTUAL;
+      }
+      case PUTSTATIC_opcode:
+        return PutStatic.getValue(inst) == use ? ESCAPE : UNSUPPORTED;
+      case REF_ASTORE_opcode:
+        return AStore.getValue(inst) == use ? ESCAPE : UNSUPPORTED;
+      case RETURN_opcode:
+      case ATHROW_opcode:
+        return ESCAPE;
+      case CALL_opcode: {
+        MethodOperand mop = Call.getMethod(inst);
+        if (mop == null || !mop.hasPreciseTarget()) {
+          return ESCAPE;
+        }
+        RVMMethod target = mop.getTarget();
+        if (target.isNative()) {
+          return ESCAPE;
+        }
+        MethodSummary summ = SimpleEscape.getMethodSummaryIfAvailable(target, ir.options);
+        if (summ == null || summ.inProgress()) {
+          return ESCAPE;
+        }
+        for (int i = 0; i < Call.getNumberOfParams(inst); i++) {
+          Operand p = Call.getParam(inst, i);
+          if (p.isRegister() && p.asRegister().getRegister() == use.getRegister() &&
+              summ.parameterMayEscapeMethod(i)) {
+            return ESCAPE;
+          }
+        }
+        return BORROW;
+      }
+      default:
+        return UNSUPPORTED;
+    }
+  }
+
+  /**
+   * Is the transformation worthwhile, i.e. do the escape points execute
+   * less often than the allocation?
+   *
+   * @param defBB the block holding the allocation
+   * @param escapes the escape points
+   * @return whether the transformation is profitable
+   */
+  private static boolean isProfitable(BasicBlock defBB, ArrayList<Instruction> escapes) {
+    boolean allInfrequent = true;
+    float escapeFrequency = 0f;
+    for (Instruction e : escapes) {
+      BasicBlock bb = e.getBasicBlock();
+      // the object escapes every time it is allocated
+      if (bb == defBB) {
+        return false;
+      }
+      allInfrequent &= bb.getInfrequent();
+      escapeFrequency += bb.getExecutionFrequency();
+    }
+    if (allInfrequent && !defBB.getInfrequent()) {
+      return true;
+    }
+    return escapeFrequency < defBB.getExecutionFrequency();
+  }
+
+  /**
+   * Find the blocks reachable from the successors of a block without
+   * passing through the allocation site's block.
+   *
+   * @param bb the starting block
+   * @param defBB the block holding the allocation
+   * @param exceptional whether to follow exceptional edges out of
+   *  {@code bb}
+   * @return the set of reachable blocks
+   */
+  private static Set<BasicBlock> reachableFrom(BasicBlock bb, BasicBlock defBB, boolean exceptional) {
+    Set<BasicBlock> reached = new HashSet<BasicBlock>();
+    ArrayList<BasicBlock> work = new ArrayList<BasicBlock>();
+    Enumeration<BasicBlock> start = exceptional ? bb.getOut() : bb.getNormalOut();
+    while (start.hasMoreElements()) {
+      work.add(start.nextElement());
+    }
+    return search(work, reached, defBB);
+  }
+
+  /**
+   * Find the blocks reachable from the exceptional successors of a block
+   * without passing through the allocation site's block.
+   *
+   * @param bb the starting block
+   * @param defBB the block holding the allocation
+   * @return the set of reachable blocks
+   */
+  private static Set<BasicBlock> exceptionalReachableFrom(BasicBlock bb, BasicBlock defBB) {
+    Set<BasicBlock> reached = new HashSet<BasicBlock>();
+    ArrayList<BasicBlock> work = new ArrayList<BasicBlock>();
+    for (Enumeration<BasicBlock> e = bb.getExceptionalOut(); e.hasMoreElements();) {
+      work.add(e.nextElement());
+    }
+    return search(work, reached, defBB);
+  }
+
+  private static Set<BasicBlock> search(ArrayList<BasicBlock> work, Set<BasicBlock> reached, BasicBlock defBB) {
+    while (!work.isEmpty()) {
+      BasicBlock b = work.remove(work.size() - 1);
+      if (b == defBB || !reached.add(b)) {
+        continue;
+      }
+      for (Enumeration<BasicBlock> e = b.getOut(); e.hasMoreElements();) {
+        work.add(e.nextElement());
+      }
+    }
+    return reached;
+  }
+
+  private static boolean usesRegister(Instruction s, Register r) {
+    for (Enumeration<Operand> e = s.getUses(); e.hasMoreElements();) {
+      Operand op = e.nextElement();
+      if (op != null && op.isRegister() && op.asRegister().getRegister() == r) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param r the register holding the object reference
+   * @param klass the type of the object to replace
+   * @param ir the IR
+   * @param escapes the escape points
+   * @param borrows the borrowing calls among the escape points
+   */
+  private PartialObjectReplacer(Register r, RVMClass klass, IR ir, ArrayList<Instruction> escapes,
+                                Set<Instruction> borrows) {
+    this.reg = r;
+    this.klass = klass;
+    this.ir = ir;
+    this.escapes = escapes;
+    this.borrows = borrows;
+  }
+
+  @Override
+  public void transform() {
+    ArrayList<RVMField> fields = new ArrayList<RVMField>();
+    for (RVMField field : klass.getInstanceFields()) {
+      fields.add(field);
+    }
+    // create a scalar for each field. initialize the scalar to
+    // default values before the object's def
+    RegisterOperand[] scalars = new RegisterOperand[fields.size()];
+    Instruction defI = reg.defList.instruction;
+    TypeOperand type = New.getType(defI);
+    for (int i = 0; i < fields.size(); i++) {
+      RVMField f = fields.get(i);
+      Operand defaultValue = IRTools.getDefaultOperand(f.getType());
+      scalars[i] = IRTools.moveIntoRegister(ir.regpool, defI, defaultValue);
+      scalars[i].setType(f.getType());
+    }
+    // materialize the object at the escape points
+    for (Instruction e : escapes) {
+      RegisterOperand obj = ir.regpool.makeTemp(klass.getTypeRef());
+      obj.setPreciseType();
+      Instruction alloc = New.create(NEW, obj, (TypeOperand) type.copy());
+      alloc.copyPosition(e);
+      e.insertBefore(alloc);
+      DefUse.updateDUForNewInstruction(alloc);
+      for (int i = 0; i < fields.size(); i++) {
+        RVMField f = fields.get(i);
+        Instruction store = PutField.create(PUTFIELD, scalars[i].copyRO(), obj.copyRO(),
+            new AddressConstantOperand(f.getOffset()), new LocationOperand(f), new TrueGuardOperand());
+        store.copyPosition(e);
+        e.insertBefore(store);
+        DefUse.updateDUForNewInstruction(store);
+      }
+      for (Enumeration<Operand> uses = e.getUses(); uses.hasMoreElements();) {
+        Operand op = uses.nextElement();
+        if (op != null && op.isRegister() && op.asRegister().getRegister() == reg) {
+          RegisterOperand use = op.asRegister();
+          DefUse.removeUse(use);
+          use.setRegister(obj.getRegister());
+          DefUse.recordUse(use);
+        }
+      }
+      if (borrows.contains(e)) {
+        // the callee may have updated the fields
+        Instruction last = e;
+        for (int i = 0; i < fields.size(); i++) {
+          RVMField f = fields.get(i);
+          Instruction load = GetField.create(GETFIELD, scalars[i].copyRO(), obj.copyRO(),
+              new AddressConstantOperand(f.getOffset()), new LocationOperand(f), new TrueGuardOperand());
+          load.copyPosition(e);
+          last.insertAfter(load);
+          DefUse.updateDUForNewInstruction(load);
+          last = load;
+        }
+      }
+    }
+    DefUse.removeInstructionAndUpdateDU(defI);
+    // the remaining uses are non-escaping: replace them with the scalars
+    while (reg.useList != null) {
+      scalarReplace(reg.useList, scalars, fields);
+    }
+  }
+
+  /**
+   * Replace a given non-escaping use of a object with its scalar equivalent
+   *
+   * @param use the use to replace
+   * @param scalars an array of scalar register operands to replace
+   *                  the object's fields with
+   * @param fields the object's fields
+   */
+  private void scalarReplace(RegisterOperand use, RegisterOperand[] scalars, ArrayList<RVMField> fields) {
+    Instruction inst = use.instruction;
+    try {
+      switch (inst.getOpcode()) {
+      case PUTFIELD_opcode: {
+        FieldReference fr = PutField.getLocation(inst).getFieldRef();
+        int index = fields.indexOf(fr.peekResolvedField());
+        Operator moveOp = IRTools.getMoveOp(scalars[index].getType());
+        Instruction i = Move.create(moveOp, scalars[index].copyRO(), PutField.getClearValue(inst));
+        inst.insertBefore(i);
+        DefUse.removeInstructionAndUpdateDU(inst);
+        DefUse.updateDUForNewInstruction(i);
+      }
+      break;
+      case GETFIELD_opcode: {
+        FieldReference fr = GetField.getLocation(inst).getFieldRef();
+        int index = fields.indexOf(fr.peekResolvedField());
+        Operator moveOp = IRTools.getMoveOp(scalars[index].getType());
+        Instruction i = Move.create(moveOp, GetField.getClearResult(inst), scalars[index].copyRO());
+        inst.insertBefore(i);
+        DefUse.removeInstructionAndUpdateDU(inst);
+        DefUse.updateDUForNewInstruction(i);
+      }
+      break;
+      case NULL_CHECK_opcode: {
+        // unlike ObjectReplacer we keep the guard, as escape points such
+        // as virtual calls may still depend on it
+        Instruction i = Move.create(GUARD_MOVE, NullCheck.getClearGuardResult(inst), new TrueGuardOperand());
+        DefUse.replaceInstructionAndUpdateDU(inst, i);
+      }
+      break;
+      case INSTANCEOF_opcode:
+      case INSTANCEOF_NOTNULL_opcode: {
+        TypeReference lhsType = InstanceOf.getType(inst).getTypeRef();
+        Instruction i;
+        if (ClassLoaderProxy.includesType(lhsType, klass.getTypeRef()) == YES) {
+          i = Move.create(INT_MOVE, InstanceOf.getClearResult(inst), IC(1));
+        } else {
+          i = Move.create(INT_MOVE, InstanceOf.getClearResult(inst), IC(0));
+        }
+        DefUse.replaceInstructionAndUpdateDU(inst, i);
+      }
+      break;
+      case GET_OBJ_TIB_opcode: {
+        Instruction i = Move.create(REF_MOVE, GuardedUnary.getClearResult(inst), new TIBConstantOperand(klass));
+        DefUse.replaceInstructionAndUpdateDU(inst, i);
+      }
+      break;
+      default:
+        throw new OptimizingCompilerException("PartialObjectReplacer: unexpected use " + inst);
+      }
+    } catch (Exception e) {
+      OptimizingCompilerException oe = new OptimizingCompilerException("Error handling use (" + use + ") of: " + inst);
+      oe.initCause(e);
+      throw oe;
+    }
+  }
+}
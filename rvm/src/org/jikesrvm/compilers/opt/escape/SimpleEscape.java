@@ -176,6 +176,7 @@ class SimpleEscape extends CompilerPhase {
       } else {
         summ.setParameterMayEscapeThread(numParam, true);
       }
+      summ.setParameterMayEscapeMethod(numParam, !result.isMethodLocal(p));
     }
 
     // update the method summary to note whether the return value
@@ -771,7 +772,7 @@ class SimpleEscape extends CompilerPhase {
    *  if it does not exist
    * @return a method summary or {@code null}.
    */
-  private static MethodSummary getMethodSummaryIfAvailable(RVMMethod m, OptOptions options) {
+  static MethodSummary getMethodSummaryIfAvailable(RVMMethod m, OptOptions options) {
     MethodSummary summ = SummaryDatabase.findMethodSummary(m);
     if (summ == null) {
       if (options.ESCAPE_SIMPLE_IPA) {
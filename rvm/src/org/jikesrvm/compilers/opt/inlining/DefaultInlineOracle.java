@@ -33,6 +33,9 @@ import org.jikesrvm.adaptive.database.callgraph.WeightedCallTargets;
 import org.jikesrvm.classloader.NormalMethod;
 import org.jikesrvm.classloader.RVMClass;
 import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.compilers.baseline.ReceiverTypeProfile;
+import org.jikesrvm.compilers.baseline.ReceiverTypeProfiles;
 import org.jikesrvm.compilers.common.CompiledMethod;
 import org.jikesrvm.compilers.opt.OptOptions;
 import org.jikesrvm.compilers.opt.driver.OptimizingCompiler;
@@ -47,6 +50,10 @@ import org.jikesrvm.scheduler.RVMThread;
  *  <li>Always inline trivial methods that can be inlined without a guard
  *  <li>At O1 and greater use a mix of profile information and static heuristics
  *      to inline larger methods and methods that require guards.
+ *      Where the dynamic call graph has no samples for a call, the receiver
+ *      types recorded by baseline compiled code supply the targets, and
+ *      a receiver type profile that is not megamorphic lets targets be
+ *      guarded by class tests against the observed receiver classes.
  * </ol>
  */
 public final class DefaultInlineOracle implements InlineOracle {
@@ -153,10 +160,27 @@ public final class DefaultInlineOracle implements InlineOracle {
       }
     }
 
+    ReceiverTypeProfile receiverTypes = null;
+    if (opts.INLINE_RECEIVER_TYPE_PROFILE && !state.getHasPreciseTarget() &&
+        !staticCallee.isStatic() && !staticCallee.isObjectInitializer()) {
+      receiverTypes = ReceiverTypeProfiles.getProfile(caller, bcIndex);
+      if (receiverTypes != null && receiverTypes.getTotalCount() < opts.INLINE_RECEIVER_TYPE_MIN_SAMPLES) {
+        receiverTypes = null;
+      }
+    }
+
     // Critical section: must prevent class hierarchy from changing while
     // we are inspecting it to determine how/whether to do the inline guard.
     synchronized (RVMClass.classLoadListener) {
 
+      if (targets == null && receiverTypes != null) {
+        targets = targetsFromReceiverTypes(receiverTypes, staticCallee, opts);
+        if (targets != null) {
+          reportProfilingIfVerbose("Found receiver type profile " + receiverTypes, verbose);
+          purelyStatic = false;
+        }
+      }
+
       boolean guardOverrideOnStaticCallee = false;
       if (targets == null) {
         reportUnguardedDecisionIfVerbose("no profile data", verbose);
@@ -401,10 +425,18 @@ public final class DefaultInlineOracle implements InlineOracle {
             if (verbose) VM.sysWriteln("\tDecide: " + d);
             return d;
           } else {
-            InlineDecision d =
-              guardedYES(target,
+            RVMClass receiverClass = uniqueReceiverClass(receiverTypes, target, staticCallee);
+            InlineDecision d;
+            if (receiverClass != null) {
+              d = guardedYES(new RVMMethod[] {target},
+                  new byte[] {OptOptions.INLINE_GUARD_CLASS_TEST},
+                  new RVMClass[] {receiverClass},
+                  "Guarded inlining of one profiled receiver class");
+            } else {
+              d = guardedYES(target,
                   chooseGuard(caller, target, staticCallee, state, false),
                   "Guarded inlining of one potential target");
+            }
             reportGuardedDecisionIfVerbose(d, verbose);
             return d;
           }
@@ -416,6 +448,7 @@ public final class DefaultInlineOracle implements InlineOracle {
       } else {
         RVMMethod[] methods = new RVMMethod[methodsNeedGuard.size()];
         byte[] guards = new byte[methods.length];
+        RVMClass[] guardClasses = new RVMClass[methods.length];
         int idx = 0;
         Iterator<RVMMethod> methodIterator = methodsToInline.iterator();
         Iterator<Boolean> guardIterator = methodsNeedGuard.iterator();
@@ -435,10 +468,18 @@ public final class DefaultInlineOracle implements InlineOracle {
             }
           }
           methods[idx] = target;
-          guards[idx] = chooseGuard(caller, target, staticCallee, state, false);
+          guardClasses[idx] = uniqueReceiverClass(receiverTypes, target, staticCallee);
+          if (guardClasses[idx] != null) {
+            guards[idx] = OptOptions.INLINE_GUARD_CLASS_TEST;
+          } else {
+            guards[idx] = chooseGuard(caller, target, staticCallee, state, false);
+          }
           idx++;
         }
-        InlineDecision d = guardedYES(methods, guards, "Inline multiple targets");
+        // A receiver class that the profile has not seen fails every guard
+        // and takes the out-of-line virtual call, so a saturated profile
+        // never forces repeated recompilation.
+        InlineDecision d = guardedYES(methods, guards, guardClasses, "Inline multiple targets");
         reportGuardedDecisionIfVerbose(d, verbose);
         return d;
       }
@@ -467,6 +508,66 @@ public final class DefaultInlineOracle implements InlineOracle {
     reportUnguardedDecisionIfVerbose("Decide: " + d, verbose);
   }
 
+  /**
+   * Builds call targets for a call from the receiver classes recorded
+   * by baseline compiled code. Weights are fractions of the profiled
+   * receivers, so they never count as trusted samples of the dynamic
+   * call graph.
+   *
+   * @param receiverTypes the receiver type profile of the call
+   * @param staticCallee the method named by the call
+   * @param opts controlling options
+   * @return the targets, or {@code null} if no profiled class qualifies
+   */
+  private static WeightedCallTargets targetsFromReceiverTypes(ReceiverTypeProfile receiverTypes,
+                                                              RVMMethod staticCallee, OptOptions opts) {
+    WeightedCallTargets targets = null;
+    double total = receiverTypes.getTotalCount();
+    for (int i = 0; i < receiverTypes.getNumberOfTypes(); i++) {
+      double fraction = receiverTypes.getCount(i) / total;
+      if (fraction < opts.INLINE_AI_MIN_CALLSITE_FRACTION) continue;
+      RVMMethod target = dispatchTarget(receiverTypes.getType(i), staticCallee);
+      if (target == null) continue;
+      targets = (targets == null) ? WeightedCallTargets.create(target, fraction) :
+          targets.augmentCount(target, fraction);
+    }
+    return targets;
+  }
+
+  /**
+   * @param type a receiver type
+   * @param staticCallee the method named by the call
+   * @return the method a call to staticCallee on a receiver of
+   *  the given type invokes, or {@code null} if that is not known
+   */
+  private static RVMMethod dispatchTarget(RVMType type, RVMMethod staticCallee) {
+    if (!type.isClassType() || !type.isResolved()) return null;
+    RVMMethod target = type.findVirtualMethod(staticCallee.getName(), staticCallee.getDescriptor());
+    if (target == null || target.isAbstract()) return null;
+    return target;
+  }
+
+  /**
+   * @param receiverTypes the receiver type profile of the call, may be {@code null}
+   * @param target an inlined target
+   * @param staticCallee the method named by the call
+   * @return the only profiled receiver class that dispatches to target,
+   *  or {@code null} if the profile is megamorphic or there is no such class
+   */
+  private static RVMClass uniqueReceiverClass(ReceiverTypeProfile receiverTypes, RVMMethod target,
+                                              RVMMethod staticCallee) {
+    if (receiverTypes == null || receiverTypes.isMegamorphic()) return null;
+    RVMClass found = null;
+    for (int i = 0; i < receiverTypes.getNumberOfTypes(); i++) {
+      RVMType type = receiverTypes.getType(i);
+      if (dispatchTarget(type, staticCallee) == target) {
+        if (found != null) return null;
+        found = type.asClass();
+      }
+    }
+    return found;
+  }
+
   /**
    * Logic to select the appropriate guarding mechanism for the edge
    * from caller to callee according to the controlling {@link OptOptions}.
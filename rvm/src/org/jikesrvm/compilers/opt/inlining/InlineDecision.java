@@ -12,6 +12,7 @@
  */
 package org.jikesrvm.compilers.opt.inlining;
 
+import org.jikesrvm.classloader.RVMClass;
 import org.jikesrvm.classloader.RVMMethod;
 import org.jikesrvm.compilers.opt.OptOptions;
 
@@ -50,6 +51,11 @@ public final class InlineDecision {
    * The set of guards to use (only valid when code == GUARDED_YES)
    */
   private final byte[] guards;
+  /**
+   * The classes that class test guards compare against, or {@code null}
+   * if they compare against the declaring classes of the targets.
+   */
+  private RVMClass[] guardClasses;
 
   /**
    * Should the test-failed block be replaced with an OSR point?
@@ -132,6 +138,23 @@ public final class InlineDecision {
     return new InlineDecision(targets, guards, Code.GUARDED_YES, reason);
   }
 
+  /**
+   * Return a decision YES to do a guarded inline whose class tests
+   * compare against observed receiver classes.
+   *
+   * @param targets   The methods to inline
+   * @param guards  the types of guard to use
+   * @param guardClasses the receiver class for each class test guard,
+   *   or {@code null} to use the declaring class of the target
+   * @param reason   A rationale for inlining
+   * @return a decision YES to inline, but it is not always safe.
+   */
+  public static InlineDecision guardedYES(RVMMethod[] targets, byte[] guards, RVMClass[] guardClasses, String reason) {
+    InlineDecision d = new InlineDecision(targets, guards, Code.GUARDED_YES, reason);
+    d.guardClasses = guardClasses;
+    return d;
+  }
+
   /**
    * @return whether this inline decision is a YES
    */
@@ -167,6 +190,17 @@ public final class InlineDecision {
     return guards;
   }
 
+  /**
+   * @param i the index of a target
+   * @return the class a class test guard for the target compares against
+   */
+  public RVMClass getGuardClass(int i) {
+    if (guardClasses != null && guardClasses[i] != null) {
+      return guardClasses[i];
+    }
+    return targets[i].getDeclaringClass();
+  }
+
   /**
    * @return the number methods to inline
    */
@@ -203,7 +237,12 @@ public final class InlineDecision {
               s.append(" (method test)");
               break;
             case OptOptions.INLINE_GUARD_CLASS_TEST:
-              s.append(" (class test)");
+              s.append(" (class test");
+              if (guardClasses != null && guardClasses[i] != null) {
+                s.append(' ');
+                s.append(guardClasses[i]);
+              }
+              s.append(')');
               break;
             case OptOptions.INLINE_GUARD_CODE_PATCH:
               s.append(" (code patch)");
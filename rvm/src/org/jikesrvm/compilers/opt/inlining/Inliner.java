@@ -305,8 +305,10 @@ public class Inliner {
           // It is quite common to be able to answer (1) "YES" at compile
           // time, in which case we only have to generate IR to establish
           // (2) at runtime.
+          RVMClass testedClass = guards[i] == OptOptions.INLINE_GUARD_CLASS_TEST ?
+              inlDec.getGuardClass(i) : target.getDeclaringClass();
           byte doesImplement = ClassLoaderProxy.
-              includesType(callDeclClass.getTypeRef(), target.getDeclaringClass().getTypeRef());
+              includesType(callDeclClass.getTypeRef(), testedClass.getTypeRef());
           if (doesImplement != YES) {
             // We can't be sure at compile time that the receiver implements
             // the interface. So, inject a test to make sure that it does.
@@ -351,7 +353,7 @@ public class Inliner {
               InlineGuard.create(IG_CLASS_TEST,
                                  receiver.copy(),
                                  Call.getGuard(callSite).copy(),
-                                 new TypeOperand(target.getDeclaringClass()),
+                                 new TypeOperand(inlDec.getGuardClass(i)),
                                  testFailed.makeJumpTarget(),
                                  BranchProfileOperand.unlikely());
         } else if (guards[i] == OptOptions.INLINE_GUARD_METHOD_TEST) {
@@ -168,6 +168,12 @@ public final class IR {
    */
   public final OptOptions options;
 
+  /**
+   * Whether the machine code for this compilation should be placed
+   * directly after the code most recently clustered by this thread.
+   */
+  public final boolean clusterCode;
+
   /**
    * {@link SSAOptions Options} that define the SSA properties
    * desired the next time we enter SSA form.
@@ -334,6 +340,7 @@ public final class IR {
     options = opts;
     inlinePlan = ip;
     instrumentationPlan = null;
+    clusterCode = false;
     compiledMethod = (OptCompiledMethod) CompiledMethods.createCompiledMethod(method, CompiledMethod.OPT);
   }
 
@@ -347,6 +354,7 @@ public final class IR {
     options = cp.options;
     inlinePlan = cp.inlinePlan;
     instrumentationPlan = cp.instrumentationPlan;
+    clusterCode = cp.clusterCode;
     compiledMethod = (OptCompiledMethod) CompiledMethods.createCompiledMethod(method, CompiledMethod.OPT);
   }
 
@@ -68,6 +68,8 @@ import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_LOCK_CMPXCHG
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_METHODSTART;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOV;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVD;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVDQU;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVHLPS;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVSD;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVSS;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVSXDQ;
@@ -77,6 +79,8 @@ import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MUL;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_NEG;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_NOT;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_OR;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PADDD;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PMULUDQ;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ORPD;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ORPS;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_RCR;
@@ -89,6 +93,8 @@ import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SHR;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SUB;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SYSCALL;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_TRAPIF;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_UNPCKLPD;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_UNPCKLPS;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_XOR;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_XORPD;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_XORPS;
@@ -119,6 +125,8 @@ import org.jikesrvm.compilers.opt.ir.Prologue;
 import org.jikesrvm.compilers.opt.ir.Register;
 import org.jikesrvm.compilers.opt.ir.TrapIf;
 import org.jikesrvm.compilers.opt.ir.Unary;
+import org.jikesrvm.compilers.opt.ir.VectorReduce;
+import org.jikesrvm.compilers.opt.ir.VectorStore;
 import org.jikesrvm.compilers.opt.ir.ia32.MIR_BinaryAcc;
 import org.jikesrvm.compilers.opt.ir.ia32.MIR_Call;
 import org.jikesrvm.compilers.opt.ir.ia32.MIR_Compare;
@@ -1356,6 +1364,187 @@ public abstract class BURS_Helpers extends BURS_MemOp_Helpers {
     }
   }
 
+  /**
+   * Creates the memory operand for the 16 bytes starting at the index of a
+   * vector operation in the given array.
+   *
+   * @param s the vector operation
+   * @param array the array operand
+   * @param scale log2 of the size of an array element
+   * @return the memory operand
+   */
+  private MemoryOperand SSE2_VECTOR_MO(Instruction s, Operand array, byte scale) {
+    return MemoryOperand.BIS(R(array).copyRO(), R(VectorStore.getIndex(s)).copyRO(), scale, PARAGRAPH,
+        VectorStore.getLocation(s).copy().asLocation(), null);
+  }
+
+  /**
+   * Expansion of the packed array copies and element-wise operations
+   * created by loop vectorization. There's no register class for 128 bit
+   * values so the expansion works in the scratch registers XMM6 and XMM7,
+   * which are only live within the expansion. Unaligned moves are used as
+   * array elements are not 16 byte aligned.
+   *
+   * @param s the instruction to expand
+   * @param move the unaligned 16 byte move for the element type
+   * @param op the packed operation, {@code null} for a copy
+   * @param scale log2 of the size of an array element
+   */
+  protected final void SSE2_VECTOR(Instruction s, Operator move, Operator op, byte scale) {
+    RegisterOperand index = R(VectorStore.getIndex(s));
+    if (VM.BuildFor64Addr && index.getRegister().isInteger()) {
+      CLEAR_UPPER_32(s, index.copyRO());
+    }
+    RegisterOperand acc = new RegisterOperand(getFPR(7), TypeReference.Double);
+    EMIT(CPOS(s, MIR_Move.create(move, acc, SSE2_VECTOR_MO(s, VectorStore.getVal1(s), scale))));
+    if (op != null) {
+      RegisterOperand tmp = new RegisterOperand(getFPR(6), TypeReference.Double);
+      EMIT(CPOS(s, MIR_Move.create(move, tmp, SSE2_VECTOR_MO(s, VectorStore.getVal2(s), scale))));
+      EMIT(CPOS(s, MIR_BinaryAcc.create(op, acc.copyRO(), tmp.copyRO())));
+    }
+    EMIT(MIR_Move.mutate(s, move, SSE2_VECTOR_MO(s, VectorStore.getArray(s), scale), acc.copyRO()));
+  }
+
+  /**
+   * Expansion of the packed array fills created by loop vectorization. The
+   * value is broadcast to all lanes of the scratch register XMM7 and then
+   * stored with a single unaligned move.
+   *
+   * @param s the instruction to expand
+   * @param load the move of the value to the lowest lane
+   * @param move the unaligned 16 byte move for the element type
+   * @param scale log2 of the size of an array element
+   */
+  protected final void SSE2_VECTOR_FILL(Instruction s, Operator load, Operator move, byte scale) {
+    RegisterOperand index = R(VectorStore.getIndex(s));
+    if (VM.BuildFor64Addr && index.getRegister().isInteger()) {
+      CLEAR_UPPER_32(s, index.copyRO());
+    }
+    Operand val = VectorStore.getVal1(s);
+    if (val.isIntConstant()) {
+      RegisterOperand temp = regpool.makeTempInt();
+      EMIT(CPOS(s, MIR_Move.create(IA32_MOV, temp, val.copy())));
+      val = temp.copyRO();
+    } else {
+      val = val.copy();
+    }
+    RegisterOperand acc = new RegisterOperand(getFPR(7), TypeReference.Double);
+    EMIT(CPOS(s, MIR_Move.create(load, acc, val)));
+    if (scale != QW_S) {
+      EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_UNPCKLPS, acc.copyRO(), acc.copyRO())));
+    }
+    EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_UNPCKLPD, acc.copyRO(), acc.copyRO())));
+    EMIT(MIR_Move.mutate(s, move, SSE2_VECTOR_MO(s, VectorStore.getArray(s), scale), acc.copyRO()));
+  }
+
+  /**
+   * Creates the memory operand for the 16 bytes starting at the index of a
+   * vector reduction, plus a displacement, in the given array.
+   *
+   * @param s the vector reduction
+   * @param array the array operand
+   * @param scale log2 of the size of an array element
+   * @param disp the displacement in bytes
+   * @return the memory operand
+   */
+  private MemoryOperand SSE2_REDUCE_MO(Instruction s, Operand array, byte scale, int disp) {
+    return new MemoryOperand(R(array).copyRO(), R(VectorReduce.getIndex(s)).copyRO(), scale,
+        Offset.fromIntSignExtend(disp), PARAGRAPH, VectorReduce.getLocation(s).copy().asLocation(), null);
+  }
+
+  /**
+   * Expansion of the int sums and dot products created by loop
+   * vectorization. Lanes are added to the result in a general purpose
+   * register. SSE2 only has a packed multiply of lanes 0 and 2, so a dot
+   * product multiplies the elements at the index and those one element
+   * further on; the vectorized loop leaves at least one element after each
+   * packed operation, so the second load stays within the arrays.
+   *
+   * @param s the instruction to expand
+   * @param dot whether to add products of two arrays rather than elements
+   */
+  protected final void SSE2_VECTOR_INT_REDUCE(Instruction s, boolean dot) {
+    RegisterOperand index = R(VectorReduce.getIndex(s));
+    if (VM.BuildFor64Addr && index.getRegister().isInteger()) {
+      CLEAR_UPPER_32(s, index.copyRO());
+    }
+    RegisterOperand result = VectorReduce.getResult(s);
+    RegisterOperand vec = new RegisterOperand(getFPR(7), TypeReference.Double);
+    RegisterOperand tmp = new RegisterOperand(getFPR(6), TypeReference.Double);
+    RegisterOperand lane = regpool.makeTempInt();
+    EMIT(CPOS(s, MIR_Move.create(IA32_MOV, result.copyRO(), VectorReduce.getAcc(s).copy())));
+    if (dot) {
+      for (int disp = 0; disp <= 4; disp += 4) {
+        EMIT(CPOS(s, MIR_Move.create(IA32_MOVDQU, vec.copyRO(), SSE2_REDUCE_MO(s, VectorReduce.getArray(s), DW_S, disp))));
+        EMIT(CPOS(s, MIR_Move.create(IA32_MOVDQU, tmp.copyRO(), SSE2_REDUCE_MO(s, VectorReduce.getArray2(s), DW_S, disp))));
+        EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_PMULUDQ, vec.copyRO(), tmp.copyRO())));
+        SSE2_ADD_LANE(s, result, lane, vec);
+        EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_MOVHLPS, vec.copyRO(), vec.copyRO())));
+        SSE2_ADD_LANE(s, result, lane, vec);
+      }
+    } else {
+      EMIT(CPOS(s, MIR_Move.create(IA32_MOVDQU, vec.copyRO(), SSE2_REDUCE_MO(s, VectorReduce.getArray(s), DW_S, 0))));
+      EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_MOVHLPS, tmp.copyRO(), vec.copyRO())));
+      EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_PADDD, vec.copyRO(), tmp.copyRO())));
+      SSE2_ADD_LANE(s, result, lane, vec);
+      EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_UNPCKLPS, vec.copyRO(), vec.copyRO())));
+      EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_MOVHLPS, vec.copyRO(), vec.copyRO())));
+      SSE2_ADD_LANE(s, result, lane, vec);
+    }
+  }
+
+  /**
+   * Adds the lowest lane of an SSE register to an int register.
+   */
+  private void SSE2_ADD_LANE(Instruction s, RegisterOperand result, RegisterOperand lane, RegisterOperand vec) {
+    EMIT(CPOS(s, MIR_Move.create(IA32_MOVD, lane.copyRO(), vec.copyRO())));
+    EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_ADD, result.copyRO(), lane.copyRO())));
+  }
+
+  /**
+   * Expansion of the float and double sums and dot products created by
+   * loop vectorization. Only the loads and multiplications are packed: the
+   * lanes are added to the result one at a time in element order, so the
+   * result is rounded exactly as by the scalar loop.
+   *
+   * @param s the instruction to expand
+   * @param move the unaligned 16 byte move for the element type
+   * @param mul the packed multiplication, {@code null} for a sum
+   * @param add the scalar addition
+   * @param scalarMove the scalar register move
+   * @param scale log2 of the size of an array element
+   */
+  protected final void SSE2_VECTOR_FP_REDUCE(Instruction s, Operator move, Operator mul, Operator add,
+                                             Operator scalarMove, byte scale) {
+    RegisterOperand index = R(VectorReduce.getIndex(s));
+    if (VM.BuildFor64Addr && index.getRegister().isInteger()) {
+      CLEAR_UPPER_32(s, index.copyRO());
+    }
+    RegisterOperand result = VectorReduce.getResult(s);
+    RegisterOperand vec = new RegisterOperand(getFPR(7), TypeReference.Double);
+    RegisterOperand tmp = new RegisterOperand(getFPR(6), TypeReference.Double);
+    EMIT(CPOS(s, MIR_Move.create(scalarMove, result.copyRO(), VectorReduce.getAcc(s).copy())));
+    EMIT(CPOS(s, MIR_Move.create(move, vec.copyRO(), SSE2_REDUCE_MO(s, VectorReduce.getArray(s), scale, 0))));
+    if (mul != null) {
+      EMIT(CPOS(s, MIR_Move.create(move, tmp.copyRO(), SSE2_REDUCE_MO(s, VectorReduce.getArray2(s), scale, 0))));
+      EMIT(CPOS(s, MIR_BinaryAcc.create(mul, vec.copyRO(), tmp.copyRO())));
+    }
+    if (scale == QW_S) {
+      EMIT(CPOS(s, MIR_BinaryAcc.create(add, result.copyRO(), vec.copyRO())));
+      EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_MOVHLPS, vec.copyRO(), vec.copyRO())));
+      EMIT(CPOS(s, MIR_BinaryAcc.create(add, result.copyRO(), vec.copyRO())));
+    } else {
+      // lanes 2 and 3 to tmp, then add lanes 0 and 1 of vec and of tmp
+      EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_MOVHLPS, tmp.copyRO(), vec.copyRO())));
+      for (RegisterOperand half : new RegisterOperand[]{vec, tmp}) {
+        EMIT(CPOS(s, MIR_BinaryAcc.create(add, result.copyRO(), half.copyRO())));
+        EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_UNPCKLPS, half.copyRO(), half.copyRO())));
+        EMIT(CPOS(s, MIR_BinaryAcc.create(IA32_MOVHLPS, half.copyRO(), half.copyRO())));
+        EMIT(CPOS(s, MIR_BinaryAcc.create(add, result.copyRO(), half.copyRO())));
+      }
+    }
+  }
+
   /**
    * Expansion of INT_DIV, SIGNED_DIV_64_32, UNSIGNED_DIV_64_32 and INT_REM
    *
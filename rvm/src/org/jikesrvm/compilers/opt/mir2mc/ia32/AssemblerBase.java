@@ -22,6 +22,8 @@ import static org.jikesrvm.compilers.opt.ir.Operators.UNINT_BEGIN_opcode;
 import static org.jikesrvm.compilers.opt.ir.Operators.UNINT_END_opcode;
 import static org.jikesrvm.compilers.opt.ir.Operators.WRITE_FLOOR_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ADC_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ADDPD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ADDPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ADDSD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ADDSS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_ADD_opcode;
@@ -52,6 +54,8 @@ import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_CVTSS2SD_opc
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_CVTSS2SI_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_CVTTSD2SI_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_CVTTSS2SI_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_DIVPD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_DIVPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_DIVSD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_DIVSS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_INT_opcode;
@@ -62,25 +66,41 @@ import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_LOCK_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_METHODSTART_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVAPD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVAPS_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVDQU_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVHLPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVLPD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVQ_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVSD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVSS_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVUPD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOVUPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MOV_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MULPD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MULPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MULSD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_MULSS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_OFFSET_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_OR_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PADDD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PAND_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PMULUDQ_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_POR_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PSUBD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PUSH_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_PXOR_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_RET_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SBB_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SQRTSD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SUBPD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SUBPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SUBSD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_SUBSS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_TEST_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_UCOMISD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_UCOMISS_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_UNPCKLPD_opcode;
+import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_UNPCKLPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_XORPD_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_XORPS_opcode;
 import static org.jikesrvm.compilers.opt.ir.ia32.ArchOperators.IA32_XOR_opcode;
@@ -104,6 +124,7 @@ import java.util.Enumeration;
 
 import org.jikesrvm.VM;
 import org.jikesrvm.architecture.MachineRegister;
+import org.jikesrvm.compilers.common.CodeArray;
 import org.jikesrvm.compilers.common.assembler.ForwardReference;
 import org.jikesrvm.compilers.common.assembler.ia32.Assembler;
 import org.jikesrvm.compilers.opt.OptimizingCompilerException;
@@ -236,6 +257,18 @@ abstract class AssemblerBase extends Assembler {
     return true;
   }
 
+  /**
+   * Code for an IR that asks for its code to be clustered is placed
+   * right after the code this thread last clustered.
+   */
+  @Override
+  protected CodeArray createCodeArray(int len) {
+    if (ir.clusterCode) {
+      return CodeArray.Factory.createClustered(len);
+    }
+    return super.createCodeArray(len);
+  }
+
   /**
    *  Is the given operand an immediate?  In the IA32 assembly, one
    * cannot specify floating-point constants, so the possible
@@ -907,7 +940,24 @@ abstract class AssemblerBase extends Assembler {
       case IA32_SUBSS_opcode:
       case IA32_MULSS_opcode:
       case IA32_DIVSS_opcode:
-      case IA32_XORPS_opcode: {
+      case IA32_XORPS_opcode:
+      case IA32_ADDPS_opcode:
+      case IA32_SUBPS_opcode:
+      case IA32_MULPS_opcode:
+      case IA32_DIVPS_opcode:
+      case IA32_ADDPD_opcode:
+      case IA32_SUBPD_opcode:
+      case IA32_MULPD_opcode:
+      case IA32_DIVPD_opcode:
+      case IA32_PADDD_opcode:
+      case IA32_PSUBD_opcode:
+      case IA32_PAND_opcode:
+      case IA32_POR_opcode:
+      case IA32_PXOR_opcode:
+      case IA32_UNPCKLPS_opcode:
+      case IA32_UNPCKLPD_opcode:
+      case IA32_MOVHLPS_opcode:
+      case IA32_PMULUDQ_opcode: {
         int size = 4; // opcode + modr/m
         Operand value = MIR_BinaryAcc.getValue(inst);
         size += operandCost(value, false);
@@ -967,7 +1017,10 @@ abstract class AssemblerBase extends Assembler {
       case IA32_MOVLPD_opcode:
       case IA32_MOVQ_opcode:
       case IA32_MOVSS_opcode:
-      case IA32_MOVSD_opcode: {
+      case IA32_MOVSD_opcode:
+      case IA32_MOVUPS_opcode:
+      case IA32_MOVUPD_opcode:
+      case IA32_MOVDQU_opcode: {
         int size = 4; // opcode + modr/m
         Operand result = MIR_Move.getResult(inst);
         Operand value = MIR_Move.getValue(inst);
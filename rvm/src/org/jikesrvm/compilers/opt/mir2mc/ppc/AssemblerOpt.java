@@ -123,7 +123,8 @@ public class AssemblerOpt {
    * @return the number of machinecode instructions generated
    */
   public int generateCode() {
-    ir.MIRInfo.machinecode = CodeArray.Factory.create(ir.MIRInfo.mcSizeEstimate, true);
+    int size = ir.MIRInfo.mcSizeEstimate;
+    ir.MIRInfo.machinecode = ir.clusterCode ? CodeArray.Factory.createClustered(size) : CodeArray.Factory.create(size, true);
     return genCode(ir, shouldPrint);
   }
 
@@ -0,0 +1,513 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.regalloc;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.OptimizingCompilerException;
+import org.jikesrvm.compilers.opt.driver.CompilerPhase;
+import org.jikesrvm.compilers.opt.ir.GenericPhysicalRegisterSet;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.util.GraphEdge;
+import org.jikesrvm.compilers.opt.util.SpaceEffGraphNode;
+
+/**
+ * Graph coloring register allocation, an alternative to
+ * {@link LinearScanPhase} that is enabled by
+ * {@link OptOptions#REGALLOC_GRAPH_COLORING}. Building the interference
+ * graph costs more compile time than linear scan, so the option is off
+ * by default and the adaptive system only sets it for recompilations at
+ * its maximum opt level.<p>
+ *
+ * The allocator works on the compound intervals computed by
+ * {@link IntervalAnalysis}: two symbolic registers interfere if their
+ * compound intervals intersect. Coloring follows Chaitin and Briggs:
+ * registers with fewer neighbours than there are physical registers of
+ * their class are removed from the graph first; when none are left, the
+ * register with the smallest spill cost per neighbour is removed
+ * optimistically. Registers are then colored in the reverse order of
+ * removal. A color is legal if the intervals already assigned to the
+ * physical register (including its explicit uses, e.g. for calling
+ * conventions) do not intersect the register's interval and the physical
+ * register is not reserved (pinned) by the stack manager. Among the legal
+ * colors, the one with the strongest move affinity is preferred, which
+ * coalesces the moves that {@link CoalesceMoves} could not remove.<p>
+ *
+ * The result is expressed in the same form that linear scan leaves
+ * behind, so spill code insertion and the GC and OSR map updates are
+ * shared by both allocators.
+ */
+public final class GraphColoringPhase extends CompilerPhase {
+
+  private static final Constructor<CompilerPhase> constructor = getCompilerPhaseConstructor(GraphColoringPhase.class);
+
+  /**
+   * {@inheritDoc}
+   * @return compiler phase constructor
+   */
+  @Override
+  public Constructor<CompilerPhase> getClassConstructor() {
+    return constructor;
+  }
+
+  @Override
+  public boolean shouldPerform(OptOptions options) {
+    return options.REGALLOC_GRAPH_COLORING;
+  }
+
+  @Override
+  public String getName() {
+    return "Graph Coloring";
+  }
+
+  @Override
+  public boolean printingEnabled(OptOptions options, boolean before) {
+    return false;
+  }
+
+  /**
+   * A node of the interference graph: the compound interval of one
+   * symbolic register.
+   */
+  private static final class Node {
+    final CompoundInterval interval;
+    final int type;
+    final ArrayList<Node> neighbors = new ArrayList<Node>();
+    /** Number of neighbours still in the graph while simplifying */
+    int degree;
+    boolean removed;
+
+    Node(CompoundInterval interval, int type) {
+      this.interval = interval;
+      this.type = type;
+    }
+
+    Register getRegister() {
+      return interval.getRegister();
+    }
+  }
+
+  private IR ir;
+  private RegisterAllocatorState regAllocState;
+  private SpillLocationManager spillManager;
+  private SpillCostEstimator spillCost;
+  private GenericRegisterRestrictions restrict;
+  private GenericPhysicalRegisterSet phys;
+
+  /**
+   * The symbolic registers assigned to each physical register so far
+   */
+  private final HashMap<Register, ArrayList<Node>> assigned = new HashMap<Register, ArrayList<Node>>();
+
+  private boolean spilled;
+
+  @Override
+  public void perform(IR ir) {
+    this.ir = ir;
+    regAllocState = ir.MIRInfo.regAllocState;
+    spillManager = new SpillLocationManager(ir);
+    spillCost = LinearScanPhase.determineSpillCostEstimator(ir);
+    restrict = ir.stackManager.getRestrictions();
+    phys = ir.regpool.getPhysicalRegisterSet();
+
+    // Spill code insertion looks up basic intervals through the active set,
+    // which needs nothing but the register allocator state for that.
+    ir.MIRInfo.linearScanState.active = new ActiveSet(ir, spillManager, spillCost);
+
+    ArrayList<Node> nodes = buildInterferenceGraph();
+    ArrayList<Node> stack = simplify(nodes);
+    select(stack);
+
+    if (spilled) {
+      ir.MIRInfo.linearScanState.spilledSomething = true;
+    }
+  }
+
+  /**
+   * Creates a node for each symbolic register that has a live interval
+   * and connects the nodes whose intervals intersect. Infrequent intervals
+   * are spilled straight away when {@link OptOptions#FREQ_FOCUS_EFFORT} is
+   * set, as linear scan does.
+   *
+   * @return the nodes of the graph
+   */
+  private ArrayList<Node> buildInterferenceGraph() {
+    ArrayList<Node> nodes = new ArrayList<Node>();
+    HashMap<Register, Node> seen = new HashMap<Register, Node>();
+    for (BasicInterval b : ir.MIRInfo.linearScanState.intervals) {
+      CompoundInterval ci = ((MappedBasicInterval) b).container;
+      Register r = ci.getRegister();
+      if (r.isPhysical() || seen.containsKey(r)) continue;
+      Node n = new Node(ci, GenericPhysicalRegisterSet.getPhysicalRegisterType(r));
+      seen.put(r, n);
+      if (ir.options.FREQ_FOCUS_EFFORT && ci.isInfrequent() && !restrict.mustNotSpill(r)) {
+        spill(n);
+      } else {
+        nodes.add(n);
+      }
+    }
+
+    // With the nodes sorted by lower bound, the candidates for interference
+    // with a node are the following nodes that start before it ends.
+    Collections.sort(nodes, new Comparator<Node>() {
+      @Override
+      public int compare(Node a, Node b) {
+        return a.interval.getLowerBound() - b.interval.getLowerBound();
+      }
+    });
+    for (int i = 0; i < nodes.size(); i++) {
+      Node a = nodes.get(i);
+      int end = a.interval.getUpperBound();
+      for (int j = i + 1; j < nodes.size(); j++) {
+        Node b = nodes.get(j);
+        if (b.interval.getLowerBound() > end) break;
+        if (a.type == b.type && a.interval.intersects(b.interval)) {
+          a.neighbors.add(b);
+          b.neighbors.add(a);
+        }
+      }
+    }
+    for (Node n : nodes) {
+      n.degree = n.neighbors.size();
+    }
+    return nodes;
+  }
+
+  /**
+   * Removes the nodes from the graph one at a time.
+   *
+   * @param nodes the nodes of the graph
+   * @return the nodes in the order of their removal
+   */
+  private ArrayList<Node> simplify(ArrayList<Node> nodes) {
+    HashMap<Integer, Integer> colors = new HashMap<Integer, Integer>();
+    ArrayList<Node> stack = new ArrayList<Node>(nodes.size());
+    ArrayList<Node> lowDegree = new ArrayList<Node>();
+    for (Node n : nodes) {
+      if (n.degree < numberOfColors(n.type, colors)) lowDegree.add(n);
+    }
+    while (stack.size() < nodes.size()) {
+      Node n;
+      if (!lowDegree.isEmpty()) {
+        n = lowDegree.remove(lowDegree.size() - 1);
+      } else {
+        n = chooseOptimisticNode(nodes);
+      }
+      n.removed = true;
+      stack.add(n);
+      for (Node m : n.neighbors) {
+        if (!m.removed && m.degree-- == numberOfColors(m.type, colors)) {
+          lowDegree.add(m);
+        }
+      }
+    }
+    return stack;
+  }
+
+  /**
+   * @param type a physical register type
+   * @param cache number of colors computed so far, by type
+   * @return the number of physical registers of the type that the
+   *  allocator may use
+   */
+  private int numberOfColors(int type, HashMap<Integer, Integer> cache) {
+    Integer k = cache.get(type);
+    if (k == null) {
+      int count = 0;
+      for (Enumeration<Register> e = phys.enumerateVolatiles(type); e.hasMoreElements();) {
+        if (isColor(e.nextElement())) count++;
+      }
+      for (Enumeration<Register> e = phys.enumerateNonvolatilesBackwards(type); e.hasMoreElements();) {
+        if (isColor(e.nextElement())) count++;
+      }
+      k = count;
+      cache.put(type, k);
+    }
+    return k;
+  }
+
+  /**
+   * @param p a physical register
+   * @return whether p may be used as a color, i.e. it's allocatable and
+   *  not reserved by the stack manager (e.g. the SSE scratch registers)
+   */
+  private boolean isColor(Register p) {
+    return phys.isAllocatable(p) && p.isAvailable();
+  }
+
+  /**
+   * Chooses the node to remove when all remaining nodes have as many
+   * neighbours as there are colors: the cheapest one to spill relative
+   * to its degree. Registers that must not be spilled are only chosen
+   * when nothing else remains; they are then colored as early as
+   * possible.
+   *
+   * @param nodes the nodes of the graph
+   * @return the node to remove
+   */
+  private Node chooseOptimisticNode(ArrayList<Node> nodes) {
+    Node result = null;
+    double minCost = Double.MAX_VALUE;
+    Node unspillable = null;
+    for (Node n : nodes) {
+      if (n.removed) continue;
+      if (restrict.mustNotSpill(n.getRegister())) {
+        if (unspillable == null || n.degree < unspillable.degree) unspillable = n;
+        continue;
+      }
+      double cost = spillCost.getCost(n.getRegister()) / Math.max(n.degree, 1);
+      if (result == null || cost < minCost) {
+        minCost = cost;
+        result = n;
+      }
+    }
+    return result != null ? result : unspillable;
+  }
+
+  /**
+   * Colors the nodes in the reverse order of their removal, spilling the
+   * ones for which no color is left.
+   *
+   * @param stack the nodes in the order of their removal
+   */
+  private void select(ArrayList<Node> stack) {
+    for (int i = stack.size() - 1; i >= 0; i--) {
+      Node n = stack.get(i);
+      Register p = chooseColor(n);
+      if (p != null) {
+        assign(n, p);
+      } else if (!restrict.mustNotSpill(n.getRegister())) {
+        spill(n);
+      } else {
+        evictFor(n);
+      }
+    }
+  }
+
+  /**
+   * @param n a node
+   * @return a physical register that the node's interval may be assigned to,
+   *  {@code null} if there is none
+   */
+  private Register chooseColor(Node n) {
+    Register r = n.getRegister();
+    ArrayList<Register> legal = new ArrayList<Register>();
+    if (!restrict.allVolatilesForbidden(r)) {
+      for (Enumeration<Register> e = phys.enumerateVolatiles(n.type); e.hasMoreElements();) {
+        Register p = e.nextElement();
+        if (fits(n, p)) legal.add(p);
+      }
+    }
+    // nonvolatiles are allocated backwards, as in linear scan
+    for (Enumeration<Register> e = phys.enumerateNonvolatilesBackwards(n.type); e.hasMoreElements();) {
+      Register p = e.nextElement();
+      if (fits(n, p)) legal.add(p);
+    }
+    if (legal.isEmpty()) return null;
+
+    if (ir.options.REGALLOC_COALESCE_MOVES) {
+      Register p = getPhysicalPreference(r, legal);
+      if (p != null) {
+        if (LinearScan.DEBUG_COALESCE) {
+          System.out.println("REGISTER PREFERENCE " + n.interval + " " + p);
+        }
+        return p;
+      }
+    }
+    return legal.get(0);
+  }
+
+  /**
+   * @param n a node
+   * @param p a physical register
+   * @return whether the node's interval may be assigned to p
+   */
+  private boolean fits(Node n, Register p) {
+    if (!isColor(p) || restrict.isForbidden(n.getRegister(), p)) return false;
+    CompoundInterval pInterval = regAllocState.getInterval(p);
+    return pInterval == null || !n.interval.intersects(pInterval);
+  }
+
+  /**
+   * Finds the legal color with the highest total weight of move affinity
+   * to r, counting affinities to physical registers and to symbolic
+   * registers that have already been colored.
+   *
+   * @param r the symbolic register to color
+   * @param legal the legal colors for r
+   * @return the preferred color, {@code null} if r has no affinity to any
+   *  legal color
+   */
+  private Register getPhysicalPreference(Register r, ArrayList<Register> legal) {
+    CoalesceGraph graph = ir.stackManager.getPreferences().getGraph();
+    SpaceEffGraphNode node = graph.findNode(r);
+    if (node == null) return null;
+
+    HashMap<Register, Integer> weights = new HashMap<Register, Integer>();
+    for (Enumeration<GraphEdge> in = node.inEdges(); in.hasMoreElements();) {
+      CoalesceGraph.Edge edge = (CoalesceGraph.Edge) in.nextElement();
+      addAffinity(((CoalesceGraph.Node) edge.from()).getRegister(), edge.getWeight(), legal, weights);
+    }
+    for (Enumeration<GraphEdge> out = node.outEdges(); out.hasMoreElements();) {
+      CoalesceGraph.Edge edge = (CoalesceGraph.Edge) out.nextElement();
+      addAffinity(((CoalesceGraph.Node) edge.to()).getRegister(), edge.getWeight(), legal, weights);
+    }
+
+    Register result = null;
+    int weight = -1;
+    for (Map.Entry<Register, Integer> entry : weights.entrySet()) {
+      int w = entry.getValue();
+      if (w > weight) {
+        weight = w;
+        result = entry.getKey();
+      }
+    }
+    return result;
+  }
+
+  private void addAffinity(Register neighbor, int w, ArrayList<Register> legal,
+                           HashMap<Register, Integer> weights) {
+    if (neighbor.isSymbolic()) {
+      neighbor = regAllocState.getMapping(neighbor);
+      if (neighbor == null || !neighbor.isPhysical()) return;
+    }
+    if (legal.contains(neighbor)) {
+      Integer old = weights.get(neighbor);
+      weights.put(neighbor, old == null ? w : old + w);
+    }
+  }
+
+  /**
+   * Assigns a node to a physical register and records the node's interval
+   * as an interval of the physical register.
+   *
+   * @param n the node
+   * @param p the physical register
+   */
+  private void assign(Node n, Register p) {
+    if (LinearScan.DEBUG) System.out.println("Color " + n.interval + " " + p);
+    n.interval.assign(p);
+    // All intervals are assigned up front rather than in order of their
+    // start, so p does not stay allocated as it does while linear scan
+    // has an interval of p in its active set.
+    p.deallocateRegister();
+    CompoundInterval pInterval = regAllocState.getInterval(p);
+    if (pInterval == null) {
+      regAllocState.setInterval(p, n.interval.copy(p));
+    } else {
+      pInterval.addAll(n.interval);
+    }
+    ArrayList<Node> list = assigned.get(p);
+    if (list == null) {
+      list = new ArrayList<Node>();
+      assigned.put(p, list);
+    }
+    list.add(n);
+  }
+
+  /**
+   * Spills a node's interval. The spill location is released straight
+   * away: the spill location manager only reuses it for intervals that do
+   * not intersect this one.
+   *
+   * @param n the node
+   */
+  private void spill(Node n) {
+    if (LinearScan.DEBUG) System.out.println("Spill " + n.interval);
+    n.interval.spill(spillManager, regAllocState);
+    spillManager.freeInterval(n.interval.getSpillInterval());
+    spilled = true;
+  }
+
+  /**
+   * Colors a node that must not be spilled and has no color left, by
+   * spilling the cheapest set of already colored neighbours that frees
+   * a physical register for it.
+   *
+   * @param n the node
+   */
+  private void evictFor(Node n) {
+    Register r = n.getRegister();
+    Register best = null;
+    double bestCost = Double.MAX_VALUE;
+    for (Map.Entry<Register, ArrayList<Node>> entry : assigned.entrySet()) {
+      Register p = entry.getKey();
+      if (GenericPhysicalRegisterSet.getPhysicalRegisterType(p) != n.type || restrict.isForbidden(r, p)) continue;
+      if (restrict.allVolatilesForbidden(r) && isVolatile(p, n.type)) continue;
+      double cost = evictionCost(n, p, entry.getValue());
+      if (cost < bestCost) {
+        bestCost = cost;
+        best = p;
+      }
+    }
+    if (best == null) {
+      throw new OptimizingCompilerException("GraphColoringPhase", "no register for", r.toString());
+    }
+    CompoundInterval pInterval = regAllocState.getInterval(best);
+    ArrayList<Node> list = assigned.get(best);
+    for (int i = list.size() - 1; i >= 0; i--) {
+      Node victim = list.get(i);
+      if (victim.interval.intersects(n.interval)) {
+        pInterval.removeAll(victim.interval);
+        list.remove(i);
+        spill(victim);
+      }
+    }
+    assign(n, best);
+  }
+
+  /**
+   * @param n a node that must not be spilled
+   * @param p a physical register
+   * @param list the nodes assigned to p
+   * @return the cost of spilling the nodes assigned to p that intersect
+   *  n, or {@link Double#MAX_VALUE} if that does not make room for n
+   */
+  private double evictionCost(Node n, Register p, ArrayList<Node> list) {
+    double cost = 0;
+    ArrayList<CompoundInterval> removed = new ArrayList<CompoundInterval>();
+    CompoundInterval pInterval = regAllocState.getInterval(p);
+    for (Node victim : list) {
+      if (!victim.interval.intersects(n.interval)) continue;
+      if (restrict.mustNotSpill(victim.getRegister())) {
+        cost = Double.MAX_VALUE;
+        break;
+      }
+      cost += spillCost.getCost(victim.getRegister());
+      removed.add(pInterval.removeIntervalsAndCache(victim.interval));
+    }
+    if (cost != Double.MAX_VALUE && pInterval.intersects(n.interval)) {
+      // p is also used explicitly where n is live
+      cost = Double.MAX_VALUE;
+    }
+    for (CompoundInterval cache : removed) {
+      pInterval.addAll(cache);
+    }
+    return cost;
+  }
+
+  private boolean isVolatile(Register p, int type) {
+    for (Enumeration<Register> e = phys.enumerateVolatiles(type); e.hasMoreElements();) {
+      if (e.nextElement() == p) return true;
+    }
+    return false;
+  }
+}
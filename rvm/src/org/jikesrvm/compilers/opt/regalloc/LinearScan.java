@@ -18,7 +18,10 @@ import org.jikesrvm.compilers.opt.driver.OptimizationPlanCompositeElement;
 import org.jikesrvm.compilers.opt.driver.OptimizationPlanElement;
 
 /**
- * Main driver for linear scan register allocation.
+ * Main driver for linear scan register allocation. With
+ * {@link OptOptions#REGALLOC_GRAPH_COLORING} the assignment itself is done
+ * by {@link GraphColoringPhase} instead of {@link LinearScanPhase}; the
+ * interval analysis and the spill code and map updates are shared.
  */
 public final class LinearScan extends OptimizationPlanCompositeElement {
 
@@ -30,6 +33,7 @@ public final class LinearScan extends OptimizationPlanCompositeElement {
           new OptimizationPlanElement[]{new OptimizationPlanAtomicElement(new IntervalAnalysis()),
                                             new OptimizationPlanAtomicElement(new RegisterRestrictionsPhase()),
                                             new OptimizationPlanAtomicElement(new LinearScanPhase()),
+                                            new OptimizationPlanAtomicElement(new GraphColoringPhase()),
                                             new OptimizationPlanAtomicElement(new UpdateGCMaps1()),
                                             new OptimizationPlanAtomicElement(new SpillCode()),
                                             new OptimizationPlanAtomicElement(new UpdateGCMaps2()),
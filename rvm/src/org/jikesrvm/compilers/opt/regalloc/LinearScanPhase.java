@@ -38,11 +38,11 @@ public final class LinearScanPhase extends CompilerPhase {
   }
 
   /**
-   * @return {@code true} because register allocation is required
+   * @return {@code true} unless graph coloring is used instead
    */
   @Override
   public boolean shouldPerform(OptOptions options) {
-    return true;
+    return !options.REGALLOC_GRAPH_COLORING;
   }
 
   @Override
@@ -101,7 +101,7 @@ public final class LinearScanPhase extends CompilerPhase {
     return active;
   }
 
-  private SpillCostEstimator determineSpillCostEstimator(IR ir) {
+  static SpillCostEstimator determineSpillCostEstimator(IR ir) {
     SpillCostEstimator spillCost = null;
     switch (ir.options.REGALLOC_SPILL_COST_ESTIMATE) {
       case OptOptions.REGALLOC_SIMPLE_SPILL_COST:
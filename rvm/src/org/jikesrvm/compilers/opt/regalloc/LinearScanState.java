@@ -26,6 +26,11 @@ public final class LinearScanState {
    */
   public boolean spilledSomething = false;
 
+  /**
+   * The number of instructions inserted by spill code insertion
+   */
+  public int spillInstructions;
+
   /**
    * Analysis information used by linear scan.
    */
@@ -119,9 +119,17 @@ final class SpillCode extends CompilerPhase {
     replaceSymbolicRegisters(ir);
 
     // Generate spill code if necessary
-    if (ir.hasSysCall() || ir.MIRInfo.linearScanState.spilledSomething) {
+    LinearScanState state = ir.MIRInfo.linearScanState;
+    if (ir.hasSysCall() || state.spilledSomething) {
+      int before = ir.countInstructions();
       GenericStackManager stackMan = ir.stackManager;
-      stackMan.insertSpillCode(ir.MIRInfo.linearScanState.active);
+      stackMan.insertSpillCode(state.active);
+      state.spillInstructions = ir.countInstructions() - before;
+    }
+    if (ir.options.PRINT_REGALLOC_SPILLS) {
+      String allocator = ir.options.REGALLOC_GRAPH_COLORING ? "graph coloring" : "linear scan";
+      VM.sysWriteln("Spill instructions in " + ir.method + " (" + allocator + "): " +
+                    state.spillInstructions);
     }
 
     if (VM.BuildForIA32 && !VM.BuildForSSE2Full) {
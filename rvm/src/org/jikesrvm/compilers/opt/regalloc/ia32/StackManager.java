@@ -1114,6 +1114,12 @@ public final class StackManager extends GenericStackManager {
     // This allows us to do one push/pop sequence in order to use the
     // top of the stack as a scratch location
     phys.getFPR(7).reserveRegister();
+
+    // The packed operations created by loop vectorization also use XMM6
+    // as a scratch register (see BURS_Helpers.SSE2_VECTOR)
+    if (ir.options.SSA_LOOP_VECTORIZATION) {
+      phys.getFPR(6).reserveRegister();
+    }
   }
 
   @Override
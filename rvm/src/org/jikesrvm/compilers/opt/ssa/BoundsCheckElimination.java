@@ -0,0 +1,883 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.ssa;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.ARRAYLENGTH_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.BBEND;
+import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_COMBINE;
+import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_MOVE;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ADD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_AND_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_DIV_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_IFCMP;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_MOVE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_REM_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_SHR_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_SUB_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_USHR_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.NEWARRAY;
+import static org.jikesrvm.compilers.opt.ir.Operators.PHI_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.PI;
+import static org.jikesrvm.compilers.opt.ir.Operators.PI_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_MOVE;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.compilers.opt.DefUse;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.controlflow.DominatorTree;
+import org.jikesrvm.compilers.opt.controlflow.DominatorsPhase;
+import org.jikesrvm.compilers.opt.driver.CompilerPhase;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanAtomicElement;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanCompositeElement;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanElement;
+import org.jikesrvm.compilers.opt.ir.BasicBlock;
+import org.jikesrvm.compilers.opt.ir.Binary;
+import org.jikesrvm.compilers.opt.ir.BoundsCheck;
+import org.jikesrvm.compilers.opt.ir.Goto;
+import org.jikesrvm.compilers.opt.ir.GuardedBinary;
+import org.jikesrvm.compilers.opt.ir.GuardedUnary;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.IfCmp;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.Move;
+import org.jikesrvm.compilers.opt.ir.NewArray;
+import org.jikesrvm.compilers.opt.ir.Phi;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.ir.operand.ConditionOperand;
+import org.jikesrvm.compilers.opt.ir.operand.Operand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+import org.jikesrvm.compilers.opt.ir.operand.TrueGuardOperand;
+import org.jikesrvm.compilers.opt.ir.operand.UnreachableOperand;
+
+/**
+ * Array bounds check elimination on SSA form, in the style of ABCD
+ * (Bodik, Gupta and Sarkar, "ABCD: Eliminating Array Bounds Checks on
+ * Demand", PLDI 2000).
+ * <p>
+ * For each <code>BOUNDS_CHECK a, i</code> the phase tries to prove, on
+ * demand, the two inequalities <code>i - a.length &lt;= -1</code> and
+ * <code>-i &lt;= 0</code>. A proof walks backwards over the SSA
+ * definitions of the index and uses three kinds of constraints:
+ * <ul>
+ * <li>the definition of a value: constants, array lengths, additions and
+ *     subtractions of constants and a few operations whose result is
+ *     known to be non-negative or bounded by a constant;
+ * <li>conditional branches: an <code>INT_IFCMP</code> edge that dominates
+ *     the point of use constrains the compared values. This is the
+ *     information {@link PiNodes} would attach to new names on the branch
+ *     edges, recovered here from the dominator tree so the phase does not
+ *     depend on PI nodes having been inserted;
+ * <li>other bounds checks: a check of the same value that dominates the
+ *     point of use bounds it by the checked array's length. The check must
+ *     have completed normally, so it is not used at points reached along
+ *     an exceptional edge out of its block, such as the entry to a handler
+ *     of the <code>ArrayIndexOutOfBoundsException</code> it may raise.
+ * </ul>
+ * Induction variables are handled at PHIs: a cycle back to a PHI that is
+ * already being proven succeeds if it requires no stronger a bound than
+ * the one being proven (a non-amplifying cycle), so
+ * <code>i = phi(0, i + 1)</code> is shown to be non-negative as long as
+ * the increment cannot overflow.
+ * <p>
+ * An eliminated check is replaced by a guard move (or guard combine) that
+ * keeps the array access dependent on the null check and on the guards of
+ * the dominating branches and checks its proof used. This stops later
+ * code motion from hoisting the access above the conditions that make it
+ * safe. Checks used in a proof are never eliminated themselves.
+ * <p>
+ * Checks that cannot be proven redundant are left in place; this phase
+ * does not hoist checks into loop preheaders. {@link LoopVersioning} can
+ * test an induction variable's range once before the loop, but it is off
+ * by default.
+ */
+public final class BoundsCheckElimination extends OptimizationPlanCompositeElement {
+
+  @Override
+  public boolean shouldPerform(OptOptions options) {
+    return options.SSA_BOUNDS_CHECK_ELIMINATION;
+  }
+
+  /**
+   * Create this phase element as a composite of other elements
+   */
+  public BoundsCheckElimination() {
+    super("Bounds Check Elimination", new OptimizationPlanElement[]{
+        // Stage 1: Require SSA form
+        new OptimizationPlanAtomicElement(new EnsureSSA()),
+
+        // Stage 2: Require dominators
+        new OptimizationPlanAtomicElement(new DominatorsPhase(true)),
+
+        // Stage 3: Do the optimization
+        new OptimizationPlanAtomicElement(new ABCD()),});
+  }
+
+  private static final class EnsureSSA extends CompilerPhase {
+
+    @Override
+    public String getName() {
+      return "Ensure SSA";
+    }
+
+    @Override
+    public void perform(IR ir) {
+      ir.desiredSSAOptions = new SSAOptions();
+      new EnterSSA().perform(ir);
+    }
+
+    @Override
+    public CompilerPhase newExecution(IR ir) {
+      return this;
+    }
+  }
+
+  private static final class ABCD extends CompilerPhase {
+
+    @Override
+    public String getName() {
+      return "ABCD Transform";
+    }
+
+    @Override
+    public boolean printingEnabled(OptOptions options, boolean before) {
+      return false;
+    }
+
+    /**
+     * Return this instance of this phase. This phase contains
+     * no per-compilation instance fields.
+     * @param ir not used
+     * @return this
+     */
+    @Override
+    public CompilerPhase newExecution(IR ir) {
+      return this;
+    }
+
+    @Override
+    public void perform(IR ir) {
+      if (!ir.HIRInfo.dominatorsAreComputed) return;
+      DefUse.computeDU(ir);
+      DefUse.recomputeSSA(ir);
+      Prover prover = new Prover(ir);
+      prover.eliminateChecks();
+      if (ir.options.PRINT_BOUNDS_CHECK_ELIMINATION && prover.numChecks > 0) {
+        VM.sysWriteln("Bounds checks in " + ir.method + ": " + prover.numEliminated + " of " +
+                      prover.numChecks + " eliminated");
+      }
+      if (prover.numEliminated > 0) {
+        DefUse.computeDU(ir);
+        DefUse.recomputeSSA(ir);
+      }
+    }
+  }
+
+  /**
+   * A constraint <code>lhs - rhs &lt;= k</code> established by a
+   * conditional branch.
+   */
+  private static final class Fact {
+    final Operand lhs;
+    final Operand rhs;
+    final long k;
+    /** The block on entry to which the constraint holds, or {@code null} */
+    final BasicBlock target;
+    /** The guard result of the branch */
+    final RegisterOperand guard;
+
+    Fact(Operand lhs, Operand rhs, long k, BasicBlock target, RegisterOperand guard) {
+      this.lhs = lhs;
+      this.rhs = rhs;
+      this.k = k;
+      this.target = target;
+      this.guard = guard;
+    }
+  }
+
+  /**
+   * A program point at which an inequality is to be proven.
+   */
+  private static final class Context {
+    /** The block of the program point */
+    final BasicBlock block;
+    /** The instruction before which the point lies, {@code null} for the end of block */
+    final Instruction point;
+    /** Constraints from the edge leaving block, for PHI operands, or {@code null} */
+    final ArrayList<Fact> edgeFacts;
+    /** Whether the point is that of the check being eliminated */
+    final boolean anchored;
+    /**
+     * Whether block may have been left by an exception, so that none of
+     * its instructions can be assumed to have completed
+     */
+    final boolean exceptional;
+
+    Context(BasicBlock block, Instruction point, ArrayList<Fact> edgeFacts, boolean anchored, boolean exceptional) {
+      this.block = block;
+      this.point = point;
+      this.edgeFacts = edgeFacts;
+      this.anchored = anchored;
+      this.exceptional = exceptional;
+    }
+  }
+
+  /**
+   * The demand-driven prover and the state of one execution of the phase.
+   */
+  private static final class Prover {
+    /** Limit on the depth of a proof */
+    private static final int MAX_DEPTH = 24;
+    /** Limit on the number of steps of a single proof */
+    private static final int MAX_STEPS = 500;
+
+    private final IR ir;
+    private final DominatorTree dt;
+
+    /** All bounds checks, in code order */
+    private final ArrayList<Instruction> checks = new ArrayList<Instruction>();
+    /** The position of each bounds check within its block */
+    private final HashMap<Instruction, Integer> position = new HashMap<Instruction, Integer>();
+    /** Bounds checks, by the register holding their index */
+    private final HashMap<Register, ArrayList<Instruction>> checksByIndex =
+        new HashMap<Register, ArrayList<Instruction>>();
+    /** Branch constraints, by the registers they mention */
+    private final HashMap<Register, ArrayList<Fact>> factsByRegister =
+        new HashMap<Register, ArrayList<Fact>>();
+    /** Branch constraints between constants and other values */
+    private final ArrayList<Fact> constantFacts = new ArrayList<Fact>();
+    /** Checks that have been eliminated */
+    private final HashSet<Instruction> eliminated = new HashSet<Instruction>();
+    /** Checks used in the proof of an eliminated check */
+    private final HashSet<Instruction> pinned = new HashSet<Instruction>();
+
+    // State of the current proof
+    private Instruction current;
+    private Operand currentArray;
+    private int steps;
+    private HashMap<Register, Long> activeUpper = new HashMap<Register, Long>();
+    private HashMap<Register, Long> activeLower = new HashMap<Register, Long>();
+    private final ArrayList<Instruction> usedChecks = new ArrayList<Instruction>();
+    private final ArrayList<RegisterOperand> usedGuards = new ArrayList<RegisterOperand>();
+
+    int numChecks;
+    int numEliminated;
+
+    Prover(IR ir) {
+      this.ir = ir;
+      this.dt = ir.HIRInfo.dominatorTree;
+      for (Enumeration<BasicBlock> bbs = ir.getBasicBlocks(); bbs.hasMoreElements();) {
+        BasicBlock bb = bbs.nextElement();
+        int pos = 0;
+        for (Enumeration<Instruction> e = bb.forwardInstrEnumerator(); e.hasMoreElements();) {
+          Instruction s = e.nextElement();
+          if (BoundsCheck.conforms(s)) {
+            checks.add(s);
+            position.put(s, pos);
+            Operand index = BoundsCheck.getIndex(s);
+            if (index.isRegister()) {
+              Register r = index.asRegister().getRegister();
+              ArrayList<Instruction> list = checksByIndex.get(r);
+              if (list == null) {
+                list = new ArrayList<Instruction>();
+                checksByIndex.put(r, list);
+              }
+              list.add(s);
+            }
+          }
+          pos++;
+        }
+        if (bb.hasOneIn()) {
+          BasicBlock pred = bb.getInNodes().nextElement();
+          ArrayList<Fact> facts = edgeFacts(pred, bb, true);
+          if (facts != null) {
+            for (Fact f : facts) {
+              recordFact(f);
+            }
+          }
+        }
+      }
+      numChecks = checks.size();
+    }
+
+    private void recordFact(Fact f) {
+      boolean constant = true;
+      if (f.lhs.isRegister()) {
+        addFact(f.lhs.asRegister().getRegister(), f);
+        constant = false;
+      }
+      if (f.rhs.isRegister()) {
+        addFact(f.rhs.asRegister().getRegister(), f);
+        constant = false;
+      }
+      if (constant || f.lhs.isIntConstant() || f.rhs.isIntConstant()) {
+        constantFacts.add(f);
+      }
+    }
+
+    private void addFact(Register r, Fact f) {
+      ArrayList<Fact> list = factsByRegister.get(r);
+      if (list == null) {
+        list = new ArrayList<Fact>();
+        factsByRegister.put(r, list);
+      }
+      list.add(f);
+    }
+
+    /**
+     * Computes the constraints that hold on the edge from one block to
+     * another.
+     *
+     * @param source the block ending in a conditional branch
+     * @param target the successor
+     * @param onEntry whether the constraints hold in all blocks dominated
+     *  by target
+     * @return the constraints or {@code null} if none are known
+     */
+    private ArrayList<Fact> edgeFacts(BasicBlock source, BasicBlock target, boolean onEntry) {
+      Instruction branch = source.firstBranchInstruction();
+      if (branch == null || branch.operator() != INT_IFCMP) return null;
+      Instruction next = branch.nextInstructionInCodeOrder();
+      BasicBlock notTaken;
+      if (Goto.conforms(next)) {
+        notTaken = next.getBranchTarget();
+      } else if (next.operator() == BBEND) {
+        notTaken = source.nextBasicBlockInCodeOrder();
+      } else {
+        return null;
+      }
+      BasicBlock taken = branch.getBranchTarget();
+      if (taken == notTaken) return null;
+      ConditionOperand cond;
+      if (target == taken) {
+        cond = IfCmp.getCond(branch);
+      } else if (target == notTaken) {
+        cond = ((ConditionOperand) IfCmp.getCond(branch).copy()).flipCode();
+      } else {
+        return null;
+      }
+      Operand v1 = IfCmp.getVal1(branch);
+      Operand v2 = IfCmp.getVal2(branch);
+      RegisterOperand guard = IfCmp.getGuardResult(branch);
+      BasicBlock factTarget = onEntry ? target : null;
+      ArrayList<Fact> facts = new ArrayList<Fact>(2);
+      if (cond.isLESS()) {
+        facts.add(new Fact(v1, v2, -1, factTarget, guard));
+      } else if (cond.isLESS_EQUAL()) {
+        facts.add(new Fact(v1, v2, 0, factTarget, guard));
+      } else if (cond.isGREATER()) {
+        facts.add(new Fact(v2, v1, -1, factTarget, guard));
+      } else if (cond.isGREATER_EQUAL()) {
+        facts.add(new Fact(v2, v1, 0, factTarget, guard));
+      } else if (cond.isEQUAL()) {
+        facts.add(new Fact(v1, v2, 0, factTarget, guard));
+        facts.add(new Fact(v2, v1, 0, factTarget, guard));
+      } else {
+        return null;
+      }
+      return facts;
+    }
+
+    /**
+     * Tries to prove each bounds check redundant, eliminating those that
+     * are.
+     */
+    void eliminateChecks() {
+      for (Instruction s : checks) {
+        if (pinned.contains(s)) continue;
+        current = s;
+        currentArray = BoundsCheck.getRef(s);
+        steps = 0;
+        usedChecks.clear();
+        usedGuards.clear();
+        Operand index = BoundsCheck.getIndex(s);
+        Context ctx = new Context(s.getBasicBlock(), s, null, true, false);
+        if (lower(index, 0, ctx, 0) && upper(index, currentArray, -1, ctx, 0)) {
+          pinned.addAll(usedChecks);
+          eliminate(s);
+        }
+        activeUpper.clear();
+        activeLower.clear();
+      }
+      current = null;
+      currentArray = null;
+    }
+
+    /**
+     * Replaces a bounds check by a guard that depends on its null check
+     * guard and the guards used in its proof.
+     *
+     * @param s the bounds check
+     */
+    private void eliminate(Instruction s) {
+      RegisterOperand result = BoundsCheck.getClearGuardResult(s);
+      Operand guard = BoundsCheck.getClearGuard(s);
+      if (guard == null) guard = new TrueGuardOperand();
+      ArrayList<Register> anchors = new ArrayList<Register>();
+      for (RegisterOperand g : usedGuards) {
+        if (!anchors.contains(g.getRegister())) anchors.add(g.getRegister());
+      }
+      for (int i = 0; i < anchors.size() - 1; i++) {
+        RegisterOperand t = ir.regpool.makeTempValidation();
+        s.insertBefore(Binary.create(GUARD_COMBINE, t, guard, new RegisterOperand(anchors.get(i), t.getType())));
+        guard = t.copyD2U();
+      }
+      if (anchors.isEmpty()) {
+        Move.mutate(s, GUARD_MOVE, result, guard);
+      } else {
+        Register last = anchors.get(anchors.size() - 1);
+        Binary.mutate(s, GUARD_COMBINE, result, guard, new RegisterOperand(last, result.getType()));
+      }
+      eliminated.add(s);
+      numEliminated++;
+    }
+
+    /**
+     * Proves <code>x - length(a) &lt;= c</code>.
+     *
+     * @param x the value to bound
+     * @param a the array whose length bounds x
+     * @param c the constant difference
+     * @param ctx where the inequality must hold
+     * @param depth the depth of the proof
+     * @return whether the inequality was proven
+     */
+    private boolean upper(Operand x, Operand a, long c, Context ctx, int depth) {
+      if (++steps > MAX_STEPS || depth > MAX_DEPTH) return false;
+      if (x.isIntConstant()) {
+        long k = x.asIntConstant().value;
+        if (upperConstant(k, a, c)) return true;
+        for (Fact f : constantFactsAt(ctx)) {
+          if (f.lhs.isIntConstant() && f.lhs.asIntConstant().value == k &&
+              upper(f.rhs, a, c - f.k, ctx, depth + 1)) {
+            use(f, ctx);
+            return true;
+          }
+        }
+        return false;
+      }
+      Register r = ssaRegister(x);
+      if (r == null) return false;
+      if (isLengthOf(r, a)) return c >= 0;
+      Long active = activeUpper.get(r);
+      if (active != null) return c >= active;
+      activeUpper.put(r, c);
+      try {
+        // a dominating check bounds r by the length of the same array
+        if (c >= -1) {
+          ArrayList<Instruction> list = checksByIndex.get(r);
+          if (list != null) {
+            for (Instruction s : list) {
+              if (sameArray(BoundsCheck.getRef(s), a) && checkHolds(s, ctx)) {
+                use(s, ctx);
+                return true;
+              }
+            }
+          }
+        }
+        // a dominating branch bounds r by another value
+        ArrayList<Fact> facts = factsAt(r, ctx);
+        for (Fact f : facts) {
+          if (sameValue(f.lhs, r) && upper(f.rhs, a, c - f.k, ctx, depth + 1)) {
+            use(f, ctx);
+            return true;
+          }
+        }
+        // the definition of r bounds it
+        Instruction def = r.getFirstDef();
+        switch (def.getOpcode()) {
+          case INT_MOVE_opcode:
+            return upper(Move.getVal(def), a, c, ctx, depth + 1);
+          case PI_opcode:
+            return upper(GuardedUnary.getVal(def), a, c, ctx, depth + 1);
+          case INT_ADD_opcode:
+            if (Binary.getVal2(def).isIntConstant()) {
+              return upperAdd(Binary.getVal1(def), Binary.getVal2(def).asIntConstant().value, a, c, ctx, depth);
+            } else if (Binary.getVal1(def).isIntConstant()) {
+              return upperAdd(Binary.getVal2(def), Binary.getVal1(def).asIntConstant().value, a, c, ctx, depth);
+            }
+            return false;
+          case INT_SUB_opcode:
+            if (Binary.getVal2(def).isIntConstant()) {
+              return upperAdd(Binary.getVal1(def), -(long) Binary.getVal2(def).asIntConstant().value, a, c, ctx, depth);
+            }
+            return false;
+          case INT_AND_opcode:
+            // x & m <= m for m >= 0
+            if (Binary.getVal2(def).isIntConstant() && Binary.getVal2(def).asIntConstant().value >= 0) {
+              return upperConstant(Binary.getVal2(def).asIntConstant().value, a, c);
+            } else if (Binary.getVal1(def).isIntConstant() && Binary.getVal1(def).asIntConstant().value >= 0) {
+              return upperConstant(Binary.getVal1(def).asIntConstant().value, a, c);
+            }
+            return false;
+          case INT_REM_opcode:
+            // |x % m| < |m|
+            if (GuardedBinary.getVal2(def).isIntConstant()) {
+              long m = Math.abs((long) GuardedBinary.getVal2(def).asIntConstant().value);
+              return m != 0 && upperConstant(m - 1, a, c);
+            }
+            return false;
+          case INT_USHR_opcode:
+            if (Binary.getVal2(def).isIntConstant()) {
+              int shift = Binary.getVal2(def).asIntConstant().value & 31;
+              return shift != 0 && upperConstant(0xFFFFFFFFL >>> shift, a, c);
+            }
+            return false;
+          case PHI_opcode:
+            for (int i = 0; i < Phi.getNumberOfValues(def); i++) {
+              Operand val = Phi.getValue(def, i);
+              if (val instanceof UnreachableOperand) continue;
+              if (!upper(val, a, c, phiContext(def, i), depth + 1)) return false;
+            }
+            return true;
+          default:
+            return false;
+        }
+      } finally {
+        activeUpper.remove(r);
+      }
+    }
+
+    /**
+     * Proves <code>y + k - length(a) &lt;= c</code>, where <code>y + k</code>
+     * is computed in 32-bit arithmetic.
+     */
+    private boolean upperAdd(Operand y, long k, Operand a, long c, Context ctx, int depth) {
+      if (k > 0 && c > 0) {
+        // y + k <= length(a) + c may overflow
+        return false;
+      }
+      if (k < 0 && !nested(y, ctx, depth)) {
+        // y + k may underflow unless y is non-negative
+        return false;
+      }
+      return upper(y, a, c - k, ctx, depth + 1);
+    }
+
+    /**
+     * Proves <code>k - length(a) &lt;= c</code> for a constant k.
+     */
+    private boolean upperConstant(long k, Operand a, long c) {
+      if (k <= c) return true; // lengths are non-negative
+      int n = constantLength(a);
+      return n >= 0 && k - n <= c;
+    }
+
+    /**
+     * Proves <code>-x &lt;= c</code>, that is <code>x &gt;= -c</code>.
+     *
+     * @param x the value to bound
+     * @param c the negated lower bound
+     * @param ctx where the inequality must hold
+     * @param depth the depth of the proof
+     * @return whether the inequality was proven
+     */
+    private boolean lower(Operand x, long c, Context ctx, int depth) {
+      if (++steps > MAX_STEPS || depth > MAX_DEPTH) return false;
+      if (x.isIntConstant()) {
+        return -(long) x.asIntConstant().value <= c;
+      }
+      Register r = ssaRegister(x);
+      if (r == null) return false;
+      Long active = activeLower.get(r);
+      if (active != null) return c >= active;
+      activeLower.put(r, c);
+      try {
+        // a dominating check shows r is non-negative
+        if (c >= 0) {
+          ArrayList<Instruction> list = checksByIndex.get(r);
+          if (list != null) {
+            for (Instruction s : list) {
+              if (checkHolds(s, ctx)) {
+                use(s, ctx);
+                return true;
+              }
+            }
+          }
+        }
+        // a dominating branch bounds r from below
+        ArrayList<Fact> facts = factsAt(r, ctx);
+        for (Fact f : facts) {
+          if (sameValue(f.rhs, r) && lower(f.lhs, c - f.k, ctx, depth + 1)) {
+            use(f, ctx);
+            return true;
+          }
+        }
+        // the definition of r bounds it
+        Instruction def = r.getFirstDef();
+        switch (def.getOpcode()) {
+          case ARRAYLENGTH_opcode:
+            return c >= 0;
+          case INT_MOVE_opcode:
+            return lower(Move.getVal(def), c, ctx, depth + 1);
+          case PI_opcode:
+            return lower(GuardedUnary.getVal(def), c, ctx, depth + 1);
+          case INT_ADD_opcode:
+            if (Binary.getVal2(def).isIntConstant()) {
+              return lowerAdd(Binary.getVal1(def), Binary.getVal2(def).asIntConstant().value, c, ctx, depth);
+            } else if (Binary.getVal1(def).isIntConstant()) {
+              return lowerAdd(Binary.getVal2(def), Binary.getVal1(def).asIntConstant().value, c, ctx, depth);
+            }
+            return false;
+          case INT_SUB_opcode:
+            if (Binary.getVal2(def).isIntConstant()) {
+              return lowerAdd(Binary.getVal1(def), -(long) Binary.getVal2(def).asIntConstant().value, c, ctx, depth);
+            }
+            return false;
+          case INT_AND_opcode:
+            // x & y is non-negative if either operand is
+            return c >= 0 &&
+                (lower(Binary.getVal1(def), 0, ctx, depth + 1) || lower(Binary.getVal2(def), 0, ctx, depth + 1));
+          case INT_USHR_opcode:
+            return c >= 0 && Binary.getVal2(def).isIntConstant() &&
+                (Binary.getVal2(def).asIntConstant().value & 31) != 0;
+          case INT_SHR_opcode:
+            return c >= 0 && lower(Binary.getVal1(def), 0, ctx, depth + 1);
+          case INT_REM_opcode:
+            return c >= 0 && lower(GuardedBinary.getVal1(def), 0, ctx, depth + 1);
+          case INT_DIV_opcode:
+            return c >= 0 && GuardedBinary.getVal2(def).isIntConstant() &&
+                GuardedBinary.getVal2(def).asIntConstant().value > 0 &&
+                lower(GuardedBinary.getVal1(def), 0, ctx, depth + 1);
+          case PHI_opcode:
+            for (int i = 0; i < Phi.getNumberOfValues(def); i++) {
+              Operand val = Phi.getValue(def, i);
+              if (val instanceof UnreachableOperand) continue;
+              if (!lower(val, c, phiContext(def, i), depth + 1)) return false;
+            }
+            return true;
+          default:
+            return false;
+        }
+      } finally {
+        activeLower.remove(r);
+      }
+    }
+
+    /**
+     * Proves <code>y + k &gt;= -c</code>, where <code>y + k</code> is
+     * computed in 32-bit arithmetic.
+     */
+    private boolean lowerAdd(Operand y, long k, long c, Context ctx, int depth) {
+      if (k > 0) {
+        // y + k must not overflow: show y <= length(a) - k <= MAX_INT - k
+        HashMap<Register, Long> saved = activeUpper;
+        activeUpper = new HashMap<Register, Long>();
+        try {
+          if (!upper(y, currentArray, -k, ctx, depth + 1)) return false;
+        } finally {
+          activeUpper = saved;
+        }
+      }
+      // an underflow wraps to a non-negative value, so needs no check
+      return lower(y, c + k, ctx, depth + 1);
+    }
+
+    /**
+     * Proves y non-negative in a fresh proof nested inside an upper bound
+     * proof.
+     */
+    private boolean nested(Operand y, Context ctx, int depth) {
+      HashMap<Register, Long> saved = activeLower;
+      activeLower = new HashMap<Register, Long>();
+      try {
+        return lower(y, 0, ctx, depth + 1);
+      } finally {
+        activeLower = saved;
+      }
+    }
+
+    /**
+     * @param phi a PHI instruction
+     * @param i the index of an operand
+     * @return the context in which the operand flows into the PHI
+     */
+    private Context phiContext(Instruction phi, int i) {
+      BasicBlock pred = Phi.getPred(phi, i).block;
+      BasicBlock bb = phi.getBasicBlock();
+      if (pred.isExceptionalOut(bb)) {
+        // the operand may arrive from any PEI in pred, before its checks
+        return new Context(pred, null, null, false, true);
+      }
+      return new Context(pred, null, edgeFacts(pred, bb, false), false, false);
+    }
+
+    /**
+     * @param r a register
+     * @param ctx a program point
+     * @return the branch constraints mentioning r that hold at ctx
+     */
+    private ArrayList<Fact> factsAt(Register r, Context ctx) {
+      ArrayList<Fact> result = new ArrayList<Fact>();
+      if (ctx.edgeFacts != null) {
+        for (Fact f : ctx.edgeFacts) {
+          if (sameValue(f.lhs, r) || sameValue(f.rhs, r)) result.add(f);
+        }
+      }
+      ArrayList<Fact> list = factsByRegister.get(r);
+      if (list != null) {
+        for (Fact f : list) {
+          if (holds(f, ctx)) result.add(f);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @param ctx a program point
+     * @return the branch constraints involving constants that hold at ctx
+     */
+    private ArrayList<Fact> constantFactsAt(Context ctx) {
+      ArrayList<Fact> result = new ArrayList<Fact>();
+      if (ctx.edgeFacts != null) {
+        for (Fact f : ctx.edgeFacts) {
+          if (f.lhs.isIntConstant() || f.rhs.isIntConstant()) result.add(f);
+        }
+      }
+      for (Fact f : constantFacts) {
+        if (holds(f, ctx)) result.add(f);
+      }
+      return result;
+    }
+
+    private boolean holds(Fact f, Context ctx) {
+      if (f.target == null) {
+        return ctx.edgeFacts != null && ctx.edgeFacts.contains(f);
+      }
+      return dt.dominates(f.target, ctx.block);
+    }
+
+    /**
+     * @param s a bounds check
+     * @param ctx a program point
+     * @return whether s completes normally before every arrival at ctx and
+     *  can be relied on
+     */
+    private boolean checkHolds(Instruction s, Context ctx) {
+      if (s == current || eliminated.contains(s)) return false;
+      BasicBlock bb = s.getBasicBlock();
+      if (bb == ctx.block) {
+        if (ctx.exceptional) return false;
+        return ctx.point == null || position.get(s) < position.get(ctx.point);
+      }
+      if (!dt.dominates(bb, ctx.block)) return false;
+      if (!bb.getExceptionalOut().hasMoreElements()) return true;
+      // bb dominates ctx, but ctx may be reached along one of bb's exceptional
+      // edges, perhaps raised by s itself. Require that ctx is only reached
+      // through the normal end of bb.
+      for (Enumeration<BasicBlock> e = bb.getNormalOut(); e.hasMoreElements();) {
+        BasicBlock succ = e.nextElement();
+        if (succ.getNumberOfIn() == 1 && !succ.isExceptionHandlerBasicBlock() &&
+            dt.dominates(succ, ctx.block)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void use(Fact f, Context ctx) {
+      if (ctx.anchored && f.guard != null) usedGuards.add(f.guard);
+    }
+
+    private void use(Instruction check, Context ctx) {
+      usedChecks.add(check);
+      if (ctx.anchored) usedGuards.add(BoundsCheck.getGuardResult(check));
+    }
+
+    /**
+     * @param x an operand
+     * @return the register of x if it is a register in SSA form, otherwise
+     *  {@code null}
+     */
+    private static Register ssaRegister(Operand x) {
+      if (!x.isRegister()) return null;
+      Register r = x.asRegister().getRegister();
+      if (r.isPhysical() || !r.isSSA() || r.getFirstDef() == null) return null;
+      return r;
+    }
+
+    private static boolean sameValue(Operand x, Register r) {
+      return x.isRegister() && x.asRegister().getRegister() == r;
+    }
+
+    /**
+     * @param r a register
+     * @param a an array
+     * @return whether r holds the length of a
+     */
+    private static boolean isLengthOf(Register r, Operand a) {
+      Instruction def = r.getFirstDef();
+      if (def.getOpcode() == INT_MOVE_opcode) {
+        Register src = ssaRegister(Move.getVal(def));
+        return src != null && isLengthOf(src, a);
+      }
+      return def.getOpcode() == ARRAYLENGTH_opcode && sameArray(GuardedUnary.getVal(def), a);
+    }
+
+    private static boolean sameArray(Operand a, Operand b) {
+      Operand oa = origin(a);
+      Operand ob = origin(b);
+      if (oa.isRegister() && ob.isRegister()) {
+        return oa.asRegister().getRegister() == ob.asRegister().getRegister();
+      }
+      return oa.isObjectConstant() && ob.isObjectConstant() &&
+          oa.asObjectConstant().value == ob.asObjectConstant().value;
+    }
+
+    /**
+     * @param a a reference
+     * @return the reference that a was copied from
+     */
+    private static Operand origin(Operand a) {
+      for (int i = 0; i < MAX_DEPTH; i++) {
+        Register r = ssaRegister(a);
+        if (r == null) return a;
+        Instruction def = r.getFirstDef();
+        if (def.operator() == REF_MOVE) {
+          a = Move.getVal(def);
+        } else if (def.operator() == PI) {
+          a = GuardedUnary.getVal(def);
+        } else {
+          return a;
+        }
+      }
+      return a;
+    }
+
+    /**
+     * @param a an array
+     * @return the length of a if it is a known constant, otherwise -1
+     */
+    private static int constantLength(Operand a) {
+      a = origin(a);
+      if (a.isObjectConstant()) {
+        Object value = a.asObjectConstant().value;
+        if (value != null && value.getClass().isArray()) {
+          return java.lang.reflect.Array.getLength(value);
+        }
+        return -1;
+      }
+      Register r = ssaRegister(a);
+      if (r == null) return -1;
+      Instruction def = r.getFirstDef();
+      if (def.operator() == NEWARRAY && NewArray.getSize(def).isIntConstant()) {
+        return NewArray.getSize(def).asIntConstant().value;
+      }
+      return -1;
+    }
+  }
+}
@@ -53,6 +53,8 @@ import org.jikesrvm.compilers.opt.ir.Prepare;
 import org.jikesrvm.compilers.opt.ir.Register;
 import org.jikesrvm.compilers.opt.ir.ResultCarrier;
 import org.jikesrvm.compilers.opt.ir.Return;
+import org.jikesrvm.compilers.opt.ir.VectorReduce;
+import org.jikesrvm.compilers.opt.ir.VectorStore;
 import org.jikesrvm.compilers.opt.ir.operand.BasicBlockOperand;
 import org.jikesrvm.compilers.opt.ir.operand.HeapOperand;
 import org.jikesrvm.compilers.opt.ir.operand.Operand;
@@ -470,6 +472,8 @@ public class EnterSSA extends CompilerPhase {
             Prepare.conforms(s) ||
             Attempt.conforms(s) ||
             CacheOp.conforms(s) ||
+            VectorStore.conforms(s) ||
+            VectorReduce.conforms(s) ||
             s.isDynamicLinkingPoint()) {
           dictionary.registerUnknown(s, b);
         }
@@ -0,0 +1,829 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.ssa;
+
+import static org.jikesrvm.compilers.opt.driver.OptConstants.SYNTH_LOOP_VECTORIZATION_BCI;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_ADD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_ALOAD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_ASTORE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_DIV_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_MUL_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_SUB_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_ADD;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_COPY;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_DIV;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_DOT;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_FILL;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_MUL;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_SUB;
+import static org.jikesrvm.compilers.opt.ir.Operators.DOUBLE_VECTOR_SUM;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_ADD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_ALOAD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_ASTORE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_DIV_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_MUL_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_SUB_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_VECTOR_ADD;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_VECTOR_DIV;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_VECTOR_DOT;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_VECTOR_FILL;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_VECTOR_MUL;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_VECTOR_SUB;
+import static org.jikesrvm.compilers.opt.ir.Operators.FLOAT_VECTOR_SUM;
+import static org.jikesrvm.compilers.opt.ir.Operators.GOTO;
+import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_COMBINE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_MOVE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ADD;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ADD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ALOAD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_AND_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ASTORE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_IFCMP;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_IFCMP_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_MUL_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_OR_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_SUB;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_SUB_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_ADD;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_AND;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_COPY;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_DOT;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_FILL;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_OR;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_SUB;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_SUM;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_VECTOR_XOR;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_XOR_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.PHI;
+import static org.jikesrvm.compilers.opt.ir.Operators.PHI_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.YIELDPOINT_BACKEDGE_opcode;
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_DOUBLE_ALOAD_BARRIER;
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_DOUBLE_ASTORE_BARRIER;
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_FLOAT_ALOAD_BARRIER;
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_FLOAT_ASTORE_BARRIER;
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_INT_ALOAD_BARRIER;
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_INT_ASTORE_BARRIER;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.compilers.opt.DefUse;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.controlflow.AnnotatedLSTGraph;
+import org.jikesrvm.compilers.opt.controlflow.AnnotatedLSTNode;
+import org.jikesrvm.compilers.opt.controlflow.DominatorTree;
+import org.jikesrvm.compilers.opt.controlflow.LSTGraph;
+import org.jikesrvm.compilers.opt.controlflow.LSTNode;
+import org.jikesrvm.compilers.opt.controlflow.LTDominators;
+import org.jikesrvm.compilers.opt.driver.CompilerPhase;
+import org.jikesrvm.compilers.opt.ir.ALoad;
+import org.jikesrvm.compilers.opt.ir.AStore;
+import org.jikesrvm.compilers.opt.ir.BasicBlock;
+import org.jikesrvm.compilers.opt.ir.Binary;
+import org.jikesrvm.compilers.opt.ir.Goto;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.IfCmp;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.Operator;
+import org.jikesrvm.compilers.opt.ir.Phi;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.ir.VectorReduce;
+import org.jikesrvm.compilers.opt.ir.VectorStore;
+import org.jikesrvm.compilers.opt.ir.operand.BasicBlockOperand;
+import org.jikesrvm.compilers.opt.ir.operand.BranchProfileOperand;
+import org.jikesrvm.compilers.opt.ir.operand.ConditionOperand;
+import org.jikesrvm.compilers.opt.ir.operand.IntConstantOperand;
+import org.jikesrvm.compilers.opt.ir.operand.LocationOperand;
+import org.jikesrvm.compilers.opt.ir.operand.Operand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+
+/**
+ * Vectorizes simple counted loops over int, float and double arrays using
+ * the packed SSE2 operations of IA32.
+ * <p>
+ * A candidate is an innermost loop made of a single basic block, as
+ * created by {@link LoopVersioning} for the version of a loop without
+ * null and bounds checks, of the form:
+ * <pre>
+ * header:
+ *   i = phi(i0, i')
+ *   a[i] = v
+ *   i' = i + 1
+ *   if i' &lt; n goto header
+ * </pre>
+ * where the arrays and <code>n</code> are loop invariant and
+ * <code>v</code> is one of
+ * <ul>
+ * <li>a loop invariant value (a fill),
+ * <li><code>b[i]</code> (a copy), or
+ * <li><code>b[i] op c[i]</code> for an element-wise addition, subtraction,
+ *     multiplication or division of floating point values, or an addition,
+ *     subtraction or bitwise operation on int values.
+ * </ul>
+ * Besides these instructions the loop may only contain guard moves and
+ * its yieldpoint. Every array is accessed at exactly the index
+ * <code>i</code> and Java arrays never partially overlap, so the packed
+ * operation on elements <code>i .. i + W - 1</code> reads exactly the
+ * values the scalar iterations would have read even if the arrays are the
+ * same; no run time alias test is needed.
+ * <p>
+ * Instead of the store, the loop may carry a sum <code>s = phi(s0, s')</code>
+ * with <code>s' = s + b[i]</code> or <code>s' = s + b[i] * c[i]</code>.
+ * The vector loop then carries its own accumulator. Only the loads and
+ * multiplications of a floating point reduction are packed; its lanes
+ * are added to the accumulator in element order, as reassociating the
+ * additions would change the result.
+ * <p>
+ * Candidates are created by {@link LoopVersioning}, so enabling this
+ * phase also enables loop versioning.
+ * <p>
+ * The transformed code runs a vector loop from <code>i0</code> in steps of
+ * <code>W</code> (4 ints or floats, 2 doubles) while at least
+ * <code>W + 1</code> iterations remain, then enters the original loop to
+ * perform the remaining 1 to <code>W</code> iterations:
+ * <pre>
+ *   if n &lt;= W goto merge
+ * test:
+ *   limit = n - W
+ *   if i0 &lt; limit goto vector
+ *   goto merge
+ * vector:
+ *   j = phi(i0, j')
+ *   a[j .. j + W - 1] = ...
+ *   j' = j + W
+ *   if j' &lt; limit goto vector
+ *   goto merge
+ * merge:
+ *   k = phi(i0, i0, j')
+ *   goto header
+ * header:
+ *   i = phi(k, i')
+ *   ...
+ * </pre>
+ * The packed operations are single LIR instructions of the
+ * {@link VectorStore} format that BURS expands using scratch SSE
+ * registers.
+ */
+public final class LoopVectorization extends CompilerPhase {
+
+  /**
+   * Flag to optionally print verbose debugging messages
+   */
+  private static final boolean DEBUG = false;
+
+  /**
+   * A loop that has been found to be vectorizable
+   */
+  private static final class VectorLoop {
+    /** The loop */
+    final AnnotatedLSTNode loop;
+    /** The phi of the loop iterator */
+    final Instruction phi;
+    /** The store to the destination array, {@code null} for a reduction */
+    final Instruction store;
+    /** The phi of the sum of a reduction, {@code null} for a store */
+    final Instruction accumulator;
+    /** The location of the accessed elements */
+    final LocationOperand location;
+    /** The packed operation to perform */
+    final Operator operator;
+    /** Number of elements per packed operation */
+    final int width;
+    /** First source array or value to fill with */
+    final Operand val1;
+    /** Second source array, may be {@code null} */
+    final Operand val2;
+
+    VectorLoop(AnnotatedLSTNode loop, Instruction phi, Instruction store, Instruction accumulator,
+               LocationOperand location, Operator operator, int width, Operand val1, Operand val2) {
+      this.loop = loop;
+      this.phi = phi;
+      this.store = store;
+      this.accumulator = accumulator;
+      this.location = location;
+      this.operator = operator;
+      this.width = width;
+      this.val1 = val1;
+      this.val2 = val2;
+    }
+  }
+
+  /**
+   * Return a string name for this phase.
+   * @return "Loop Vectorization"
+   */
+  @Override
+  public String getName() {
+    return "Loop Vectorization";
+  }
+
+  /**
+   * This phase contains no per-compilation instance fields.
+   */
+  @Override
+  public CompilerPhase newExecution(IR ir) {
+    return this;
+  }
+
+  /**
+   * Vectorization needs SSE2 to be used for all floating point arithmetic,
+   * so that the packed operations round exactly like the scalar ones.
+   */
+  @Override
+  public boolean shouldPerform(OptOptions options) {
+    return options.SSA_LOOP_VECTORIZATION && VM.BuildForIA32 && VM.BuildForSSE2Full;
+  }
+
+  @Override
+  public void perform(IR ir) {
+    if (ir.hasReachableExceptionHandlers() || ir.HIRInfo.loopStructureTree == null) {
+      return;
+    }
+    annotateLoops(ir);
+
+    ArrayList<VectorLoop> candidates = new ArrayList<VectorLoop>();
+    findCandidates(ir.HIRInfo.loopStructureTree.getRoot(), candidates);
+    for (VectorLoop candidate : candidates) {
+      if (DEBUG) {
+        VM.sysWriteln("Vectorizing loop " + candidate.loop.header + " of " + ir.getMethod() +
+            " using " + candidate.operator);
+      }
+      vectorize(ir, candidate);
+    }
+    if (!candidates.isEmpty()) {
+      annotateLoops(ir);
+    }
+  }
+
+  /**
+   * Recompute def-use chains, dominators and the annotated loop
+   * structure tree.
+   *
+   * @param ir the IR to process
+   */
+  private static void annotateLoops(IR ir) {
+    DefUse.computeDU(ir);
+    LTDominators.perform(ir, true, true);
+    ir.HIRInfo.dominatorTree = new DominatorTree(ir, true);
+    LSTGraph.perform(ir);
+    AnnotatedLSTGraph.perform(ir);
+  }
+
+  /**
+   * Find the vectorizable innermost loops in a loop nest.
+   *
+   * @param node the root of the loop nest
+   * @param candidates list to add the vectorizable loops to
+   */
+  private static void findCandidates(LSTNode node, ArrayList<VectorLoop> candidates) {
+    Enumeration<LSTNode> children = node.getChildren();
+    if (!children.hasMoreElements()) {
+      if (node instanceof AnnotatedLSTNode) {
+        VectorLoop candidate = analyse((AnnotatedLSTNode) node);
+        if (candidate != null) {
+          candidates.add(candidate);
+        }
+      }
+      return;
+    }
+    while (children.hasMoreElements()) {
+      findCandidates(children.nextElement(), candidates);
+    }
+  }
+
+  /**
+   * Decide whether a loop can be vectorized.
+   *
+   * @param loop the loop to analyse
+   * @return the description of the vectorized loop or {@code null}
+   */
+  private static VectorLoop analyse(AnnotatedLSTNode loop) {
+    if (loop.isNonRegularLoop() || loop.header != loop.exit ||
+        loop.predecessor == null || loop.successor == null) {
+      return null;
+    }
+    BasicBlock header = loop.header;
+
+    // the exit test must be "if i' < n goto header" for i' = i + 1
+    Instruction ifCmp = header.firstBranchInstruction();
+    if (ifCmp == null || ifCmp.getOpcode() != INT_IFCMP_opcode ||
+        !IfCmp.getCond(ifCmp).isLESS() ||
+        !IfCmp.getVal1(ifCmp).isRegister() ||
+        !loop.isCarriedLoopIterator(IfCmp.getVal1(ifCmp)) ||
+        !loop.isInvariant(IfCmp.getVal2(ifCmp))) {
+      return null;
+    }
+    Operand carried = IfCmp.getVal1(ifCmp);
+    Instruction increment = AnnotatedLSTNode.definingInstruction(carried);
+    if (increment == null || increment.getOpcode() != INT_ADD_opcode ||
+        increment.getBasicBlock() != header ||
+        !Binary.getVal2(increment).isIntConstant() ||
+        Binary.getVal2(increment).asIntConstant().value != 1 ||
+        !Binary.getVal1(increment).isRegister()) {
+      return null;
+    }
+    Instruction phi = AnnotatedLSTNode.definingInstruction(Binary.getVal1(increment));
+    if (phi == null || phi.getOpcode() != PHI_opcode || phi.getBasicBlock() != header ||
+        Phi.getNumberOfValues(phi) != 2) {
+      return null;
+    }
+    RegisterOperand iterator = Phi.getResult(phi).asRegister();
+
+    // classify the remaining instructions
+    Instruction store = null;
+    Instruction accumulator = null;
+    ArrayList<Instruction> loads = new ArrayList<Instruction>();
+    ArrayList<Instruction> arithmetic = new ArrayList<Instruction>();
+    for (Enumeration<Instruction> e = header.forwardRealInstrEnumerator(); e.hasMoreElements();) {
+      Instruction s = e.nextElement();
+      if (s == phi || s == increment || s == ifCmp || s.isUnconditionalBranch()) {
+        continue;
+      }
+      switch (s.getOpcode()) {
+        case YIELDPOINT_BACKEDGE_opcode:
+        case GUARD_MOVE_opcode:
+        case GUARD_COMBINE_opcode:
+          break;
+        case PHI_opcode:
+          if (accumulator != null) {
+            return null;
+          }
+          accumulator = s;
+          break;
+        case INT_ALOAD_opcode:
+        case FLOAT_ALOAD_opcode:
+        case DOUBLE_ALOAD_opcode:
+          loads.add(s);
+          break;
+        case INT_ASTORE_opcode:
+        case FLOAT_ASTORE_opcode:
+        case DOUBLE_ASTORE_opcode:
+          if (store != null) {
+            return null;
+          }
+          store = s;
+          break;
+        case INT_ADD_opcode:
+        case INT_SUB_opcode:
+        case INT_AND_opcode:
+        case INT_OR_opcode:
+        case INT_XOR_opcode:
+        case INT_MUL_opcode:
+        case FLOAT_ADD_opcode:
+        case FLOAT_SUB_opcode:
+        case FLOAT_MUL_opcode:
+        case FLOAT_DIV_opcode:
+        case DOUBLE_ADD_opcode:
+        case DOUBLE_SUB_opcode:
+        case DOUBLE_MUL_opcode:
+        case DOUBLE_DIV_opcode:
+          arithmetic.add(s);
+          break;
+        default:
+          return null;
+      }
+    }
+    if (store == null) {
+      return analyseReduction(loop, phi, accumulator, loads, arithmetic, iterator);
+    }
+    if (accumulator != null || !isInvariantArray(loop, AStore.getArray(store)) ||
+        !AStore.getIndex(store).similar(iterator)) {
+      return null;
+    }
+    LocationOperand location = AStore.getLocation(store);
+
+    int storeOpcode = store.getOpcode();
+    int width = storeOpcode == DOUBLE_ASTORE_opcode ? 2 : 4;
+    if (needsBarrier(storeOpcode)) {
+      return null;
+    }
+    Operand value = AStore.getValue(store);
+    if (loop.isInvariant(value)) {
+      // fill
+      if (!loads.isEmpty() || !arithmetic.isEmpty()) {
+        return null;
+      }
+      Operator fill = storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_FILL :
+        storeOpcode == FLOAT_ASTORE_opcode ? FLOAT_VECTOR_FILL : DOUBLE_VECTOR_FILL;
+      return new VectorLoop(loop, phi, store, null, location, fill, width, value, null);
+    }
+    if (!value.isRegister()) {
+      return null;
+    }
+    Instruction def = AnnotatedLSTNode.definingInstruction(value);
+    if (loads.contains(def)) {
+      // copy
+      if (loads.size() != 1 || !arithmetic.isEmpty() ||
+          !isElementLoad(loop, def, storeOpcode, iterator)) {
+        return null;
+      }
+      Operator copy = storeOpcode == DOUBLE_ASTORE_opcode ? DOUBLE_VECTOR_COPY : INT_VECTOR_COPY;
+      return new VectorLoop(loop, phi, store, null, location, copy, width, ALoad.getArray(def), null);
+    }
+    if (arithmetic.size() != 1 || arithmetic.get(0) != def ||
+        !Binary.getVal1(def).isRegister() || !Binary.getVal2(def).isRegister()) {
+      return null;
+    }
+    // element-wise operation on two loaded values
+    Operator operator = vectorOperator(def.getOpcode(), storeOpcode);
+    Instruction load1 = AnnotatedLSTNode.definingInstruction(Binary.getVal1(def));
+    Instruction load2 = AnnotatedLSTNode.definingInstruction(Binary.getVal2(def));
+    if (operator == null || !loads.contains(load1) || !loads.contains(load2) ||
+        loads.size() != (load1 == load2 ? 1 : 2) ||
+        !isElementLoad(loop, load1, storeOpcode, iterator) ||
+        !isElementLoad(loop, load2, storeOpcode, iterator)) {
+      return null;
+    }
+    return new VectorLoop(loop, phi, store, null, location, operator, width,
+        ALoad.getArray(load1), ALoad.getArray(load2));
+  }
+
+  /**
+   * Decide whether a loop without a store is a vectorizable sum or dot
+   * product.
+   *
+   * @param loop the loop to analyse
+   * @param phi the phi of the loop iterator
+   * @param accumulator the only other phi of the loop, or {@code null}
+   * @param loads the array loads of the loop
+   * @param arithmetic the arithmetic instructions of the loop
+   * @param iterator the loop iterator
+   * @return the description of the vectorized loop or {@code null}
+   */
+  private static VectorLoop analyseReduction(AnnotatedLSTNode loop, Instruction phi, Instruction accumulator,
+                                             ArrayList<Instruction> loads, ArrayList<Instruction> arithmetic,
+                                             RegisterOperand iterator) {
+    if (accumulator == null || Phi.getNumberOfValues(accumulator) != 2) {
+      return null;
+    }
+    // s' = s + x, where s' flows back into the phi of s
+    Register sum = Phi.getResult(accumulator).asRegister().getRegister();
+    Instruction add = null;
+    for (int i = 0; i < 2; i++) {
+      Operand val = Phi.getValue(accumulator, i);
+      Instruction def = val.isRegister() ? AnnotatedLSTNode.definingInstruction(val) : null;
+      if (def != null && def.getBasicBlock() == loop.header) {
+        add = def;
+      }
+    }
+    if (add == null || !arithmetic.contains(add)) {
+      return null;
+    }
+    int storeOpcode;
+    switch (add.getOpcode()) {
+      case INT_ADD_opcode:
+        storeOpcode = INT_ASTORE_opcode;
+        break;
+      case FLOAT_ADD_opcode:
+        storeOpcode = FLOAT_ASTORE_opcode;
+        break;
+      case DOUBLE_ADD_opcode:
+        storeOpcode = DOUBLE_ASTORE_opcode;
+        break;
+      default:
+        return null;
+    }
+    Operand term;
+    if (isRegister(Binary.getVal1(add), sum)) {
+      term = Binary.getVal2(add);
+    } else if (isRegister(Binary.getVal2(add), sum)) {
+      term = Binary.getVal1(add);
+    } else {
+      return null;
+    }
+    // no other use of the partial sums may see the reassociated values
+    if (!term.isRegister() || !usedInLoopOnlyBy(loop, sum, add) ||
+        !usedInLoopOnlyBy(loop, Binary.getResult(add).getRegister(), accumulator) ||
+        needsBarrier(storeOpcode)) {
+      return null;
+    }
+    int width = storeOpcode == DOUBLE_ASTORE_opcode ? 2 : 4;
+    Instruction def = AnnotatedLSTNode.definingInstruction(term);
+    if (loads.contains(def)) {
+      // sum of the elements of one array
+      if (loads.size() != 1 || arithmetic.size() != 1 ||
+          !isElementLoad(loop, def, storeOpcode, iterator)) {
+        return null;
+      }
+      Operator operator = storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_SUM :
+        storeOpcode == FLOAT_ASTORE_opcode ? FLOAT_VECTOR_SUM : DOUBLE_VECTOR_SUM;
+      return new VectorLoop(loop, phi, null, accumulator, ALoad.getLocation(def), operator, width,
+          ALoad.getArray(def), null);
+    }
+    // sum of the products of the elements of two arrays
+    if (!arithmetic.contains(def) || arithmetic.size() != 2 || !isMultiply(def.getOpcode(), storeOpcode) ||
+        !Binary.getVal1(def).isRegister() || !Binary.getVal2(def).isRegister()) {
+      return null;
+    }
+    Instruction load1 = AnnotatedLSTNode.definingInstruction(Binary.getVal1(def));
+    Instruction load2 = AnnotatedLSTNode.definingInstruction(Binary.getVal2(def));
+    if (!loads.contains(load1) || !loads.contains(load2) ||
+        loads.size() != (load1 == load2 ? 1 : 2) ||
+        !isElementLoad(loop, load1, storeOpcode, iterator) ||
+        !isElementLoad(loop, load2, storeOpcode, iterator)) {
+      return null;
+    }
+    Operator operator = storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_DOT :
+      storeOpcode == FLOAT_ASTORE_opcode ? FLOAT_VECTOR_DOT : DOUBLE_VECTOR_DOT;
+    return new VectorLoop(loop, phi, null, accumulator, ALoad.getLocation(load1), operator, width,
+        ALoad.getArray(load1), ALoad.getArray(load2));
+  }
+
+  /**
+   * @param op an operand
+   * @param r a register
+   * @return whether the operand is the register
+   */
+  private static boolean isRegister(Operand op, Register r) {
+    return op.isRegister() && op.asRegister().getRegister() == r;
+  }
+
+  /**
+   * @param loop a loop
+   * @param r a register
+   * @param user an instruction of the loop
+   * @return whether user is the only instruction in the loop that uses r
+   */
+  private static boolean usedInLoopOnlyBy(AnnotatedLSTNode loop, Register r, Instruction user) {
+    for (Enumeration<RegisterOperand> e = DefUse.uses(r); e.hasMoreElements();) {
+      Instruction s = e.nextElement().instruction;
+      if (s != user && s.getBasicBlock() == loop.header) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param opcode the opcode of a scalar binary operation
+   * @param storeOpcode the opcode of an array store of the element type
+   * @return whether the operation multiplies values of the element type
+   */
+  private static boolean isMultiply(int opcode, int storeOpcode) {
+    switch (storeOpcode) {
+      case INT_ASTORE_opcode:
+        return opcode == INT_MUL_opcode;
+      case FLOAT_ASTORE_opcode:
+        return opcode == FLOAT_MUL_opcode;
+      default:
+        return opcode == DOUBLE_MUL_opcode;
+    }
+  }
+
+  /**
+   * @param loop the loop containing the access
+   * @param array an array operand
+   * @return whether the array is a loop invariant register
+   */
+  private static boolean isInvariantArray(AnnotatedLSTNode loop, Operand array) {
+    return array.isRegister() && loop.isInvariant(array);
+  }
+
+  /**
+   * @param loop the loop containing the load
+   * @param load an array load
+   * @param storeOpcode the opcode of the array store of the loop
+   * @param iterator the phi loop iterator
+   * @return whether the load reads element <code>i</code> of a loop
+   *  invariant array of the type that is stored
+   */
+  private static boolean isElementLoad(AnnotatedLSTNode loop, Instruction load, int storeOpcode,
+                                       RegisterOperand iterator) {
+    int loadOpcode = load.getOpcode();
+    boolean sameType = (loadOpcode == INT_ALOAD_opcode && storeOpcode == INT_ASTORE_opcode) ||
+        (loadOpcode == FLOAT_ALOAD_opcode && storeOpcode == FLOAT_ASTORE_opcode) ||
+        (loadOpcode == DOUBLE_ALOAD_opcode && storeOpcode == DOUBLE_ASTORE_opcode);
+    return sameType &&
+        isInvariantArray(loop, ALoad.getArray(load)) &&
+        ALoad.getIndex(load).similar(iterator);
+  }
+
+  /**
+   * @param storeOpcode the opcode of an array store
+   * @return whether loads or stores of the array type need barriers
+   */
+  private static boolean needsBarrier(int storeOpcode) {
+    switch (storeOpcode) {
+      case INT_ASTORE_opcode:
+        return NEEDS_INT_ASTORE_BARRIER || NEEDS_INT_ALOAD_BARRIER;
+      case FLOAT_ASTORE_opcode:
+        return NEEDS_FLOAT_ASTORE_BARRIER || NEEDS_FLOAT_ALOAD_BARRIER;
+      default:
+        return NEEDS_DOUBLE_ASTORE_BARRIER || NEEDS_DOUBLE_ALOAD_BARRIER;
+    }
+  }
+
+  /**
+   * @param opcode the opcode of a scalar binary operation
+   * @param storeOpcode the opcode of the array store of its result
+   * @return the packed operation or {@code null} if there is none
+   */
+  private static Operator vectorOperator(int opcode, int storeOpcode) {
+    switch (opcode) {
+      case INT_ADD_opcode:
+        return storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_ADD : null;
+      case INT_SUB_opcode:
+        return storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_SUB : null;
+      case INT_AND_opcode:
+        return storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_AND : null;
+      case INT_OR_opcode:
+        return storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_OR : null;
+      case INT_XOR_opcode:
+        return storeOpcode == INT_ASTORE_opcode ? INT_VECTOR_XOR : null;
+      case FLOAT_ADD_opcode:
+        return storeOpcode == FLOAT_ASTORE_opcode ? FLOAT_VECTOR_ADD : null;
+      case FLOAT_SUB_opcode:
+        return storeOpcode == FLOAT_ASTORE_opcode ? FLOAT_VECTOR_SUB : null;
+      case FLOAT_MUL_opcode:
+        return storeOpcode == FLOAT_ASTORE_opcode ? FLOAT_VECTOR_MUL : null;
+      case FLOAT_DIV_opcode:
+        return storeOpcode == FLOAT_ASTORE_opcode ? FLOAT_VECTOR_DIV : null;
+      case DOUBLE_ADD_opcode:
+        return storeOpcode == DOUBLE_ASTORE_opcode ? DOUBLE_VECTOR_ADD : null;
+      case DOUBLE_SUB_opcode:
+        return storeOpcode == DOUBLE_ASTORE_opcode ? DOUBLE_VECTOR_SUB : null;
+      case DOUBLE_MUL_opcode:
+        return storeOpcode == DOUBLE_ASTORE_opcode ? DOUBLE_VECTOR_MUL : null;
+      case DOUBLE_DIV_opcode:
+        return storeOpcode == DOUBLE_ASTORE_opcode ? DOUBLE_VECTOR_DIV : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Create the vector loop in front of a candidate loop.
+   *
+   * @param ir the IR containing the loop
+   * @param v the loop to vectorize
+   */
+  private static void vectorize(IR ir, VectorLoop v) {
+    AnnotatedLSTNode loop = v.loop;
+    BasicBlock header = loop.header;
+    Instruction phi = v.phi;
+    int entry = 0;
+    while (Phi.getPred(phi, entry).block != loop.predecessor) {
+      entry++;
+    }
+    Operand initial = Phi.getValue(phi, entry);
+    Operand terminal = IfCmp.getVal2(header.firstBranchInstruction());
+    Instruction position = header.firstInstruction();
+
+    // Don't bother if the loop can't run the vector loop
+    boolean needsLengthTest = true;
+    if (terminal.isIntConstant()) {
+      if (terminal.asIntConstant().value <= v.width) {
+        return;
+      }
+      needsLengthTest = false;
+    }
+
+    BasicBlock lengthTest = needsLengthTest ? header.createSubBlock(SYNTH_LOOP_VECTORIZATION_BCI, ir) : null;
+    BasicBlock test = header.createSubBlock(SYNTH_LOOP_VECTORIZATION_BCI, ir);
+    BasicBlock vector = header.createSubBlock(SYNTH_LOOP_VECTORIZATION_BCI, ir);
+    BasicBlock merge = header.createSubBlock(SYNTH_LOOP_VECTORIZATION_BCI, ir);
+    if (needsLengthTest) {
+      ir.cfg.linkInCodeOrder(ir.cfg.lastInCodeOrder(), lengthTest);
+    }
+    ir.cfg.linkInCodeOrder(ir.cfg.lastInCodeOrder(), test);
+    ir.cfg.linkInCodeOrder(test, vector);
+    ir.cfg.linkInCodeOrder(vector, merge);
+
+    // lengthTest: if n <= W goto merge, as n - W could overflow
+    if (needsLengthTest) {
+      append(lengthTest, position,
+          IfCmp.create(INT_IFCMP, ir.regpool.makeTempValidation(), terminal.copy(), new IntConstantOperand(v.width),
+                       ConditionOperand.LESS_EQUAL(), merge.makeJumpTarget(), BranchProfileOperand.unlikely()));
+      append(lengthTest, position, Goto.create(GOTO, test.makeJumpTarget()));
+      lengthTest.insertOut(merge);
+      lengthTest.insertOut(test);
+    }
+
+    // test: limit = n - W; if i0 < limit goto vector
+    RegisterOperand limit = ir.regpool.makeTempInt();
+    append(test, position, Binary.create(INT_SUB, limit, terminal.copy(), new IntConstantOperand(v.width)));
+    append(test, position,
+        IfCmp.create(INT_IFCMP, ir.regpool.makeTempValidation(), initial.copy(), limit.copyRO(),
+                     ConditionOperand.LESS(), vector.makeJumpTarget(), BranchProfileOperand.likely()));
+    append(test, position, Goto.create(GOTO, merge.makeJumpTarget()));
+    test.insertOut(vector);
+    test.insertOut(merge);
+
+    // vector: the packed loop
+    RegisterOperand j = ir.regpool.makeTempInt();
+    RegisterOperand next = ir.regpool.makeTempInt();
+    Instruction vectorPhi = Phi.create(PHI, j, 2);
+    Phi.setValue(vectorPhi, 0, initial.copy());
+    Phi.setPred(vectorPhi, 0, new BasicBlockOperand(test));
+    Phi.setValue(vectorPhi, 1, next.copyRO());
+    Phi.setPred(vectorPhi, 1, new BasicBlockOperand(vector));
+    append(vector, position, vectorPhi);
+    Instruction store = v.store;
+    Instruction accumulator = v.accumulator;
+    int accEntry = 0;
+    Operand accInitial = null;
+    RegisterOperand acc = null;
+    RegisterOperand accNext = null;
+    if (accumulator != null) {
+      // the vector loop carries its own partial sum
+      while (Phi.getPred(accumulator, accEntry).block != loop.predecessor) {
+        accEntry++;
+      }
+      accInitial = Phi.getValue(accumulator, accEntry);
+      acc = ir.regpool.makeTemp(Phi.getResult(accumulator).asRegister());
+      accNext = ir.regpool.makeTemp(acc);
+      Instruction accPhi = Phi.create(PHI, acc, 2);
+      Phi.setValue(accPhi, 0, accInitial.copy());
+      Phi.setPred(accPhi, 0, new BasicBlockOperand(test));
+      Phi.setValue(accPhi, 1, accNext.copyRO());
+      Phi.setPred(accPhi, 1, new BasicBlockOperand(vector));
+      append(vector, position, accPhi);
+    }
+    for (Enumeration<Instruction> e = header.forwardRealInstrEnumerator(); e.hasMoreElements();) {
+      Instruction s = e.nextElement();
+      if (s.getOpcode() == YIELDPOINT_BACKEDGE_opcode) {
+        vector.appendInstruction(s.copyWithoutLinks());
+      }
+    }
+    if (store != null) {
+      append(vector, position,
+          VectorStore.create(v.operator, AStore.getArray(store).copy(), j.copyRO(), v.val1.copy(),
+                             (LocationOperand) v.location.copy(),
+                             v.val2 == null ? null : v.val2.copy()));
+    } else {
+      append(vector, position,
+          VectorReduce.create(v.operator, accNext, acc.copyRO(), v.val1.copy(), j.copyRO(),
+                              (LocationOperand) v.location.copy(),
+                              v.val2 == null ? null : v.val2.copy()));
+    }
+    append(vector, position, Binary.create(INT_ADD, next, j.copyRO(), new IntConstantOperand(v.width)));
+    append(vector, position,
+        IfCmp.create(INT_IFCMP, ir.regpool.makeTempValidation(), next.copyRO(), limit.copyRO(),
+                     ConditionOperand.LESS(), vector.makeJumpTarget(), BranchProfileOperand.likely()));
+    append(vector, position, Goto.create(GOTO, merge.makeJumpTarget()));
+    vector.insertOut(vector);
+    vector.insertOut(merge);
+
+    // merge: the iterator value to continue the scalar loop with
+    RegisterOperand k = ir.regpool.makeTempInt();
+    int numPreds = needsLengthTest ? 3 : 2;
+    Instruction mergePhi = Phi.create(PHI, k, numPreds);
+    Phi.setValue(mergePhi, 0, initial.copy());
+    Phi.setPred(mergePhi, 0, new BasicBlockOperand(test));
+    Phi.setValue(mergePhi, 1, next.copyRO());
+    Phi.setPred(mergePhi, 1, new BasicBlockOperand(vector));
+    if (needsLengthTest) {
+      Phi.setValue(mergePhi, 2, initial.copy());
+      Phi.setPred(mergePhi, 2, new BasicBlockOperand(lengthTest));
+    }
+    append(merge, position, mergePhi);
+    RegisterOperand kacc = null;
+    if (accumulator != null) {
+      kacc = ir.regpool.makeTemp(accNext);
+      Instruction accMergePhi = Phi.create(PHI, kacc, numPreds);
+      Phi.setValue(accMergePhi, 0, accInitial.copy());
+      Phi.setPred(accMergePhi, 0, new BasicBlockOperand(test));
+      Phi.setValue(accMergePhi, 1, accNext.copyRO());
+      Phi.setPred(accMergePhi, 1, new BasicBlockOperand(vector));
+      if (needsLengthTest) {
+        Phi.setValue(accMergePhi, 2, accInitial.copy());
+        Phi.setPred(accMergePhi, 2, new BasicBlockOperand(lengthTest));
+      }
+      append(merge, position, accMergePhi);
+    }
+    append(merge, position, Goto.create(GOTO, header.makeJumpTarget()));
+    merge.insertOut(header);
+
+    // enter through the new blocks
+    loop.predecessor.redirectOuts(header, needsLengthTest ? lengthTest : test, ir);
+    Phi.setValue(phi, entry, k.copyRO());
+    Phi.setPred(phi, entry, new BasicBlockOperand(merge));
+    if (accumulator != null) {
+      Phi.setValue(accumulator, accEntry, kacc.copyRO());
+      Phi.setPred(accumulator, accEntry, new BasicBlockOperand(merge));
+    }
+  }
+
+  /**
+   * Append a new instruction to a block.
+   *
+   * @param block the block
+   * @param position an instruction with the inline sequence to use
+   * @param s the instruction to append
+   */
+  private static void append(BasicBlock block, Instruction position, Instruction s) {
+    s.setSourcePosition(SYNTH_LOOP_VECTORIZATION_BCI, position.position());
+    block.appendInstruction(s);
+  }
+}
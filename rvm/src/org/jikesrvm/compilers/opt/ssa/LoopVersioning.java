@@ -341,11 +341,13 @@ public final class LoopVersioning extends CompilerPhase {
   }
 
   /**
-   * Should loop versioning be performed?
+   * Should loop versioning be performed? Loop vectorization only handles
+   * loops without runtime checks, which are mostly created here, so it
+   * turns on loop versioning too.
    */
   @Override
   public boolean shouldPerform(OptOptions options) {
-    return options.SSA_LOOP_VERSIONING;
+    return options.SSA_LOOP_VERSIONING || options.SSA_LOOP_VECTORIZATION;
   }
 
   /**
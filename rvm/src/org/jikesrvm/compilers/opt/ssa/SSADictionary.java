@@ -94,6 +94,8 @@ import org.jikesrvm.compilers.opt.ir.Label;
 import org.jikesrvm.compilers.opt.ir.Phi;
 import org.jikesrvm.compilers.opt.ir.PutField;
 import org.jikesrvm.compilers.opt.ir.PutStatic;
+import org.jikesrvm.compilers.opt.ir.VectorReduce;
+import org.jikesrvm.compilers.opt.ir.VectorStore;
 import org.jikesrvm.compilers.opt.ir.operand.BasicBlockOperand;
 import org.jikesrvm.compilers.opt.ir.operand.HeapOperand;
 import org.jikesrvm.compilers.opt.ir.operand.LocationOperand;
@@ -776,7 +778,7 @@ public final class SSADictionary {
       return;
     }
     // handled by registerUnknown
-    if (s.isDynamicLinkingPoint()) {
+    if (s.isDynamicLinkingPoint() || VectorStore.conforms(s) || VectorReduce.conforms(s)) {
       return;
     }
     switch (s.getOpcode()) {
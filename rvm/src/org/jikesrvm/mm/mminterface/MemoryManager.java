@@ -647,7 +647,8 @@ public final class MemoryManager {
    * Allocate a CodeArray into a code space.
    * Currently the interface is fairly primitive;
    * just the number of instructions in the code array and a boolean
-   * to indicate hot or cold code.
+   * to indicate hot or cold code. Small hot code is allocated in its own
+   * space, apart from cold code.
    * @param numInstrs number of instructions
    * @param isHot is this a request for hot code space allocation?
    * @return The  array
@@ -655,13 +656,32 @@ public final class MemoryManager {
   @NoInline
   @Interruptible
   public static CodeArray allocateCode(int numInstrs, boolean isHot) {
+    return allocateCodeArray(numInstrs, isHot ? Plan.ALLOC_HOT_CODE : Plan.ALLOC_COLD_CODE);
+  }
+
+  /**
+   * Allocate a CodeArray for hot code whose placement matters.  Successive
+   * allocations by the same thread are placed next to each other, so a
+   * sequence of methods compiled one after another is laid out in that
+   * order.  Code allocated this way is never reclaimed.
+   * @param numInstrs number of instructions
+   * @return The  array
+   */
+  @NoInline
+  @Interruptible
+  public static CodeArray allocateClusteredCode(int numInstrs) {
+    return allocateCodeArray(numInstrs, Plan.ALLOC_CLUSTERED_CODE);
+  }
+
+  @Inline
+  @Interruptible
+  private static CodeArray allocateCodeArray(int numInstrs, int allocator) {
     RVMArray type = RVMType.CodeArrayType;
     int headerSize = ObjectModel.computeArrayHeaderSize(type);
     int align = ObjectModel.getAlignment(type);
     int offset = ObjectModel.getOffsetForAlignment(type, false);
     int width = type.getLogElementSize();
     TIB tib = type.getTypeInformationBlock();
-    int allocator = isHot ? Plan.ALLOC_HOT_CODE : Plan.ALLOC_COLD_CODE;
 
     return (CodeArray) allocateArray(numInstrs, width, headerSize, tib, allocator, align, offset, Plan.DEFAULT_SITE);
   }
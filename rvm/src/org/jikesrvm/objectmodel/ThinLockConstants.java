@@ -41,14 +41,19 @@ public final class ThinLockConstants {
   // 00 -> thin biasable, and biased if TID is non-zero
   // 01 -> thin unbiasable
   // 10 -> fat unbiasable
+  //
+  // the epoch bits are only meaningful for a biased lock.  a bias whose epoch
+  // differs from the bias epoch of the object's type is stale (see BiasedLocking).
 
   public static final int TL_NUM_BITS_STAT = 2;
+  public static final int TL_NUM_BITS_EPOCH = 2;
   public static final int TL_NUM_BITS_TID = RVMThread.LOG_MAX_THREADS;
-  public static final int TL_NUM_BITS_RC = JavaHeader.NUM_THIN_LOCK_BITS - TL_NUM_BITS_TID - TL_NUM_BITS_STAT;
+  public static final int TL_NUM_BITS_RC = JavaHeader.NUM_THIN_LOCK_BITS - TL_NUM_BITS_TID - TL_NUM_BITS_EPOCH - TL_NUM_BITS_STAT;
 
   public static final int TL_THREAD_ID_SHIFT = JavaHeader.THIN_LOCK_SHIFT;
   public static final int TL_LOCK_COUNT_SHIFT = TL_THREAD_ID_SHIFT + TL_NUM_BITS_TID;
-  public static final int TL_STAT_SHIFT = TL_LOCK_COUNT_SHIFT + TL_NUM_BITS_RC;
+  public static final int TL_EPOCH_SHIFT = TL_LOCK_COUNT_SHIFT + TL_NUM_BITS_RC;
+  public static final int TL_STAT_SHIFT = TL_EPOCH_SHIFT + TL_NUM_BITS_EPOCH;
   public static final int TL_LOCK_ID_SHIFT = JavaHeader.THIN_LOCK_SHIFT;
   public static final int TL_DEDICATED_U16_OFFSET = JavaHeader.THIN_LOCK_DEDICATED_U16_OFFSET;
   public static final int TL_DEDICATED_U16_SHIFT = JavaHeader.THIN_LOCK_DEDICATED_U16_SHIFT;
@@ -57,8 +62,9 @@ public final class ThinLockConstants {
 
   public static final Word TL_LOCK_COUNT_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_RC).lsh(TL_LOCK_COUNT_SHIFT);
   public static final Word TL_THREAD_ID_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_TID).lsh(TL_THREAD_ID_SHIFT);
+  public static final Word TL_EPOCH_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_EPOCH).lsh(TL_EPOCH_SHIFT);
   public static final Word TL_LOCK_ID_MASK =
-      Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - (TL_NUM_BITS_RC + TL_NUM_BITS_TID)).lsh(TL_LOCK_ID_SHIFT);
+      Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - (TL_NUM_BITS_RC + TL_NUM_BITS_TID + TL_NUM_BITS_EPOCH)).lsh(TL_LOCK_ID_SHIFT);
   public static final Word TL_STAT_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_TID).lsh(TL_STAT_SHIFT);
   public static final Word TL_UNLOCK_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - JavaHeader
       .NUM_THIN_LOCK_BITS).lsh(JavaHeader.THIN_LOCK_SHIFT).not();
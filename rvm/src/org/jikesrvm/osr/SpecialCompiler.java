@@ -175,64 +175,71 @@ public class SpecialCompiler {
     // it is also necessary to recompile the current method
     // without OSR.
 
-    /* generate prologue bytes */
-    byte[] prologue = state.generatePrologue();
-    int prosize = prologue.length;
+    // The bytecodes and exception table of the method are rewritten for the
+    // duration of the compilation. Hold the compiler lock throughout so that
+    // other threads compiling the method at the same time (e.g. the
+    // compilation thread) never observe the specialized method.
+    CompiledMethod newCompiledMethod;
+    synchronized (RuntimeCompiler.class) {
+      /* generate prologue bytes */
+      byte[] prologue = state.generatePrologue();
+      int prosize = prologue.length;
 
-    method.setForOsrSpecialization(prologue, state.getMaxStackHeight());
+      method.setForOsrSpecialization(prologue, state.getMaxStackHeight());
 
-    int[] oldStartPCs = null;
-    int[] oldEndPCs = null;
-    int[] oldHandlerPCs = null;
+      int[] oldStartPCs = null;
+      int[] oldEndPCs = null;
+      int[] oldHandlerPCs = null;
 
-    /* adjust exception table. */
-    {
-//      if (VM.TraceOnStackReplacement) {
-//        VM.sysWriteln("OPT adjust exception table.");
-//      }
+      /* adjust exception table. */
+      {
+//        if (VM.TraceOnStackReplacement) {
+//          VM.sysWriteln("OPT adjust exception table.");
+//        }
 
-      ExceptionHandlerMap exceptionHandlerMap = method.getExceptionHandlerMap();
+        ExceptionHandlerMap exceptionHandlerMap = method.getExceptionHandlerMap();
 
-      if (exceptionHandlerMap != null) {
+        if (exceptionHandlerMap != null) {
 
-        oldStartPCs = exceptionHandlerMap.getStartPC();
-        oldEndPCs = exceptionHandlerMap.getEndPC();
-        oldHandlerPCs = exceptionHandlerMap.getHandlerPC();
+          oldStartPCs = exceptionHandlerMap.getStartPC();
+          oldEndPCs = exceptionHandlerMap.getEndPC();
+          oldHandlerPCs = exceptionHandlerMap.getHandlerPC();
 
-        int n = oldStartPCs.length;
+          int n = oldStartPCs.length;
 
-        int[] newStartPCs = new int[n];
-        System.arraycopy(oldStartPCs, 0, newStartPCs, 0, n);
-        exceptionHandlerMap.setStartPC(newStartPCs);
+          int[] newStartPCs = new int[n];
+          System.arraycopy(oldStartPCs, 0, newStartPCs, 0, n);
+          exceptionHandlerMap.setStartPC(newStartPCs);
 
-        int[] newEndPCs = new int[n];
-        System.arraycopy(oldEndPCs, 0, newEndPCs, 0, n);
-        exceptionHandlerMap.setEndPC(newEndPCs);
+          int[] newEndPCs = new int[n];
+          System.arraycopy(oldEndPCs, 0, newEndPCs, 0, n);
+          exceptionHandlerMap.setEndPC(newEndPCs);
 
-        int[] newHandlerPCs = new int[n];
-        System.arraycopy(oldHandlerPCs, 0, newHandlerPCs, 0, n);
-        exceptionHandlerMap.setHandlerPC(newHandlerPCs);
+          int[] newHandlerPCs = new int[n];
+          System.arraycopy(oldHandlerPCs, 0, newHandlerPCs, 0, n);
+          exceptionHandlerMap.setHandlerPC(newHandlerPCs);
 
-        for (int i = 0; i < n; i++) {
-          newStartPCs[i] += prosize;
-          newEndPCs[i] += prosize;
-          newHandlerPCs[i] += prosize;
+          for (int i = 0; i < n; i++) {
+            newStartPCs[i] += prosize;
+            newEndPCs[i] += prosize;
+            newHandlerPCs[i] += prosize;
+          }
         }
       }
-    }
 
-    CompiledMethod newCompiledMethod = RuntimeCompiler.recompileWithOptOnStackSpecialization(compPlan);
+      newCompiledMethod = RuntimeCompiler.recompileWithOptOnStackSpecialization(compPlan);
 
-    // restore original bytecode, exception table, and line number table
-    method.finalizeOsrSpecialization();
+      // restore original bytecode, exception table, and line number table
+      method.finalizeOsrSpecialization();
 
-    {
-      ExceptionHandlerMap exceptionHandlerMap = method.getExceptionHandlerMap();
+      {
+        ExceptionHandlerMap exceptionHandlerMap = method.getExceptionHandlerMap();
 
-      if (exceptionHandlerMap != null) {
-        exceptionHandlerMap.setStartPC(oldStartPCs);
-        exceptionHandlerMap.setEndPC(oldEndPCs);
-        exceptionHandlerMap.setHandlerPC(oldHandlerPCs);
+        if (exceptionHandlerMap != null) {
+          exceptionHandlerMap.setStartPC(oldStartPCs);
+          exceptionHandlerMap.setEndPC(oldEndPCs);
+          exceptionHandlerMap.setHandlerPC(oldHandlerPCs);
+        }
       }
     }
 
@@ -385,6 +385,18 @@ public class Entrypoints {
 
   public static final RVMField latestContenderField =
       getField(org.jikesrvm.scheduler.SpinLock.class, "latestContender", org.jikesrvm.scheduler.RVMThread.class);
+  public static final RVMField lockFreeListHeadField =
+      getField(org.jikesrvm.scheduler.Lock.class, "globalFreeListHead", long.class);
+  public static final RVMField nextLockIndexField =
+      getField(org.jikesrvm.scheduler.Lock.class, "nextLockIndex", int.class);
+  public static final RVMField lockChunksAllocatedField =
+      getField(org.jikesrvm.scheduler.Lock.class, "chunksAllocated", int.class);
+  public static final RVMField globalFreeLocksField =
+      getField(org.jikesrvm.scheduler.Lock.class, "globalFreeLocks", int.class);
+  public static final RVMField globalLocksFreedField =
+      getField(org.jikesrvm.scheduler.Lock.class, "globalLocksFreed", int.class);
+  public static final RVMField heavyLockOwnerIdField =
+      getField(org.jikesrvm.scheduler.Lock.class, "ownerId", int.class);
 
   public static final RVMField depthField = getField(org.jikesrvm.classloader.RVMType.class, "depth", int.class);
   public static final RVMField idField = getField(org.jikesrvm.classloader.RVMType.class, "id", int.class);
@@ -485,6 +497,10 @@ public class Entrypoints {
 
   public static final RVMField edgeCountersField =
       getField(org.jikesrvm.compilers.baseline.EdgeCounts.class, "data", int[][].class);
+  public static final RVMField receiverTypeBudgetsField =
+      getField(org.jikesrvm.compilers.baseline.ReceiverTypeProfiles.class, "budgets", int[].class);
+  public static final NormalMethod recordReceiverTypeMethod =
+      getMethod(org.jikesrvm.compilers.baseline.ReceiverTypeProfiles.class, "record", "(Ljava/lang/Object;I)V");
 
   public static final RVMField classLoadedCountField =
       getField(org.jikesrvm.classloader.JMXSupport.class, "classLoadedCount", int.class);
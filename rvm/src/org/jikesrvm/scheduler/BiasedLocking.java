@@ -0,0 +1,265 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.scheduler;
+
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_EPOCH_MASK;
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_EPOCH_SHIFT;
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_COUNT_UNIT;
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_STAT_THIN;
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_UNLOCK_MASK;
+
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Time;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.Unpreemptible;
+import org.vmmagic.unboxed.Word;
+
+/**
+ * Per-type policy for biased thin locks.
+ * <p>
+ * Every type has a bias epoch, and a biased lock records the epoch of the
+ * type at the time it was biased. When instances of a type are repeatedly
+ * revoked (which requires a pair handshake with the owner of the bias), all
+ * biases of the type are invalidated at once by advancing its epoch. A
+ * stale bias that is not currently held can then be taken over by another
+ * thread with a single CAS. If revocations persist, biasing is disabled for
+ * the type altogether and its instances use plain thin locks.
+ * <p>
+ * The thread owning a bias updates its lock word without a CAS, so a stale
+ * bias may only be taken over once no owner can still be running a locking
+ * fast path that read the old epoch. Epoch changes therefore proceed in two
+ * soft handshakes: the first ensures that no thread is acting on a
+ * staleness decision based on the old epoch, the second that no thread is
+ * still in a fast path that read the old epoch. While the epoch is changing
+ * no bias is considered stale.
+ */
+@Uninterruptible
+public final class BiasedLocking {
+
+  /** Number of revocations of a type that triggers a bulk rebias */
+  private static final int BULK_REBIAS_THRESHOLD = 20;
+
+  /** Number of revocations of a type that causes biasing to be disabled */
+  private static final int BULK_REVOKE_THRESHOLD = 40;
+
+  /**
+   * Time (in milliseconds) after a bulk rebias after which the revocation
+   * count of a type is reset rather than leading to a bulk revocation
+   */
+  private static final long DECAY_TIME = 25000;
+
+  /** Protects the revocation counts of types and the statistics */
+  private static final SpinLock lock = new SpinLock();
+
+  /** Number of biases revoked with a pair handshake */
+  private static long revocations;
+
+  /** Number of stale biases taken over without a handshake */
+  private static long staleBiasTakeovers;
+
+  /** Number of bulk rebias operations */
+  private static long bulkRebiases;
+
+  /** Number of types whose biasing has been disabled */
+  private static long bulkRevocations;
+
+  /** Forces all threads through a yieldpoint when the epoch of a type changes */
+  private static final RVMThread.SoftHandshakeVisitor epochChangeVisitor =
+    new EpochChangeVisitor();
+
+  @Uninterruptible
+  private static final class EpochChangeVisitor extends RVMThread.SoftHandshakeVisitor {
+    /**
+     * @return {@code true} because every mutator thread must pass a
+     *  yieldpoint after the change
+     */
+    @Override
+    public boolean checkAndSignal(RVMThread t) {
+      return true;
+    }
+  }
+
+  private BiasedLocking() {
+    // prevent instantiation
+  }
+
+  /**
+   * @param o an object
+   * @return the current bias epoch of the object's type, in the position of
+   *  the epoch in the thin lock word
+   */
+  @Inline
+  static Word epochBits(Object o) {
+    return Word.fromIntZeroExtend(Magic.getObjectType(o).getBiasEpoch()).lsh(TL_EPOCH_SHIFT).and(TL_EPOCH_MASK);
+  }
+
+  /**
+   * @param o an object
+   * @param lockWord a biased lock word of the object
+   * @return whether the bias was established in the current epoch of the
+   *  object's type. Only the owner of the bias may rely on this.
+   */
+  @Inline
+  static boolean isCurrentEpoch(Object o, Word lockWord) {
+    return lockWord.and(TL_EPOCH_MASK).EQ(epochBits(o));
+  }
+
+  /**
+   * @param o an object
+   * @param lockWord a biased lock word of the object
+   * @return whether the bias is known to be stale, allowing it to be taken
+   *  over with a CAS if it is not held
+   */
+  @Inline
+  static boolean isStale(Object o, Word lockWord) {
+    RVMType type = Magic.getObjectType(o);
+    if (type.isBiasEpochChanging()) return false;
+    Magic.combinedLoadBarrier();
+    return !isCurrentEpoch(o, lockWord);
+  }
+
+  /**
+   * @param o an object
+   * @return whether a lock on the object may be biased
+   */
+  @Inline
+  static boolean isBiasable(Object o) {
+    return !Magic.getObjectType(o).isBiasingDisabled();
+  }
+
+  /**
+   * Computes the lock word for a thread acquiring a lock that is unbiased
+   * or whose bias is stale and not held.
+   *
+   * @param o the object being locked
+   * @param old the current lock word
+   * @param threadId the locking id of the acquiring thread
+   * @return a lock word biased towards the thread in the current epoch, or
+   *  a thin lock word held by the thread if the object's type may no longer
+   *  be biased
+   */
+  @Inline
+  static Word acquireBits(Object o, Word old, Word threadId) {
+    if (isBiasable(o)) {
+      return old.and(TL_UNLOCK_MASK).or(epochBits(o)).or(threadId).plus(TL_LOCK_COUNT_UNIT);
+    } else {
+      return old.and(TL_UNLOCK_MASK).or(TL_STAT_THIN).or(threadId);
+    }
+  }
+
+  /**
+   * Records that a stale bias was taken over without a handshake.
+   */
+  static void notifyStaleBiasTakeover() {
+    lock.lock();
+    staleBiasTakeovers++;
+    lock.unlock();
+  }
+
+  /**
+   * Records that the bias of an object was revoked with a pair handshake,
+   * and performs a bulk rebias or revocation of its type if revocations of
+   * that type have become too frequent. Must not be called with any locks
+   * held, as it may wait for all other threads to reach a yieldpoint.
+   *
+   * @param o the object whose bias was revoked
+   */
+  @NoInline
+  @Unpreemptible("May wait for other threads to rendezvous with a soft handshake")
+  static void notifyRevoked(Object o) {
+    RVMType type = Magic.getObjectType(o);
+    boolean rebias = false;
+    boolean revoke = false;
+    lock.lock();
+    revocations++;
+    if (!type.isBiasingDisabled() && !type.isBiasEpochChanging()) {
+      int count = type.getBiasRevocationCount() + 1;
+      long lastRebias = type.getLastBulkRebiasTime();
+      if (count >= BULK_REBIAS_THRESHOLD && lastRebias != 0 &&
+          Time.currentTimeMillis() - lastRebias >= DECAY_TIME) {
+        // revocations of this type are infrequent, so don't escalate
+        count = 0;
+      }
+      type.setBiasRevocationCount(count);
+      if (count == BULK_REBIAS_THRESHOLD) {
+        rebias = true;
+        bulkRebiases++;
+      } else if (count >= BULK_REVOKE_THRESHOLD) {
+        revoke = true;
+        bulkRevocations++;
+      }
+      if (rebias || revoke) type.setBiasEpochChanging(true);
+    }
+    lock.unlock();
+    if (rebias || revoke) {
+      changeEpoch(type, revoke);
+    }
+  }
+
+  /**
+   * Invalidates all biases of instances of a type. The caller must have
+   * marked the type's epoch as changing.
+   *
+   * @param type the type
+   * @param disable whether to disable biasing for the type
+   */
+  @Unpreemptible("May wait for other threads to rendezvous with a soft handshake")
+  private static void changeEpoch(RVMType type, boolean disable) {
+    Magic.fence();
+    RVMThread.softHandshake(epochChangeVisitor);
+    type.advanceBiasEpoch(disable);
+    if (!disable) type.setLastBulkRebiasTime(Time.currentTimeMillis());
+    Magic.fence();
+    RVMThread.softHandshake(epochChangeVisitor);
+    type.setBiasEpochChanging(false);
+  }
+
+  ///////////////////////////////////////////////////////////////
+  /// Statistics
+  ///////////////////////////////////////////////////////////////
+
+  /** @return number of biases revoked with a pair handshake */
+  public static long getRevocationCount() {
+    lock.lock();
+    long result = revocations;
+    lock.unlock();
+    return result;
+  }
+
+  /** @return number of stale biases taken over without a handshake */
+  public static long getStaleBiasTakeoverCount() {
+    lock.lock();
+    long result = staleBiasTakeovers;
+    lock.unlock();
+    return result;
+  }
+
+  /** @return number of bulk rebias operations */
+  public static long getBulkRebiasCount() {
+    lock.lock();
+    long result = bulkRebiases;
+    lock.unlock();
+    return result;
+  }
+
+  /** @return number of types whose biasing has been disabled */
+  public static long getBulkRevocationCount() {
+    lock.lock();
+    long result = bulkRevocations;
+    lock.unlock();
+    return result;
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.scheduler;
+
+/**
+ * Management interface for the biased locking statistics.  An instance is
+ * registered with the platform MBean server under {@link #OBJECT_NAME}
+ * when the VM is run with {@code -X:vm:biasedLockingMXBean=true}.
+ */
+public interface BiasedLockingMXBean {
+
+  /** The name under which the bean is registered */
+  String OBJECT_NAME = "org.jikesrvm:type=BiasedLocking";
+
+  /** @return number of biases revoked with a pair handshake */
+  long getBiasRevocationCount();
+
+  /** @return number of stale biases taken over without a handshake */
+  long getStaleBiasTakeoverCount();
+
+  /** @return number of bulk rebias operations */
+  long getBulkRebiasCount();
+
+  /** @return number of types whose biasing has been disabled */
+  long getBulkBiasRevocationCount();
+}
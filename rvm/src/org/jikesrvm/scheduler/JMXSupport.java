@@ -12,8 +12,12 @@
  */
 package org.jikesrvm.scheduler;
 
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import org.jikesrvm.VM;
 import org.jikesrvm.runtime.StackTrace;
 import org.jikesrvm.runtime.StackTrace.Element;
@@ -162,6 +166,58 @@ public class JMXSupport {
     return isSuspended;
   }
 
+  public static long getBiasRevocationCount() {
+    return BiasedLocking.getRevocationCount();
+  }
+
+  public static long getStaleBiasTakeoverCount() {
+    return BiasedLocking.getStaleBiasTakeoverCount();
+  }
+
+  public static long getBulkRebiasCount() {
+    return BiasedLocking.getBulkRebiasCount();
+  }
+
+  public static long getBulkBiasRevocationCount() {
+    return BiasedLocking.getBulkRevocationCount();
+  }
+
+  /**
+   * Exposes the biased locking statistics through JMX.
+   */
+  private static final class BiasedLockingStatistics implements BiasedLockingMXBean {
+    @Override
+    public long getBiasRevocationCount() {
+      return JMXSupport.getBiasRevocationCount();
+    }
+    @Override
+    public long getStaleBiasTakeoverCount() {
+      return JMXSupport.getStaleBiasTakeoverCount();
+    }
+    @Override
+    public long getBulkRebiasCount() {
+      return JMXSupport.getBulkRebiasCount();
+    }
+    @Override
+    public long getBulkBiasRevocationCount() {
+      return JMXSupport.getBulkBiasRevocationCount();
+    }
+  }
+
+  /**
+   * Registers a {@link BiasedLockingMXBean} with the platform MBean server.
+   * This is not done by default because creating the platform MBean server
+   * loads and initializes much of the management API.
+   */
+  static void registerBiasedLockingMXBean() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new BiasedLockingStatistics(),
+          new ObjectName(BiasedLockingMXBean.OBJECT_NAME));
+    } catch (JMException e) {
+      VM.sysWriteln("Could not register the biased locking MXBean: ", e.toString());
+    }
+  }
+
   public static long getWaitingCount(RVMThread rvmThread) {
     return rvmThread.getTotalWaitingCount();
   }
@@ -15,12 +15,16 @@ package org.jikesrvm.scheduler;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_ID_MASK;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_ID_SHIFT;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_THREAD_ID_SHIFT;
+import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
 
 import org.jikesrvm.VM;
 import org.jikesrvm.objectmodel.ObjectModel;
 import org.jikesrvm.runtime.Callbacks;
+import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Time;
 import org.jikesrvm.util.Services;
+import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
@@ -87,17 +91,17 @@ java.lang.Object#notifyAll}, and {@link java.lang.Object#wait()}.
  (This seemed to be best for the portBOB benchmark on a 12-way AIX
  SMP in the Fall of '99.)
  <LI> <EM>When should a heavy-weight lock be deflated?</EM>  Currently,
- deflation happens when the lock is unlocked with nothing on either
- of its queues.  Probably better, would be to periodically (what
- period?) examine heavy-weight locks and deflate any that havn't
- been held for a while (how long?).
+ a lock that has never been contended is deflated when it is unlocked
+ with nothing on either of its queues.  Contended locks are deflated by
+ the {@link LockDeflationThread} once they have not been held for a
+ whole period (is a second the right period?).
  <LI> <EM>How many heavy-weight locks are needed? and how should they be
- managed?</EM>  Currently, each processor maintains a pool of free
- locks.  When a lock is inflated by a processor it is taken from
- this pool and when a lock is deflated by a processor it gets added
- to the processors pool.  Since inflation can happen on one processor
- and deflation on another, this can create an imbalance.  It might
- be worth investigating a scheme for balancing these local pools.
+ managed?</EM>  Currently, each thread maintains a small cache of free
+ locks.  When a lock is inflated by a thread it is taken from
+ this cache and when a lock is deflated by a thread it gets added
+ to the thread's cache.  Since inflation can happen on one thread
+ and deflation on another, caches are balanced by moving batches of
+ locks to and from a lock-free global free list.
  <LI> <EM>Is there any advantage to using the {@link SpinLock#tryLock}
  method?</EM>
  </OL>
@@ -144,27 +148,66 @@ public final class Lock {
    */
   private static final boolean tentativeMicrolocking = false;
 
+  /** The maximum number of free locks cached by each thread */
+  private static final int THREAD_FREE_LOCKS = 16;
+  /**
+   * The number of free locks moved at once between a thread's cache and
+   * the global free list
+   */
+  private static final int FREE_LOCK_BATCH = THREAD_FREE_LOCKS / 2;
+
+  // Adaptive spinning.
+
+  /** The smallest spin budget of a lock, in cycles */
+  private static final long MIN_SPIN_CYCLES = 1 << 10;
+  /** The spin budget of a newly inflated lock, in cycles */
+  private static final long INITIAL_SPIN_CYCLES = 1 << 14;
+  /**
+   * The largest spin budget of a lock, in cycles. Locks that are usually
+   * held for longer than this are never spun on.
+   */
+  private static final long MAX_SPIN_CYCLES = 1 << 17;
+  /** log2 of the weight of the most recent hold time in the average */
+  private static final int LOG_HOLD_TIME_DECAY = 3;
+  /**
+   * The number of buckets in the contention histogram. Bucket i counts
+   * waits of fewer than 2<sup>i+1</sup> cycles; the last bucket counts all
+   * longer waits.
+   */
+  private static final int CONTENTION_BUCKETS = 32;
+
   // Heavy lock table.
 
-  /** The table of locks. */
+  /** The table of locks. Chunks are installed with a CAS. */
   private static Lock[][] locks;
-  /** Used during allocation of locks within the table. */
-  private static final SpinLock lockAllocationMutex = new SpinLock();
-  /** The number of chunks in the spine that have been physically allocated */
+  /**
+   * The number of chunks in the spine that have been physically allocated.
+   * Chunks are always installed in order, so these are a prefix of the spine.
+   * This may briefly lag behind the installed chunks; a thread that needs a
+   * chunk advances it in {@link #growLocks(int)} before using the chunk.
+   */
+  @Entrypoint
   private static int chunksAllocated;
   /** The number of locks allocated (these may either be in use, on a global
    * freelist, or on a thread's freelist. */
+  @Entrypoint
   private static int nextLockIndex;
 
   // Global free list.
 
-  /** A global lock free list head */
-  private static Lock globalFreeLock;
+  /**
+   * The head of the global lock free list. The low 32 bits are the index of
+   * the first free lock (zero if the list is empty) and the high 32 bits are
+   * a tag that is incremented by every update, so that the list can be
+   * updated with a CAS without suffering from the ABA problem.
+   */
+  @Entrypoint
+  private static long globalFreeListHead;
   /** the number of locks held on the global free list. */
+  @Entrypoint
   private static int globalFreeLocks;
-  /** the total number of allocation operations. */
-  private static int globalLocksAllocated;
   /** the total number of free operations. */
+  @Entrypoint
   private static int globalLocksFreed;
 
   // Statistics
@@ -175,6 +218,8 @@ public final class Lock {
   public static int unlockOperations;
   /** Number of deflations */
   public static int deflations;
+  /** Number of deflations by {@link #deflateIdleLocks()} */
+  public static int idleDeflations;
 
   /****************************************************************************
    * Instance
@@ -183,6 +228,7 @@ public final class Lock {
   /** The object being locked (if any). */
   protected Object lockedObject;
   /** The id of the thread that owns this lock (if any). */
+  @Entrypoint
   protected int ownerId;
   /** The number of times the owning thread (if any) has acquired this lock. */
   protected int recursionCount;
@@ -190,8 +236,31 @@ public final class Lock {
   public final SpinLock mutex;
   /** Is this lock currently being used? */
   protected boolean active;
-  /** The next free lock on the free lock list */
-  private Lock nextFreeLock;
+  /** Has a thread had to queue to enter this lock since it was inflated? */
+  private boolean contended;
+  /**
+   * Has this lock been acquired since the last pass of
+   * {@link #deflateIdleLocks()}?
+   */
+  private boolean recentlyUsed;
+  /** The index of the next free lock on the free lock list (or zero) */
+  private int nextFreeIndex;
+  /** The cycle count when the current owner acquired this lock */
+  private long acquireCycles;
+  /** A decaying average of the number of cycles this lock is held for */
+  private long averageHoldCycles;
+  /**
+   * The longest time a thread will spin waiting for this lock to be
+   * released before parking, in cycles. Doubled after each spin that
+   * succeeds and halved after each that fails.
+   */
+  private long spinCycles;
+  /** The number of contended acquisitions that succeeded by spinning */
+  private int spinSuccesses;
+  /** The number of contended acquisitions in which a thread parked */
+  private int parks;
+  /** Histogram of the time spent waiting in contended acquisitions */
+  private final int[] contentionHistogram;
   /** This lock's index in the lock table*/
   protected int index;
   /** Queue for entering the lock, guarded by mutex. */
@@ -207,6 +276,7 @@ public final class Lock {
     mutex = new SpinLock();
     entering = new ThreadQueue();
     waiting = new ThreadQueue();
+    contentionHistogram = new int[CONTENTION_BUCKETS];
   }
 
   /**
@@ -242,12 +312,32 @@ public final class Lock {
     if (STATS) lockOperations++;
     RVMThread me = RVMThread.getCurrentThread();
     int threadId = me.getLockingId();
+    recentlyUsed = true;
+    long contentionStart = 0;
+    if (ownerId != 0 && ownerId != threadId && shouldSpin()) {
+      // the owner is running and usually releases the lock quickly, so
+      // wait for it rather than parking
+      contentionStart = Time.cycles();
+      boolean released = spinUntilReleased(contentionStart + spinCycles);
+      if (lockedObject != o) { // lock was deflated while we spun
+        mutex.unlock(); // thread switching benign
+        return false;
+      }
+      adjustSpinCycles(released && ownerId == 0);
+    }
     if (ownerId == threadId) {
       recursionCount++;
     } else if (ownerId == 0) {
-      ownerId = threadId;
+      setOwnerId(threadId);
       recursionCount = 1;
+      if (contentionStart != 0) {
+        spinSuccesses++;
+        recordContention(Time.cycles() - contentionStart);
+      }
     } else {
+      if (contentionStart == 0) contentionStart = Time.cycles();
+      contended = true;
+      parks++;
       entering.enqueue(me);
       mutex.unlock();
       me.monitor().lockNoHandshake();
@@ -255,12 +345,82 @@ public final class Lock {
         me.monitor().waitWithHandshake(); // this may spuriously return
       }
       me.monitor().unlock();
+      // not holding the mutex, so the histogram update may race; it is
+      // only used for reporting
+      recordContention(Time.cycles() - contentionStart);
       return false;
     }
     mutex.unlock(); // thread-switching benign
     return true;
   }
 
+  /**
+   * Decides whether a thread that finds this lock held should spin before
+   * parking. The mutex must be held.
+   *
+   * @return {@code true} if the owner is running and the lock is usually
+   *  held for less time than the spin budget
+   */
+  private boolean shouldSpin() {
+    if (averageHoldCycles > spinCycles || RVMThread.availableProcessors <= 1) return false;
+    RVMThread owner = RVMThread.threadBySlot[ownerId >>> TL_THREAD_ID_SHIFT];
+    return owner != null && owner.isInJava();
+  }
+
+  /**
+   * Releases the mutex and spins until this lock is released, the owner
+   * stops running or the deadline passes, then reacquires the mutex.
+   *
+   * @param deadline the cycle count at which to give up
+   * @return whether the lock was seen to be released
+   */
+  @Unpreemptible
+  private boolean spinUntilReleased(long deadline) {
+    Offset ownerIdOffset = Entrypoints.heavyLockOwnerIdField.getOffset();
+    int owner = ownerId;
+    mutex.unlock();
+    boolean released = false;
+    while (true) {
+      int current = Magic.getIntAtOffset(this, ownerIdOffset);
+      if (current == 0) {
+        released = true;
+        break;
+      }
+      if (current != owner || Time.cycles() > deadline) break;
+      RVMThread t = RVMThread.threadBySlot[owner >>> TL_THREAD_ID_SHIFT];
+      if (t == null || !t.isInJava()) break; // owner has been descheduled
+      Magic.pause();
+    }
+    mutex.lock();
+    return released;
+  }
+
+  /**
+   * Learns from the outcome of a spin. The mutex must be held.
+   *
+   * @param succeeded whether the lock was released in time
+   */
+  private void adjustSpinCycles(boolean succeeded) {
+    if (succeeded) {
+      spinCycles = Math.min(spinCycles << 1, MAX_SPIN_CYCLES);
+    } else {
+      spinCycles = Math.max(spinCycles >> 1, MIN_SPIN_CYCLES);
+    }
+  }
+
+  /**
+   * Adds a contended acquisition to the contention histogram.
+   *
+   * @param cycles the number of cycles spent waiting
+   */
+  private void recordContention(long cycles) {
+    int bucket = 0;
+    while (bucket < CONTENTION_BUCKETS - 1 && (cycles >> (bucket + 1)) != 0) {
+      bucket++;
+    }
+    contentionHistogram[bucket]++;
+  }
+
   @UnpreemptibleNoWarn
   private static void raiseIllegalMonitorStateException(String msg, Object o) {
     throw new IllegalMonitorStateException(msg + o);
@@ -286,10 +446,11 @@ public final class Lock {
       return;
     }
     if (STATS) unlockOperations++;
-    ownerId = 0;
+    setOwnerId(0);
     RVMThread toAwaken = entering.dequeue();
-    if (toAwaken == null && entering.isEmpty() && waiting.isEmpty()) { // heavy lock can be deflated
-      // Possible project: decide on a heuristic to control when lock should be deflated
+    if (toAwaken == null && entering.isEmpty() && waiting.isEmpty() && !contended) { // heavy lock can be deflated
+      // Contended locks are likely to be inflated again straight away, so
+      // they are left to deflateIdleLocks() once they have been idle a while.
       Offset lockOffset = Magic.getObjectType(o).getThinLockOffset();
       if (!lockOffset.isMax()) { // deflate heavy lock
         deflate(o, lockOffset);
@@ -324,10 +485,16 @@ public final class Lock {
   }
 
   /**
-   * Set the owner of a lock
+   * Set the owner of a lock, tracking how long the lock is held for.
    * @param id The thread id of the owner.
    */
   public void setOwnerId(int id) {
+    if (id != 0) {
+      acquireCycles = Time.cycles();
+    } else if (ownerId != 0) {
+      long held = Time.cycles() - acquireCycles;
+      averageHoldCycles += (held - averageHoldCycles) >> LOG_HOLD_TIME_DECAY;
+    }
     ownerId = id;
   }
 
@@ -370,6 +537,45 @@ public final class Lock {
     return lockedObject;
   }
 
+  /**
+   * Forget everything learned about contention for the previous object
+   * this lock was associated with.
+   */
+  private void resetContentionState() {
+    averageHoldCycles = 0;
+    spinCycles = INITIAL_SPIN_CYCLES;
+    spinSuccesses = 0;
+    parks = 0;
+    for (int i = 0; i < CONTENTION_BUCKETS; i++) {
+      contentionHistogram[i] = 0;
+    }
+  }
+
+  /**
+   * Dump the contention statistics of this lock
+   */
+  protected void dumpContention() {
+    VM.sysWrite(" average hold cycles: ");
+    VM.sysWriteLong(averageHoldCycles);
+    VM.sysWrite(" spin cycles: ");
+    VM.sysWriteLong(spinCycles);
+    VM.sysWrite(" spin successes: ");
+    VM.sysWriteInt(spinSuccesses);
+    VM.sysWrite(" parks: ");
+    VM.sysWriteInt(parks);
+    VM.sysWriteln();
+    VM.sysWrite(" contention histogram (waits of fewer than 2^n cycles):");
+    for (int i = 0; i < CONTENTION_BUCKETS; i++) {
+      if (contentionHistogram[i] != 0) {
+        VM.sysWrite(" 2^");
+        VM.sysWriteInt(i + 1);
+        VM.sysWrite(":");
+        VM.sysWriteInt(contentionHistogram[i]);
+      }
+    }
+    VM.sysWriteln();
+  }
+
   /**
    * Dump threads blocked trying to get this lock
    */
@@ -412,6 +618,7 @@ public final class Lock {
     VM.sysWriteln();
     dumpBlockedThreads();
     dumpWaitingThreads();
+    dumpContention();
 
     VM.sysWrite(" mutexLatestContender: ");
     if (mutex.latestContender == null) {
@@ -463,8 +670,9 @@ public final class Lock {
 
   /**
    * Delivers up an unassigned heavy-weight lock.  Locks are allocated
-   * from processor specific regions or lists, so normally no synchronization
-   * is required to obtain a lock.
+   * from a thread-local cache, so normally no synchronization is required
+   * to obtain a lock.  The cache is refilled in batches from a lock-free
+   * global free list, and new locks are only created once that is empty.
    * <p>
    * Collector threads cannot use heavy-weight locks.
    *
@@ -473,111 +681,173 @@ public final class Lock {
   @UnpreemptibleNoWarn("The caller is prepared to lose control when it allocates a lock")
   static Lock allocate() {
     RVMThread me = RVMThread.getCurrentThread();
-    if (me.cachedFreeLock != null) {
-      Lock l = me.cachedFreeLock;
-      me.cachedFreeLock = null;
+    if (me.cachedFreeLock == null) {
+      takeGlobalFreeLocks(me);
+    }
+    Lock l = me.cachedFreeLock;
+    if (l != null) {
+      me.cachedFreeLock = l.nextFreeIndex == 0 ? null : getLock(l.nextFreeIndex);
+      me.cachedFreeLocks--;
+      l.nextFreeIndex = 0;
       if (trace) {
         VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
                       ", a cached free lock from Thread #",me.getThreadSlot());
       }
-      l.active = true;
-      return l;
-    }
-
-    Lock l = null;
-    while (l == null) {
-      if (globalFreeLock != null) {
-        lockAllocationMutex.lock();
-        l = globalFreeLock;
-        if (l != null) {
-          globalFreeLock = l.nextFreeLock;
-          l.nextFreeLock = null;
-          l.active = true;
-          globalFreeLocks--;
-        }
-        lockAllocationMutex.unlock();
-        if (trace && l != null) {
-          VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
-                        " from the global freelist for Thread #",me.getThreadSlot());
-        }
-      } else {
-        l = new Lock(); // may cause thread switch (and processor loss)
-        lockAllocationMutex.lock();
-        if (globalFreeLock == null) {
-          // ok, it's still correct for us to be adding a new lock
-          if (nextLockIndex >= MAX_LOCKS) {
-            VM.sysWriteln("Too many fat locks"); // make MAX_LOCKS bigger? we can keep going??
-            VM.sysFail("Exiting VM with fatal error");
-          }
-          l.index = nextLockIndex++;
-          globalLocksAllocated++;
-        } else {
-          l = null; // someone added to the freelist, try again
-        }
-        lockAllocationMutex.unlock();
-        if (l != null) {
-          if (l.index >= numLocks()) {
-            /* We need to grow the table */
-            growLocks(l.index);
-          }
-          addLock(l);
-          l.active = true;
-          /* make sure other processors see lock initialization.
-           * Note: Derek and I BELIEVE that an isync is not required in the other processor because the lock is newly allocated - Bowen */
-          Magic.fence();
-        }
-        if (trace && l != null) {
-          VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
-                        ", a freshly allocated lock for Thread #",
-                        me.getThreadSlot());
-        }
+    } else {
+      l = new Lock(); // may cause thread switch (and processor loss)
+      l.index = Synchronization.fetchAndAdd(Magic.getJTOC(), Entrypoints.nextLockIndexField.getOffset(), 1);
+      if (l.index >= MAX_LOCKS) {
+        VM.sysWriteln("Too many fat locks"); // make MAX_LOCKS bigger? we can keep going??
+        VM.sysFail("Exiting VM with fatal error");
+      }
+      if (l.index >= numLocks()) {
+        /* We need to grow the table */
+        growLocks(l.index);
+      }
+      addLock(l);
+      if (trace) {
+        VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
+                      ", a freshly allocated lock for Thread #",
+                      me.getThreadSlot());
       }
     }
+    l.resetContentionState();
+    l.contended = false;
+    l.recentlyUsed = true;
+    l.active = true;
+    /* make sure other processors see lock initialization.
+     * Note: Derek and I BELIEVE that an isync is not required in the other processor because the lock is newly allocated - Bowen */
+    Magic.fence();
     return l;
   }
 
   /**
    * Recycles an unused heavy-weight lock.  Locks are deallocated
-   * to processor specific lists, so normally no synchronization
-   * is required to obtain or release a lock.
+   * to thread-local caches, so normally no synchronization
+   * is required to release a lock.  When a cache overflows, half of
+   * it is returned to the global free list at once.
    *
    * @param l the unused lock
    */
   protected static void free(Lock l) {
     l.active = false;
     RVMThread me = RVMThread.getCurrentThread();
-    if (me.cachedFreeLock == null) {
-      if (trace) {
-        VM.sysWriteln("Lock.free: setting ",Magic.objectAsAddress(l),
-                      " as the cached free lock for Thread #",
-                      me.getThreadSlot());
-      }
-      me.cachedFreeLock = l;
-    } else {
-      if (trace) {
-        VM.sysWriteln("Lock.free: returning ",Magic.objectAsAddress(l),
-                      " to the global freelist for Thread #",
-                      me.getThreadSlot());
-      }
-      returnLock(l);
+    if (trace) {
+      VM.sysWriteln("Lock.free: caching ",Magic.objectAsAddress(l),
+                    " as a free lock for Thread #",
+                    me.getThreadSlot());
+    }
+    l.nextFreeIndex = me.cachedFreeLock == null ? 0 : me.cachedFreeLock.index;
+    me.cachedFreeLock = l;
+    me.cachedFreeLocks++;
+    if (me.cachedFreeLocks > THREAD_FREE_LOCKS) {
+      returnLocks(me, FREE_LOCK_BATCH);
+    }
+  }
+
+  /**
+   * Returns all of a terminating thread's cached free locks to the global
+   * free list.
+   *
+   * @param t the thread
+   */
+  static void returnCachedLocks(RVMThread t) {
+    if (t.cachedFreeLocks > 0) {
+      returnLocks(t, t.cachedFreeLocks);
     }
   }
-  static void returnLock(Lock l) {
+
+  /**
+   * Moves locks from the head of a thread's free lock cache to the global
+   * free list with a single CAS.
+   *
+   * @param t the thread
+   * @param count the number of locks to move, at most the number cached
+   */
+  private static void returnLocks(RVMThread t, int count) {
+    if (VM.VerifyAssertions) VM._assert(count > 0 && count <= t.cachedFreeLocks);
+    Lock first = t.cachedFreeLock;
+    Lock last = first;
+    for (int i = 1; i < count; i++) {
+      last = getLock(last.nextFreeIndex);
+    }
+    t.cachedFreeLock = last.nextFreeIndex == 0 ? null : getLock(last.nextFreeIndex);
+    t.cachedFreeLocks -= count;
     if (trace) {
-      VM.sysWriteln("Lock.returnLock: returning ",Magic.objectAsAddress(l),
-                    " to the global freelist for Thread #",
-                    RVMThread.getCurrentThreadSlot());
+      VM.sysWriteln("Lock.returnLocks: returning ",count,
+                    " locks to the global freelist for Thread #",
+                    t.getThreadSlot());
     }
-    lockAllocationMutex.lock();
-    l.nextFreeLock = globalFreeLock;
-    globalFreeLock = l;
-    globalFreeLocks++;
-    globalLocksFreed++;
-    lockAllocationMutex.unlock();
+    Offset headOffset = Entrypoints.lockFreeListHeadField.getOffset();
+    long head;
+    do {
+      head = Magic.getLongAtOffset(Magic.getJTOC(), headOffset);
+      last.nextFreeIndex = (int) head;
+    } while (!Synchronization.tryCompareAndSwap(Magic.getJTOC(), headOffset, head, nextFreeListHead(head, first.index)));
+    Synchronization.fetchAndAdd(Magic.getJTOC(), Entrypoints.globalFreeLocksField.getOffset(), count);
+    Synchronization.fetchAndAdd(Magic.getJTOC(), Entrypoints.globalLocksFreedField.getOffset(), count);
   }
 
   /**
-   * Grow the locks table by allocating a new spine chunk.
+   * Moves a batch of locks from the global free list to a thread's empty
+   * free lock cache with a single CAS.  The tag in the head of the list
+   * guarantees that the chain of locks read before the CAS was not
+   * modified by another thread if the CAS succeeds.
+   *
+   * @param t the thread
+   */
+  private static void takeGlobalFreeLocks(RVMThread t) {
+    if (VM.VerifyAssertions) VM._assert(t.cachedFreeLocks == 0);
+    Offset headOffset = Entrypoints.lockFreeListHeadField.getOffset();
+    while (true) {
+      long head = Magic.getLongAtOffset(Magic.getJTOC(), headOffset);
+      int first = (int) head;
+      if (first == 0) return;
+      // The head may have been read while it was being updated, and the
+      // chain may be changing under us, so indices are checked as we go.
+      // If either happened, the CAS below will fail.
+      Lock last = getLockIfValid(first);
+      int count = 1;
+      while (last != null && last.nextFreeIndex != 0 && count < FREE_LOCK_BATCH) {
+        last = getLockIfValid(last.nextFreeIndex);
+        count++;
+      }
+      if (last == null) continue;
+      if (Synchronization.tryCompareAndSwap(Magic.getJTOC(), headOffset, head, nextFreeListHead(head, last.nextFreeIndex))) {
+        last.nextFreeIndex = 0;
+        t.cachedFreeLock = getLock(first);
+        t.cachedFreeLocks = count;
+        Synchronization.fetchAndAdd(Magic.getJTOC(), Entrypoints.globalFreeLocksField.getOffset(), -count);
+        return;
+      }
+    }
+  }
+
+  /**
+   * @param index a lock index that was read without synchronization
+   * @return the lock with the given index, or {@code null} if the index is
+   *  outside the lock table
+   */
+  private static Lock getLockIfValid(int index) {
+    if (index <= 0 || index >= numLocks()) return null;
+    return getLock(index);
+  }
+
+  /**
+   * @param head the current head of the global free list
+   * @param index the index of the lock that is to be the first on the list
+   * @return the new head of the global free list
+   */
+  private static long nextFreeListHead(long head, int index) {
+    long tag = (head >>> 32) + 1;
+    return (tag << 32) | (index & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Grow the locks table by allocating new spine chunks.  Chunks are
+   * installed with a CAS, so threads using existing locks are never
+   * stopped.  On return, {@link #numLocks()} covers {@code id}, even
+   * if another thread installed the chunk and has not yet counted it.
    *
    * @param id the lock's index in the table
    */
@@ -587,22 +857,22 @@ public final class Lock {
     if (spineId >= LOCK_SPINE_SIZE) {
       VM.sysFail("Cannot grow lock array greater than maximum possible index");
     }
+    Offset countOffset = Entrypoints.lockChunksAllocatedField.getOffset();
     for (int i = chunksAllocated; i <= spineId; i++) {
-      if (locks[i] != null) {
-        /* We were beaten to it */
-        continue;
-      }
-
-      /* Allocate the chunk */
-      Lock[] newChunk = new Lock[LOCK_CHUNK_SIZE];
-
-      lockAllocationMutex.lock();
       if (locks[i] == null) {
-        /* We got here first */
-        locks[i] = newChunk;
-        chunksAllocated++;
+        /* Allocate the chunk; if the CAS fails we were beaten to it */
+        Lock[] newChunk = new Lock[LOCK_CHUNK_SIZE];
+        Offset slot = Offset.fromIntZeroExtend(i << LOG_BYTES_IN_ADDRESS);
+        Synchronization.tryCompareAndSwap(locks, slot, null, newChunk);
       }
-      lockAllocationMutex.unlock();
+
+      /* Chunks 0..i are now installed, so advance the count past chunk i
+       * ourselves rather than rely on whichever thread installed it */
+      int allocated;
+      do {
+        allocated = Magic.getIntAtOffset(Magic.getJTOC(), countOffset);
+      } while (allocated <= i &&
+               !Synchronization.tryCompareAndSwap(Magic.getJTOC(), countOffset, allocated, i + 1));
     }
   }
 
@@ -614,6 +884,34 @@ public final class Lock {
     return chunksAllocated * LOCK_CHUNK_SIZE;
   }
 
+  /**
+   * Deflates heavy-weight locks that are not held, have no threads queued
+   * on them and have not been acquired since the previous call.  Locks
+   * that are busy are skipped rather than waited for.
+   */
+  @Unpreemptible
+  static void deflateIdleLocks() {
+    int limit = numLocks();
+    for (int i = 1; i < limit; i++) {
+      Lock l = getLock(i);
+      if (l == null || !l.active || !l.mutex.tryLock()) continue;
+      if (l.active && l.lockedObject != null && l.ownerId == 0 &&
+          l.entering.isEmpty() && l.waiting.isEmpty()) {
+        if (l.recentlyUsed) {
+          l.recentlyUsed = false;
+        } else {
+          Object o = l.lockedObject;
+          Offset lockOffset = Magic.getObjectType(o).getThinLockOffset();
+          if (!lockOffset.isMax()) {
+            if (STATS) idleDeflations++;
+            l.deflate(o, lockOffset);
+          }
+        }
+      }
+      l.mutex.unlock();
+    }
+  }
+
   /**
    * Read a lock from the lock table by id.
    *
@@ -649,7 +947,7 @@ public final class Lock {
     }
     VM.sysWriteln();
     VM.sysWrite("lock availability stats: ");
-    VM.sysWriteInt(globalLocksAllocated);
+    VM.sysWriteInt(nextLockIndex - 1);
     VM.sysWrite(" locks allocated, ");
     VM.sysWriteInt(globalLocksFreed);
     VM.sysWrite(" locks freed, ");
@@ -713,6 +1011,7 @@ public final class Lock {
       lockOperations = 0;
       unlockOperations = 0;
       deflations = 0;
+      idleDeflations = 0;
 
       ThinLock.notifyAppRunStart("", 0);
     }
@@ -737,13 +1036,15 @@ public final class Lock {
       VM.sysWriteln(" unlock operations");
       VM.sysWrite("FatLocks: ");
       VM.sysWrite(deflations);
-      VM.sysWriteln(" deflations");
+      VM.sysWrite(" deflations, ");
+      VM.sysWrite(idleDeflations);
+      VM.sysWriteln(" of them idle");
 
       ThinLock.notifyExit(totalLocks);
       VM.sysWriteln();
 
       VM.sysWrite("lock availability stats: ");
-      VM.sysWriteInt(globalLocksAllocated);
+      VM.sysWriteInt(nextLockIndex - 1);
       VM.sysWrite(" locks allocated, ");
       VM.sysWriteInt(globalLocksFreed);
       VM.sysWrite(" locks freed, ");
@@ -0,0 +1,60 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.scheduler;
+
+import org.jikesrvm.VM;
+import org.vmmagic.pragma.NonMoving;
+
+/**
+ * Lock deflation thread.
+ * <p>
+ * Heavy-weight locks that have been contended are not deflated when they
+ * are released, since they are likely to be inflated again.  This thread
+ * periodically deflates those that have since become idle, so that the
+ * lock table does not keep growing.
+ *
+ * @see Lock#deflateIdleLocks()
+ */
+@NonMoving
+public class LockDeflationThread extends SystemThread {
+
+  /** Time between passes over the lock table, in nanoseconds */
+  private static final long DEFLATION_PERIOD = 1000L * 1000L * 1000L;
+
+  private static Monitor schedLock;
+
+  public static void boot() {
+    schedLock = new Monitor();
+    LockDeflationThread ldt = new LockDeflationThread();
+    ldt.start();
+  }
+
+  public LockDeflationThread() {
+    super("LockDeflationThread");
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        schedLock.lockNoHandshake();
+        schedLock.timedWaitRelativeWithHandshake(DEFLATION_PERIOD);
+        schedLock.unlock();
+        Lock.deflateIdleLocks();
+      }
+    } catch (Throwable e) {
+      VM.sysWriteln("Unexpected exception thrown in lock deflation thread: ", e.toString());
+      e.printStackTrace();
+    }
+  }
+}
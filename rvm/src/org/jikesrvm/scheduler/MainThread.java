@@ -192,6 +192,8 @@ public final class MainThread extends Thread {
     mainMethod.compile();
     if (dbg) VM.sysWriteln("compiled.]");
 
+    if (VM.biasedLockingMXBean) JMXSupport.registerBiasedLockingMXBean();
+
     // Notify other clients that the startup is complete.
     //
     Callbacks.notifyStartup();
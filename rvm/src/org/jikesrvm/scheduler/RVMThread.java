@@ -672,11 +672,16 @@ public final class RVMThread extends ThreadContext {
   private int uncaughtExceptionCount = 0;
 
   /**
-   * A cached free lock. Not a free list; this will only ever contain 0 or 1
-   * locks!
+   * The first of this thread's cached free locks, which are chained by
+   * lock index (see {@link Lock#allocate()}).
    */
   public Lock cachedFreeLock;
 
+  /**
+   * The number of locks in this thread's free lock cache.
+   */
+  public int cachedFreeLocks;
+
   /*
    * Wait/notify fields
    */
@@ -1470,6 +1475,7 @@ public final class RVMThread extends ThreadContext {
     }
 
     FinalizerThread.boot();
+    LockDeflationThread.boot();
     getCurrentThread().enableYieldpoints();
     if (traceAcct) VM.sysWriteln("RVMThread booted");
   }
@@ -2979,19 +2985,18 @@ public final class RVMThread extends ThreadContext {
    */
   @Unpreemptible
   private void terminateUnpreemptible() {
-    // return cached free lock
+    // return cached free locks
     if (traceAcct)
-      VM.sysWriteln("returning cached lock...");
+      VM.sysWriteln("returning cached locks...");
 
     if (cachedFreeLock != null) {
       if (Lock.trace) {
-        VM.sysWriteln("Thread #", threadSlot, ": about to free lock ",
-            Magic.objectAsAddress(cachedFreeLock));
+        VM.sysWriteln("Thread #", threadSlot, ": about to free ",
+            cachedFreeLocks, " cached locks");
       }
       if (VM.VerifyAssertions)
         VM._assert(cachedFreeLock.mutex.latestContender != this);
-      Lock.returnLock(cachedFreeLock);
-      cachedFreeLock = null;
+      Lock.returnCachedLocks(this);
     }
 
     if (traceAcct)
@@ -58,7 +58,7 @@ public final class ThinLock {
     Word old = Magic.prepareWord(o, lockOffset); // FIXME: bad for PPC?
     Word id = old.and(TL_THREAD_ID_MASK.or(TL_STAT_MASK));
     Word tid = Word.fromIntSignExtend(RVMThread.getCurrentThread().getLockingId());
-    if (id.EQ(tid)) {
+    if (id.EQ(tid) && BiasedLocking.isCurrentEpoch(o, old)) {
       Word changed = old.plus(TL_LOCK_COUNT_UNIT);
       if (!changed.and(TL_LOCK_COUNT_MASK).isZero()) {
         setDedicatedU16(o, lockOffset, changed);
@@ -115,11 +115,12 @@ public final class ThinLock {
         Word id = old.and(TL_THREAD_ID_MASK);
         if (id.isZero()) {
           if (ENABLE_BIASED_LOCKING) {
-            // lock is unbiased, bias it in our favor and grab it
+            // lock is unbiased, bias it in our favor and grab it (or just
+            // grab it, if biasing has been disabled for its type)
             if (Synchronization.tryCompareAndSwap(
                   o, lockOffset,
                   old,
-                  old.or(threadId).plus(TL_LOCK_COUNT_UNIT))) {
+                  BiasedLocking.acquireBits(o, old, threadId))) {
               if (!VM.MagicAttemptImpliesStoreLoadBarrier) Magic.fence();
               return;
             }
@@ -136,6 +137,18 @@ public final class ThinLock {
           }
         } else if (id.EQ(threadId)) {
           // lock is biased in our favor
+          if (old.and(TL_LOCK_COUNT_MASK).isZero() && !BiasedLocking.isCurrentEpoch(o, old)) {
+            // the bias is from an earlier epoch, so other threads may be
+            // taking it over: reacquire it with a CAS.
+            if (Synchronization.tryCompareAndSwap(
+                  o, lockOffset,
+                  old,
+                  BiasedLocking.acquireBits(o, old, threadId))) {
+              if (!VM.MagicAttemptImpliesStoreLoadBarrier) Magic.fence();
+              return;
+            }
+            continue;
+          }
           Word changed = old.plus(TL_LOCK_COUNT_UNIT);
           if (!changed.and(TL_LOCK_COUNT_MASK).isZero()) {
             setDedicatedU16(o, lockOffset, changed);
@@ -144,8 +157,24 @@ public final class ThinLock {
           } else {
             tryToInflate = true;
           }
+        } else if (old.and(TL_LOCK_COUNT_MASK).isZero() && BiasedLocking.isStale(o, old)) {
+          // lock is biased to someone else, but the bias is stale and not
+          // held, so the owner cannot be using it: take it over.
+          if (Synchronization.tryCompareAndSwap(
+                o, lockOffset,
+                old,
+                BiasedLocking.acquireBits(o, old, threadId))) {
+            if (!VM.MagicAttemptImpliesStoreLoadBarrier) Magic.fence();
+            BiasedLocking.notifyStaleBiasTakeover();
+            return;
+          }
+          continue;
         } else {
+          // only count the revocation if it needs a handshake with a live
+          // owner; a dead owner's bias is removed with a plain CAS
+          boolean handshake = getBiasHolderToHandshake(old) != null;
           if (casFromBiased(o, lockOffset, old, biasBitsToThinBits(old), cnt)) {
+            if (handshake) BiasedLocking.notifyRevoked(o);
             continue; // don't spin, since it's thin now
           }
         }
@@ -346,6 +375,24 @@ public final class ThinLock {
     Magic.setCharAtOffset(o, lockOffset.plus(TL_DEDICATED_U16_OFFSET), (char)(value.toInt() >>> TL_DEDICATED_U16_SHIFT));
   }
 
+  /**
+   * Finds the thread that {@link #casFromBiased} has to stop with a pair
+   * handshake before it can remove the bias of a lock word.
+   *
+   * @param lockWord a biasable lock word
+   * @return the live thread, other than the current one, that the lock
+   *  is biased towards, or {@code null} if the bias can be removed with
+   *  a CAS alone
+   */
+  @Inline
+  @Uninterruptible
+  private static RVMThread getBiasHolderToHandshake(Word lockWord) {
+    Word id = lockWord.and(TL_THREAD_ID_MASK);
+    if (id.isZero()) return null;
+    RVMThread owner = RVMThread.threadBySlot[id.toInt() >> TL_THREAD_ID_SHIFT];
+    return owner == RVMThread.getCurrentThread() ? null : owner;
+  }
+
   @NoInline
   @Unpreemptible
   public static boolean casFromBiased(Object o, Offset lockOffset,
@@ -0,0 +1,77 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.adaptive.database.callgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AffinityOrderTest {
+
+  @Test
+  public void emptyGraphHasEmptyOrder() {
+    AffinityOrder<String> order = new AffinityOrder<String>();
+    assertTrue(order.order().isEmpty());
+  }
+
+  @Test
+  public void selfEdgesAreIgnored() {
+    AffinityOrder<String> order = new AffinityOrder<String>();
+    order.addEdge("a", "a", 10);
+    assertTrue(order.order().isEmpty());
+  }
+
+  @Test
+  public void callChainIsLaidOutInOrder() {
+    AffinityOrder<String> order = new AffinityOrder<String>();
+    order.addEdge("a", "b", 10);
+    order.addEdge("b", "c", 5);
+    assertEquals(Arrays.asList("a", "b", "c"), order.order());
+  }
+
+  @Test
+  public void heaviestEdgeIsMergedFirst() {
+    AffinityOrder<String> order = new AffinityOrder<String>();
+    order.addEdge("a", "b", 1);
+    order.addEdge("c", "d", 10);
+    order.addEdge("b", "c", 5);
+    assertEquals(Arrays.asList("a", "b", "c", "d"), order.order());
+  }
+
+  @Test
+  public void chainsAreOrientedToJoinTheEndpoints() {
+    AffinityOrder<String> order = new AffinityOrder<String>();
+    order.addEdge("c", "d", 10);
+    order.addEdge("c", "e", 5);
+    assertEquals(Arrays.asList("d", "c", "e"), order.order());
+  }
+
+  @Test
+  public void weightsInBothDirectionsAreCombined() {
+    AffinityOrder<String> order = new AffinityOrder<String>();
+    order.addEdge("c", "d", 5);
+    order.addEdge("a", "b", 3);
+    order.addEdge("b", "a", 3);
+    assertEquals(Arrays.asList("a", "b", "c", "d"), order.order());
+  }
+
+  @Test
+  public void heavierChainsComeFirst() {
+    AffinityOrder<String> order = new AffinityOrder<String>();
+    order.addEdge("x", "y", 1);
+    order.addEdge("p", "q", 2);
+    assertEquals(Arrays.asList("p", "q", "x", "y"), order.order());
+  }
+}
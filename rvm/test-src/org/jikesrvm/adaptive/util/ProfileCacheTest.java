@@ -0,0 +1,141 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.adaptive.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.RequiresOptCompiler;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+@RunWith(VMRequirements.class)
+@Category({RequiresBuiltJikesRVM.class, RequiresOptCompiler.class})
+public class ProfileCacheTest {
+
+  private File dir;
+  private RVMClass klass;
+
+  @Before
+  public void saveProfile() throws IOException {
+    dir = File.createTempFile("profilecache", "");
+    dir.delete();
+    klass = java.lang.JikesRVMSupport.getTypeForClass(ProfileCacheTest.class).asClass();
+    new ProfileCache(dir).save();
+  }
+
+  @After
+  public void deleteProfile() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  private ProfileCache reload() {
+    ProfileCache cache = new ProfileCache(dir);
+    cache.load();
+    return cache;
+  }
+
+  private List<String> lines(String name) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(new File(dir, name)), "UTF-8"));
+    try {
+      for (String s = in.readLine(); s != null; s = in.readLine()) {
+        lines.add(s);
+      }
+    } finally {
+      in.close();
+    }
+    return lines;
+  }
+
+  private void write(String name, List<String> lines) throws IOException {
+    PrintStream out = new PrintStream(new FileOutputStream(new File(dir, name)));
+    for (String s : lines) {
+      out.println(s);
+    }
+    out.close();
+  }
+
+  @Test
+  public void saveLeavesNoTemporaryFiles() {
+    for (String name : dir.list()) {
+      assertThat(name, name.endsWith(".tmp"), is(false));
+    }
+    assertThat(new File(dir, "profile.sum").exists(), is(true));
+  }
+
+  @Test
+  public void reloadedProfileOfUnchangedClassIsValid() {
+    assertThat(reload().hasValidProfile(klass), is(true));
+  }
+
+  @Test
+  public void profileOfChangedClassIsInvalid() throws IOException {
+    List<String> hashes = new ArrayList<String>();
+    String descriptor = klass.getDescriptor().toString();
+    for (String s : lines("profile.sum")) {
+      if (s.startsWith(descriptor + " ")) {
+        s = descriptor + " " + (ProfileCache.classHash(klass) + 1);
+      }
+      hashes.add(s);
+    }
+    write("profile.sum", hashes);
+    assertThat(reload().hasValidProfile(klass), is(false));
+  }
+
+  @Test
+  public void cacheWithoutHashFileIsIgnored() {
+    new File(dir, "profile.sum").delete();
+    assertThat(reload().hasValidProfile(klass), is(false));
+  }
+
+  @Test
+  public void malformedHashFileIsDiscarded() throws IOException {
+    List<String> hashes = lines("profile.sum");
+    hashes.add("LBroken; notanumber");
+    write("profile.sum", hashes);
+    assertThat(reload().hasValidProfile(klass), is(false));
+  }
+
+  @Test
+  public void malformedEdgeCountFileIsDiscarded() throws IOException {
+    List<String> counts = new ArrayList<String>();
+    counts.add("M 4 garbage");
+    counts.add("3\tforwbranch < 1, ");
+    write("profile.ec", counts);
+    // the rest of the cache is still used
+    assertThat(reload().hasValidProfile(klass), is(true));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.baseline;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+
+import org.jikesrvm.classloader.Atom;
+import org.jikesrvm.classloader.MemberReference;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+@RunWith(VMRequirements.class)
+@Category(RequiresBuiltJikesRVM.class)
+public class EdgeCountsTest {
+
+  /** One conditional branch and a switch with three cases and a default */
+  private static final int[] COUNTS = {5, 7, 1, 2, 3, 4};
+
+  private File file;
+  private NormalMethod method;
+
+  static int branches(int x) {
+    if (x < 0) {
+      return 0;
+    }
+    switch (x) {
+      case 0: return 3;
+      case 1: return 5;
+      case 2: return 7;
+      default: return 9;
+    }
+  }
+
+  @Before
+  public void createFile() throws IOException {
+    file = File.createTempFile("edgecounts", ".ec");
+    method = (NormalMethod) java.lang.JikesRVMSupport.getTypeForClass(EdgeCountsTest.class).asClass().
+        findDeclaredMethod(Atom.findOrCreateAsciiAtom("branches"));
+  }
+
+  @After
+  public void deleteFile() {
+    file.delete();
+  }
+
+  private void write(String content) throws IOException {
+    PrintStream out = new PrintStream(new FileOutputStream(file));
+    out.print(content);
+    out.close();
+  }
+
+  private String header(int numCounts) {
+    return "M " + numCounts + " " + method.getMemberRef() + "\n";
+  }
+
+  @Test
+  public void countsReadBackAsSaved() throws IOException {
+    PrintStream out = new PrintStream(new FileOutputStream(file));
+    new BranchProfiles(method, COUNTS).print(out);
+    out.close();
+
+    HashMap<MemberReference, int[]> counts = EdgeCounts.parseCounts(file.getPath());
+    assertThat(counts.size(), is(1));
+    assertThat(counts.get(method.getMemberRef()), is(COUNTS));
+  }
+
+  private void assertMalformed(String content) throws IOException {
+    write(content);
+    try {
+      EdgeCounts.parseCounts(file.getPath());
+      fail("read malformed edge counts: " + content);
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void malformedFilesAreRejected() throws IOException {
+    assertMalformed("3\tforwbranch < 5, 7 > \n");
+    assertMalformed(header(2) + "3\tforwbranch < 5, x > \n");
+    assertMalformed(header(2) + "3\tforwbranch < 5\n");
+    assertMalformed(header(2) + "3\tjump < 5, 7 > \n");
+    assertMalformed(header(2) + "3\tforwbranch < 5, 7 > \n3\tswitch < 1, 2 >\n");
+    // cut off after the first branch
+    assertMalformed(header(COUNTS.length) + "3\tforwbranch < 5, 7 > \n");
+    assertMalformed(header(-1));
+    assertMalformed("M two " + method.getMemberRef() + "\n");
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.baseline;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.Field;
+
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+@RunWith(VMRequirements.class)
+@Category(RequiresBuiltJikesRVM.class)
+public class ReceiverTypeProfileTest {
+
+  private static final int BCI = 17;
+
+  private static RVMType typeOf(Class<?> c) {
+    return java.lang.JikesRVMSupport.getTypeForClass(c);
+  }
+
+  @Test
+  public void recordCountsEachTypeSeparately() {
+    ReceiverTypeProfile p = new ReceiverTypeProfile(BCI);
+    RVMType a = typeOf(String.class);
+    RVMType b = typeOf(Integer.class);
+    assertThat(p.record(a), is(true));
+    assertThat(p.record(b), is(true));
+    assertThat(p.record(a), is(true));
+    ReceiverTypeProfile s = p.snapshot();
+    assertThat(s.getBytecodeIndex(), is(BCI));
+    assertThat(s.getNumberOfTypes(), is(2));
+    assertThat(s.getType(0), sameInstance(a));
+    assertThat(s.getCount(0), is(2f));
+    assertThat(s.getType(1), sameInstance(b));
+    assertThat(s.getCount(1), is(1f));
+    assertThat(s.isMegamorphic(), is(false));
+  }
+
+  @Test
+  public void recordStopsProfilingMegamorphicSites() {
+    ReceiverTypeProfile p = new ReceiverTypeProfile(BCI);
+    Class<?>[] classes = {String.class, Integer.class, Long.class, Double.class};
+    for (int i = 0; i < ReceiverTypeProfile.WIDTH; i++) {
+      assertThat(p.record(typeOf(classes[i])), is(true));
+    }
+    assertThat(p.record(typeOf(classes[ReceiverTypeProfile.WIDTH])), is(false));
+    ReceiverTypeProfile s = p.snapshot();
+    assertThat(s.isMegamorphic(), is(true));
+    assertThat(s.getTotalCount(), is((float) ReceiverTypeProfile.WIDTH + 1));
+  }
+
+  @Test
+  public void snapshotMergesTypesStoredTwiceByRacingUpdates() throws Exception {
+    ReceiverTypeProfile p = new ReceiverTypeProfile(BCI);
+    RVMType a = typeOf(String.class);
+    RVMType b = typeOf(Integer.class);
+    p.record(a);
+    p.record(b);
+    p.record(b);
+    // what a lost race leaves behind: a in slots 0 and 2
+    Field typesField = ReceiverTypeProfile.class.getDeclaredField("types");
+    Field countsField = ReceiverTypeProfile.class.getDeclaredField("counts");
+    typesField.setAccessible(true);
+    countsField.setAccessible(true);
+    ((RVMType[]) typesField.get(p))[2] = a;
+    ((int[]) countsField.get(p))[2] = 3;
+
+    ReceiverTypeProfile s = p.snapshot();
+    assertThat(s.getNumberOfTypes(), is(2));
+    assertThat(s.getType(0), sameInstance(a));
+    assertThat(s.getCount(0), is(4f));
+    assertThat(s.getType(1), sameInstance(b));
+    assertThat(s.getCount(1), is(2f));
+    assertThat(s.getTotalCount(), is(6f));
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.common;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.jikesrvm.mm.mminterface.MemoryManagerConstants.MOVES_CODE;
+import static org.junit.Assert.*;
+
+import org.jikesrvm.architecture.ArchConstants;
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.tests.util.TestingTools;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.vmmagic.unboxed.Address;
+
+@RunWith(VMRequirements.class)
+@Category(RequiresBuiltJikesRVM.class)
+public class CodeRangeIndexTest {
+
+  private CompiledMethod first;
+  private CompiledMethod second;
+
+  @Before
+  public void compileTestMethods() throws Exception {
+    first = RuntimeCompiler.baselineCompile(TestingTools.getNormalMethod(CodeRangeIndexTest.class, "firstMethod"));
+    second = RuntimeCompiler.baselineCompile(TestingTools.getNormalMethod(CodeRangeIndexTest.class, "secondMethod"));
+  }
+
+  public static int firstMethod(int x) {
+    return x + 1;
+  }
+
+  public static int secondMethod(int x) {
+    return x * 3;
+  }
+
+  private static Address start(CompiledMethod cm) {
+    return Magic.objectAsAddress(cm.getEntryCodeArray());
+  }
+
+  private static Address end(CompiledMethod cm) {
+    return start(cm).plus(cm.numberOfInstructions() << ArchConstants.getLogInstructionWidth());
+  }
+
+  private static CodeRangeIndex indexOf(CompiledMethod... cms) {
+    int[] ids = new int[cms.length];
+    for (int i = 0; i < cms.length; i++) {
+      ids[i] = cms[i].getId();
+    }
+    return CodeRangeIndex.merge(null, ids, ids.length);
+  }
+
+  @Test
+  public void lookupsFollowTheReturnAddressConventionAtBothEndsOfARange() {
+    CodeRangeIndex index = indexOf(first, second);
+    for (CompiledMethod cm : new CompiledMethod[] {first, second}) {
+      assertThat(index.find(start(cm)), is(0));
+      assertThat(index.find(start(cm).plus(1)), is(cm.getId()));
+      assertThat(index.find(end(cm)), is(cm.getId()));
+      assertThat(index.find(end(cm).plus(1)), is(0));
+    }
+  }
+
+  @Test
+  public void addressesBelowTheFirstRangeAreNotFound() {
+    CodeRangeIndex index = indexOf(first, second);
+    Address lowest = start(first).LT(start(second)) ? start(first) : start(second);
+    assertThat(index.find(lowest.minus(1)), is(0));
+    assertThat(index.find(Address.zero()), is(0));
+  }
+
+  @Test
+  public void emptyIndexFindsNothing() {
+    CodeRangeIndex index = CodeRangeIndex.merge(null, new int[0], 0);
+    assertThat(index.find(start(first).plus(1)), is(0));
+    assertThat(index.find(Address.zero()), is(0));
+  }
+
+  @Test
+  public void mergingAnEmptyBatchKeepsTheExistingRanges() {
+    CodeRangeIndex index = CodeRangeIndex.merge(indexOf(first), new int[0], 0);
+    assertThat(index.find(start(first).plus(1)), is(first.getId()));
+  }
+
+  @Test
+  public void overlappingEntriesForTheSameCodeAreFound() {
+    CodeRangeIndex index = CodeRangeIndex.merge(indexOf(first, second),
+        new int[] {first.getId(), second.getId(), first.getId()}, 3);
+    assertThat(index.find(start(first).plus(1)), is(first.getId()));
+    assertThat(index.find(end(first)), is(first.getId()));
+    assertThat(index.find(start(second).plus(1)), is(second.getId()));
+    assertThat(index.find(end(second)), is(second.getId()));
+  }
+
+  @Test
+  public void runtimeLookupsFindNewlyCompiledCode() {
+    assertThat(CompiledMethods.findMethodForInstruction(start(first).plus(1)), is(first));
+    assertThat(CompiledMethods.findMethodForInstruction(end(second)), is(second));
+  }
+
+  @Test
+  public void freedCodeIsNotFound() {
+    CodeRangeIndex index = indexOf(first, second);
+    Address inFirst = start(first).plus(1);
+    Address inSecond = start(second).plus(1);
+
+    CompiledMethods.setCompiledMethodObsolete(first);
+    System.gc();
+    assertThat(CompiledMethods.getCompiledMethodUnchecked(first.getId()), is(nullValue()));
+
+    assertThat(CompiledMethods.findMethodForInstruction(inFirst), is(not(first)));
+    if (!MOVES_CODE) {
+      // the recorded addresses are only reliable while code does not move
+      assertThat(index.find(inFirst), is(0));
+      assertThat(index.find(inSecond), is(second.getId()));
+      assertThat(CodeRangeIndex.merge(index, new int[0], 0).find(inSecond), is(second.getId()));
+    }
+  }
+}
@@ -15,17 +15,25 @@ package org.jikesrvm.mm.mminterface;
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mmtk.plan.Plan.ALLOC_NON_MOVING;
 import static org.mmtk.plan.Plan.DEFAULT_SITE;
 
 import org.jikesrvm.junit.runners.VMRequirements;
 import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
 import org.jikesrvm.classloader.RVMArray;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.compilers.common.CodeArray;
 import org.jikesrvm.objectmodel.ObjectModel;
 import org.jikesrvm.objectmodel.TIB;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.experimental.categories.Category;
+import org.mmtk.plan.Plan;
+import org.mmtk.policy.Space;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
 
 @RunWith(VMRequirements.class)
 @Category(RequiresBuiltJikesRVM.class)
@@ -81,6 +89,47 @@ public class MemoryManagerTest {
     fail("FAIL! Created array with length " + test.length);
   }
 
+  @Test
+  public void hotCodeIsAllocatedInTheHotCodeSpace() {
+    CodeArray code = MemoryManager.allocateCode(100, true);
+    assertTrue(Space.isInSpace(Plan.HOT_CODE, ObjectReference.fromObject(code)));
+  }
+
+  @Test
+  public void coldCodeIsAllocatedInTheSmallCodeSpace() {
+    CodeArray code = MemoryManager.allocateCode(100, false);
+    assertTrue(Space.isInSpace(Plan.SMALL_CODE, ObjectReference.fromObject(code)));
+  }
+
+  @Test
+  public void largeHotCodeIsAllocatedInTheLargeCodeSpace() {
+    CodeArray code = MemoryManager.allocateCode(Plan.MAX_NON_LOS_NONMOVING_ALLOC_BYTES, true);
+    assertTrue(Space.isInSpace(Plan.LARGE_CODE, ObjectReference.fromObject(code)));
+  }
+
+  @Test
+  public void clusteredCodeIsAllocatedInTheImmortalSpace() {
+    CodeArray code = MemoryManager.allocateClusteredCode(100);
+    assertTrue(Space.isInSpace(Plan.IMMORTAL, ObjectReference.fromObject(code)));
+  }
+
+  @Test
+  public void clusteredCodeIsAllocatedContiguously() {
+    CodeArray first = MemoryManager.allocateClusteredCode(100);
+    CodeArray second = MemoryManager.allocateClusteredCode(100);
+    CodeArray third = MemoryManager.allocateClusteredCode(100);
+    // at most one of the allocations may have had to start a new block
+    assertTrue(isRightAfter(first, second) || isRightAfter(second, third));
+  }
+
+  private static boolean isRightAfter(CodeArray code, CodeArray next) {
+    Address end = ObjectModel.getObjectEndAddress(code);
+    Address start = ObjectModel.objectStartRef(ObjectReference.fromObject(next));
+    Offset gap = start.diff(end);
+    // allow for the padding to the alignment of the next array
+    return gap.sGE(Offset.zero()) && gap.sLT(Offset.fromIntSignExtend(ObjectModel.getAlignment(RVMType.CodeArrayType)));
+  }
+
   @Test(expected = OutOfMemoryError.class)
   public void newTIBTestNegative() {
     MemoryManager.newTIB(-100, 0);
@@ -0,0 +1,102 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mmtk;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+@RunWith(VMRequirements.class)
+@Category(RequiresBuiltJikesRVM.class)
+public class FinalizableProcessorTest {
+
+  private static final int THREADS = 4;
+
+  /** Not a multiple of the buffer size, so every thread leaves a partly filled buffer */
+  private static final int PER_THREAD = 37;
+
+  private static final int COUNT = THREADS * PER_THREAD;
+
+  private static final AtomicIntegerArray finalized = new AtomicIntegerArray(COUNT);
+
+  static class Finalizable {
+    private final int id;
+
+    Finalizable(int id) {
+      this.id = id;
+    }
+
+    @Override
+    protected void finalize() {
+      finalized.incrementAndGet(id);
+    }
+  }
+
+  private static int countFinalized() {
+    int count = 0;
+    for (int i = 0; i < COUNT; i++) {
+      count += finalized.get(i);
+    }
+    return count;
+  }
+
+  private static void collect() throws InterruptedException {
+    System.gc();
+    System.runFinalization();
+    Thread.sleep(10);
+  }
+
+  /**
+   * Objects with even ids are kept alive, the others die.  The threads
+   * creating them exit before the collection, so their buffered
+   * candidates must be drained by it.
+   */
+  @Test
+  public void deadObjectsAreFinalizedExactlyOnce() throws InterruptedException {
+    final Finalizable[] live = new Finalizable[COUNT];
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int first = t * PER_THREAD;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = first; i < first + PER_THREAD; i++) {
+            Finalizable f = new Finalizable(i);
+            if (i % 2 == 0) live[i] = f;
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    final int dead = COUNT / 2;
+    for (int attempt = 0; attempt < 50 && countFinalized() < dead; attempt++) {
+      collect();
+    }
+    collect();
+    for (int i = 0; i < COUNT; i++) {
+      assertThat("object " + i, finalized.get(i), is(i % 2 == 0 ? 0 : 1));
+    }
+    assertThat(live[0].id, is(0));
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mmtk;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+@RunWith(VMRequirements.class)
+@Category(RequiresBuiltJikesRVM.class)
+public class ReferenceProcessorTest {
+
+  private static final int THREADS = 4;
+
+  /** Not a multiple of the buffer size, so every thread leaves a partly filled buffer */
+  private static final int PER_THREAD = 37;
+
+  private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+  /**
+   * Creates weak references on several threads, which exit before the
+   * collection, so their buffered references must be drained by it.
+   */
+  private WeakReference<?>[] createOnThreads(final Object[] referents) throws InterruptedException {
+    final WeakReference<?>[] references = new WeakReference<?>[THREADS * PER_THREAD];
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int first = t * PER_THREAD;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = first; i < first + PER_THREAD; i++) {
+            Object referent = new Object();
+            if (referents != null) referents[i] = referent;
+            references[i] = new WeakReference<Object>(referent, queue);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return references;
+  }
+
+  @Test
+  public void deadReferentsAreEnqueuedExactlyOnce() throws InterruptedException {
+    WeakReference<?>[] references = createOnThreads(null);
+    Map<Reference<?>, Integer> enqueued = new IdentityHashMap<Reference<?>, Integer>();
+    for (int attempt = 0; attempt < 10 && enqueued.size() < references.length; attempt++) {
+      System.gc();
+      for (Reference<?> r = queue.remove(100); r != null; r = queue.poll()) {
+        Integer count = enqueued.get(r);
+        enqueued.put(r, count == null ? 1 : count + 1);
+      }
+    }
+    System.gc();
+    for (Reference<?> r = queue.poll(); r != null; r = queue.poll()) {
+      enqueued.put(r, enqueued.get(r) + 1);
+    }
+    for (WeakReference<?> reference : references) {
+      assertThat(reference.get(), nullValue());
+      assertThat(enqueued.get(reference), is(1));
+    }
+  }
+
+  @Test
+  public void liveReferentsSurviveCollections() throws InterruptedException {
+    Object[] referents = new Object[THREADS * PER_THREAD];
+    WeakReference<?>[] references = createOnThreads(referents);
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    for (int i = 0; i < references.length; i++) {
+      assertThat(references[i].get(), sameInstance(referents[i]));
+    }
+    assertThat(queue.poll(), nullValue());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.basic.core.threads;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Checks that the biased locking MXBean is registered when the VM is run
+ * with {@code -X:vm:biasedLockingMXBean=true} and that its revocation
+ * count does not go backwards when a bias held by a live thread is revoked.
+ */
+public class TestBiasedLockingMXBean {
+
+  private static final String OBJECT_NAME = "org.jikesrvm:type=BiasedLocking";
+
+  private static final String[] ATTRIBUTES = {
+    "BiasRevocationCount", "StaleBiasTakeoverCount", "BulkRebiasCount", "BulkBiasRevocationCount"
+  };
+
+  private static boolean success = true;
+
+  private static final Object lock = new Object();
+
+  private static volatile boolean biased;
+  private static volatile boolean done;
+
+  public static void main(String[] args) throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    if (!server.isRegistered(name)) {
+      System.out.println("FAILURE: " + OBJECT_NAME + " is not registered");
+      return;
+    }
+    for (String attribute : ATTRIBUTES) {
+      long value = (Long) server.getAttribute(name, attribute);
+      if (value < 0) {
+        System.out.println("FAILURE: " + attribute + " is " + value);
+        success = false;
+      }
+    }
+
+    long before = (Long) server.getAttribute(name, "BiasRevocationCount");
+
+    // Bias the lock towards a thread that stays alive, then take it from main
+    Thread holder = new Thread() {
+      @Override
+      public void run() {
+        synchronized (lock) {
+          biased = true;
+        }
+        while (!done) {
+          Thread.yield();
+        }
+      }
+    };
+    holder.start();
+    while (!biased) {
+      Thread.yield();
+    }
+    synchronized (lock) {
+      done = true;
+    }
+    holder.join();
+
+    long after = (Long) server.getAttribute(name, "BiasRevocationCount");
+    if (after < before) {
+      System.out.println("FAILURE: BiasRevocationCount went from " + before + " to " + after);
+      success = false;
+    }
+
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    } else {
+      System.out.println("FAILURE");
+    }
+  }
+}
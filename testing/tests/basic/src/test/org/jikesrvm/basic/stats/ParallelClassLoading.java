@@ -0,0 +1,174 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.basic.stats;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A microbenchmark for the throughput of class loading and string interning
+ * with several threads. Each thread defines every class of the test suite in
+ * its own class loader, so class names, descriptors and literals are looked
+ * up in and added to the atom dictionary concurrently. Each thread then
+ * interns a set of fresh strings.<p>
+ *
+ * The benchmark is run with 1, 2, 4 and 8 threads unless thread counts are
+ * given as arguments.
+ */
+public class ParallelClassLoading {
+
+  /** Number of strings each thread interns */
+  private static final int INTERNED_STRINGS = 20000;
+
+  public static void main(String[] args) throws Exception {
+    int[] threadCounts = {1, 2, 4, 8};
+    if (args.length != 0) {
+      threadCounts = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        threadCounts[i] = Integer.parseInt(args[i]);
+      }
+    }
+    final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+    findClasses(classRoot(), "", classes);
+
+    // warm up so compilation of the benchmark itself is not measured
+    run(1, classes, 0);
+
+    for (int threads : threadCounts) {
+      long start = System.nanoTime();
+      long loaded = run(threads, classes, threads);
+      long elapsed = System.nanoTime() - start;
+      long interned = (long) threads * INTERNED_STRINGS;
+      System.out.println("Threads " + threads + " Classes: " + loaded);
+      System.out.println("Threads " + threads + " Time (ms): " + (elapsed / 1000000));
+      System.out.println("Threads " + threads + " Throughput (ops/s): " +
+          ((loaded + interned) * 1000000000L / Math.max(elapsed, 1)));
+    }
+  }
+
+  /**
+   * Loads all classes and interns strings in each of several threads.
+   *
+   * @param threads the number of threads
+   * @param classes the class files, by binary name
+   * @param round distinguishes the strings interned by different runs
+   * @return the total number of classes loaded
+   * @throws InterruptedException if interrupted while waiting for a thread
+   */
+  private static long run(int threads, final Map<String, byte[]> classes, final int round)
+      throws InterruptedException {
+    final int[] loaded = new int[threads];
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int id = t;
+      workers[t] = new Thread() {
+        @Override
+        public void run() {
+          BytesClassLoader loader = new BytesClassLoader(classes);
+          for (String name : classes.keySet()) {
+            try {
+              loader.loadClass(name);
+              loaded[id]++;
+            } catch (ClassNotFoundException e) {
+              // depends on a class outside the test suite
+            } catch (LinkageError e) {
+              // depends on a class outside the test suite
+            }
+          }
+          for (int i = 0; i < INTERNED_STRINGS; i++) {
+            ("interned-" + round + "-" + id + "-" + i).intern();
+          }
+        }
+      };
+    }
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    long total = 0;
+    for (int t = 0; t < threads; t++) {
+      workers[t].join();
+      total += loaded[t];
+    }
+    return total;
+  }
+
+  /**
+   * @return the directory holding the test classes
+   * @throws URISyntaxException if the class location is malformed
+   */
+  private static File classRoot() throws URISyntaxException {
+    String resource = ParallelClassLoading.class.getName().replace('.', '/') + ".class";
+    URL url = ParallelClassLoading.class.getClassLoader().getResource(resource);
+    File file = new File(url.toURI());
+    for (int i = 0; i < ParallelClassLoading.class.getName().split("\\.").length; i++) {
+      file = file.getParentFile();
+    }
+    return file;
+  }
+
+  private static void findClasses(File dir, String pkg, Map<String, byte[]> classes)
+      throws IOException {
+    File[] files = dir.listFiles();
+    if (files == null) return;
+    for (File file : files) {
+      String name = file.getName();
+      if (file.isDirectory()) {
+        findClasses(file, pkg + name + ".", classes);
+      } else if (name.endsWith(".class")) {
+        classes.put(pkg + name.substring(0, name.length() - ".class".length()), readFully(file));
+      }
+    }
+  }
+
+  private static byte[] readFully(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Defines the test classes afresh, delegating all other classes to the
+   * bootstrap class loader.
+   */
+  private static final class BytesClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+
+    BytesClassLoader(Map<String, byte[]> classes) {
+      super(null);
+      this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      byte[] bytes = classes.get(name);
+      if (bytes == null) throw new ClassNotFoundException(name);
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Array accesses whose bounds checks must or must not be removed by
+ * bounds check elimination. Run at O3, where the phase is enabled.
+ */
+public class TestBoundsCheckElimination {
+
+  public static void main(String[] args) {
+    System.out.println("--- Exception handlers ---");
+    handler(new int[4], 2);
+    handler(new int[4], 4);
+    handler(new int[4], -1);
+    handlerAfterLoop(new int[4], 3);
+    handlerAfterLoop(new int[4], 6);
+
+    System.out.println("--- Loop bounds ---");
+    int[] a = {1, 2, 3, 4, 5, 6, 7};
+    sumUp(a);
+    sumDown(a);
+    sumByTwo(a);
+    sumInclusive(a);
+    sumFromLength(a);
+    sumTo(a, 7);
+    sumTo(a, 8);
+    sumFrom(a, 0);
+    sumFrom(a, -2);
+    sumEmpty(new int[0]);
+  }
+
+  /**
+   * The check of <code>a[i]</code> does not hold in the handler that
+   * catches its failure, so the load of <code>a[j]</code> there, where
+   * <code>j == i</code>, must keep its check.
+   */
+  @NoInline
+  private static int handlerCase(int[] a, int i) {
+    int j = 0;
+    try {
+      j = i;
+      a[i] = 1;
+      j = 0;
+    } catch (ArrayIndexOutOfBoundsException e) {
+      return a[j];
+    }
+    return a[j] + a[i];
+  }
+
+  private static void handler(int[] a, int i) {
+    try {
+      System.out.println("handler(" + i + "): " + handlerCase(a, i));
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.out.println("handler(" + i + "): caught in caller");
+    }
+  }
+
+  @NoInline
+  private static int handlerAfterLoopCase(int[] a, int n) {
+    int i = 0;
+    try {
+      for (; i < n; i++) {
+        a[i] = i;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      return -a[i];
+    }
+    return a[i - 1];
+  }
+
+  private static void handlerAfterLoop(int[] a, int n) {
+    try {
+      System.out.println("handlerAfterLoop(" + n + "): " + handlerAfterLoopCase(a, n));
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.out.println("handlerAfterLoop(" + n + "): caught in caller");
+    }
+  }
+
+  @NoInline
+  private static void sumUp(int[] a) {
+    int sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i];
+    }
+    System.out.println("sumUp: " + sum);
+  }
+
+  @NoInline
+  private static void sumDown(int[] a) {
+    int sum = 0;
+    for (int i = a.length - 1; i >= 0; i--) {
+      sum += a[i];
+    }
+    System.out.println("sumDown: " + sum);
+  }
+
+  @NoInline
+  private static void sumByTwo(int[] a) {
+    int sum = 0;
+    for (int i = 0; i + 1 < a.length; i += 2) {
+      sum += a[i] * a[i + 1];
+    }
+    System.out.println("sumByTwo: " + sum);
+  }
+
+  @NoInline
+  private static void sumInclusive(int[] a) {
+    int sum = 0;
+    try {
+      for (int i = 0; i <= a.length; i++) {
+        sum += a[i];
+      }
+      System.out.println("sumInclusive: " + sum);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.out.println("sumInclusive: caught after " + sum);
+    }
+  }
+
+  @NoInline
+  private static void sumFromLength(int[] a) {
+    int sum = 0;
+    try {
+      for (int i = a.length; i > 0; i--) {
+        sum += a[i];
+      }
+      System.out.println("sumFromLength: " + sum);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.out.println("sumFromLength: caught after " + sum);
+    }
+  }
+
+  @NoInline
+  private static void sumTo(int[] a, int n) {
+    int sum = 0;
+    try {
+      for (int i = 0; i < n; i++) {
+        sum += a[i];
+      }
+      System.out.println("sumTo(" + n + "): " + sum);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.out.println("sumTo(" + n + "): caught after " + sum);
+    }
+  }
+
+  @NoInline
+  private static void sumFrom(int[] a, int start) {
+    int sum = 0;
+    try {
+      for (int i = start; i < a.length; i++) {
+        sum += a[i];
+      }
+      System.out.println("sumFrom(" + start + "): " + sum);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.out.println("sumFrom(" + start + "): caught after " + sum);
+    }
+  }
+
+  @NoInline
+  private static void sumEmpty(int[] a) {
+    int sum = 0;
+    try {
+      for (int i = 0; i <= a.length; i++) {
+        sum += a[i];
+      }
+      System.out.println("sumEmpty: " + sum);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.out.println("sumEmpty: caught after " + sum);
+    }
+  }
+}
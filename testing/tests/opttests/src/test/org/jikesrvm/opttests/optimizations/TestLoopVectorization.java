@@ -0,0 +1,220 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import java.util.Arrays;
+
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Loops that loop vectorization turns into packed SSE2 operations. Each
+ * loop runs for every length up to a few vector widths, so that the vector
+ * loop, the remaining scalar iterations and the case where only the scalar
+ * loop runs are all covered. The elements beyond the end of each loop must
+ * be left untouched. Run at O3 with vectorization enabled.
+ */
+public class TestLoopVectorization {
+
+  private static final int MAX = 11;
+  private static final int SENTINEL = -7;
+
+  public static void main(String[] args) {
+    System.out.println("--- int ---");
+    for (int n = 0; n <= MAX; n++) {
+      int[] a = new int[MAX + 1];
+      int[] b = new int[MAX + 1];
+      int[] c = new int[MAX + 1];
+      Arrays.fill(c, SENTINEL);
+      for (int i = 0; i <= MAX; i++) {
+        a[i] = i * 3 - 5;
+        b[i] = 0x10001 * (i + 1);
+      }
+      intFill(c, 42, n);
+      String fill = toString(c);
+      intCopy(c, a, n);
+      String copy = toString(c);
+      intAdd(c, a, b, n);
+      String add = toString(c);
+      intXor(c, a, b, n);
+      String xor = toString(c);
+      System.out.println(n + ": " + fill + " " + copy + " " + add + " " + xor +
+          " sum=" + intSum(b, n) + " dot=" + intDot(a, b, n) + " squares=" + intDot(b, b, n));
+    }
+
+    System.out.println("--- float ---");
+    for (int n = 0; n <= MAX; n++) {
+      float[] a = new float[MAX + 1];
+      float[] b = new float[MAX + 1];
+      float[] c = new float[MAX + 1];
+      Arrays.fill(c, SENTINEL);
+      for (int i = 0; i <= MAX; i++) {
+        a[i] = 1.0f / (i + 1);
+        b[i] = 1e7f + i * 0.1f;
+      }
+      floatMul(c, a, b, n);
+      String mul = toString(c);
+      floatDiv(c, b, a, n);
+      String div = toString(c);
+      System.out.println(n + ": " + mul + " " + div + " sum=" + floatSum(a, b, n) +
+          " dot=" + floatDot(a, b, n));
+    }
+
+    System.out.println("--- double ---");
+    for (int n = 0; n <= MAX; n++) {
+      double[] a = new double[MAX + 1];
+      double[] b = new double[MAX + 1];
+      double[] c = new double[MAX + 1];
+      Arrays.fill(c, SENTINEL);
+      for (int i = 0; i <= MAX; i++) {
+        a[i] = 1.0 / (i + 1);
+        b[i] = 1e16 + i;
+      }
+      doubleSub(c, b, a, n);
+      String sub = toString(c);
+      System.out.println(n + ": " + sub + " sum=" + doubleSum(a, b, n) + " dot=" + doubleDot(a, b, n));
+    }
+  }
+
+  @NoInline
+  private static void intFill(int[] c, int v, int n) {
+    for (int i = 0; i < n; i++) {
+      c[i] = v;
+    }
+  }
+
+  @NoInline
+  private static void intCopy(int[] c, int[] a, int n) {
+    for (int i = 0; i < n; i++) {
+      c[i] = a[i];
+    }
+  }
+
+  @NoInline
+  private static void intAdd(int[] c, int[] a, int[] b, int n) {
+    for (int i = 0; i < n; i++) {
+      c[i] = a[i] + b[i];
+    }
+  }
+
+  @NoInline
+  private static void intXor(int[] c, int[] a, int[] b, int n) {
+    for (int i = 0; i < n; i++) {
+      c[i] = a[i] ^ b[i];
+    }
+  }
+
+  /** Wraps around for the larger lengths */
+  @NoInline
+  private static int intSum(int[] a, int n) {
+    int sum = 0x7ffff000;
+    for (int i = 0; i < n; i++) {
+      sum += a[i];
+    }
+    return sum;
+  }
+
+  /** Products overflow, so only their low 32 bits may be added up */
+  @NoInline
+  private static int intDot(int[] a, int[] b, int n) {
+    int sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  @NoInline
+  private static void floatMul(float[] c, float[] a, float[] b, int n) {
+    for (int i = 0; i < n; i++) {
+      c[i] = a[i] * b[i];
+    }
+  }
+
+  @NoInline
+  private static void floatDiv(float[] c, float[] a, float[] b, int n) {
+    for (int i = 0; i < n; i++) {
+      c[i] = a[i] / b[i];
+    }
+  }
+
+  /**
+   * The large elements of b make the result depend on the order of the
+   * additions.
+   */
+  @NoInline
+  private static float floatSum(float[] a, float[] b, int n) {
+    float sum = b[0];
+    for (int i = 0; i < n; i++) {
+      sum += a[i];
+    }
+    return sum;
+  }
+
+  @NoInline
+  private static float floatDot(float[] a, float[] b, int n) {
+    float sum = 0f;
+    for (int i = 0; i < n; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  @NoInline
+  private static void doubleSub(double[] c, double[] a, double[] b, int n) {
+    for (int i = 0; i < n; i++) {
+      c[i] = a[i] - b[i];
+    }
+  }
+
+  @NoInline
+  private static double doubleSum(double[] a, double[] b, int n) {
+    double sum = b[0];
+    for (int i = 0; i < n; i++) {
+      sum += a[i];
+    }
+    return sum;
+  }
+
+  @NoInline
+  private static double doubleDot(double[] a, double[] b, int n) {
+    double sum = 0.0;
+    for (int i = 0; i < n; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  private static String toString(int[] a) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < a.length; i++) {
+      sb.append(i == 0 ? "" : ",").append(a[i]);
+    }
+    return sb.append(']').toString();
+  }
+
+  private static String toString(float[] a) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < a.length; i++) {
+      sb.append(i == 0 ? "" : ",").append(a[i]);
+    }
+    return sb.append(']').toString();
+  }
+
+  private static String toString(double[] a) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < a.length; i++) {
+      sb.append(i == 0 ? "" : ",").append(a[i]);
+    }
+    return sb.append(']').toString();
+  }
+}
@@ -0,0 +1,416 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Objects that escape on some paths only. With partial scalar replacement
+ * the fields of such an object are kept in scalars and the object is only
+ * allocated where it escapes, so every escape point must see the field
+ * values of its path, calls that only borrow the object must have their
+ * updates reloaded, and exception edges and loops must not lose updates.
+ */
+public class TestPartialEscape {
+
+  static final class Point {
+    int x;
+    int y;
+    long tag;
+  }
+
+  static final class PointException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    final Point p;
+
+    PointException(Point p) {
+      this.p = p;
+    }
+  }
+
+  static final class Holder {
+    Point p;
+  }
+
+  private static Point escaped;
+  private static final Point[] slots = new Point[8];
+
+  private static final int ITERATIONS = 100;
+
+  private static boolean success = true;
+
+  public static void main(String[] args) {
+    for (int n = 0; n < ITERATIONS; n++) {
+      escapePoints(n);
+      borrowingCalls(n);
+      exceptionEdges(n);
+      loops(n);
+    }
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    } else {
+      System.out.println("FAILURE");
+    }
+  }
+
+  /*
+   * Materialization at each kind of escape point
+   */
+
+  private static void escapePoints(int n) {
+    escaped = null;
+    int sum = escapeToStatic(n);
+    check("static sum", sum, 3 * n + 1);
+    if ((n & 3) == 0) {
+      checkPoint("static", escaped, n + 1, 2 * n, n);
+    } else {
+      check("static not stored", escaped == null ? 0 : 1, 0);
+    }
+
+    slots[n & 7] = null;
+    escapeToArray(n);
+    if ((n & 1) == 1) {
+      checkPoint("array", slots[n & 7], n, n * n, 7);
+    } else {
+      check("array not stored", slots[n & 7] == null ? 0 : 1, 0);
+    }
+
+    Holder h = new Holder();
+    escapeToField(n, h);
+    if (n % 3 == 0) {
+      checkPoint("field", h.p, n - 1, n + 1, -n);
+    } else {
+      check("field not stored", h.p == null ? 0 : 1, 0);
+    }
+
+    Point r = escapeByReturn(n);
+    if (n % 5 == 0) {
+      checkPoint("return", r, 10 * n, n, 1L << (n & 31));
+    } else {
+      check("return null", r == null ? 0 : 1, 0);
+    }
+
+    try {
+      int v = escapeByThrow(n);
+      check("throw not taken", v, 2 * n);
+      check("throw parity", n & 1, 0);
+    } catch (PointException e) {
+      check("throw parity", n & 1, 1);
+      checkPoint("thrown", e.p, n + 5, 2 * n, 3);
+    }
+
+    Point both = escapeOnTwoPaths(n);
+    if ((n & 1) == 0) {
+      checkPoint("first path", both, n, 1, 0);
+    } else {
+      checkPoint("second path", both, n, 2, 0);
+    }
+  }
+
+  @NoInline
+  private static int escapeToStatic(int n) {
+    Point p = new Point();
+    p.x = n;
+    p.y = 2 * n;
+    p.x += 1;
+    p.tag = n;
+    if ((n & 3) == 0) {
+      escaped = p;
+    }
+    return p.x + p.y;
+  }
+
+  @NoInline
+  private static void escapeToArray(int n) {
+    Point p = new Point();
+    p.x = n;
+    p.y = n * n;
+    p.tag = 7;
+    if ((n & 1) == 1) {
+      slots[n & 7] = p;
+    }
+  }
+
+  @NoInline
+  private static void escapeToField(int n, Holder h) {
+    Point p = new Point();
+    p.x = n - 1;
+    p.y = n + 1;
+    p.tag = -n;
+    if (n % 3 == 0) {
+      h.p = p;
+    }
+  }
+
+  @NoInline
+  private static Point escapeByReturn(int n) {
+    Point p = new Point();
+    p.x = n;
+    p.y = n;
+    p.tag = 1L << (n & 31);
+    p.x *= 10;
+    if (n % 5 == 0) {
+      return p;
+    }
+    return null;
+  }
+
+  @NoInline
+  private static int escapeByThrow(int n) {
+    Point p = new Point();
+    p.x = n + 5;
+    p.y = 2 * n;
+    p.tag = 3;
+    if ((n & 1) == 1) {
+      throw new PointException(p);
+    }
+    return p.y;
+  }
+
+  @NoInline
+  private static Point escapeOnTwoPaths(int n) {
+    Point p = new Point();
+    p.x = n;
+    if ((n & 1) == 0) {
+      p.y = 1;
+      return p;
+    }
+    p.y = 2;
+    escaped = p;
+    return escaped;
+  }
+
+  /*
+   * A call that receives the object but does not retain it. The callee
+   * updates the fields, so the caller must reload them after the call.
+   */
+
+  private static void borrowingCalls(int n) {
+    check("borrow once", borrowOnce(n), (n & 1) == 0 ? (n + 5) * 3 + 2 * n : n * 3 + 2 * n);
+    int x = n;
+    int y = 0;
+    for (int i = 0; i < 4; i++) {
+      if (((n + i) & 1) == 0) {
+        x += 5;
+        y += x;
+      }
+      x += i;
+    }
+    check("borrow in loop", borrowInLoop(n), x * 7 + y);
+  }
+
+  @NoInline
+  private static void bump(Point p) {
+    p.x += 5;
+    p.y += p.x;
+  }
+
+  @NoInline
+  private static int borrowOnce(int n) {
+    Point p = new Point();
+    p.x = n;
+    p.y = 2 * n;
+    if ((n & 1) == 0) {
+      bump(p);
+      p.y -= p.x;
+    }
+    return p.x * 3 + p.y;
+  }
+
+  @NoInline
+  private static int borrowInLoop(int n) {
+    Point p = new Point();
+    p.x = n;
+    for (int i = 0; i < 4; i++) {
+      if (((n + i) & 1) == 0) {
+        bump(p);
+      }
+      p.x += i;
+    }
+    return p.x * 7 + p.y;
+  }
+
+  /*
+   * Exception edges out of the region that keeps the object virtual
+   */
+
+  @NoInline
+  private static void mayThrow(int n) {
+    if (n % 4 == 3) {
+      throw new IllegalStateException();
+    }
+  }
+
+  @NoInline
+  private static void bumpThenThrow(Point p, int n) {
+    p.x += 100;
+    if (n % 4 == 1) {
+      throw new IllegalStateException();
+    }
+    p.y += 1;
+  }
+
+  private static void exceptionEdges(int n) {
+    int expected = n % 4 == 3 ? 2 * n + 1 : 2 * n + 2 + (n & 1);
+    check("catch after update", catchAfterUpdate(n), expected);
+
+    escaped = null;
+    int v = escapeInTry(n);
+    if (n % 4 == 3) {
+      check("escape in try, thrown", v, -1);
+      checkPoint("escaped before throw", escaped, n, 1, 0);
+    } else {
+      check("escape in try", v, n + 1);
+    }
+
+    expected = n % 4 == 1 ? n + 100 : n + 100 + 1;
+    check("borrow that throws", borrowThatThrows(n), expected);
+  }
+
+  @NoInline
+  private static int catchAfterUpdate(int n) {
+    Point p = new Point();
+    p.x = n;
+    p.y = n + 1;
+    try {
+      p.y += 1;
+      mayThrow(n);
+      p.y += n & 1;
+      if (n == -1) {
+        escaped = p;
+      }
+    } catch (IllegalStateException e) {
+      return p.x + p.y - 1;
+    }
+    return p.x + p.y;
+  }
+
+  @NoInline
+  private static int escapeInTry(int n) {
+    Point p = new Point();
+    p.x = n;
+    p.y = 1;
+    try {
+      if (n % 4 == 3) {
+        escaped = p;
+      }
+      mayThrow(n);
+    } catch (IllegalStateException e) {
+      return -1;
+    }
+    return p.x + p.y;
+  }
+
+  @NoInline
+  private static int borrowThatThrows(int n) {
+    Point p = new Point();
+    p.x = n;
+    p.y = 0;
+    if ((n & 1) == 1) {
+      try {
+        bumpThenThrow(p, n);
+      } catch (IllegalStateException e) {
+        return p.x + p.y;
+      }
+      return p.x + p.y;
+    }
+    return n + 100 + 1;
+  }
+
+  /*
+   * Loops: the allocation in the loop body, and the object live around
+   * the loop
+   */
+
+  private static void loops(int n) {
+    Point[] out = new Point[16];
+    int stored = allocateInLoop(n, out);
+    int count = 0;
+    for (int i = 0; i < out.length; i++) {
+      if (((i + n) % 4) == 0) {
+        count++;
+        checkPoint("loop slot " + i, out[i], i, i * n, n);
+      } else {
+        check("loop slot " + i + " empty", out[i] == null ? 0 : 1, 0);
+      }
+    }
+    check("loop stored", stored, count);
+
+    escaped = null;
+    int x = 0;
+    int y = 0;
+    for (int i = 0; i < n % 10; i++) {
+      x += i;
+      y ^= x;
+    }
+    check("accumulate", accumulateThenEscape(n), x + y);
+    if ((n & 1) == 1) {
+      checkPoint("accumulated", escaped, x, y, n % 10);
+    }
+  }
+
+  @NoInline
+  private static int allocateInLoop(int n, Point[] out) {
+    int stored = 0;
+    for (int i = 0; i < out.length; i++) {
+      Point p = new Point();
+      p.x = i;
+      p.y = i * n;
+      p.tag = n;
+      if (((i + n) % 4) == 0) {
+        out[i] = p;
+        stored++;
+      }
+    }
+    return stored;
+  }
+
+  @NoInline
+  private static int accumulateThenEscape(int n) {
+    Point p = new Point();
+    for (int i = 0; i < n % 10; i++) {
+      p.x += i;
+      p.y ^= p.x;
+      p.tag++;
+    }
+    if ((n & 1) == 1) {
+      escaped = p;
+    }
+    return p.x + p.y;
+  }
+
+  /*
+   * Checks
+   */
+
+  private static void checkPoint(String test, Point p, int x, int y, long tag) {
+    if (p == null) {
+      System.out.println(test + ": object missing");
+      success = false;
+      return;
+    }
+    check(test + ".x", p.x, x);
+    check(test + ".y", p.y, y);
+    if (p.tag != tag) {
+      System.out.println(test + ".tag: expected " + tag + " but got " + p.tag);
+      success = false;
+    }
+  }
+
+  private static void check(String test, int actual, int expected) {
+    if (actual != expected) {
+      System.out.println(test + ": expected " + expected + " but got " + actual);
+      success = false;
+    }
+  }
+}
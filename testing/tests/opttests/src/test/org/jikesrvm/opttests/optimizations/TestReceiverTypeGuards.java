@@ -0,0 +1,139 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Calls that baseline code sees with one or two receiver classes while
+ * the calling method becomes hot, and that later get receivers of other
+ * classes. With receiver type profiles the optimizing compiler inlines the
+ * profiled targets behind class tests against the receiver classes, and
+ * falls back to OSR when the inlined targets cover every profiled class.
+ * The calls with new receivers must fail those guards and still compute
+ * the right results.
+ */
+public class TestReceiverTypeGuards {
+
+  static class Base {
+    int f(int x) {
+      return x + 1;
+    }
+  }
+
+  /** Inherits f, so a class test against Sub fails for Base */
+  static class Sub extends Base {
+  }
+
+  static class Other extends Base {
+    @Override
+    int f(int x) {
+      return x * 2;
+    }
+  }
+
+  interface Shape {
+    int area(int scale);
+  }
+
+  static class Square implements Shape {
+    @Override
+    public int area(int scale) {
+      return scale * scale;
+    }
+  }
+
+  static class Rectangle implements Shape {
+    @Override
+    public int area(int scale) {
+      return scale * (scale + 1);
+    }
+  }
+
+  static class Triangle implements Shape {
+    @Override
+    public int area(int scale) {
+      return scale * scale / 2;
+    }
+  }
+
+  private static final int WARMUP = 2000000;
+
+  private static boolean success = true;
+
+  public static void main(String[] args) {
+    // A monomorphic site: class test against Sub
+    Base sub = new Sub();
+    long sum = 0;
+    for (int i = 0; i < WARMUP; i++) {
+      sum += callVirtual(sub, i & 0xff);
+    }
+    check("monomorphic warm up", sum, expectedVirtualSum(WARMUP));
+    check("inherited target, other class", callVirtual(new Base(), 20), 21);
+    check("overriding target", callVirtual(new Other(), 20), 40);
+    check("profiled class again", callVirtual(sub, 20), 21);
+
+    // A bimorphic interface site: both targets inlined, OSR when neither guard holds
+    Shape[] shapes = {new Square(), new Rectangle()};
+    sum = 0;
+    for (int i = 0; i < WARMUP; i++) {
+      sum += callInterface(shapes[i & 1], i & 0xf);
+    }
+    check("bimorphic warm up", sum, expectedInterfaceSum(WARMUP));
+    for (int i = 0; i < 3; i++) {
+      check("third class " + i, callInterface(new Triangle(), 10 + i), (10 + i) * (10 + i) / 2);
+    }
+    check("first class again", callInterface(shapes[0], 7), 49);
+    check("second class again", callInterface(shapes[1], 7), 56);
+
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    } else {
+      System.out.println("FAILURE");
+    }
+  }
+
+  @NoInline
+  private static int callVirtual(Base b, int x) {
+    return b.f(x);
+  }
+
+  @NoInline
+  private static int callInterface(Shape s, int scale) {
+    return s.area(scale);
+  }
+
+  private static long expectedVirtualSum(int n) {
+    long sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += (i & 0xff) + 1;
+    }
+    return sum;
+  }
+
+  private static long expectedInterfaceSum(int n) {
+    long sum = 0;
+    for (int i = 0; i < n; i++) {
+      int scale = i & 0xf;
+      sum += (i & 1) == 0 ? scale * scale : scale * (scale + 1);
+    }
+    return sum;
+  }
+
+  private static void check(String what, long actual, long expected) {
+    if (actual != expected) {
+      System.out.println(what + ": expected " + expected + " but got " + actual);
+      success = false;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Methods with more live values than there are registers, and with values
+ * live across calls. Run with each register allocator to check that
+ * spilled values and values in volatile registers survive.
+ */
+public class TestRegisterAllocation {
+
+  private static int calls;
+
+  public static void main(String[] args) {
+    System.out.println("--- Spill heavy ---");
+    for (int n = 0; n < 4; n++) {
+      System.out.println("ints(" + n + "): " + manyInts(n));
+      System.out.println("longs(" + n + "): " + manyLongs(n));
+      System.out.println("doubles(" + n + "): " + manyDoubles(n));
+      System.out.println("mixed(" + n + "): " + mixed(n, n * 0.5f));
+    }
+
+    System.out.println("--- Call crossing ---");
+    for (int n = 0; n < 4; n++) {
+      System.out.println("acrossCalls(" + n + "): " + acrossCalls(n));
+      System.out.println("acrossCallsInLoop(" + n + "): " + acrossCallsInLoop(n));
+      System.out.println("acrossThrow(" + n + "): " + acrossThrow(n));
+      System.out.println("fib(" + (n + 10) + "): " + fib(n + 10));
+    }
+    System.out.println("calls: " + calls);
+  }
+
+  @NoInline
+  private static int manyInts(int n) {
+    int a = n + 1, b = n + 2, c = n + 3, d = n + 4, e = n + 5, f = n + 6, g = n + 7, h = n + 8;
+    int i = n * 3, j = n * 5, k = n * 7, l = n * 11, m = n * 13, o = n * 17, p = n * 19, q = n * 23;
+    for (int x = 0; x < 10; x++) {
+      a += b ^ q; b += c ^ p; c += d ^ o; d += e ^ m;
+      e += f ^ l; f += g ^ k; g += h ^ j; h += i ^ a;
+      i += j * 3; j += k * 5; k += l * 7; l += m * 9;
+      m += o - a; o += p - b; p += q - c; q += a - d;
+    }
+    return a + 2 * b + 3 * c + 4 * d + 5 * e + 6 * f + 7 * g + 8 * h +
+      9 * i + 10 * j + 11 * k + 12 * l + 13 * m + 14 * o + 15 * p + 16 * q;
+  }
+
+  @NoInline
+  private static long manyLongs(int n) {
+    long a = n + 1L, b = n + 2L, c = n + 3L, d = n + 4L, e = n + 5L, f = n + 6L;
+    long g = n * 0x100000001L, h = n * 0x200000003L, i = n * 0x300000005L, j = n * 0x400000007L;
+    for (int x = 0; x < 10; x++) {
+      a += b * j; b += c ^ i; c += d - h; d += e * g;
+      e += f ^ a; f += g - b; g += h * c; h += i ^ d;
+      i += j - e; j += a * f;
+    }
+    return a ^ (b << 1) ^ (c << 2) ^ (d << 3) ^ (e << 4) ^ (f << 5) ^ (g << 6) ^ (h << 7) ^ (i << 8) ^ (j << 9);
+  }
+
+  @NoInline
+  private static double manyDoubles(int n) {
+    double a = n + 0.5, b = n + 1.5, c = n + 2.5, d = n + 3.5, e = n + 4.5, f = n + 5.5;
+    double g = n * 0.25, h = n * 0.75, i = n * 1.25, j = n * 1.75, k = n * 2.25, l = n * 2.75;
+    for (int x = 0; x < 10; x++) {
+      a = a * 0.5 + l; b = b * 0.5 + k; c = c * 0.5 + j; d = d * 0.5 + i;
+      e = e * 0.5 + h; f = f * 0.5 + g; g = g * 0.5 + a; h = h * 0.5 + b;
+      i = i * 0.5 + c; j = j * 0.5 + d; k = k * 0.5 + e; l = l * 0.5 + f;
+    }
+    return a + 2 * b + 3 * c + 4 * d + 5 * e + 6 * f + 7 * g + 8 * h + 9 * i + 10 * j + 11 * k + 12 * l;
+  }
+
+  @NoInline
+  private static String mixed(int n, float s) {
+    int a = n, b = n + 1, c = n + 2, d = n + 3, e = n + 4;
+    long f = n * 3L, g = n * 5L, h = n * 7L;
+    float i = s, j = s + 1, k = s + 2;
+    double l = s * 2.0, m = s * 3.0, o = s * 4.0;
+    for (int x = 0; x < 8; x++) {
+      a += (int) f; b += (int) (i * 2); c += (int) l; d ^= (int) g; e -= (int) h;
+      f += b; g -= c; h ^= d;
+      i += e * 0.5f; j -= a * 0.25f; k *= 1.5f;
+      l += j; m -= k; o += a;
+    }
+    return a + "," + b + "," + c + "," + d + "," + e + "," + f + "," + g + "," + h + "," +
+      i + "," + j + "," + k + "," + l + "," + m + "," + o;
+  }
+
+  @NoInline
+  private static int clobber(int v) {
+    calls++;
+    return v * 31 + 7;
+  }
+
+  @NoInline
+  private static double clobber(double v) {
+    calls++;
+    return v / 3 + 1;
+  }
+
+  @NoInline
+  private static String acrossCalls(int n) {
+    int a = n + 1, b = n + 2, c = n + 3, d = n + 4;
+    long e = n * 0x100000001L;
+    double f = n + 0.125, g = n + 0.25;
+    int r1 = clobber(a);
+    double r2 = clobber(f);
+    int r3 = clobber(b + r1);
+    double r4 = clobber(g + r2);
+    return a + "," + b + "," + c + "," + d + "," + e + "," + f + "," + g + "," +
+      r1 + "," + r2 + "," + r3 + "," + r4;
+  }
+
+  @NoInline
+  private static String acrossCallsInLoop(int n) {
+    int a = n, b = 1, c = 2;
+    long d = 3;
+    double e = 0.5, f = n;
+    for (int x = 0; x < 5; x++) {
+      a += clobber(b);
+      b ^= c;
+      c += (int) d;
+      d += clobber(a) * 3L;
+      e += clobber(f);
+      f -= e * 0.5;
+    }
+    return a + "," + b + "," + c + "," + d + "," + e + "," + f;
+  }
+
+  @NoInline
+  private static void thrower(int n) {
+    calls++;
+    if ((n & 1) == 1) {
+      throw new IllegalStateException("odd " + n);
+    }
+  }
+
+  @NoInline
+  private static String acrossThrow(int n) {
+    int a = n * 7, b = n * 11;
+    long c = n * 0x300000005L;
+    double d = n * 1.5;
+    try {
+      a += 1;
+      thrower(n);
+      b += 1;
+    } catch (IllegalStateException e) {
+      return "caught " + e.getMessage() + ": " + a + "," + b + "," + c + "," + d;
+    }
+    return a + "," + b + "," + c + "," + d;
+  }
+
+  @NoInline
+  private static int fib(int n) {
+    if (n < 2) {
+      return n;
+    }
+    int x = n * 3;
+    int r = fib(n - 1) + fib(n - 2);
+    return r + x - n * 3;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.Atom;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanner;
+import org.jikesrvm.compilers.opt.ir.IR;
+
+/**
+ * Compiles a method with more live values than there are registers at O2,
+ * once with linear scan and once with graph coloring, and compares the
+ * number of spill instructions each allocator needs.
+ */
+public class TestSpillCounts {
+
+  public static void main(String[] args) {
+    if (!VM.BuildForOptCompiler) {
+      System.out.println("Test not applicable without the optimizing compiler, skipping it");
+      System.out.println("ALL TESTS PASSED");
+      return;
+    }
+    RVMClass klass = TypeReference.findOrCreate(TestSpillCounts.class).resolve().asClass();
+    NormalMethod method = (NormalMethod) klass.findDeclaredMethod(Atom.findOrCreateAsciiAtom("manyLiveValues"));
+
+    int linearScan = spillInstructions(method, false);
+    int graphColoring = spillInstructions(method, true);
+    System.out.println("linear scan: " + linearScan);
+    System.out.println("graph coloring: " + graphColoring);
+
+    if (linearScan == 0) {
+      System.out.println("FAILURE: linear scan did not spill");
+    } else if (graphColoring > linearScan) {
+      System.out.println("FAILURE: graph coloring spilled more than linear scan");
+    } else {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  private static int spillInstructions(NormalMethod method, boolean graphColoring) {
+    OptOptions options = new OptOptions();
+    options.setOptLevel(2);
+    options.REGALLOC_GRAPH_COLORING = graphColoring;
+    CompilationPlan plan = new CompilationPlan(method, OptimizationPlanner.createOptimizationPlan(options), null, options);
+    IR ir;
+    synchronized (RuntimeCompiler.class) {
+      ir = plan.execute();
+    }
+    return ir.MIRInfo.linearScanState.spillInstructions;
+  }
+
+  public static int manyLiveValues(int n) {
+    int a = n + 1, b = n + 2, c = n + 3, d = n + 4, e = n + 5, f = n + 6;
+    int g = n + 7, h = n + 8, i = n + 9, j = n + 10, k = n + 11, l = n + 12;
+    int m = n * 3, o = n * 5, p = n * 7, q = n * 11, r = n * 13, s = n * 17;
+    int t = n * 19, u = n * 23, v = n * 29, w = n * 31, x = n * 37, y = n * 41;
+    for (int z = 0; z < 10; z++) {
+      a += b ^ y; b += c ^ x; c += d ^ w; d += e ^ v; e += f ^ u; f += g ^ t;
+      g += h ^ s; h += i ^ r; i += j ^ q; j += k ^ p; k += l ^ o; l += m ^ a;
+      m += o - b; o += p - c; p += q - d; q += r - e; r += s - f; s += t - g;
+      t += u - h; u += v - i; v += w - j; w += x - k; x += y - l; y += a - m;
+    }
+    return a + 2 * b + 3 * c + 4 * d + 5 * e + 6 * f + 7 * g + 8 * h + 9 * i + 10 * j + 11 * k + 12 * l +
+      13 * m + 14 * o + 15 * p + 16 * q + 17 * r + 18 * s + 19 * t + 20 * u + 21 * v + 22 * w + 23 * x + 24 * y;
+  }
+}
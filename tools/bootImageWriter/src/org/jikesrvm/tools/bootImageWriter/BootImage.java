@@ -30,6 +30,13 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jikesrvm.VM;
 import org.jikesrvm.classloader.RVMArray;
@@ -133,6 +140,30 @@ public class BootImage implements BootImageInterface {
    */
   private static final boolean mapByteBuffers = false;
 
+  /**
+   * Copies of array elements are handed to the copy threads in batches
+   * of at least this many bytes
+   */
+  private static final int COPY_BATCH_BYTES = 64 * 1024;
+
+  /**
+   * Threads that copy array elements into the image, see
+   * {@link #setArrayElements(Address, Object)}; started on first use
+   */
+  private ExecutorService copiers;
+
+  /**
+   * Copies of array elements that have not yet been handed to the copy
+   * threads
+   */
+  private List<ElementCopy> copyBatch = new ArrayList<ElementCopy>();
+  private int copyBatchBytes = 0;
+
+  /**
+   * Batches of copies handed to the copy threads
+   */
+  private final List<Future<?>> pendingCopies = new ArrayList<Future<?>>();
+
   /**
    * @param ltlEndian write words low-byte first?
    * @param t turn tracing on?
@@ -169,6 +200,60 @@ public class BootImage implements BootImageInterface {
       say(((Statics.getNumberOfReferenceSlots() + Statics.getNumberOfNumericSlots()) / 1024) + "k jtoc slots");
       say((getDataSize() / 1024) + "k data in image");
       say((getCodeSize() / 1024) + "k code in image");
+    }
+    finishCopies();
+    if (copiers != null) {
+      copiers.shutdown();
+    }
+    // The three files are independent of each other, so write them
+    // concurrently: the reference map encoding overlaps with the I/O for
+    // the (much larger) data and code images.
+    ExecutorService writers = Executors.newFixedThreadPool(3, new KillVMonUncaughtExceptionThreadFactory());
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(3);
+    tasks.add(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        writeData();
+        return null;
+      }
+    });
+    tasks.add(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        writeCode();
+        return null;
+      }
+    });
+    tasks.add(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        writeRMap();
+        return null;
+      }
+    });
+    try {
+      for (Future<Void> result : writers.invokeAll(tasks)) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      throw new Error("Build interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new Error("Failure while writing boot image", cause);
+    } finally {
+      writers.shutdown();
+    }
+    if (trace) {
+      say("total refs: " + referenceMapReferences);
+    }
+    ScanBootImage.encodingStats();
+  }
+
+  private void writeData() throws IOException {
+    if (trace) {
       say("writing " + imageDataFileName);
     }
     if (!mapByteBuffers) {
@@ -177,7 +262,9 @@ public class BootImage implements BootImageInterface {
       dataOut.getChannel().truncate(getDataSize());
     }
     dataOut.close();
+  }
 
+  private void writeCode() throws IOException {
     if (trace) {
       say("writing " + imageCodeFileName);
     }
@@ -187,7 +274,9 @@ public class BootImage implements BootImageInterface {
       codeOut.getChannel().truncate(getCodeSize());
     }
     codeOut.close();
+  }
 
+  private void writeRMap() throws IOException {
     if (trace) {
       say("writing " + imageRMapFileName);
     }
@@ -201,10 +290,6 @@ public class BootImage implements BootImageInterface {
     rmapOut.write(bootImageRMap, 0, rMapSize);
     rmapOut.flush();
     rmapOut.close();
-    if (trace) {
-      say("total refs: " + referenceMapReferences);
-    }
-    ScanBootImage.encodingStats();
   }
 
   /**
@@ -405,6 +490,152 @@ public class BootImage implements BootImageInterface {
     data.putInt(idx, value);
   }
 
+  /**
+   * Fill in the elements of a primitive array, or of the backing array of
+   * a code array. Objects have to be allocated in the image one at a time,
+   * in traversal order, but their elements don't depend on that order. So
+   * the elements are copied to the image by a pool of copy threads while
+   * the traversal carries on. The elements are taken from a copy of the
+   * array made now, as if they were written right away, but nothing may
+   * overwrite them until {@link #finishCopies()} has returned.
+   *
+   * @param address address of the first element
+   * @param values the array
+   */
+  public void setArrayElements(Address address, Object values) {
+    int idx;
+    ByteBuffer data;
+    if (address.GE(BOOT_IMAGE_CODE_START) && address.LE(BOOT_IMAGE_CODE_END)) {
+      idx = address.diff(BOOT_IMAGE_CODE_START).toInt();
+      data = bootImageCode;
+    } else {
+      idx = address.diff(BOOT_IMAGE_DATA_START).toInt();
+      data = bootImageData;
+    }
+    Object copy;
+    int bytes;
+    if (values instanceof boolean[]) {
+      boolean[] booleans = (boolean[]) values;
+      byte[] b = new byte[booleans.length];
+      for (int i = 0; i < booleans.length; i++) {
+        b[i] = (byte) (booleans[i] ? 1 : 0);
+      }
+      copy = b;
+      bytes = b.length;
+    } else if (values instanceof byte[]) {
+      copy = ((byte[]) values).clone();
+      bytes = ((byte[]) values).length;
+    } else if (values instanceof char[]) {
+      copy = ((char[]) values).clone();
+      bytes = ((char[]) values).length << 1;
+    } else if (values instanceof short[]) {
+      copy = ((short[]) values).clone();
+      bytes = ((short[]) values).length << 1;
+    } else if (values instanceof int[]) {
+      copy = ((int[]) values).clone();
+      bytes = ((int[]) values).length << 2;
+    } else if (values instanceof float[]) {
+      copy = ((float[]) values).clone();
+      bytes = ((float[]) values).length << 2;
+    } else if (values instanceof long[]) {
+      copy = ((long[]) values).clone();
+      bytes = ((long[]) values).length << 3;
+    } else if (values instanceof double[]) {
+      copy = ((double[]) values).clone();
+      bytes = ((double[]) values).length << 3;
+    } else {
+      fail("unexpected array type: " + values.getClass());
+      return;
+    }
+    copyBatch.add(new ElementCopy(data, idx, copy));
+    copyBatchBytes += bytes;
+    if (copyBatchBytes >= COPY_BATCH_BYTES) {
+      submitCopyBatch();
+    }
+  }
+
+  private void submitCopyBatch() {
+    if (copyBatch.isEmpty()) return;
+    if (copiers == null) {
+      copiers = Executors.newFixedThreadPool(Math.max(1, BootImageWriter.numThreads),
+          new KillVMonUncaughtExceptionThreadFactory());
+    }
+    final List<ElementCopy> batch = copyBatch;
+    copyBatch = new ArrayList<ElementCopy>();
+    copyBatchBytes = 0;
+    pendingCopies.add(copiers.submit(new Runnable() {
+      @Override
+      public void run() {
+        for (ElementCopy c : batch) {
+          c.run();
+        }
+      }
+    }));
+  }
+
+  /**
+   * Wait until all elements passed to {@link #setArrayElements(Address, Object)}
+   * are in the image.
+   */
+  public void finishCopies() {
+    submitCopyBatch();
+    try {
+      for (Future<?> copy : pendingCopies) {
+        copy.get();
+      }
+    } catch (InterruptedException e) {
+      throw new Error("Build interrupted", e);
+    } catch (ExecutionException e) {
+      throw new Error("Failure while copying into boot image", e.getCause());
+    }
+    pendingCopies.clear();
+  }
+
+  /**
+   * A copy of array elements into the image. Copies only touch their own
+   * part of the image, and use their own view of its buffer, so they can
+   * run at the same time as each other and as the traversal.
+   */
+  private static final class ElementCopy implements Runnable {
+    private final ByteBuffer data;
+    private final int index;
+    private final Object values;
+
+    ElementCopy(ByteBuffer data, int index, Object values) {
+      this.data = data;
+      this.index = index;
+      this.values = values;
+    }
+
+    @Override
+    public void run() {
+      ByteBuffer buf = data.duplicate().order(data.order());
+      buf.position(index);
+      if (values instanceof byte[]) {
+        buf.put((byte[]) values);
+      } else if (values instanceof char[]) {
+        buf.asCharBuffer().put((char[]) values);
+      } else if (values instanceof short[]) {
+        buf.asShortBuffer().put((short[]) values);
+      } else if (values instanceof int[]) {
+        buf.asIntBuffer().put((int[]) values);
+      } else if (values instanceof long[]) {
+        buf.asLongBuffer().put((long[]) values);
+      } else if (values instanceof float[]) {
+        // canonical NaNs, as Float.floatToIntBits gives
+        float[] floats = (float[]) values;
+        for (int i = 0; i < floats.length; i++) {
+          buf.putInt(index + (i << 2), Float.floatToIntBits(floats[i]));
+        }
+      } else {
+        double[] doubles = (double[]) values;
+        for (int i = 0; i < doubles.length; i++) {
+          buf.putLong(index + (i << 3), Double.doubleToLongBits(doubles[i]));
+        }
+      }
+    }
+  }
+
   @Override
   public void setAddressWord(Address address, Word value, boolean objField, boolean root) {
     if (VM.VerifyAssertions) VM._assert(!root || objField);
@@ -23,12 +23,7 @@ import static org.jikesrvm.runtime.JavaSizeConstants.BYTES_IN_FLOAT;
 import static org.jikesrvm.runtime.JavaSizeConstants.BYTES_IN_INT;
 import static org.jikesrvm.runtime.JavaSizeConstants.BYTES_IN_LONG;
 import static org.jikesrvm.runtime.JavaSizeConstants.BYTES_IN_SHORT;
-import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_CHAR;
-import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_DOUBLE;
-import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_FLOAT;
 import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_INT;
-import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_LONG;
-import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_SHORT;
 import static org.jikesrvm.runtime.UnboxedSizeConstants.BYTES_IN_ADDRESS;
 import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
 import static org.jikesrvm.tools.bootImageWriter.BootImageWriterConstants.FIRST_TYPE_DICTIONARY_INDEX;
@@ -132,7 +127,8 @@ import org.vmmagic.unboxed.Word;
  *    -m <filename>            place to put bootimage map
  *    -profile                 time major phases of bootimage writing
  *    -xclasspath <path>       OBSOLETE compatibility aid
- *    -numThreads=N            number of parallel compilation threads we should create
+ *    -numThreads=N            number of parallel compilation threads we should create,
+ *                             also used for copying array elements into the image
  *
  * </pre>
  */
@@ -1025,6 +1021,8 @@ public class BootImageWriter {
     } catch (IllegalAccessException e) {
       fail("can't copy jtoc: " + e);
     }
+    // The references copied next are written over the JTOC's elements
+    bootImage.finishCopies();
     Address jtocPtr = jtocImageAddress.plus(Statics.middleOfTable << LOG_BYTES_IN_INT);
     if (jtocPtr.NE(bootRecord.tocRegister))
       fail("mismatch in JTOC placement " + Services.addressAsHexString(jtocPtr) + " != " + Services.addressAsHexString(bootRecord.tocRegister));
@@ -1481,6 +1479,11 @@ public class BootImageWriter {
       }
       order.fixUpMissingSuperClasses();
 
+      // Every build compiles every method: compiled code can't be cached
+      // across builds. It embeds JTOC offsets, TIB offsets and member ids,
+      // which are assigned as the types are instantiated here and differ
+      // between builds and between MMTk plans, and the compilers emit no
+      // relocations that would let cached code be patched.
       if (verbosity.isAtLeast(SUMMARY)) say(" compiling with " + numThreads + " threads");
       ThreadFactory threadFactory = new KillVMonUncaughtExceptionThreadFactory();
       ExecutorService threadPool = Executors.newFixedThreadPool(numThreads, threadFactory);
@@ -2307,43 +2310,7 @@ public class BootImageWriter {
     // recurse on values that are references
     if (rvmElementType.isPrimitiveType()) {
       // array element is logical or numeric type
-      if (rvmElementType.equals(RVMType.BooleanType)) {
-        boolean[] values = (boolean[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setByte(arrayImageAddress.plus(i), values[i] ? 1 : 0);
-      } else if (rvmElementType.equals(RVMType.ByteType)) {
-        byte[] values = (byte[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setByte(arrayImageAddress.plus(i), values[i]);
-      } else if (rvmElementType.equals(RVMType.CharType)) {
-        char[] values = (char[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setHalfWord(arrayImageAddress.plus(i << LOG_BYTES_IN_CHAR), values[i]);
-      } else if (rvmElementType.equals(RVMType.ShortType)) {
-        short[] values = (short[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setHalfWord(arrayImageAddress.plus(i << LOG_BYTES_IN_SHORT), values[i]);
-      } else if (rvmElementType.equals(RVMType.IntType)) {
-        int[] values = (int[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setFullWord(arrayImageAddress.plus(i << LOG_BYTES_IN_INT), values[i]);
-      } else if (rvmElementType.equals(RVMType.LongType)) {
-        long[] values = (long[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setDoubleWord(arrayImageAddress.plus(i << LOG_BYTES_IN_LONG), values[i]);
-      } else if (rvmElementType.equals(RVMType.FloatType)) {
-        float[] values = (float[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setFullWord(arrayImageAddress.plus(i << LOG_BYTES_IN_FLOAT),
-              Float.floatToIntBits(values[i]));
-      } else if (rvmElementType.equals(RVMType.DoubleType)) {
-        double[] values = (double[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setDoubleWord(arrayImageAddress.plus(i << LOG_BYTES_IN_DOUBLE),
-              Double.doubleToLongBits(values[i]));
-      } else {
-        fail("unexpected primitive array type: " + rvmArrayType);
-      }
+      bootImage.setArrayElements(arrayImageAddress, jdkObject);
     } else {
       // array element is reference type
       boolean isTIB = parentObject instanceof TIB;
@@ -2430,15 +2397,8 @@ public class BootImageWriter {
 
     // copy array elements from host jdk address space into image
     if (rvmElementType.equals(RVMType.CodeType)) {
-      if (VM.BuildForIA32) {
-        byte[] values = (byte[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setByte(arrayImageAddress.plus(i), values[i]);
-      } else {
-        int[] values = (int[]) jdkObject;
-        for (int i = 0; i < arrayCount; ++i)
-          bootImage.setFullWord(arrayImageAddress.plus(i << LOG_BYTES_IN_INT), values[i]);
-      }
+      // byte[] on IA32, int[] on PowerPC
+      bootImage.setArrayElements(arrayImageAddress, jdkObject);
     } else if (rvmElementType.equals(RVMType.AddressType)) {
       Address[] values = (Address[]) jdkObject;
       for (int i = 0; i < arrayCount; i++) {
@@ -22,7 +22,9 @@
 #include <string.h> // strerror
 
 #include <errno.h> // errno
+#include <fcntl.h> // open
 #include <sys/mman.h>  // PROT_*
+#include <sys/stat.h> // fstat
 
 #ifdef RVM_FOR_HARMONY
 #ifdef RVM_FOR_LINUX
@@ -289,6 +291,12 @@ Extent determinePageSize()
 /**
  * Map the given file to memory
  *
+ * The file is mapped privately at its fixed address rather than read in,
+ * so pages are only brought in when first touched and pages that are
+ * never written stay shared, through the page cache, by all VM
+ * processes running the same image. Writes (e.g. to statics or by code
+ * patching) copy just the affected pages.
+ *
  * Taken:     fileName         [in] name of file
  *            targetAddress    [in] address to load file to
  *            executable       [in] are we mapping code into memory
@@ -298,19 +306,21 @@ Extent determinePageSize()
  */
 static void* mapImageFile(const char *fileName, const void *targetAddress,
                           jboolean executable, jboolean writable, Extent *roundedImageSize) {
-  Extent actualImageSize;
+  struct stat st;
   void *bootRegion = 0;
   TRACE_PRINTF("%s: mapImageFile \"%s\" to %p\n", Me, fileName, targetAddress);
-  FILE *fin = fopen (fileName, "r");
-  if (!fin) {
+  int fd = open(fileName, O_RDONLY);
+  if (fd < 0) {
     ERROR_PRINTF("%s: can't find bootimage file\"%s\"\n", Me, fileName);
     return 0;
   }
   /* measure image size */
-  fseek (fin, 0L, SEEK_END);
-  actualImageSize = (uint64_t) ftell(fin);
-  *roundedImageSize = pageRoundUp(actualImageSize, pageSize);
-  fseek (fin, 0L, SEEK_SET);
+  if (fstat(fd, &st) != 0) {
+    ERROR_PRINTF("%s: fstat failed (errno=%d): %s\n", Me, errno, strerror(errno));
+    (void) close(fd);
+    return 0;
+  }
+  *roundedImageSize = pageRoundUp((Extent) st.st_size, pageSize);
   int prot = PROT_READ;
   if (writable)
     prot |= PROT_WRITE;
@@ -319,15 +329,16 @@ static void* mapImageFile(const char *fileName, const void *targetAddress,
   bootRegion = mmap((void*)targetAddress, *roundedImageSize,
        prot,
        MAP_FIXED | MAP_PRIVATE | MAP_NORESERVE,
-       fileno(fin), 0);
+       fd, 0);
   if (bootRegion == (void *) MAP_FAILED) {
     ERROR_PRINTF("%s: mmap failed (errno=%d): %s\n", Me, errno, strerror(errno));
+    (void) close(fd);
     return 0;
   }
   /* Quoting from the Linux mmap(2) manual page:
      "closing the file descriptor does not unmap the region."
   */
-  if (fclose (fin) != 0) {
+  if (close(fd) != 0) {
     ERROR_PRINTF("%s: close failed (errno=%d)\n", Me, errno);
     return 0;
   }
@@ -338,6 +349,7 @@ static void* mapImageFile(const char *fileName, const void *targetAddress,
     (void) munmap(bootRegion, *roundedImageSize);
     return 0;
   }
+  TRACE_PRINTF("%s: mapped %zu bytes of \"%s\" on demand\n", Me, (size_t) st.st_size, fileName);
   return bootRegion;
 }
 